@@ -1,5 +1,6 @@
-import { Component, OnInit } from '@angular/core';
-import { SummaryService, Summary } from '../summary.service';
+import { Component, OnDestroy, OnInit } from '@angular/core';
+import { Subscription } from 'rxjs';
+import { SummaryService, Summary, SummarySort } from '../summary.service';
 import { CommonModule } from '@angular/common';
 
 
@@ -10,31 +11,54 @@ import { CommonModule } from '@angular/common';
   standalone: true,
   imports: [CommonModule] // Ensure CommonModule is imported here for ngFor and other directives
 })
-export class DailySummaryComponent implements OnInit {
-  summaries = [
-    { clientInformation: 'Client A', productInformation: 'Product X', totalTransactionAmount: 100 },
-    { clientInformation: 'Client B', productInformation: 'Product Y', totalTransactionAmount: 200 },
-    // Add more sample data or fetch it from the service
-  ];
+export class DailySummaryComponent implements OnInit, OnDestroy {
+  static readonly PAGE_SIZE = 500;
+
+  summaries: Summary[] = [];
   filteredSummaries: Summary[] = [];
   sortDirection: { [key: string]: 'asc' | 'desc' } = {};
+  sortColumn: SummarySort = 'clientInformation';
+  total = 0;
+  nextCursor: string | null = null;
+  private pageRequest?: Subscription;
 
   constructor(private summaryService: SummaryService) { }
 
   ngOnInit(): void {
-    this.summaryService.getSummary().subscribe(data => {
-      this.summaries = data;
-      this.filteredSummaries = data;
-    });
+    this.loadPage();
+  }
+
+  ngOnDestroy(): void {
+    this.pageRequest?.unsubscribe();
   }
 
-  sort(column: string): void {
+  /**
+   * Sorts on the server: the first page is loaded again in the new order.
+   */
+  sort(column: SummarySort): void {
     const direction = this.sortDirection[column] === 'asc' ? 'desc' : 'asc';
     this.sortDirection[column] = direction;
-    this.filteredSummaries = this.filteredSummaries.sort((a, b) => {
-      const aVal = a[column];
-      const bVal = b[column];
-      return (aVal < bVal ? -1 : 1) * (direction === 'asc' ? 1 : -1);
-    });
+    this.sortColumn = column;
+    this.summaries = [];
+    this.nextCursor = null;
+    this.loadPage();
+  }
+
+  /**
+   * Appends the next page in the current order; the cursor carries the order after the first page.
+   * A page still in flight is cancelled, so a page of an earlier order, or the same page requested
+   * twice, is never appended.
+   */
+  loadPage(): void {
+    const cursor = this.nextCursor;
+    this.pageRequest?.unsubscribe();
+    this.pageRequest = this.summaryService.getSummaryPage(DailySummaryComponent.PAGE_SIZE, cursor,
+      cursor ? undefined : this.sortColumn, cursor ? undefined : (this.sortDirection[this.sortColumn] || 'asc'))
+      .subscribe(page => {
+        this.summaries = this.summaries.concat(page.rows);
+        this.filteredSummaries = this.summaries;
+        this.total = page.total;
+        this.nextCursor = page.nextCursor;
+      });
   }
 }
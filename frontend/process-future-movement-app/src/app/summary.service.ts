@@ -1,5 +1,5 @@
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams } from '@angular/common/http';
 import { Observable } from 'rxjs';
 
 export interface Summary {
@@ -8,6 +8,16 @@ export interface Summary {
   totalTransactionAmount: number;
 }
 
+export type SummarySort = 'clientInformation' | 'productInformation' | 'totalTransactionAmount';
+
+export interface SummaryPage {
+  total: number;
+  sort: SummarySort;
+  order: 'asc' | 'desc';
+  rows: Summary[];
+  nextCursor: string | null; // null on the last page
+}
+
 @Injectable({
   providedIn: 'root'
 })
@@ -19,4 +29,22 @@ export class SummaryService {
   getSummary(): Observable<Summary[]> {
     return this.http.get<Summary[]>(this.apiUrl);
   }
+
+  /**
+   * Loads one page of the summary, sorted on the server. Pass the nextCursor of a page to load the
+   * page after it; the cursor remembers the sort and order it was issued for.
+   */
+  getSummaryPage(limit: number, cursor?: string | null, sort?: SummarySort, order?: 'asc' | 'desc'): Observable<SummaryPage> {
+    let params = new HttpParams().set('limit', limit);
+    if (cursor) {
+      params = params.set('cursor', cursor);
+    }
+    if (sort) {
+      params = params.set('sort', sort);
+    }
+    if (order) {
+      params = params.set('order', order);
+    }
+    return this.http.get<SummaryPage>(this.apiUrl, { params });
+  }
 }
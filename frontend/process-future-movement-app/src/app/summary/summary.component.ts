@@ -1,30 +1,57 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
+import { Subscription } from 'rxjs';
 import { SummaryService, Summary } from '../summary.service';
-import { Component } from '@angular/core';
 
 @Component({
   selector: 'app-summary',
   templateUrl: './summary.component.html',
   styleUrls: ['./summary.component.css']
 })
-export class SummaryComponent implements OnInit {
+export class SummaryComponent implements OnInit, OnDestroy {
+  static readonly PAGE_SIZE = 500;
+
   summaries: Summary[] = [];
   filteredSummaries: Summary[] = [];
+  total = 0;
+  nextCursor: string | null = null;
+  private filters: { [column: string]: string } = {};
+  private pageRequest?: Subscription;
 
   constructor(private summaryService: SummaryService) { }
 
   ngOnInit(): void {
-    this.summaryService.getSummary().subscribe(data => {
-      this.summaries = data;
-      this.filteredSummaries = data;
+    this.loadMore();
+  }
+
+  ngOnDestroy(): void {
+    this.pageRequest?.unsubscribe();
+  }
+
+  /**
+   * Appends the next page of the summary; the first call loads the first page.
+   * A page still in flight is cancelled, so the same page is never appended twice.
+   */
+  loadMore(): void {
+    this.pageRequest?.unsubscribe();
+    this.pageRequest = this.summaryService.getSummaryPage(SummaryComponent.PAGE_SIZE, this.nextCursor).subscribe(page => {
+      this.summaries = this.summaries.concat(page.rows);
+      this.total = page.total;
+      this.nextCursor = page.nextCursor;
+      this.applyFilters();
     }, error => {
       console.error('Error fetching summary data:', error);
     });
   }
 
   filter(column: string, value: string): void {
+    this.filters[column] = value;
+    this.applyFilters();
+  }
+
+  private applyFilters(): void {
     this.filteredSummaries = this.summaries.filter(summary =>
-      summary[column].toString().toLowerCase().includes(value.toLowerCase())
+      Object.keys(this.filters).every(column =>
+        (summary as any)[column].toString().toLowerCase().includes(this.filters[column].toLowerCase()))
     );
   }
 }
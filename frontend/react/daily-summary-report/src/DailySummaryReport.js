@@ -16,57 +16,109 @@ import React, { useEffect, useState, useRef } from 'react';
 import {
     Table, TableBody, TableCell, TableContainer, TableHead,
     TableRow, Paper, TableSortLabel, Typography, CircularProgress,
-    Zoom
+    Zoom, Button
 } from '@mui/material';
 
+const PAGE_SIZE = 500;
+
+const FALLBACK_DATA = [
+    { clientInformation: "CL432100030001", productInformation: "CMEFUN120100910", totalTransactionAmount: -79.0 },
+    { clientInformation: "CL123400030001", productInformation: "CMEFUN120100910", totalTransactionAmount: 285.0 },
+    { clientInformation: "CL123400030001", productInformation: "CMEFUNK20100910", totalTransactionAmount: -215.0 },
+    { clientInformation: "CL123400020001", productInformation: "SGXFUNK20100910", totalTransactionAmount: -52.0 },
+    { clientInformation: "CL432100020001", productInformation: "SGXFUNK20100910", totalTransactionAmount: 46.0 }
+];
+
 /**
  * DailySummaryReport component displays a daily summary report
  * fetched from an API or uses fallback data. It includes a table
  * with sortable columns and a transition effect upon loading.
+ * The report is loaded a page at a time and sorted on the server.
  */
 function DailySummaryReport() {
     const [data, setData] = useState([]);
     const [loading, setLoading] = useState(true);
     const [orderBy, setOrderBy] = useState('clientInformation');
     const [order, setOrder] = useState('asc');
+    const [total, setTotal] = useState(0);
+    const [nextCursor, setNextCursor] = useState(null);
     const tableRef = useRef(null);
+    const latestRequest = useRef(0);
 
     /**
-     * useEffect hook to fetch data from the API or fallback to default data.
-     * Also handles errors during fetch.
+     * fetchPage loads one page of the report. Without a cursor it loads the first page
+     * in the given order; with one it loads the page after it, in the order of the cursor.
+     * @param {string|null} cursor - The nextCursor of the previous page, or null.
+     * @param {string} sortBy - The column to sort by.
+     * @param {string} direction - 'asc' or 'desc'.
+     * @returns {Promise<object>} The page: total, rows and nextCursor.
      */
-    useEffect(() => {
-        console.log('Fetching data...');
+    const fetchPage = (cursor, sortBy, direction) => {
         const apiUrl = process.env.REACT_APP_API_URL || 'http://localhost:8080/api/get_daily_summary_report';
+        const params = new URLSearchParams({ limit: PAGE_SIZE });
+        if (cursor) {
+            params.set('cursor', cursor);
+        } else {
+            params.set('sort', sortBy);
+            params.set('order', direction);
+        }
+        return fetch(`${apiUrl}?${params}`).then(response => response.json());
+    };
 
-        fetch(apiUrl)
-            .then(response => response.json())
-            .then(apiData => {
-                if (apiData && apiData.length > 0) {
-                    setData(apiData);
+    /**
+     * useEffect hook to fetch the first page from the API, again whenever the order changes,
+     * or fallback to default data. Also handles errors during fetch.
+     * A response is dropped if another page has been requested since.
+     */
+    useEffect(() => {
+        console.log('Fetching data...');
+        const request = ++latestRequest.current;
+        fetchPage(null, orderBy, order)
+            .then(page => {
+                if (request !== latestRequest.current) {
+                    return;
+                }
+                if (page && page.rows && page.rows.length > 0) {
+                    setData(page.rows);
+                    setTotal(page.total);
+                    setNextCursor(page.nextCursor);
                 } else {
-                    setData([
-                        { clientInformation: "CL432100030001", productInformation: "CMEFUN120100910", totalTransactionAmount: -79.0 },
-                        { clientInformation: "CL123400030001", productInformation: "CMEFUN120100910", totalTransactionAmount: 285.0 },
-                        { clientInformation: "CL123400030001", productInformation: "CMEFUNK20100910", totalTransactionAmount: -215.0 },
-                        { clientInformation: "CL123400020001", productInformation: "SGXFUNK20100910", totalTransactionAmount: -52.0 },
-                        { clientInformation: "CL432100020001", productInformation: "SGXFUNK20100910", totalTransactionAmount: 46.0 }
-                    ]);
+                    setData(FALLBACK_DATA);
+                    setNextCursor(null);
                 }
                 setLoading(false);
             })
             .catch(error => {
+                if (request !== latestRequest.current) {
+                    return;
+                }
                 console.error('Error fetching data:', error);
-                setData([
-                    { clientInformation: "CL432100030001", productInformation: "CMEFUN120100910", totalTransactionAmount: -79.0 },
-                    { clientInformation: "CL123400030001", productInformation: "CMEFUN120100910", totalTransactionAmount: 285.0 },
-                    { clientInformation: "CL123400030001", productInformation: "CMEFUNK20100910", totalTransactionAmount: -215.0 },
-                    { clientInformation: "CL123400020001", productInformation: "SGXFUNK20100910", totalTransactionAmount: -52.0 },
-                    { clientInformation: "CL432100020001", productInformation: "SGXFUNK20100910", totalTransactionAmount: 46.0 }
-                ]);
+                setData(FALLBACK_DATA);
+                setNextCursor(null);
                 setLoading(false);
             });
-    }, []);
+    }, [orderBy, order]);
+
+    /**
+     * handleLoadMore appends the next page of the report, unless the order has changed
+     * or another page has been requested before it arrives.
+     */
+    const handleLoadMore = () => {
+        const request = ++latestRequest.current;
+        fetchPage(nextCursor)
+            .then(page => {
+                if (request !== latestRequest.current) {
+                    return;
+                }
+                setData(rows => rows.concat(page.rows));
+                setNextCursor(page.nextCursor);
+            })
+            .catch(error => {
+                if (request === latestRequest.current) {
+                    console.error('Error fetching data:', error);
+                }
+            });
+    };
 
     /**
      * useEffect hook to auto-scroll to the table after loading data.
@@ -80,6 +132,7 @@ function DailySummaryReport() {
 
     /**
      * handleSort function sorts the data based on the specified property.
+     * The server sorts, so the first page is loaded again in the new order.
      * @param {string} property - The property to sort by.
      */
     const handleSort = (property) => {
@@ -136,13 +189,7 @@ function DailySummaryReport() {
                             </TableHead>
                             <TableBody>
                                 {data.length > 0 ? (
-                                    data.sort((a, b) => {
-                                        if (order === 'asc') {
-                                            return a[orderBy] < b[orderBy] ? -1 : 1;
-                                        } else {
-                                            return a[orderBy] > b[orderBy] ? -1 : 1;
-                                        }
-                                    }).map((row, index) => (
+                                    data.map((row, index) => (
                                         <TableRow key={index} style={{ backgroundColor: index % 2 === 0 ? '#f0f8ff' : '#e6ffe6' }}>
                                             <TableCell>{row.clientInformation}</TableCell>
                                             <TableCell>{row.productInformation}</TableCell>
@@ -156,6 +203,11 @@ function DailySummaryReport() {
                                 )}
                             </TableBody>
                         </Table>
+                        {nextCursor && (
+                            <Button onClick={handleLoadMore} style={{ margin: '10px' }}>
+                                Load more ({data.length} of {total})
+                            </Button>
+                        )}
                     </TableContainer>
                 </Zoom>
             )}
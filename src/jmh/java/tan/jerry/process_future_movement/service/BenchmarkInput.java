@@ -0,0 +1,102 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.domain.InputRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BenchmarkInput holds the lines of the packaged Input.txt in the shapes the benchmarks need:
+ * as Strings, as parsed InputRecords and as ASCII bytes with their line offsets.
+ */
+final class BenchmarkInput {
+
+    private static final String INPUT_FILE = "Input.txt";
+
+    final String[] lines;
+    final InputRecord[] records;
+    final ByteBuffer bytes;
+    final int[] lineStarts;
+    final int[] lineEnds;
+
+    private BenchmarkInput(List<String> lines) {
+        this.lines = lines.toArray(new String[0]);
+        this.records = new InputRecord[lines.size()];
+        this.lineStarts = new int[lines.size()];
+        this.lineEnds = new int[lines.size()];
+        byte[] content = String.join("\n", lines).getBytes(StandardCharsets.US_ASCII);
+        int position = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            records[i] = ProcessFutureMovementTaskletProcessor.parseInputRecord(lines.get(i));
+            lineStarts[i] = position;
+            lineEnds[i] = position + lines.get(i).length();
+            position = lineEnds[i] + 1;
+        }
+        this.bytes = ByteBuffer.wrap(content);
+    }
+
+    /**
+     * Loads the non-blank lines of Input.txt from the classpath.
+     */
+    static BenchmarkInput load() {
+        List<String> lines = new ArrayList<>();
+        try (InputStream in = BenchmarkInput.class.getClassLoader().getResourceAsStream(INPUT_FILE)) {
+            if (in == null) {
+                throw new IllegalStateException(INPUT_FILE + " not found on the classpath");
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    lines.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new BenchmarkInput(lines);
+    }
+
+    int size() {
+        return lines.length;
+    }
+
+    /**
+     * Builds a summary table with a given number of distinct, realistically shaped keys.
+     *
+     * @param keys   The number of distinct client-product keys.
+     * @param offset Added to every key number, so that two tables can partially overlap.
+     */
+    static SummaryTable syntheticTable(int keys, int offset) {
+        SummaryTable table = new SummaryTable(keys);
+        for (int i = 0; i < keys; i++) {
+            int n = i + offset;
+            String client = String.format("CL%04d%04d%04d", n % 10_000, (n / 10_000) % 10_000, 1);
+            String product = String.format("SGXFUNK%02d20100910", n % 97);
+            table.add(client, product, n * 10.0);
+        }
+        return table;
+    }
+}
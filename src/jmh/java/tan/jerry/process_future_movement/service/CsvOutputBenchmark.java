@@ -0,0 +1,69 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import org.openjdk.jmh.annotations.*;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Measures how fast each engine encodes a summary as CSV and writes it to the output file.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CsvOutputBenchmark {
+
+    @Param
+    public Engine engine;
+
+    @Param({"16", "65536"})
+    public int keys;
+
+    private SummaryTable summary;
+    private Path outputFile;
+    private BiConsumer<String, SummaryTable> writer;
+
+    @Setup
+    public void setUp() throws IOException {
+        summary = BenchmarkInput.syntheticTable(keys, 0);
+        outputFile = Files.createTempFile("pfm-benchmark", ".csv");
+        writer = switch (engine) {
+            case TASKLET -> ProcessFutureMovementTaskletProcessor::writeOutputFile;
+            case FORK_JOIN -> new ProcessFutureMovementForkJoinTaskletProcessor()::writeOutputFile;
+            case MAP_REDUCE -> new ProcessFutureMovementMapReduceTaskletProcessor()::writeOutputFile;
+            case PARALLEL_STREAMS -> new ProcessFutureMovementParallelStreamsTaskletProcessor()::writeOutputFile;
+            case MAPPED -> new ProcessFutureMovementMappedTaskletProcessor()::writeOutputFile;
+        };
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(outputFile);
+    }
+
+    @Benchmark
+    public void writeOutputFile() {
+        writer.accept(outputFile.toString(), summary);
+    }
+}
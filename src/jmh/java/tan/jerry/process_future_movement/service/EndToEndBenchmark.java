@@ -0,0 +1,272 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import tan.jerry.process_future_movement.config.BatchJobConfig;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EndToEndBenchmark runs every engine from a generated input file to its output CSV and
+ * reports, per engine and input size, the wall time, records per second, peak RSS, peak heap
+ * and GC pauses.
+ * <p>
+ * Each run gets a fresh JVM, so that peak RSS, heap and GC figures belong to one engine only.
+ * Options are passed as {@code --name=value}:
+ * <ul>
+ *     <li>{@code sizes}: comma-separated line counts (default 100000,1000000)</li>
+ *     <li>{@code engines}: comma-separated ENGINE or ENGINE:INPUT_MODE entries
+ *     (default every engine, the parallel ones in STREAMING and SPLIT mode)</li>
+ *     <li>{@code keys}, {@code skew}, {@code invalid-share}, {@code seed}: input shape (default 10000, 1.0, 0.01, 42)</li>
+ *     <li>{@code runs}: runs per engine and size (default 1)</li>
+ *     <li>{@code jvm-args}: comma-separated options for the run JVMs, e.g. -Xmx2g,-XX:+UseParallelGC</li>
+ *     <li>{@code dir}: where inputs, outputs and the report are written (default target/e2e-benchmark)</li>
+ * </ul>
+ * Run it with {@code mvn -Pbenchmark test-compile exec:exec@end-to-end -De2e.args="--sizes=1000000"}.
+ */
+public class EndToEndBenchmark {
+
+    private static final String RUN_COMMAND = "run";
+
+    private static final String RESULT_PREFIX = "RESULT ";
+
+    private static final String DEFAULT_ENGINES = "TASKLET,MAPPED,"
+            + "FORK_JOIN:STREAMING,FORK_JOIN:SPLIT,"
+            + "MAP_REDUCE:STREAMING,MAP_REDUCE:SPLIT,"
+            + "PARALLEL_STREAMS:STREAMING,PARALLEL_STREAMS:SPLIT";
+
+    private static final String HEADER =
+            "engine,lines,run,wall_ms,records_per_sec,peak_rss_mb,peak_heap_mb,gc_pauses,gc_pause_total_ms,gc_pause_max_ms";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && RUN_COMMAND.equals(args[0])) {
+            run(args[1], args[2], args[3]);
+            return;
+        }
+        Map<String, String> options = parseOptions(args);
+        Path dir = Paths.get(options.getOrDefault("dir", "target/e2e-benchmark")).toAbsolutePath();
+        Files.createDirectories(dir);
+        int keys = Integer.parseInt(options.getOrDefault("keys", "10000"));
+        double skew = Double.parseDouble(options.getOrDefault("skew", "1.0"));
+        double invalidShare = Double.parseDouble(options.getOrDefault("invalid-share", "0.01"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "1"));
+        List<String> jvmArgs = options.containsKey("jvm-args")
+                ? Arrays.asList(options.get("jvm-args").split(","))
+                : List.of();
+
+        Path report = dir.resolve("report.csv");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8))) {
+            out.println(HEADER);
+            System.out.println(HEADER);
+            for (String size : options.getOrDefault("sizes", "100000,1000000").split(",")) {
+                long lines = Long.parseLong(size.trim());
+                Path input = dir.resolve(String.format("input-%d-%d-%s-%s-%d.txt", lines, keys, skew, invalidShare, seed));
+                if (!Files.exists(input)) {
+                    System.out.println("Generating " + input);
+                    new MovementFileGenerator(lines, keys, skew, invalidShare,
+                            MovementFileGenerator.TOLERATED_INVALID_KINDS, seed).generate(input);
+                }
+                for (String engine : options.getOrDefault("engines", DEFAULT_ENGINES).split(",")) {
+                    for (int run = 1; run <= runs; run++) {
+                        String result = launch(engine.trim(), input, dir, jvmArgs);
+                        String row = engine.trim() + "," + lines + "," + run + ","
+                                + (result == null ? "failed,,,,,," : withThroughput(result, lines));
+                        out.println(row);
+                        out.flush();
+                        System.out.println(row);
+                    }
+                }
+            }
+        }
+        System.out.println("Report written to " + report);
+    }
+
+    /**
+     * Runs one engine in a child JVM and returns its measurement line, or null if the run failed,
+     * for instance because a materializing engine ran out of heap.
+     */
+    private static String launch(String engine, Path input, Path dir, List<String> jvmArgs) throws IOException, InterruptedException {
+        // The tasklet engine reads its input from the classpath, so the input directory is added to it
+        String classpath = System.getProperty("java.class.path") + File.pathSeparator + input.getParent();
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.addAll(List.of("-cp", classpath, EndToEndBenchmark.class.getName(), RUN_COMMAND,
+                engine, input.toString(), dir.resolve("Output-" + engine.replace(':', '-') + ".csv").toString()));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String result = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    result = line.substring(RESULT_PREFIX.length());
+                } else {
+                    System.out.println("  [" + engine + "] " + line);
+                }
+            }
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || result == null) {
+            System.out.println("  [" + engine + "] failed with exit code " + exitCode);
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Runs one engine in this JVM and prints its measurements.
+     *
+     * @param engineSpec     ENGINE or ENGINE:INPUT_MODE.
+     * @param inputFile      The input file.
+     * @param outputFileName The output CSV file.
+     */
+    private static void run(String engineSpec, String inputFile, String outputFileName) {
+        String[] spec = engineSpec.split(":");
+        Engine engine = Engine.valueOf(spec[0]);
+        InputMode mode = spec.length > 1 ? InputMode.valueOf(spec[1]) : null;
+        ProcessFutureMovementService service = create(engine, mode);
+        String input = engine == Engine.TASKLET ? Paths.get(inputFile).getFileName().toString() : inputFile;
+        // Loading BatchJobConfig bootstraps logging, which takes most of a second; keep it out of the wall time
+        BatchJobConfig.shouldIgnoreSignIndicators();
+
+        AtomicLong gcPauses = new AtomicLong();
+        AtomicLong gcPauseTotal = new AtomicLong();
+        AtomicLong gcPauseMax = new AtomicLong();
+        listenForGcPauses(gcPauses, gcPauseTotal, gcPauseMax);
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+
+        long start = System.nanoTime();
+        service.summarize(input, outputFileName);
+        long wallNanos = System.nanoTime() - start;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("%s%d,%.1f,%.1f,%d,%d,%d%n", RESULT_PREFIX,
+                wallNanos / 1_000_000, peakRssMegabytes(), peakHeap / 1048576.0,
+                gcPauses.get(), gcPauseTotal.get(), gcPauseMax.get());
+    }
+
+    private static ProcessFutureMovementService create(Engine engine, InputMode mode) {
+        return switch (engine) {
+            case TASKLET -> new ProcessFutureMovementTaskletProcessor();
+            case MAPPED -> new ProcessFutureMovementMappedTaskletProcessor();
+            case FORK_JOIN -> {
+                ProcessFutureMovementForkJoinTaskletProcessor processor = new ProcessFutureMovementForkJoinTaskletProcessor();
+                if (mode != null) {
+                    processor.setInputMode(mode);
+                }
+                yield processor;
+            }
+            case MAP_REDUCE -> {
+                ProcessFutureMovementMapReduceTaskletProcessor processor = new ProcessFutureMovementMapReduceTaskletProcessor();
+                if (mode != null) {
+                    processor.setInputMode(mode);
+                }
+                yield processor;
+            }
+            case PARALLEL_STREAMS -> {
+                ProcessFutureMovementParallelStreamsTaskletProcessor processor = new ProcessFutureMovementParallelStreamsTaskletProcessor();
+                if (mode != null) {
+                    processor.setInputMode(mode);
+                }
+                yield processor;
+            }
+        };
+    }
+
+    /**
+     * Counts stop-the-world collections; concurrent cycles of G1 and ZGC are not pauses and are skipped.
+     */
+    private static void listenForGcPauses(AtomicLong count, AtomicLong total, AtomicLong max) {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector.getName().contains("Concurrent") || collector.getName().contains("Cycles")) {
+                continue;
+            }
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    long duration = GarbageCollectionNotificationInfo
+                            .from((CompositeData) notification.getUserData()).getGcInfo().getDuration();
+                    count.incrementAndGet();
+                    total.addAndGet(duration);
+                    max.accumulateAndGet(duration, Math::max);
+                }
+            }, null, null);
+        }
+    }
+
+    /**
+     * Reads the peak resident set size of this process from /proc; -1 where that is not available.
+     */
+    private static double peakRssMegabytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) / 1024.0;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // not on Linux
+        }
+        return -1;
+    }
+
+    /**
+     * Inserts records per second after the wall time of a measurement line.
+     */
+    private static String withThroughput(String result, long lines) {
+        String[] fields = result.split(",", 2);
+        long wallMillis = Math.max(Long.parseLong(fields[0]), 1);
+        return fields[0] + "," + (lines * 1000 / wallMillis) + "," + fields[1];
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.mapping.RecordFieldSetMapper;
+import org.springframework.batch.item.file.transform.FixedLengthTokenizer;
+import org.springframework.batch.item.file.transform.Range;
+import tan.jerry.process_future_movement.domain.InputRecord;
+import tan.jerry.process_future_movement.reader.InputRecordLineMapper;
+import tan.jerry.process_future_movement.reader.ProcessFutureMovementReader;
+
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-item mapping cost of the Spring Batch reader: the FixedLengthTokenizer and
+ * RecordFieldSetMapper it used to be configured with, against InputRecordLineMapper.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LineMapperBenchmark {
+
+    public enum Mapper {
+        FIELD_SET, DIRECT
+    }
+
+    @Param({"FIELD_SET", "DIRECT"})
+    public Mapper mapper;
+
+    private String[] lines;
+    private LineMapper<InputRecord> lineMapper;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lines = BenchmarkInput.load().lines;
+        lineMapper = switch (mapper) {
+            case FIELD_SET -> fieldSetLineMapper();
+            case DIRECT -> new InputRecordLineMapper(false);
+        };
+    }
+
+    @Benchmark
+    public InputRecord mapLine() throws Exception {
+        String line = lines[next];
+        next = next + 1 == lines.length ? 0 : next + 1;
+        return lineMapper.mapLine(line, next);
+    }
+
+    private static LineMapper<InputRecord> fieldSetLineMapper() {
+        String[] names = Arrays.stream(InputRecord.class.getRecordComponents()).map(RecordComponent::getName).toArray(String[]::new);
+        FixedLengthTokenizer tokenizer = new FixedLengthTokenizer();
+        tokenizer.setStrict(false);
+        tokenizer.setNames(names);
+        tokenizer.setColumns(Arrays.stream(names).map(ProcessFutureMovementReader::column).toArray(Range[]::new));
+        DefaultLineMapper<InputRecord> lineMapper = new DefaultLineMapper<>();
+        lineMapper.setLineTokenizer(tokenizer);
+        lineMapper.setFieldSetMapper(new RecordFieldSetMapper<>(InputRecord.class));
+        return lineMapper;
+    }
+}
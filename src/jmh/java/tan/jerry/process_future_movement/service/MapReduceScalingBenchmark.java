@@ -0,0 +1,85 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import org.openjdk.jmh.annotations.*;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the map/shuffle/reduce pipeline of ProcessFutureMovementMapReduceTaskletProcessor
+ * scales with the number of workers, on a generated input whose keys follow a skewed Zipf
+ * distribution, so a few clients get most of the lines. The processor runs on a dedicated pool
+ * of {@code workers} threads with one reducer partition per worker; plotting the time per
+ * operation against {@code workers} gives the scaling curve. Workers beyond the available
+ * processors only add contention for cores, so trim the list to the machine, for example
+ * {@code -Djmh.args="MapReduceScaling -p workers=1,2,4,8"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapReduceScalingBenchmark {
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    public int workers;
+
+    @Param({"STREAMING", "SPLIT"})
+    public InputMode inputMode;
+
+    @Param({"1000000"})
+    public long lines;
+
+    private Path dir;
+    private Path input;
+    private ForkJoinPool pool;
+    private ProcessFutureMovementMapReduceTaskletProcessor processor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("mapreduce-scaling");
+        input = dir.resolve("input.txt");
+        new MovementFileGenerator(lines, 10_000, 1.2, 0, Set.of(), 42).generate(input);
+        pool = new ForkJoinPool(workers);
+        processor = new ProcessFutureMovementMapReduceTaskletProcessor();
+        processor.setPool(pool);
+        processor.setPartitions(workers);
+        processor.setInputMode(inputMode);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public SummaryTable summarize() {
+        return processor.summarize(input.toString(), dir.resolve("output.csv").toString());
+    }
+}
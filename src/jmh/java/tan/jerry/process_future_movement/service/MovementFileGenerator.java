@@ -0,0 +1,212 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import org.springframework.batch.item.file.transform.Range;
+import tan.jerry.process_future_movement.reader.ProcessFutureMovementReader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * MovementFileGenerator writes synthetic movement files in the fixed-width layout of
+ * {@link ProcessFutureMovementReader}, for benchmarks that need inputs far larger than
+ * the packaged Input.txt.
+ * <p>
+ * Lines are spread over a fixed number of client-product keys, either uniformly or with a
+ * Zipf skew so that a few keys dominate, and a share of them can be invalid in the same ways
+ * as the files under test_data.
+ */
+public class MovementFileGenerator {
+
+    /**
+     * The ways a generated line can be invalid, modelled on the files under test_data.
+     */
+    public enum InvalidKind {
+        /** A record code other than 315, as in InvalidRecordCode.txt. */
+        RECORD_CODE,
+        /** A non-date expiration date, as in InvalidDateFormat.txt. */
+        EXPIRATION_DATE,
+        /** Blank account number and expiration date, as in MissingFields.txt. */
+        MISSING_FIELDS,
+        /** Non-numeric quantities, as in InvalidNumberFormat.txt; the engines currently abort on these. */
+        QUANTITY
+    }
+
+    /**
+     * The invalid kinds every engine reads through without failing.
+     */
+    public static final Set<InvalidKind> TOLERATED_INVALID_KINDS =
+            EnumSet.of(InvalidKind.RECORD_CODE, InvalidKind.EXPIRATION_DATE, InvalidKind.MISSING_FIELDS);
+
+    /**
+     * A valid line of the packaged Input.txt that generated lines are derived from.
+     */
+    private static final String TEMPLATE =
+            "315CL  432100020001SGXDC FUSGX NK    20100910JPY01B 0000000001 0000000000000000000060DUSD000000000030DUSD000000000000DJPY201008200012380     688032000092500000000             O";
+
+    private static final String[] EXCHANGES = {"SGX ", "CME ", "EUX ", "HKF ", "OSE ", "ICE "};
+    private static final String[] PRODUCT_GROUPS = {"FU", "OP"};
+    private static final String[] SYMBOLS = {"NK    ", "TW    ", "IN    ", "ES    ", "FGBL  ", "HSI   ", "CN    ", "GC    "};
+    private static final String[] EXPIRATIONS = {"20100910", "20101210", "20110310", "20110610"};
+
+    private static final Range RECORD_CODE = ProcessFutureMovementReader.column("recordCode");
+    private static final Range CLIENT_NUMBER = ProcessFutureMovementReader.column("clientNumber");
+    private static final Range ACCOUNT_NUMBER = ProcessFutureMovementReader.column("accountNumber");
+    private static final Range SUB_ACCOUNT_NUMBER = ProcessFutureMovementReader.column("subAccountNumber");
+    private static final Range PRODUCT_GROUP_CODE = ProcessFutureMovementReader.column("productGroupCode");
+    private static final Range EXCHANGE_CODE = ProcessFutureMovementReader.column("exchangeCode");
+    private static final Range SYMBOL = ProcessFutureMovementReader.column("symbol");
+    private static final Range EXPIRATION_DATE = ProcessFutureMovementReader.column("expirationDate");
+    private static final Range BUY_SELL_CODE = ProcessFutureMovementReader.column("buySellCode");
+    private static final Range QUANTITY_LONG_SIGN = ProcessFutureMovementReader.column("quantityLongSign");
+    private static final Range QUANTITY_LONG = ProcessFutureMovementReader.column("quantityLong");
+    private static final Range QUANTITY_SHORT_SIGN = ProcessFutureMovementReader.column("quantityShortSign");
+    private static final Range QUANTITY_SHORT = ProcessFutureMovementReader.column("quantityShort");
+
+    private final long lines;
+    private final int keys;
+    private final double skew;
+    private final double invalidShare;
+    private final InvalidKind[] invalidKinds;
+    private final long seed;
+
+    /**
+     * @param lines        The number of lines to generate.
+     * @param keys         The number of distinct client-product keys.
+     * @param skew         The Zipf exponent of the key distribution; 0 spreads lines uniformly.
+     * @param invalidShare The share of invalid lines, between 0 and 1.
+     * @param invalidKinds The ways invalid lines are broken, picked at random.
+     * @param seed         The random seed, so that a file can be regenerated identically.
+     */
+    public MovementFileGenerator(long lines, int keys, double skew, double invalidShare,
+                                 Set<InvalidKind> invalidKinds, long seed) {
+        if (lines < 0 || keys < 1 || skew < 0 || invalidShare < 0 || invalidShare > 1) {
+            throw new IllegalArgumentException("Invalid generator settings");
+        }
+        if (invalidShare > 0 && invalidKinds.isEmpty()) {
+            throw new IllegalArgumentException("invalidKinds must not be empty when invalidShare is positive");
+        }
+        this.lines = lines;
+        this.keys = keys;
+        this.skew = skew;
+        this.invalidShare = invalidShare;
+        this.invalidKinds = invalidKinds.toArray(new InvalidKind[0]);
+        this.seed = seed;
+    }
+
+    /**
+     * Writes the file, one '\n'-terminated line per movement.
+     *
+     * @param file The file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void generate(Path file) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] cumulative = skew == 0 ? null : zipfCumulative(keys, skew);
+        char[] line = new char[TEMPLATE.length()];
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            for (long i = 0; i < lines; i++) {
+                TEMPLATE.getChars(0, TEMPLATE.length(), line, 0);
+                int key = cumulative == null ? random.nextInt(keys) : sample(cumulative, random.nextDouble());
+                writeKey(line, key);
+                put(line, BUY_SELL_CODE, random.nextBoolean() ? "B" : "S");
+                put(line, QUANTITY_LONG_SIGN, random.nextInt(4) == 0 ? "-" : " ");
+                put(line, QUANTITY_LONG, zeroPadded(random.nextInt(10_000), 10));
+                put(line, QUANTITY_SHORT_SIGN, random.nextInt(4) == 0 ? "-" : " ");
+                put(line, QUANTITY_SHORT, zeroPadded(random.nextInt(10_000), 10));
+                if (invalidShare > 0 && random.nextDouble() < invalidShare) {
+                    breakLine(line, invalidKinds[random.nextInt(invalidKinds.length)]);
+                }
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Spreads key numbers over the client and product columns; consecutive keys share a client
+     * and differ in product, like a client trading several contracts.
+     */
+    private static void writeKey(char[] line, int key) {
+        int products = EXCHANGES.length * PRODUCT_GROUPS.length * SYMBOLS.length * EXPIRATIONS.length;
+        int client = key / products;
+        int product = key % products;
+        put(line, CLIENT_NUMBER, zeroPadded(client % 10_000, 4));
+        put(line, ACCOUNT_NUMBER, zeroPadded((client / 10_000) % 10_000, 4));
+        put(line, SUB_ACCOUNT_NUMBER, zeroPadded(client / 100_000_000 + 1, 4));
+        put(line, EXPIRATION_DATE, EXPIRATIONS[product % EXPIRATIONS.length]);
+        product /= EXPIRATIONS.length;
+        put(line, SYMBOL, SYMBOLS[product % SYMBOLS.length]);
+        product /= SYMBOLS.length;
+        put(line, PRODUCT_GROUP_CODE, PRODUCT_GROUPS[product % PRODUCT_GROUPS.length]);
+        put(line, EXCHANGE_CODE, EXCHANGES[product / PRODUCT_GROUPS.length]);
+    }
+
+    private static void breakLine(char[] line, InvalidKind kind) {
+        switch (kind) {
+            case RECORD_CODE -> put(line, RECORD_CODE, "000");
+            case EXPIRATION_DATE -> put(line, EXPIRATION_DATE, "INVALID ");
+            case MISSING_FIELDS -> {
+                put(line, ACCOUNT_NUMBER, "    ");
+                put(line, EXPIRATION_DATE, "        ");
+            }
+            case QUANTITY -> put(line, QUANTITY_LONG, "INVALID   ");
+        }
+    }
+
+    private static void put(char[] line, Range column, String value) {
+        int width = column.getMax() - column.getMin() + 1;
+        if (value.length() != width) {
+            throw new IllegalArgumentException("Value '" + value + "' does not fit column " + column);
+        }
+        value.getChars(0, width, line, column.getMin() - 1);
+    }
+
+    private static String zeroPadded(long value, int width) {
+        char[] digits = new char[width];
+        Arrays.fill(digits, '0');
+        for (int i = width - 1; i >= 0 && value > 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    private static double[] zipfCumulative(int keys, double skew) {
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int k = 0; k < keys; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < keys; k++) {
+            cumulative[k] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, double u) {
+        int index = Arrays.binarySearch(cumulative, u);
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import org.openjdk.jmh.annotations.*;
+import tan.jerry.process_future_movement.domain.InputRecord;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Measures how fast each engine turns one fixed-width line into an InputRecord.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseInputRecordBenchmark {
+
+    @Param({"TASKLET", "FORK_JOIN", "MAP_REDUCE", "PARALLEL_STREAMS"})
+    public Engine engine;
+
+    private String[] lines;
+    private Function<String, InputRecord> parser;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lines = BenchmarkInput.load().lines;
+        parser = switch (engine) {
+            case TASKLET -> ProcessFutureMovementTaskletProcessor::parseInputRecord;
+            case FORK_JOIN -> new ProcessFutureMovementForkJoinTaskletProcessor()::parseInputRecord;
+            case MAP_REDUCE -> new ProcessFutureMovementMapReduceTaskletProcessor()::parseInputRecord;
+            case PARALLEL_STREAMS -> new ProcessFutureMovementParallelStreamsTaskletProcessor()::parseInputRecord;
+            case MAPPED -> throw new IllegalArgumentException("The mapped engine does not build InputRecords");
+        };
+    }
+
+    @Benchmark
+    public InputRecord parseInputRecord() {
+        String line = lines[next];
+        next = next + 1 == lines.length ? 0 : next + 1;
+        return parser.apply(line);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tan.jerry.process_future_movement.aggregate.SummaryKeys;
+import tan.jerry.process_future_movement.domain.InputRecord;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the client-product key of one line. All engines pack keys with
+ * SummaryKeys; the String concatenation they used before is kept as a baseline.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SummaryKeyBenchmark {
+
+    private BenchmarkInput input;
+    private final long[] key = new long[SummaryKeys.KEY_WORDS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        input = BenchmarkInput.load();
+    }
+
+    @Benchmark
+    public long[] packFromRecord() {
+        SummaryKeys.pack(input.records[nextLine()], key);
+        return key;
+    }
+
+    @Benchmark
+    public long[] packFromBytes() {
+        int i = nextLine();
+        SummaryKeys.pack(input.bytes, input.lineStarts[i], input.lineEnds[i], key);
+        return key;
+    }
+
+    @Benchmark
+    public void concatenateStrings(Blackhole blackhole) {
+        InputRecord record = input.records[nextLine()];
+        blackhole.consume(record.clientType() + record.clientNumber() + record.accountNumber() + record.subAccountNumber());
+        blackhole.consume(record.exchangeCode() + record.productGroupCode() + record.symbol() + record.expirationDate());
+    }
+
+    private int nextLine() {
+        int i = next;
+        next = next + 1 == input.size() ? 0 : next + 1;
+        return i;
+    }
+}
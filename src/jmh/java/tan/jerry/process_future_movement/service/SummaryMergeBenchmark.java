@@ -0,0 +1,64 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import org.openjdk.jmh.annotations.*;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures merging two partial summaries, as the parallel engines do when combining worker
+ * results. The tables share half of their keys. The Map merge the engines used before is
+ * kept as a baseline.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SummaryMergeBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    public int keys;
+
+    private SummaryTable left;
+    private SummaryTable right;
+    private Map<String, Double> leftMap;
+    private Map<String, Double> rightMap;
+
+    @Setup
+    public void setUp() {
+        left = BenchmarkInput.syntheticTable(keys, 0);
+        right = BenchmarkInput.syntheticTable(keys, keys / 2);
+        leftMap = left.toMap();
+        rightMap = right.toMap();
+    }
+
+    @Benchmark
+    public SummaryTable mergeSummaryTables() {
+        return new SummaryTable(keys).mergeFrom(left).mergeFrom(right);
+    }
+
+    @Benchmark
+    public Map<String, Double> mergeMaps() {
+        Map<String, Double> result = new HashMap<>(leftMap);
+        rightMap.forEach((key, value) -> result.merge(key, value, Double::sum));
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import org.openjdk.jmh.annotations.*;
+import tan.jerry.process_future_movement.config.BatchJobConfig;
+import tan.jerry.process_future_movement.domain.InputRecord;
+import tan.jerry.process_future_movement.reader.FixedWidthLines;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Measures how fast each engine calculates the transaction amount of one line: from a parsed
+ * InputRecord for the String-based engines, and from the line bytes for the mapped engine.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransactionAmountBenchmark {
+
+    @Param
+    public Engine engine;
+
+    private int size;
+    private IntToDoubleFunction amount;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkInput input = BenchmarkInput.load();
+        size = input.size();
+        if (engine == Engine.MAPPED) {
+            boolean ignoreSignIndicators = BatchJobConfig.shouldIgnoreSignIndicators();
+            amount = i -> FixedWidthLines.transactionAmount(input.bytes, input.lineStarts[i], input.lineEnds[i], ignoreSignIndicators);
+            return;
+        }
+        ToDoubleFunction<InputRecord> calculator = switch (engine) {
+            case FORK_JOIN -> new ProcessFutureMovementForkJoinTaskletProcessor()::calculateTransactionAmount;
+            case MAP_REDUCE -> new ProcessFutureMovementMapReduceTaskletProcessor()::calculateTransactionAmount;
+            case PARALLEL_STREAMS -> new ProcessFutureMovementParallelStreamsTaskletProcessor()::calculateTransactionAmount;
+            default -> ProcessFutureMovementTaskletProcessor::calculateTransactionAmount;
+        };
+        amount = i -> calculator.applyAsDouble(input.records[i]);
+    }
+
+    @Benchmark
+    public double calculateTransactionAmount() {
+        int i = next;
+        next = next + 1 == size ? 0 : next + 1;
+        return amount.applyAsDouble(i);
+    }
+}
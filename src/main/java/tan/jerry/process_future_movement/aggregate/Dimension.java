@@ -0,0 +1,77 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import org.springframework.batch.item.file.transform.Range;
+import tan.jerry.process_future_movement.reader.ProcessFutureMovementReader;
+
+/**
+ * Dimension names an input attribute that rollups can group by. A dimension covers one or more
+ * fixed-width columns of the input; their trimmed values are concatenated, the same way as the
+ * client information of {@link SummaryKeys}.
+ */
+public enum Dimension {
+
+    /**
+     * CLIENT TYPE, CLIENT NUMBER, ACCOUNT NUMBER and SUBACCOUNT NUMBER.
+     */
+    CLIENT("clientInformation", "clientType", "clientNumber", "accountNumber", "subAccountNumber"),
+
+    EXCHANGE_CODE("exchangeCode", "exchangeCode"),
+
+    PRODUCT_GROUP_CODE("productGroupCode", "productGroupCode"),
+
+    SYMBOL("symbol", "symbol"),
+
+    EXPIRATION_DATE("expirationDate", "expirationDate"),
+
+    TRADER_INITIALS("traderInitials", "traderInitials");
+
+    private final String label;
+    private final Range[] columns;
+    private final int width;
+
+    Dimension(String label, String... fieldNames) {
+        this.label = label;
+        this.columns = new Range[fieldNames.length];
+        int sum = 0;
+        for (int i = 0; i < fieldNames.length; i++) {
+            columns[i] = ProcessFutureMovementReader.column(fieldNames[i]);
+            sum += columns[i].getMax() - columns[i].getMin() + 1;
+        }
+        this.width = sum;
+    }
+
+    /**
+     * @return The name of this dimension in reports, such as "exchangeCode".
+     */
+    public String label() {
+        return label;
+    }
+
+    /**
+     * @return The number of bytes the dimension takes in a packed key; the sum of its column widths.
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * @return The 1-based, inclusive column ranges of the dimension, in the order they are concatenated.
+     */
+    Range[] columns() {
+        return columns;
+    }
+}
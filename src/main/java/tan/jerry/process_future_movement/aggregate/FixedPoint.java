@@ -0,0 +1,200 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import tan.jerry.process_future_movement.domain.MovementRecord;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * FixedPoint holds the numeric path of the processors: amounts are exact scaled longs, a number
+ * of units of 10<sup>-scale</sup>, from parsing to aggregation, and only become doubles when
+ * they are output. Sums of scaled longs do not depend on the order they are added in, so the
+ * parallel engines produce exactly the same totals however their work is split and merged.
+ *
+ * <p>The numeric columns of the input are parsed in place, without an intermediate String:
+ * quantities are whole numbers; the fee columns (exchBrokerFeeDec, clearingFeeDec and
+ * commission) have {@link #FEE_SCALE} implied decimals and transactionPriceDec has
+ * {@link #PRICE_SCALE}, so their digits are already the units of their scale.</p>
+ */
+public final class FixedPoint {
+
+    /**
+     * Decimal places of transaction amounts and of the totals of a SummaryTable.
+     */
+    public static final int SCALE = 2;
+
+    /**
+     * Implied decimal places of the fee columns.
+     */
+    public static final int FEE_SCALE = 2;
+
+    /**
+     * Implied decimal places of the transaction price column.
+     */
+    public static final int PRICE_SCALE = 7;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    /**
+     * The longest digit run that is accumulated in place without risk of overflow.
+     */
+    private static final int MAX_PLAIN_DIGITS = 18;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Calculates the transaction amount of a record in units of {@link #SCALE}: quantity long minus
+     * quantity short, each negated unless its sign is '+', or unsigned if sign indicators are ignored.
+     *
+     * @param record               The record containing quantity and sign information.
+     * @param ignoreSignIndicators Whether the sign columns are ignored.
+     * @return The transaction amount in units of {@link #SCALE}.
+     * @throws NumberFormatException if a quantity is not a number.
+     */
+    public static long transactionUnits(MovementRecord record, boolean ignoreSignIndicators) {
+        long quantityLong = parse(record.quantityLong(), SCALE);
+        long quantityShort = parse(record.quantityShort(), SCALE);
+        if (!ignoreSignIndicators) {
+            quantityLong = "+".equals(record.quantityLongSign()) ? quantityLong : -quantityLong;
+            quantityShort = "+".equals(record.quantityShortSign()) ? quantityShort : -quantityShort;
+        }
+        return quantityLong - quantityShort;
+    }
+
+    /**
+     * Parses a decimal number into units of 10<sup>-scale</sup>. Surrounding whitespace is ignored.
+     * Runs of up to 18 digits, which is what the input columns hold, are accumulated in place;
+     * anything else, such as a sign or a decimal point, is parsed with BigDecimal.
+     *
+     * @param text  The number.
+     * @param scale The number of decimal places of the result.
+     * @return The number in units of 10<sup>-scale</sup>.
+     * @throws NumberFormatException if the text is empty, not a number, has more decimal places
+     *                               than the scale or does not fit in a long at that scale.
+     */
+    public static long parse(CharSequence text, int scale) {
+        int from = 0;
+        int to = text.length();
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        if (from < to && to - from <= MAX_PLAIN_DIGITS) {
+            long value = 0;
+            int i = from;
+            while (i < to) {
+                int digit = text.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+                i++;
+            }
+            if (i == to) {
+                return scaleUp(value, scale);
+            }
+        }
+        return parseDecimal(text.subSequence(from, to).toString(), scale);
+    }
+
+    /**
+     * Parses a column with implied decimals, such as the fee and price columns. Its digits are
+     * already the units of the column's scale, {@link #FEE_SCALE} or {@link #PRICE_SCALE}.
+     *
+     * @param digits The digits of the column.
+     * @return The value in units of the column's scale.
+     * @throws NumberFormatException if the column is empty or not a whole number.
+     */
+    public static long parseImplied(CharSequence digits) {
+        return parse(digits, 0);
+    }
+
+    /**
+     * Multiplies a whole number into units of 10<sup>-scale</sup>.
+     *
+     * @throws NumberFormatException if the result does not fit in a long.
+     */
+    public static long scaleUp(long value, int scale) {
+        try {
+            return Math.multiplyExact(value, POWERS_OF_TEN[scale]);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Number too large for scale " + scale + ": " + value);
+        }
+    }
+
+    /**
+     * Parses a decimal number that is not a plain digit run.
+     *
+     * @throws NumberFormatException if the text is not a number or cannot be represented exactly at the scale.
+     */
+    public static long parseDecimal(String text, int scale) {
+        try {
+            return new BigDecimal(text).setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Not representable with " + scale + " decimal places: \"" + text + "\"");
+        }
+    }
+
+    /**
+     * Converts units of one scale to another, rounding half away from zero when decimals are dropped.
+     *
+     * @param units     The number of units of 10<sup>-fromScale</sup>.
+     * @param fromScale The scale of the units.
+     * @param toScale   The scale of the result.
+     * @return The value in units of 10<sup>-toScale</sup>.
+     * @throws ArithmeticException if the result does not fit in a long.
+     */
+    public static long rescale(long units, int fromScale, int toScale) {
+        if (toScale >= fromScale) {
+            return Math.multiplyExact(units, POWERS_OF_TEN[toScale - fromScale]);
+        }
+        long divisor = POWERS_OF_TEN[fromScale - toScale];
+        long quotient = units / divisor;
+        long remainder = Math.abs(units % divisor);
+        return remainder * 2 >= divisor ? quotient + Long.signum(units) : quotient;
+    }
+
+    /**
+     * Converts a scaled long to a double, for output. The result is the double nearest to the
+     * exact value as long as the units fit in 53 bits.
+     *
+     * @param units The number of units of 10<sup>-scale</sup>.
+     * @param scale The number of decimal places of the units.
+     * @return The value as a double.
+     */
+    public static double toDouble(long units, int scale) {
+        return units / (double) POWERS_OF_TEN[scale];
+    }
+
+    /**
+     * Converts a double to a scaled long, rounding half up to the scale.
+     *
+     * @param value The value.
+     * @param scale The number of decimal places of the result.
+     * @return The value in units of 10<sup>-scale</sup>.
+     */
+    public static long fromDouble(double value, int scale) {
+        return Math.round(value * POWERS_OF_TEN[scale]);
+    }
+}
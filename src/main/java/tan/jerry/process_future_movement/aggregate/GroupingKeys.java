@@ -0,0 +1,197 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import org.springframework.batch.item.file.transform.Range;
+import tan.jerry.process_future_movement.domain.MovementRecord;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * GroupingKeys packs the finest grain of the rollups, every {@link Dimension} of a record, into
+ * {@link #KEY_WORDS} primitive longs.
+ *
+ * <p>Each dimension has a fixed slot of {@link Dimension#width()} bytes, in declaration order,
+ * holding its trimmed value; unused bytes are zero. Because the slots are fixed, the key of any
+ * {@link GroupingSet} is the finest key with the bytes of the other dimensions cleared, which is
+ * how the rollups are derived from the finest table.</p>
+ */
+public final class GroupingKeys {
+
+    /**
+     * Number of longs in a packed grouping key.
+     */
+    public static final int KEY_WORDS = 6;
+
+    private static final Dimension[] DIMENSIONS = Dimension.values();
+
+    /**
+     * Byte offset of the slot of each dimension, indexed by {@link Dimension#ordinal()}.
+     */
+    private static final int[] OFFSETS = new int[DIMENSIONS.length];
+
+    static {
+        int offset = 0;
+        for (Dimension dimension : DIMENSIONS) {
+            OFFSETS[dimension.ordinal()] = offset;
+            offset += dimension.width();
+        }
+        if (offset > KEY_WORDS * Long.BYTES) {
+            throw new IllegalStateException("Grouping dimensions do not fit in " + KEY_WORDS + " words");
+        }
+    }
+
+    private GroupingKeys() {
+    }
+
+    /**
+     * Packs the grouping key of a parsed InputRecord.
+     *
+     * @param record The record.
+     * @param key    The destination, at least {@link #KEY_WORDS} long.
+     * @throws IllegalArgumentException if a value is longer than its column.
+     */
+    public static void pack(MovementRecord record, long[] key) {
+        clear(key);
+        int position = OFFSETS[Dimension.CLIENT.ordinal()];
+        position = append(record.clientType(), key, position);
+        position = append(record.clientNumber(), key, position);
+        position = append(record.accountNumber(), key, position);
+        position = append(record.subAccountNumber(), key, position);
+        checkOverflow(position, Dimension.CLIENT, record);
+        put(record.exchangeCode(), Dimension.EXCHANGE_CODE, key, record);
+        put(record.productGroupCode(), Dimension.PRODUCT_GROUP_CODE, key, record);
+        put(record.symbol(), Dimension.SYMBOL, key, record);
+        put(record.expirationDate(), Dimension.EXPIRATION_DATE, key, record);
+        put(record.traderInitials(), Dimension.TRADER_INITIALS, key, record);
+    }
+
+    /**
+     * Packs the grouping key of a raw fixed-width line, reading the columns straight from the bytes.
+     * Columns past the end of a short line are treated as empty.
+     *
+     * @param line      The buffer holding the line.
+     * @param lineStart The absolute index of the first byte of the line.
+     * @param lineEnd   The absolute index just past the last byte of the line, excluding the line terminator.
+     * @param key       The destination, at least {@link #KEY_WORDS} long.
+     */
+    public static void pack(ByteBuffer line, int lineStart, int lineEnd, long[] key) {
+        clear(key);
+        for (Dimension dimension : DIMENSIONS) {
+            int position = OFFSETS[dimension.ordinal()];
+            for (Range column : dimension.columns()) {
+                int from = Math.min(lineStart + column.getMin() - 1, lineEnd);
+                int to = Math.min(lineStart + column.getMax(), lineEnd);
+                while (from < to && (line.get(from) & 0xFF) <= ' ') {
+                    from++;
+                }
+                while (to > from && (line.get(to - 1) & 0xFF) <= ' ') {
+                    to--;
+                }
+                for (int i = from; i < to; i++) {
+                    put(key, position++, line.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes one dimension of a packed grouping key.
+     *
+     * @param keys      The array holding the packed key.
+     * @param offset    The index of the first word of the key.
+     * @param dimension The dimension.
+     * @return The trimmed value of the dimension; "" if it is blank or not part of the key.
+     */
+    public static String decode(long[] keys, int offset, Dimension dimension) {
+        int from = OFFSETS[dimension.ordinal()];
+        byte[] bytes = new byte[dimension.width()];
+        int length = 0;
+        while (length < bytes.length) {
+            int position = from + length;
+            byte b = (byte) (keys[offset + (position >>> 3)] >>> ((position & 7) << 3));
+            if (b == 0) {
+                break;
+            }
+            bytes[length++] = b;
+        }
+        return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Hashes a packed grouping key, mixing the words like {@link SummaryKeys#hash(long[], int)}.
+     *
+     * @param keys   The array holding the packed key.
+     * @param offset The index of the first word of the key.
+     * @return The hash of the key.
+     */
+    public static int hash(long[] keys, int offset) {
+        long h = 0;
+        for (int i = 0; i < KEY_WORDS; i++) {
+            h = (h ^ keys[offset + i]) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 29;
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Builds the mask that keeps the bytes of the given dimensions of a packed key.
+     *
+     * @param dimensions The dimensions to keep.
+     * @return The mask, {@link #KEY_WORDS} long.
+     */
+    static long[] mask(Dimension... dimensions) {
+        long[] mask = new long[KEY_WORDS];
+        for (Dimension dimension : dimensions) {
+            int from = OFFSETS[dimension.ordinal()];
+            for (int position = from; position < from + dimension.width(); position++) {
+                put(mask, position, (byte) 0xFF);
+            }
+        }
+        return mask;
+    }
+
+    private static void clear(long[] key) {
+        for (int i = 0; i < KEY_WORDS; i++) {
+            key[i] = 0L;
+        }
+    }
+
+    private static void put(String value, Dimension dimension, long[] key, MovementRecord record) {
+        checkOverflow(append(value, key, OFFSETS[dimension.ordinal()]), dimension, record);
+    }
+
+    private static int append(String value, long[] key, int position) {
+        if (value == null) {
+            return position;
+        }
+        String trimmed = value.trim();
+        for (int i = 0; i < trimmed.length() && position < KEY_WORDS * Long.BYTES; i++) {
+            put(key, position++, (byte) trimmed.charAt(i));
+        }
+        return position;
+    }
+
+    private static void put(long[] key, int position, byte b) {
+        key[position >>> 3] |= (b & 0xFFL) << ((position & 7) << 3);
+    }
+
+    private static void checkOverflow(int position, Dimension dimension, MovementRecord record) {
+        if (position > OFFSETS[dimension.ordinal()] + dimension.width()) {
+            throw new IllegalArgumentException(dimension + " too long to pack: " + record);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import java.util.List;
+
+/**
+ * GroupingSet is a rollup of the daily movements: the set of {@link Dimension}s that it
+ * groups by. Every grouping set is coarser than the finest grain of {@link GroupingKeys},
+ * so its table is derived from the finest table by {@link GroupingTable#rollup(GroupingSet)}
+ * without reading the input again.
+ */
+public enum GroupingSet {
+
+    CLIENT(Dimension.CLIENT),
+
+    EXCHANGE(Dimension.EXCHANGE_CODE),
+
+    PRODUCT_GROUP_SYMBOL(Dimension.PRODUCT_GROUP_CODE, Dimension.SYMBOL),
+
+    EXPIRATION_DATE(Dimension.EXPIRATION_DATE),
+
+    TRADER(Dimension.TRADER_INITIALS);
+
+    private final List<Dimension> dimensions;
+
+    /**
+     * Bits of a packed grouping key kept by this grouping set; the bytes of the other dimensions are cleared.
+     */
+    private final long[] mask;
+
+    GroupingSet(Dimension... dimensions) {
+        this.dimensions = List.of(dimensions);
+        this.mask = GroupingKeys.mask(dimensions);
+    }
+
+    /**
+     * @return The dimensions grouped by, in report order.
+     */
+    public List<Dimension> dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Projects a packed grouping key onto this grouping set.
+     *
+     * @param keys   The array holding the finest key.
+     * @param offset The index of the first word of the key.
+     * @param target The destination, at least {@link GroupingKeys#KEY_WORDS} long.
+     */
+    void project(long[] keys, int offset, long[] target) {
+        for (int i = 0; i < GroupingKeys.KEY_WORDS; i++) {
+            target[i] = keys[offset + i] & mask[i];
+        }
+    }
+}
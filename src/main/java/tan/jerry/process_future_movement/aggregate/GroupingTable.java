@@ -0,0 +1,329 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import tan.jerry.process_future_movement.domain.MovementRecord;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GroupingTable is an open-addressing hash table that accumulates every {@link Metric} per
+ * grouping key, laid out like {@link SummaryTable}: keys packed by {@link GroupingKeys} inline in
+ * one long array, and one long column per metric.
+ *
+ * <p>The table built from the input holds the finest grain, all {@link Dimension}s. The tables
+ * of the {@link GroupingSet}s are derived from it with {@link #rollups(Collection)}, which fills
+ * all of them in one scan of the finest table, and the client-product summary with
+ * {@link #toSummaryTable()}. Amounts add exactly and currencies combine as in SummaryTable, so a
+ * rollup holds the same values as aggregating the input at its grain directly.</p>
+ *
+ * <p>The table is not thread-safe. Parallel workers build one table each and combine them with
+ * {@link #mergeFrom(GroupingTable)}.</p>
+ */
+public final class GroupingTable {
+
+    private static final int KEY_WORDS = GroupingKeys.KEY_WORDS;
+    private static final int MIN_CAPACITY = 16;
+    private static final Metric[] METRICS = Metric.values();
+
+    /**
+     * The dimensions the keys of this table hold; the other dimensions are blank.
+     */
+    private final List<Dimension> dimensions;
+
+    private long[] keys;
+    private long[][] columns;
+    private boolean[] used;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    /**
+     * Scratch key and metrics for {@link #addMovement(MovementRecord, boolean)}; never escape this table.
+     */
+    private final long[] scratch = new long[KEY_WORDS];
+    private final long[] measured = new long[Metric.COUNT];
+
+    /**
+     * Constructs an empty table of the finest grain.
+     */
+    public GroupingTable() {
+        this(List.of(Dimension.values()), MIN_CAPACITY);
+    }
+
+    private GroupingTable(List<Dimension> dimensions, int expectedSize) {
+        this.dimensions = dimensions;
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Adds the values of every metric to a packed key.
+     *
+     * @param key    The packed key, as filled by {@link GroupingKeys}.
+     * @param values The values, indexed by {@link Metric#ordinal()}, as measured by {@link MovementMetrics}.
+     * @throws ArithmeticException if an amount overflows.
+     */
+    public void addMetrics(long[] key, long[] values) {
+        addMetrics(key, 0, values);
+    }
+
+    /**
+     * Measures a record and adds every metric to its grouping key.
+     *
+     * @param record               The record.
+     * @param ignoreSignIndicators Whether {@link Metric#NET_QUANTITY} ignores the sign columns.
+     */
+    public void addMovement(MovementRecord record, boolean ignoreSignIndicators) {
+        GroupingKeys.pack(record, scratch);
+        addMetrics(scratch, 0, MovementMetrics.measure(record, ignoreSignIndicators, measured));
+    }
+
+    /**
+     * @param key    The packed key.
+     * @param metric The metric.
+     * @return The value of the metric for the key, or 0 if the key is not present.
+     */
+    public long getMetric(long[] key, Metric metric) {
+        int slot = findSlot(key, 0);
+        return used[slot] ? columns[metric.ordinal()][slot] : 0L;
+    }
+
+    /**
+     * Adds every entry of another table into this one. The other table is left unchanged.
+     *
+     * @param other The table to merge from.
+     * @return This table, to allow use as a reduction combiner.
+     */
+    public GroupingTable mergeFrom(GroupingTable other) {
+        for (int i = 0; i < other.used.length; i++) {
+            if (other.used[i]) {
+                add(other.keys, i * KEY_WORDS, other.columns, i);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Derives the table of one grouping set.
+     *
+     * @param groupingSet The grouping set.
+     * @return A new table keyed by the dimensions of the grouping set.
+     */
+    public GroupingTable rollup(GroupingSet groupingSet) {
+        return rollups(List.of(groupingSet)).get(groupingSet);
+    }
+
+    /**
+     * Derives the tables of several grouping sets in one scan of this table.
+     *
+     * @param groupingSets The grouping sets.
+     * @return A new table per grouping set, keyed by its dimensions.
+     */
+    public Map<GroupingSet, GroupingTable> rollups(Collection<GroupingSet> groupingSets) {
+        Map<GroupingSet, GroupingTable> rollups = new EnumMap<>(GroupingSet.class);
+        for (GroupingSet groupingSet : groupingSets) {
+            rollups.put(groupingSet, new GroupingTable(groupingSet.dimensions(), MIN_CAPACITY));
+        }
+        long[] projected = new long[KEY_WORDS];
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                for (Map.Entry<GroupingSet, GroupingTable> rollup : rollups.entrySet()) {
+                    rollup.getKey().project(keys, i * KEY_WORDS, projected);
+                    rollup.getValue().add(projected, 0, columns, i);
+                }
+            }
+        }
+        return rollups;
+    }
+
+    /**
+     * Derives the client-product summary, the grain of {@link SummaryTable}, from the finest table.
+     *
+     * @return A new SummaryTable holding every metric per client-product key.
+     */
+    public SummaryTable toSummaryTable() {
+        SummaryTable summary = new SummaryTable(size);
+        long[] key = new long[SummaryKeys.KEY_WORDS];
+        long[] values = new long[Metric.COUNT];
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                int offset = i * KEY_WORDS;
+                SummaryKeys.pack(GroupingKeys.decode(keys, offset, Dimension.CLIENT),
+                        GroupingKeys.decode(keys, offset, Dimension.EXCHANGE_CODE)
+                                + GroupingKeys.decode(keys, offset, Dimension.PRODUCT_GROUP_CODE)
+                                + GroupingKeys.decode(keys, offset, Dimension.SYMBOL)
+                                + GroupingKeys.decode(keys, offset, Dimension.EXPIRATION_DATE), key);
+                for (int m = 0; m < METRICS.length; m++) {
+                    values[m] = columns[m][i];
+                }
+                summary.addMetrics(key, values);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * @return The dimensions the keys of this table hold, in report order.
+     */
+    public List<Dimension> dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return The number of distinct keys in the table.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a cursor over the entries of the table. The cursor reads the table in place,
+     * so it must not be used after the table is modified.
+     *
+     * @return A cursor positioned before the first entry.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private void addMetrics(long[] key, int offset, long[] values) {
+        int slot = findSlot(key, offset);
+        if (used[slot]) {
+            for (int m = 0; m < METRICS.length; m++) {
+                columns[m][slot] = METRICS[m].combine(columns[m][slot], values[m]);
+            }
+        } else {
+            System.arraycopy(key, offset, keys, slot * KEY_WORDS, KEY_WORDS);
+            for (int m = 0; m < METRICS.length; m++) {
+                columns[m][slot] = values[m];
+            }
+            occupy(slot);
+        }
+    }
+
+    private void add(long[] key, int offset, long[][] sourceColumns, int index) {
+        int slot = findSlot(key, offset);
+        if (used[slot]) {
+            for (int m = 0; m < METRICS.length; m++) {
+                columns[m][slot] = METRICS[m].combine(columns[m][slot], sourceColumns[m][index]);
+            }
+        } else {
+            System.arraycopy(key, offset, keys, slot * KEY_WORDS, KEY_WORDS);
+            for (int m = 0; m < METRICS.length; m++) {
+                columns[m][slot] = sourceColumns[m][index];
+            }
+            occupy(slot);
+        }
+    }
+
+    private int findSlot(long[] key, int offset) {
+        int slot = GroupingKeys.hash(key, offset) & mask;
+        while (used[slot] && !keyEquals(slot, key, offset)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean keyEquals(int slot, long[] key, int offset) {
+        int base = slot * KEY_WORDS;
+        for (int i = 0; i < KEY_WORDS; i++) {
+            if (keys[base + i] != key[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void occupy(int slot) {
+        used[slot] = true;
+        if (++size > resizeThreshold) {
+            resize();
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity * KEY_WORDS];
+        columns = new long[METRICS.length][capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = capacity / 2;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[][] oldColumns = columns;
+        boolean[] oldUsed = used;
+        allocate(oldUsed.length * 2);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int slot = findSlot(oldKeys, i * KEY_WORDS);
+                System.arraycopy(oldKeys, i * KEY_WORDS, keys, slot * KEY_WORDS, KEY_WORDS);
+                for (int m = 0; m < METRICS.length; m++) {
+                    columns[m][slot] = oldColumns[m][i];
+                }
+                used[slot] = true;
+            }
+        }
+    }
+
+    /**
+     * Forward-only cursor over the entries of a GroupingTable.
+     */
+    public final class Cursor {
+
+        private int slot = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * Advances to the next entry.
+         *
+         * @return True if the cursor is positioned on an entry, false once the table is exhausted.
+         */
+        public boolean next() {
+            while (++slot < used.length) {
+                if (used[slot]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param dimension The dimension.
+         * @return The value of a dimension of the current entry; "" for a dimension the table does not group by.
+         */
+        public String dimension(Dimension dimension) {
+            return GroupingKeys.decode(keys, slot * KEY_WORDS, dimension);
+        }
+
+        /**
+         * @param metric The metric.
+         * @return The value of a metric of the current entry: an amount in units of {@link FixedPoint#SCALE}
+         * or a currency packed by {@link MovementMetrics}.
+         */
+        public long metric(Metric metric) {
+            return columns[metric.ordinal()][slot];
+        }
+    }
+}
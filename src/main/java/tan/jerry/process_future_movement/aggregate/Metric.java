@@ -0,0 +1,185 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * The metrics a SummaryTable accumulates per client-product key, one primitive column each.
+ * Amounts are in units of {@link FixedPoint#SCALE}; currencies are packed by
+ * {@link MovementMetrics#packCurrency(CharSequence)}.
+ */
+public enum Metric {
+
+    /**
+     * Quantity long minus quantity short, signed or not as BatchJobConfig.ignoreSignIndicators
+     * selects. This is the total transaction amount of the summary.
+     */
+    NET_QUANTITY(Kind.AMOUNT),
+
+    /**
+     * Quantity long minus quantity short, each negated unless its sign is '+'.
+     */
+    SIGNED_NET_QUANTITY(Kind.AMOUNT),
+
+    /**
+     * Quantity long minus quantity short, ignoring the sign columns.
+     */
+    UNSIGNED_NET_QUANTITY(Kind.AMOUNT),
+
+    /**
+     * Exchange and broker fees; debits ('D') are negative, credits positive.
+     */
+    EXCH_BROKER_FEE(Kind.AMOUNT),
+
+    /**
+     * Currency of the exchange and broker fees.
+     */
+    EXCH_BROKER_FEE_CURRENCY(Kind.CURRENCY),
+
+    /**
+     * Clearing fees; debits ('D') are negative, credits positive.
+     */
+    CLEARING_FEE(Kind.AMOUNT),
+
+    /**
+     * Currency of the clearing fees.
+     */
+    CLEARING_FEE_CURRENCY(Kind.CURRENCY),
+
+    /**
+     * Commission; debits ('D') are negative, credits positive.
+     */
+    COMMISSION(Kind.AMOUNT),
+
+    /**
+     * Currency of the commission.
+     */
+    COMMISSION_CURRENCY(Kind.CURRENCY),
+
+    /**
+     * Transaction price times quantity long plus quantity short, each rounded to {@link FixedPoint#SCALE}.
+     */
+    NOTIONAL(Kind.AMOUNT);
+
+    /**
+     * The number of metrics, which is the length of the arrays measured by {@link MovementMetrics}.
+     */
+    public static final int COUNT = values().length;
+
+    /**
+     * How the values of a metric combine.
+     */
+    public enum Kind {
+        /**
+         * Values are summed. A fee summed over more than one currency is reported empty, and so is
+         * an amount any of whose records has a malformed column, {@link MovementMetrics#INVALID_AMOUNT}.
+         */
+        AMOUNT,
+        /**
+         * Values are kept while they agree and become {@link MovementMetrics#MIXED_CURRENCY} otherwise.
+         */
+        CURRENCY
+    }
+
+    private final Kind kind;
+
+    Metric(Kind kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * @return How the values of this metric combine.
+     */
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @return The name of this metric in camel case, as used in reports, such as "exchBrokerFeeCurrency".
+     */
+    public String label() {
+        StringBuilder label = new StringBuilder(name().length());
+        boolean upper = false;
+        for (char c : name().toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                label.append(upper ? c : Character.toLowerCase(c));
+                upper = false;
+            }
+        }
+        return label.toString();
+    }
+
+    /**
+     * @return The currency metric of this amount, or null if the amount has no currency column.
+     */
+    public Metric currency() {
+        return switch (this) {
+            case EXCH_BROKER_FEE -> EXCH_BROKER_FEE_CURRENCY;
+            case CLEARING_FEE -> CLEARING_FEE_CURRENCY;
+            case COMMISSION -> COMMISSION_CURRENCY;
+            default -> null;
+        };
+    }
+
+    /**
+     * Converts the value of this metric in a row for output. An amount whose records are in
+     * more than one currency has no meaningful total, so it is left empty, as null, next to
+     * its {@link MovementMetrics#MIXED} currency.
+     *
+     * @param row The values of the row, by metric, such as a cursor's {@code metric} method.
+     * @return The amount as a Double, the currency code as a String, or null for an amount in mixed currencies.
+     */
+    public Object format(ToLongFunction<Metric> row) {
+        Metric currency = currency();
+        if (currency != null && row.applyAsLong(currency) == MovementMetrics.MIXED_CURRENCY) {
+            return null;
+        }
+        return format(row.applyAsLong(this));
+    }
+
+    /**
+     * Converts a value of this metric for output.
+     *
+     * @param value The value, as accumulated by a SummaryTable.
+     * @return The amount as a Double, the currency code as a String, or null for an {@link MovementMetrics#INVALID_AMOUNT}.
+     */
+    public Object format(long value) {
+        if (kind == Kind.AMOUNT && value == MovementMetrics.INVALID_AMOUNT) {
+            return null;
+        }
+        return kind == Kind.AMOUNT ? (Object) FixedPoint.toDouble(value, FixedPoint.SCALE) : MovementMetrics.currency(value);
+    }
+
+    /**
+     * Combines an accumulated value with another value of this metric.
+     *
+     * @param accumulated The accumulated value.
+     * @param value       The value to add.
+     * @return The combined value; {@link MovementMetrics#INVALID_AMOUNT} if either amount is.
+     * @throws ArithmeticException if an amount overflows.
+     */
+    public long combine(long accumulated, long value) {
+        if (kind == Kind.CURRENCY) {
+            return MovementMetrics.combineCurrencies(accumulated, value);
+        }
+        if (accumulated == MovementMetrics.INVALID_AMOUNT || value == MovementMetrics.INVALID_AMOUNT) {
+            return MovementMetrics.INVALID_AMOUNT;
+        }
+        return Math.addExact(accumulated, value);
+    }
+}
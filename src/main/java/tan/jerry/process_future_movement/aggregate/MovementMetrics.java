@@ -0,0 +1,218 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import tan.jerry.process_future_movement.domain.MovementRecord;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * MovementMetrics measures every {@link Metric} of one movement in a single pass over its
+ * fields, so that a SummaryTable can accumulate all of them without another scan of the input.
+ * Values are written into a caller-owned array indexed by {@link Metric#ordinal()}, which lets
+ * the workers of the parallel engines reuse one array per worker.
+ *
+ * <p>The fee and price columns are optional: a blank column counts as zero. A fee, currency or
+ * price column that is present but malformed fails only the metric it feeds, which is measured as
+ * {@link #INVALID_AMOUNT}; the quantities, and so the summary total, are still measured. An invalid
+ * quantity fails the record.</p>
+ */
+public final class MovementMetrics {
+
+    /**
+     * The packed currency of a key without any currency code.
+     */
+    public static final long NO_CURRENCY = 0L;
+
+    /**
+     * The packed currency of a key whose records have more than one currency code.
+     */
+    public static final long MIXED_CURRENCY = -1L;
+
+    /**
+     * How {@link #MIXED_CURRENCY} is reported.
+     */
+    public static final String MIXED = "MIXED";
+
+    /**
+     * The value of an amount whose column is malformed. It absorbs every value it is combined with,
+     * so the amount of a key is reported empty once any of its records has a malformed column.
+     */
+    public static final long INVALID_AMOUNT = Long.MIN_VALUE;
+
+    private static final int MAX_CURRENCY_LENGTH = 7;
+
+    private MovementMetrics() {
+    }
+
+    /**
+     * Measures every metric of a record.
+     *
+     * @param record               The record.
+     * @param ignoreSignIndicators Whether {@link Metric#NET_QUANTITY} ignores the sign columns.
+     * @param values               The array receiving the values, of length {@link Metric#COUNT}.
+     * @return The values array.
+     * @throws NumberFormatException if a quantity is not a number.
+     */
+    public static long[] measure(MovementRecord record, boolean ignoreSignIndicators, long[] values) {
+        long quantityLong = FixedPoint.parse(record.quantityLong(), FixedPoint.SCALE);
+        long quantityShort = FixedPoint.parse(record.quantityShort(), FixedPoint.SCALE);
+        long unsigned = quantityLong - quantityShort;
+        long signed = ("+".equals(record.quantityLongSign()) ? quantityLong : -quantityLong)
+                - ("+".equals(record.quantityShortSign()) ? quantityShort : -quantityShort);
+        values[Metric.NET_QUANTITY.ordinal()] = ignoreSignIndicators ? unsigned : signed;
+        values[Metric.SIGNED_NET_QUANTITY.ordinal()] = signed;
+        values[Metric.UNSIGNED_NET_QUANTITY.ordinal()] = unsigned;
+        measureFee(values, Metric.EXCH_BROKER_FEE, record.exchBrokerFeeDec(), record.exchBrokerFeeDC(), record.exchBrokerFeeCurCode());
+        measureFee(values, Metric.CLEARING_FEE, record.clearingFeeDec(), record.clearingFeeDC(), record.clearingFeeCurCode());
+        measureFee(values, Metric.COMMISSION, record.commission(), record.commissionDC(), record.commissionCurCode());
+        try {
+            values[Metric.NOTIONAL.ordinal()] = notional(optionalImplied(record.transactionPriceDec()), quantityLong + quantityShort);
+        } catch (NumberFormatException e) {
+            values[Metric.NOTIONAL.ordinal()] = INVALID_AMOUNT;
+        }
+        return values;
+    }
+
+    /**
+     * Measures a fee and its currency, or marks the fee {@link #INVALID_AMOUNT}, without a currency,
+     * if either column is malformed.
+     */
+    private static void measureFee(long[] values, Metric fee, CharSequence digits, CharSequence debitCredit,
+                                   CharSequence currency) {
+        try {
+            values[fee.currency().ordinal()] = packCurrency(currency);
+            values[fee.ordinal()] = fee(digits, debitCredit);
+        } catch (IllegalArgumentException e) {
+            values[fee.currency().ordinal()] = NO_CURRENCY;
+            values[fee.ordinal()] = INVALID_AMOUNT;
+        }
+    }
+
+    /**
+     * Converts a fee column and its debit/credit indicator into a signed amount.
+     *
+     * @param digits      The fee, with {@link FixedPoint#FEE_SCALE} implied decimals.
+     * @param debitCredit The indicator; 'D' makes the fee negative.
+     * @return The fee in units of {@link FixedPoint#SCALE}.
+     */
+    public static long fee(CharSequence digits, CharSequence debitCredit) {
+        long units = FixedPoint.rescale(optionalImplied(digits), FixedPoint.FEE_SCALE, FixedPoint.SCALE);
+        return isDebit(debitCredit) ? -units : units;
+    }
+
+    /**
+     * Multiplies a price by a quantity.
+     *
+     * @param priceUnits    The price in units of {@link FixedPoint#PRICE_SCALE}.
+     * @param quantityUnits The quantity in units of {@link FixedPoint#SCALE}.
+     * @return The notional in units of {@link FixedPoint#SCALE}, rounded half away from zero.
+     */
+    public static long notional(long priceUnits, long quantityUnits) {
+        try {
+            return FixedPoint.rescale(Math.multiplyExact(priceUnits, quantityUnits),
+                    FixedPoint.PRICE_SCALE + FixedPoint.SCALE, FixedPoint.SCALE);
+        } catch (ArithmeticException e) {
+            return BigDecimal.valueOf(priceUnits, FixedPoint.PRICE_SCALE)
+                    .multiply(BigDecimal.valueOf(quantityUnits, FixedPoint.SCALE))
+                    .setScale(FixedPoint.SCALE, RoundingMode.HALF_UP)
+                    .unscaledValue().longValueExact();
+        }
+    }
+
+    /**
+     * Packs a currency code of up to seven ASCII characters into a long; surrounding whitespace is ignored.
+     *
+     * @param code The currency code.
+     * @return The packed code, or {@link #NO_CURRENCY} if the code is blank.
+     * @throws IllegalArgumentException if the code is longer than seven characters or not ASCII.
+     */
+    public static long packCurrency(CharSequence code) {
+        int from = 0;
+        int to = code.length();
+        while (from < to && code.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && code.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        if (to - from > MAX_CURRENCY_LENGTH) {
+            throw new IllegalArgumentException("Currency code too long: " + code);
+        }
+        long packed = NO_CURRENCY;
+        for (int i = from; i < to; i++) {
+            char c = code.charAt(i);
+            if (c > 0x7F) {
+                throw new IllegalArgumentException("Currency code is not ASCII: " + code);
+            }
+            packed = packed << 8 | c;
+        }
+        return packed;
+    }
+
+    /**
+     * Decodes a packed currency code.
+     *
+     * @param packed The packed code.
+     * @return The currency code, "" for {@link #NO_CURRENCY} or {@link #MIXED} for {@link #MIXED_CURRENCY}.
+     */
+    public static String currency(long packed) {
+        if (packed == MIXED_CURRENCY) {
+            return MIXED;
+        }
+        StringBuilder code = new StringBuilder(3);
+        for (int shift = 8 * (MAX_CURRENCY_LENGTH - 1); shift >= 0; shift -= 8) {
+            int c = (int) (packed >>> shift) & 0xFF;
+            if (c != 0) {
+                code.append((char) c);
+            }
+        }
+        return code.toString();
+    }
+
+    /**
+     * Combines the currencies of two groups of records.
+     *
+     * @return The common currency, the one that is present if the other is not, or {@link #MIXED_CURRENCY}.
+     */
+    public static long combineCurrencies(long accumulated, long value) {
+        if (accumulated == value || value == NO_CURRENCY) {
+            return accumulated;
+        }
+        return accumulated == NO_CURRENCY ? value : MIXED_CURRENCY;
+    }
+
+    private static boolean isDebit(CharSequence debitCredit) {
+        int from = 0;
+        int to = debitCredit.length();
+        while (from < to && debitCredit.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && debitCredit.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to - from == 1 && debitCredit.charAt(from) == 'D';
+    }
+
+    private static long optionalImplied(CharSequence digits) {
+        for (int i = 0; i < digits.length(); i++) {
+            if (digits.charAt(i) > ' ') {
+                return FixedPoint.parseImplied(digits);
+            }
+        }
+        return 0L;
+    }
+}
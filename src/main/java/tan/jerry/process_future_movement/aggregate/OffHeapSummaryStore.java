@@ -0,0 +1,534 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OffHeapSummaryStore is a read-only copy of a {@link SummaryTable} kept in direct memory, outside the
+ * Java heap, so that a daily summary held for hours by the REST API costs the garbage collector nothing:
+ * no boxed totals, no String keys and no long arrays for the old generation to trace or copy.
+ *
+ * <p>The store is one direct buffer in two regions. The records region holds one fixed-size slot per
+ * key, its {@link SummaryKeys#KEY_WORDS} key words followed by the value of every {@link Metric}. The
+ * index region is an open-addressing table of int slots, twice as many as there are keys, each holding
+ * the number of a record plus one, or 0 when empty. Lookups hash the packed key like SummaryTable does.</p>
+ *
+ * <p>The memory is released explicitly. The store starts with one reference, owned by whoever copied
+ * it; every reader takes its own with {@link #tryRetain()} and gives it back with {@link #close()}. The
+ * last close frees the direct buffer at once rather than at some later garbage collection, so a reader
+ * must hold a reference for as long as it reads: reading a released store throws IllegalStateException,
+ * but reading one that is being released concurrently by a thread that holds no reference is undefined.</p>
+ *
+ * <p>For the pages of a sorted report, {@link #order(SummaryOrder)} sorts the record numbers once per
+ * {@link SummaryOrder} and keeps them on the heap, four bytes per key, for as long as the store lives.</p>
+ */
+public final class OffHeapSummaryStore implements AutoCloseable {
+
+    private static final int KEY_WORDS = SummaryKeys.KEY_WORDS;
+    private static final Metric[] METRICS = Metric.values();
+
+    /**
+     * Bytes of one record: its key words, then the value of every metric.
+     */
+    static final int RECORD_BYTES = (KEY_WORDS + Metric.COUNT) * Long.BYTES;
+
+    /**
+     * The largest number of keys a store holds: both regions must fit in one buffer, and the index
+     * may have up to four slots per key once rounded up to a power of two.
+     */
+    static final int MAX_SIZE = (Integer.MAX_VALUE - 64) / (RECORD_BYTES + 4 * Integer.BYTES);
+
+    private static final FreeBuffer FREE = FreeBuffer.lookup();
+
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final int size;
+    private final int mask;
+    private final int recordsOffset;
+    private final long allocatedBytes;
+    private final Map<SummaryOrder, int[]> orders = new ConcurrentHashMap<>();
+    private ByteBuffer memory;
+
+    private OffHeapSummaryStore(int size) {
+        this.size = size;
+        int capacity = Integer.highestOneBit(Math.max(8, size * 2 - 1)) << 1;
+        this.mask = capacity - 1;
+        this.recordsOffset = capacity * Integer.BYTES;
+        this.memory = ByteBuffer.allocateDirect(recordsOffset + size * RECORD_BYTES);
+        this.allocatedBytes = memory.capacity();
+    }
+
+    /**
+     * Copies every key and metric of a table into a new store.
+     *
+     * @param table The table to copy; it is left unchanged and may be discarded afterwards.
+     * @return A new store holding one reference, owned by the caller.
+     * @throws IllegalArgumentException if the table holds more than {@link #MAX_SIZE} keys.
+     */
+    public static OffHeapSummaryStore copyOf(SummaryTable table) {
+        if (table.size() > MAX_SIZE) {
+            throw new IllegalArgumentException("Too many keys for an off-heap store: " + table.size());
+        }
+        OffHeapSummaryStore store = new OffHeapSummaryStore(table.size());
+        ByteBuffer memory = store.memory;
+        long[] key = new long[KEY_WORDS];
+        int record = 0;
+        SummaryTable.Cursor cursor = table.cursor();
+        while (cursor.next()) {
+            cursor.copyKey(key);
+            int position = store.recordsOffset + record * RECORD_BYTES;
+            for (long word : key) {
+                memory.putLong(position, word);
+                position += Long.BYTES;
+            }
+            for (Metric metric : METRICS) {
+                memory.putLong(position, cursor.metric(metric));
+                position += Long.BYTES;
+            }
+            int slot = SummaryKeys.hash(key, 0) & store.mask;
+            while (memory.getInt(slot * Integer.BYTES) != 0) {
+                slot = (slot + 1) & store.mask;
+            }
+            memory.putInt(slot * Integer.BYTES, ++record);
+        }
+        return store;
+    }
+
+    /**
+     * Takes a reference to the store, which the caller must give back with {@link #close()}.
+     *
+     * @return True if the reference was taken, false if the store has already been released.
+     */
+    public boolean tryRetain() {
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * Gives back one reference, freeing the direct memory once none is left.
+     *
+     * @throws IllegalStateException if the store has already been released.
+     */
+    @Override
+    public void close() {
+        int count = references.decrementAndGet();
+        if (count == 0) {
+            ByteBuffer released = memory;
+            memory = null;
+            FREE.free(released);
+        } else if (count < 0) {
+            references.incrementAndGet();
+            throw new IllegalStateException("Off-heap summary store already released");
+        }
+    }
+
+    /**
+     * @return True once the last reference has been given back and the memory freed.
+     */
+    public boolean isReleased() {
+        return references.get() == 0;
+    }
+
+    /**
+     * @return The bytes of direct memory the store took when it was copied.
+     */
+    public long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return The number of distinct keys in the store.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return True if the store holds no keys.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value of one metric of a packed key.
+     *
+     * @param key    The packed key.
+     * @param metric The metric.
+     * @return The value, or 0 if the key is absent.
+     */
+    public long getMetric(long[] key, Metric metric) {
+        ByteBuffer memory = memory();
+        int position = find(memory, key);
+        return position < 0 ? 0L : memory.getLong(position + (KEY_WORDS + metric.ordinal()) * Long.BYTES);
+    }
+
+    /**
+     * Returns the total of a packed key.
+     *
+     * @param key The packed key.
+     * @return The total, or 0.0 if the key is absent.
+     */
+    public double get(long[] key) {
+        return FixedPoint.toDouble(getMetric(key, Metric.NET_QUANTITY), FixedPoint.SCALE);
+    }
+
+    /**
+     * Checks whether a packed key is present.
+     *
+     * @param key The packed key.
+     * @return True if the copied table held the key.
+     */
+    public boolean contains(long[] key) {
+        return find(memory(), key) >= 0;
+    }
+
+    /**
+     * Visits every key in its packed form, without decoding it or its total. The key array passed to
+     * the visitor is reused from one entry to the next.
+     *
+     * @param visitor The visitor receiving the key array, the offset of the key and its total in units of {@link FixedPoint#SCALE}.
+     */
+    public void forEachPacked(SummaryTable.PackedEntryVisitor visitor) {
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            visitor.visit(cursor.key, 0, cursor.units());
+        }
+    }
+
+    /**
+     * Returns a cursor over the entries of the store, in the order they were copied.
+     *
+     * @return A cursor positioned before the first entry.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Converts the store into a map keyed by "clientInformation,productInformation".
+     *
+     * @return A new map containing client-product keys and their total transaction amounts.
+     */
+    public Map<String, Double> toMap() {
+        Map<String, Double> map = new HashMap<>(Math.max(16, (int) (size / 0.75f) + 1));
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            map.put(cursor.clientInformation() + "," + cursor.productInformation(), cursor.total());
+        }
+        return map;
+    }
+
+    /**
+     * Copies the store back onto the heap.
+     *
+     * @return A new SummaryTable holding every key and metric of the store.
+     */
+    public SummaryTable toSummaryTable() {
+        SummaryTable table = new SummaryTable(size);
+        long[] values = new long[Metric.COUNT];
+        Cursor cursor = cursor();
+        while (cursor.next()) {
+            for (Metric metric : METRICS) {
+                values[metric.ordinal()] = cursor.metric(metric);
+            }
+            table.addMetrics(cursor.key, values);
+        }
+        return table;
+    }
+
+    /**
+     * Returns the record numbers of the store in ascending order, sorting them the first time an order
+     * is asked for; {@link Cursor#moveTo(int)} reads a record by its number. A descending order is the
+     * same array read from the end.
+     *
+     * @param by The order.
+     * @return The record numbers, ascending; shared, so it must not be modified.
+     */
+    public int[] order(SummaryOrder by) {
+        memory();
+        return orders.computeIfAbsent(by, this::sort);
+    }
+
+    /**
+     * Locates a position in an order, which need not be the key of an entry of this store: the key of
+     * the last entry of a page read from an earlier version of the summary resumes at the right place.
+     *
+     * @param by         The order.
+     * @param descending True if the order is read from the end.
+     * @param units      The total of the position, in units of {@link FixedPoint#SCALE}.
+     * @param key        The packed key of the position.
+     * @return The number of entries that come before the position, or at it, when the order is read
+     * in the given direction; the index of the first entry after it.
+     */
+    public int offsetAfter(SummaryOrder by, boolean descending, long units, long[] key) {
+        int[] order = order(by);
+        ByteBuffer memory = memory();
+        long[] recordKey = new long[KEY_WORDS];
+        int low = 0;
+        int high = size;
+        while (low < high) { // first entry at or after the position in ascending order
+            int mid = (low + high) >>> 1;
+            if (compareRecord(memory, order[mid], recordKey, by, units, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (descending) {
+            return size - low;
+        }
+        return low < size && compareRecord(memory, order[low], recordKey, by, units, key) == 0 ? low + 1 : low;
+    }
+
+    /**
+     * Compares a record with a position in an order, reading the key of the record into recordKey.
+     */
+    private int compareRecord(ByteBuffer memory, int record, long[] recordKey, SummaryOrder by, long units, long[] key) {
+        int position = recordsOffset + record * RECORD_BYTES;
+        for (int w = 0; w < KEY_WORDS; w++) {
+            recordKey[w] = memory.getLong(position + w * Long.BYTES);
+        }
+        long recordUnits = memory.getLong(position + (KEY_WORDS + Metric.NET_QUANTITY.ordinal()) * Long.BYTES);
+        return by.compare(recordUnits, recordKey, 0, units, key, 0);
+    }
+
+    /**
+     * Sorts the record numbers, on heap copies of the keys and totals that die with the sort.
+     */
+    private int[] sort(SummaryOrder by) {
+        ByteBuffer memory = memory();
+        long[] keys = new long[size * KEY_WORDS];
+        long[] units = new long[size];
+        int[] records = new int[size];
+        for (int record = 0; record < size; record++) {
+            int position = recordsOffset + record * RECORD_BYTES;
+            for (int w = 0; w < KEY_WORDS; w++) {
+                keys[record * KEY_WORDS + w] = memory.getLong(position + w * Long.BYTES);
+            }
+            units[record] = memory.getLong(position + (KEY_WORDS + Metric.NET_QUANTITY.ordinal()) * Long.BYTES);
+            records[record] = record;
+        }
+        mergeSort(records, new int[size], 0, size,
+                (a, b) -> by.compare(units[a], keys, a * KEY_WORDS, units[b], keys, b * KEY_WORDS));
+        return records;
+    }
+
+    private static void mergeSort(int[] records, int[] scratch, int from, int to, RecordComparator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(records, scratch, from, mid, comparator);
+        mergeSort(records, scratch, mid, to, comparator);
+        if (comparator.compare(records[mid - 1], records[mid]) <= 0) {
+            return; // already in order
+        }
+        System.arraycopy(records, from, scratch, from, to - from);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to) {
+            records[k++] = comparator.compare(scratch[i], scratch[j]) <= 0 ? scratch[i++] : scratch[j++];
+        }
+        while (i < mid) {
+            records[k++] = scratch[i++];
+        }
+        while (j < to) {
+            records[k++] = scratch[j++];
+        }
+    }
+
+    /**
+     * Compares two records by their numbers, without boxing them.
+     */
+    @FunctionalInterface
+    private interface RecordComparator {
+
+        int compare(int a, int b);
+    }
+
+    private ByteBuffer memory() {
+        ByteBuffer current = memory;
+        if (current == null) {
+            throw new IllegalStateException("Off-heap summary store already released");
+        }
+        return current;
+    }
+
+    /**
+     * Returns the position of the record of a key, or -1 if the key is absent.
+     */
+    private int find(ByteBuffer memory, long[] key) {
+        int slot = SummaryKeys.hash(key, 0) & mask;
+        int record;
+        while ((record = memory.getInt(slot * Integer.BYTES)) != 0) {
+            int position = recordsOffset + (record - 1) * RECORD_BYTES;
+            if (matches(memory, position, key)) {
+                return position;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static boolean matches(ByteBuffer memory, int position, long[] key) {
+        for (int w = 0; w < KEY_WORDS; w++) {
+            if (memory.getLong(position + w * Long.BYTES) != key[w]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forward-only cursor over the entries of an OffHeapSummaryStore, with the same accessors as
+     * {@link SummaryTable.Cursor}. The key of the current entry is read into the cursor once, when it
+     * advances; the metrics are read from direct memory when asked for.
+     */
+    public final class Cursor {
+
+        private final ByteBuffer memory = memory();
+        private final long[] key = new long[KEY_WORDS];
+        private int record = -1;
+        private int position;
+
+        private Cursor() {
+        }
+
+        /**
+         * Advances to the next entry.
+         *
+         * @return True if the cursor is positioned on an entry, false once the store is exhausted.
+         */
+        public boolean next() {
+            if (record + 1 >= size) {
+                record = size;
+                return false;
+            }
+            load(record + 1);
+            return true;
+        }
+
+        /**
+         * Positions the cursor on a record, such as one taken from {@link #order(SummaryOrder)};
+         * {@link #next()} then continues from there in the order the records were copied.
+         *
+         * @param record The record number, from 0 to {@link #size()} - 1.
+         * @throws IndexOutOfBoundsException if there is no such record.
+         */
+        public void moveTo(int record) {
+            load(Objects.checkIndex(record, size));
+        }
+
+        private void load(int record) {
+            this.record = record;
+            position = recordsOffset + record * RECORD_BYTES;
+            for (int w = 0; w < KEY_WORDS; w++) {
+                key[w] = memory.getLong(position + w * Long.BYTES);
+            }
+        }
+
+        /**
+         * @return The client information of the current entry.
+         */
+        public String clientInformation() {
+            return SummaryKeys.clientInformation(key, 0);
+        }
+
+        /**
+         * @return The product information of the current entry.
+         */
+        public String productInformation() {
+            return SummaryKeys.productInformation(key, 0);
+        }
+
+        /**
+         * Copies the packed key of the current entry.
+         *
+         * @param target The destination, at least {@link SummaryKeys#KEY_WORDS} long.
+         */
+        public void copyKey(long[] target) {
+            System.arraycopy(key, 0, target, 0, KEY_WORDS);
+        }
+
+        /**
+         * @return The total transaction amount of the current entry.
+         */
+        public double total() {
+            return FixedPoint.toDouble(units(), FixedPoint.SCALE);
+        }
+
+        /**
+         * @return The exact total transaction amount of the current entry, in units of {@link FixedPoint#SCALE}.
+         */
+        public long units() {
+            return metric(Metric.NET_QUANTITY);
+        }
+
+        /**
+         * @param metric The metric.
+         * @return The value of a metric of the current entry: an amount in units of {@link FixedPoint#SCALE}
+         * or a currency packed by {@link MovementMetrics}.
+         */
+        public long metric(Metric metric) {
+            return memory.getLong(position + (KEY_WORDS + metric.ordinal()) * Long.BYTES);
+        }
+    }
+
+    /**
+     * Frees a direct buffer. The JDK frees direct memory when the buffer is garbage collected; the
+     * supported way to free it earlier, {@code sun.misc.Unsafe.invokeCleaner}, is looked up once. If it is
+     * not available the buffer is only dropped, and its memory goes back at the next collection instead.
+     */
+    @FunctionalInterface
+    private interface FreeBuffer {
+
+        void free(ByteBuffer buffer);
+
+        static FreeBuffer lookup() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                Object unsafe = theUnsafe.get(null);
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                return buffer -> {
+                    try {
+                        invokeCleaner.invoke(unsafe, buffer);
+                    } catch (ReflectiveOperationException e) {
+                        // left to the garbage collector
+                    }
+                };
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return buffer -> {
+                };
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import tan.jerry.process_future_movement.domain.MovementRecord;
+
+/**
+ * PartitionedSummaryTable is the output of one mapper in a map/shuffle/reduce aggregation:
+ * one SummaryTable per reducer partition, with every key routed to the partition given by
+ * {@link #partitionOf(long[], int, int)}. Since all mappers route a key to the same partition,
+ * reducer r only merges partition r of every mapper, and no two reducers ever touch the same key.
+ *
+ * <p>Like SummaryTable, the table is not thread-safe; each mapper owns one.</p>
+ */
+public final class PartitionedSummaryTable {
+
+    private final SummaryTable[] partitions;
+
+    /**
+     * Scratch key and metrics for {@link #addMovement(MovementRecord, boolean)}; never escape this table.
+     */
+    private final long[] scratch = new long[SummaryKeys.KEY_WORDS];
+    private final long[] measured = new long[Metric.COUNT];
+
+    /**
+     * Constructs an empty table with the given number of partitions.
+     *
+     * @param partitions The number of reducer partitions.
+     * @throws IllegalArgumentException if partitions is not positive.
+     */
+    public PartitionedSummaryTable(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions must be positive");
+        }
+        this.partitions = new SummaryTable[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.partitions[i] = new SummaryTable();
+        }
+    }
+
+    /**
+     * Returns the partition of a packed key. The high bits of the key hash are used, so that the
+     * partition does not correlate with the slot the key takes in its SummaryTable, which uses the low bits.
+     *
+     * @param keys       The array holding the packed key.
+     * @param offset     The index of the first word of the key.
+     * @param partitions The number of partitions.
+     * @return The partition, from 0 to partitions - 1.
+     */
+    public static int partitionOf(long[] keys, int offset, int partitions) {
+        return (int) (((SummaryKeys.hash(keys, offset) & 0xFFFFFFFFL) * partitions) >>> 32);
+    }
+
+    /**
+     * Adds the values of every metric to a packed key, in the partition of the key.
+     *
+     * @param key    The packed key, as filled by {@link SummaryKeys}.
+     * @param values The values, indexed by {@link Metric#ordinal()}.
+     */
+    public void addMetrics(long[] key, long[] values) {
+        partitions[partitionOf(key, 0, partitions.length)].addMetrics(key, values);
+    }
+
+    /**
+     * Measures a record and adds every metric to its key, in the partition of the key.
+     *
+     * @param record               The record.
+     * @param ignoreSignIndicators Whether {@link Metric#NET_QUANTITY} ignores the sign columns.
+     */
+    public void addMovement(MovementRecord record, boolean ignoreSignIndicators) {
+        SummaryKeys.pack(record, scratch);
+        addMetrics(scratch, MovementMetrics.measure(record, ignoreSignIndicators, measured));
+    }
+
+    /**
+     * @return The number of partitions.
+     */
+    public int partitions() {
+        return partitions.length;
+    }
+
+    /**
+     * @param partition The partition, from 0 to {@link #partitions()} - 1.
+     * @return The table holding the keys of the partition.
+     */
+    public SummaryTable partition(int partition) {
+        return partitions[partition];
+    }
+}
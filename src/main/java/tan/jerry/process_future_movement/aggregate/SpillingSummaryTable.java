@@ -0,0 +1,320 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SpillingSummaryTable aggregates client-product metrics within a memory budget, by external hash
+ * aggregation. Keys are added to an in-memory SummaryTable; whenever it holds as many keys as the
+ * budget allows, every entry is appended to one of {@link #DEFAULT_FAN_OUT} run files on disk,
+ * chosen by the hash of its key, and the table starts over empty.
+ *
+ * <p>Once the input is exhausted, {@link #forEachPartition(PartitionVisitor)} aggregates the run
+ * files one at a time: all partial values of a key are in the same run, so each run aggregates on its
+ * own into a table holding a disjoint share of the keys. A run with more keys than the budget is split
+ * again, with a different hash, before it is aggregated. Heap use is therefore bounded by the budget
+ * whatever the number of distinct keys, as long as the caller does not retain the partitions.</p>
+ *
+ * <p>Like SummaryTable, the table is not thread-safe. Close it to delete any run files left behind.</p>
+ */
+public final class SpillingSummaryTable implements AutoCloseable {
+
+    /**
+     * Number of run files the keys are spread over at each level.
+     */
+    public static final int DEFAULT_FAN_OUT = 16;
+
+    /**
+     * Estimated heap taken by one key of a SummaryTable: its key words, metric columns and used flag,
+     * times four, since the table is at most half full and doubles its arrays when it grows.
+     */
+    static final int BYTES_PER_ENTRY = 4 * ((SummaryKeys.KEY_WORDS + Metric.COUNT) * Long.BYTES + 1);
+
+    /**
+     * Bytes of one entry in a run file: its key words, then the value of every metric.
+     */
+    private static final int RECORD_BYTES = (SummaryKeys.KEY_WORDS + Metric.COUNT) * Long.BYTES;
+
+    /**
+     * Levels of splitting after which a run is aggregated whatever its size, as a guard against runs
+     * whose keys no hash can separate any further.
+     */
+    private static final int MAX_LEVELS = 6;
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private final int maxEntries;
+    private final Path directory;
+    private final int fanOut;
+
+    private SummaryTable table = new SummaryTable();
+    private Path[] runs;
+    private DataOutputStream[] runWriters;
+    private final List<Path> files = new ArrayList<>();
+
+    private int spills;
+    private long spilledEntries;
+    private long spilledBytes;
+    private int resplits;
+
+    private final long[] key = new long[SummaryKeys.KEY_WORDS];
+    private final long[] values = new long[Metric.COUNT];
+
+    /**
+     * Constructs a table spilling to {@link #DEFAULT_FAN_OUT} run files.
+     *
+     * @param memoryBudget The heap, in bytes, the in-memory table may take.
+     * @param directory    The directory the run files are created in.
+     */
+    public SpillingSummaryTable(long memoryBudget, Path directory) {
+        this(memoryBudget, directory, DEFAULT_FAN_OUT);
+    }
+
+    /**
+     * Constructs a table spilling to the given number of run files.
+     *
+     * @param memoryBudget The heap, in bytes, the in-memory table may take.
+     * @param directory    The directory the run files are created in.
+     * @param fanOut       The number of run files the keys are spread over at each level, at least 2.
+     * @throws IllegalArgumentException if the budget is not positive or the fan-out is below 2.
+     */
+    public SpillingSummaryTable(long memoryBudget, Path directory, int fanOut) {
+        if (memoryBudget <= 0 || fanOut < 2) {
+            throw new IllegalArgumentException("memoryBudget must be positive and fanOut at least 2");
+        }
+        this.maxEntries = (int) Math.max(1, Math.min(1 << 28, memoryBudget / BYTES_PER_ENTRY));
+        this.directory = directory;
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * Adds the values of every metric to a packed key, spilling the in-memory table to the run files
+     * once it fills the budget.
+     *
+     * @param key    The packed key, as filled by {@link SummaryKeys}.
+     * @param values The values, indexed by {@link Metric#ordinal()}.
+     * @throws IOException if the table has to spill and a run file cannot be written.
+     */
+    public void addMetrics(long[] key, long[] values) throws IOException {
+        table.addMetrics(key, values);
+        if (table.size() >= maxEntries) {
+            spill();
+        }
+    }
+
+    /**
+     * Hands the aggregated keys to a visitor, one partition at a time. If the table never spilled,
+     * the visitor receives the in-memory table only. Otherwise it receives one table per run file,
+     * each holding keys no other partition holds. Must be called once, after the last key is added.
+     *
+     * @param visitor The visitor receiving the partitions; it must not retain them.
+     * @throws IOException if a run file cannot be read or written.
+     */
+    public void forEachPartition(PartitionVisitor visitor) throws IOException {
+        if (runs == null) {
+            visitor.visit(table);
+            return;
+        }
+        if (table.size() > 0) {
+            spill();
+        }
+        table = null;
+        closeWriters();
+        for (Path run : runs) {
+            aggregate(run, 1, visitor);
+        }
+    }
+
+    /**
+     * @return The spill counts and bytes so far.
+     */
+    public SpillStats stats() {
+        return new SpillStats(spills, spilledEntries, spilledBytes, resplits);
+    }
+
+    /**
+     * Deletes the run files that have not been aggregated yet.
+     *
+     * @throws IOException if a run file cannot be closed or deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        closeWriters();
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        files.clear();
+    }
+
+    private void spill() throws IOException {
+        if (runs == null) {
+            runs = new Path[fanOut];
+            runWriters = new DataOutputStream[fanOut];
+            for (int p = 0; p < fanOut; p++) {
+                runs[p] = createRun(0, p);
+                runWriters[p] = open(runs[p]);
+            }
+        }
+        SummaryTable.Cursor cursor = table.cursor();
+        while (cursor.next()) {
+            cursor.copyKey(key);
+            for (int m = 0; m < METRICS.length; m++) {
+                values[m] = cursor.metric(METRICS[m]);
+            }
+            write(runWriters[partitionOf(key, 0, fanOut)], key, values);
+        }
+        spills++;
+        spilledEntries += table.size();
+        table = new SummaryTable();
+    }
+
+    /**
+     * Aggregates a run file, or splits it into smaller runs first if it holds more keys than the budget.
+     */
+    private void aggregate(Path run, int level, PartitionVisitor visitor) throws IOException {
+        SummaryTable partition = new SummaryTable();
+        boolean fits = true;
+        try (DataInputStream in = openInput(run)) {
+            for (long n = Files.size(run) / RECORD_BYTES; n > 0; n--) {
+                read(in, key, values);
+                partition.addMetrics(key, values);
+                if (partition.size() > maxEntries && level < MAX_LEVELS) {
+                    fits = false;
+                    break;
+                }
+            }
+        }
+        if (fits) {
+            delete(run);
+            visitor.visit(partition);
+            return;
+        }
+        partition = null;
+        resplits++;
+        Path[] subRuns = new Path[fanOut];
+        DataOutputStream[] writers = new DataOutputStream[fanOut];
+        try {
+            for (int p = 0; p < fanOut; p++) {
+                subRuns[p] = createRun(level, p);
+                writers[p] = open(subRuns[p]);
+            }
+            try (DataInputStream in = openInput(run)) {
+                for (long n = Files.size(run) / RECORD_BYTES; n > 0; n--) {
+                    read(in, key, values);
+                    write(writers[partitionOf(key, level, fanOut)], key, values);
+                }
+            }
+        } finally {
+            for (DataOutputStream writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        delete(run);
+        for (Path subRun : subRuns) {
+            aggregate(subRun, level + 1, visitor);
+        }
+    }
+
+    /**
+     * Returns the run a key goes to at a level of splitting. Every level mixes the key hash with a
+     * different seed, so that the keys of one run spread over all runs of the next level.
+     */
+    static int partitionOf(long[] keys, int level, int fanOut) {
+        int h = SummaryKeys.hash(keys, 0) + level * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return (int) (((h & 0xFFFFFFFFL) * fanOut) >>> 32);
+    }
+
+    private Path createRun(int level, int partition) throws IOException {
+        Path run = Files.createTempFile(directory, "pfm-spill-" + level + "-" + partition + "-", ".run");
+        files.add(run);
+        return run;
+    }
+
+    private DataOutputStream open(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16));
+    }
+
+    private static DataInputStream openInput(Path run) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+    }
+
+    private void write(DataOutputStream out, long[] key, long[] values) throws IOException {
+        for (long word : key) {
+            out.writeLong(word);
+        }
+        for (long value : values) {
+            out.writeLong(value);
+        }
+        spilledBytes += RECORD_BYTES;
+    }
+
+    private static void read(DataInputStream in, long[] key, long[] values) throws IOException {
+        for (int i = 0; i < key.length; i++) {
+            key[i] = in.readLong();
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+    }
+
+    private void delete(Path run) throws IOException {
+        Files.deleteIfExists(run);
+        files.remove(run);
+    }
+
+    private void closeWriters() throws IOException {
+        if (runWriters != null) {
+            for (DataOutputStream writer : runWriters) {
+                writer.close();
+            }
+            runWriters = null;
+        }
+    }
+
+    /**
+     * Receives the aggregated keys of a SpillingSummaryTable, one partition at a time.
+     */
+    @FunctionalInterface
+    public interface PartitionVisitor {
+        void visit(SummaryTable partition) throws IOException;
+    }
+
+    /**
+     * What a SpillingSummaryTable wrote to disk.
+     *
+     * @param spills         The number of times the in-memory table was spilled to the run files.
+     * @param spilledEntries The number of partial entries spilled.
+     * @param spilledBytes   The bytes written to run files, including runs written when splitting a run again.
+     * @param resplits       The number of runs that held more keys than the budget and were split again.
+     */
+    public record SpillStats(int spills, long spilledEntries, long spilledBytes, int resplits) {
+    }
+}
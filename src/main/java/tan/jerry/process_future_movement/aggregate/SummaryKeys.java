@@ -0,0 +1,282 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import org.springframework.batch.item.file.transform.Range;
+import tan.jerry.process_future_movement.domain.MovementRecord;
+import tan.jerry.process_future_movement.reader.ProcessFutureMovementReader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * SummaryKeys packs a client-product key into {@link #KEY_WORDS} primitive longs.
+ *
+ * <p>The first {@link #CLIENT_BYTES} bytes hold the client information (trimmed CLIENT TYPE,
+ * CLIENT NUMBER, ACCOUNT NUMBER and SUBACCOUNT NUMBER, concatenated), the next
+ * {@link #PRODUCT_BYTES} bytes hold the product information (trimmed EXCHANGE CODE,
+ * PRODUCT GROUP CODE, SYMBOL and EXPIRATION DATE, concatenated, with periods removed).
+ * Unused bytes are zero. A packed key therefore identifies exactly the same group as the
+ * "clientInformation,productInformation" String used by the processors, and converts back
+ * to it without loss.</p>
+ */
+public final class SummaryKeys {
+
+    /**
+     * Number of longs in a packed key.
+     */
+    public static final int KEY_WORDS = 5;
+
+    /**
+     * Bytes reserved for the client information; the sum of the client field widths.
+     */
+    public static final int CLIENT_BYTES = 16;
+
+    /**
+     * Bytes reserved for the product information; the sum of the product field widths.
+     */
+    public static final int PRODUCT_BYTES = 20;
+
+    private static final int KEY_BYTES = CLIENT_BYTES + PRODUCT_BYTES;
+
+    private static final Range[] CLIENT_FIELDS = {
+            ProcessFutureMovementReader.column("clientType"),
+            ProcessFutureMovementReader.column("clientNumber"),
+            ProcessFutureMovementReader.column("accountNumber"),
+            ProcessFutureMovementReader.column("subAccountNumber")
+    };
+
+    private static final Range[] PRODUCT_FIELDS = {
+            ProcessFutureMovementReader.column("exchangeCode"),
+            ProcessFutureMovementReader.column("productGroupCode"),
+            ProcessFutureMovementReader.column("symbol"),
+            ProcessFutureMovementReader.column("expirationDate")
+    };
+
+    private SummaryKeys() {
+    }
+
+    /**
+     * Packs the key of a parsed InputRecord.
+     *
+     * @param record The record containing client and product data.
+     * @param key    The destination, at least {@link #KEY_WORDS} long.
+     */
+    public static void pack(MovementRecord record, long[] key) {
+        clear(key, 0);
+        int position = 0;
+        position = appendTrimmed(record.clientType(), key, position, CLIENT_BYTES, false);
+        position = appendTrimmed(record.clientNumber(), key, position, CLIENT_BYTES, false);
+        position = appendTrimmed(record.accountNumber(), key, position, CLIENT_BYTES, false);
+        position = appendTrimmed(record.subAccountNumber(), key, position, CLIENT_BYTES, false);
+        checkOverflow(position, CLIENT_BYTES, record);
+        position = CLIENT_BYTES;
+        position = appendTrimmed(record.exchangeCode(), key, position, KEY_BYTES, true);
+        position = appendTrimmed(record.productGroupCode(), key, position, KEY_BYTES, true);
+        position = appendTrimmed(record.symbol(), key, position, KEY_BYTES, true);
+        position = appendTrimmed(record.expirationDate(), key, position, KEY_BYTES, true);
+        checkOverflow(position, KEY_BYTES, record);
+    }
+
+    /**
+     * Packs the key of a raw fixed-width line, reading the columns of {@link ProcessFutureMovementReader}
+     * straight from the bytes. Columns past the end of a short line are treated as empty.
+     *
+     * @param line      The buffer holding the line.
+     * @param lineStart The absolute index of the first byte of the line.
+     * @param lineEnd   The absolute index just past the last byte of the line, excluding the line terminator.
+     * @param key       The destination, at least {@link #KEY_WORDS} long.
+     */
+    public static void pack(ByteBuffer line, int lineStart, int lineEnd, long[] key) {
+        clear(key, 0);
+        int position = 0;
+        for (Range field : CLIENT_FIELDS) {
+            position = appendTrimmed(line, lineStart, lineEnd, field, key, position, false);
+        }
+        position = CLIENT_BYTES;
+        for (Range field : PRODUCT_FIELDS) {
+            position = appendTrimmed(line, lineStart, lineEnd, field, key, position, true);
+        }
+    }
+
+    /**
+     * Packs a key from its String form, as produced by {@link #clientInformation} and {@link #productInformation}.
+     *
+     * @param clientInformation  The client information.
+     * @param productInformation The product information.
+     * @param key                The destination, at least {@link #KEY_WORDS} long.
+     * @throws IllegalArgumentException if either part is longer than its packed width.
+     */
+    public static void pack(String clientInformation, String productInformation, long[] key) {
+        clear(key, 0);
+        int position = append(clientInformation, key, 0, CLIENT_BYTES, false);
+        checkOverflow(position, CLIENT_BYTES, clientInformation);
+        position = append(productInformation, key, CLIENT_BYTES, KEY_BYTES, true);
+        checkOverflow(position, KEY_BYTES, productInformation);
+    }
+
+    /**
+     * Decodes the client information of a packed key.
+     *
+     * @param keys   The array holding the packed key.
+     * @param offset The index of the first word of the key.
+     * @return The client information String.
+     */
+    public static String clientInformation(long[] keys, int offset) {
+        return decode(keys, offset, 0, CLIENT_BYTES);
+    }
+
+    /**
+     * Decodes the product information of a packed key.
+     *
+     * @param keys   The array holding the packed key.
+     * @param offset The index of the first word of the key.
+     * @return The product information String.
+     */
+    public static String productInformation(long[] keys, int offset) {
+        return decode(keys, offset, CLIENT_BYTES, PRODUCT_BYTES);
+    }
+
+    /**
+     * Hashes a packed key. The words are mixed so that keys differing only in a few
+     * digits still spread across an open-addressing table.
+     *
+     * @param keys   The array holding the packed key.
+     * @param offset The index of the first word of the key.
+     * @return The hash of the key.
+     */
+    public static int hash(long[] keys, int offset) {
+        long h = 0;
+        for (int i = 0; i < KEY_WORDS; i++) {
+            h = (h ^ keys[offset + i]) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 29;
+        }
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Compares the client information of two packed keys as their Strings compare, without decoding them.
+     *
+     * @param a       The array holding the first packed key.
+     * @param aOffset The index of the first word of the first key.
+     * @param b       The array holding the second packed key.
+     * @param bOffset The index of the first word of the second key.
+     * @return A negative number, zero or a positive number as the first client information sorts before,
+     * equal to or after the second.
+     */
+    public static int compareClientInformation(long[] a, int aOffset, long[] b, int bOffset) {
+        return compareWords(a, aOffset, b, bOffset, 0, CLIENT_BYTES / Long.BYTES);
+    }
+
+    /**
+     * Compares the product information of two packed keys as their Strings compare, without decoding them.
+     *
+     * @param a       The array holding the first packed key.
+     * @param aOffset The index of the first word of the first key.
+     * @param b       The array holding the second packed key.
+     * @param bOffset The index of the first word of the second key.
+     * @return A negative number, zero or a positive number as the first product information sorts before,
+     * equal to or after the second.
+     */
+    public static int compareProductInformation(long[] a, int aOffset, long[] b, int bOffset) {
+        return compareWords(a, aOffset, b, bOffset, CLIENT_BYTES / Long.BYTES, KEY_WORDS);
+    }
+
+    /**
+     * Compares words of two keys byte by byte: bytes are packed from the low end of each word, so
+     * reversing them makes an unsigned comparison of the words a comparison of the bytes in order,
+     * and the zero padding sorts a shorter String before the longer ones it starts.
+     */
+    private static int compareWords(long[] a, int aOffset, long[] b, int bOffset, int from, int to) {
+        for (int w = from; w < to; w++) {
+            long x = a[aOffset + w];
+            long y = b[bOffset + w];
+            if (x != y) {
+                return Long.compareUnsigned(Long.reverseBytes(x), Long.reverseBytes(y));
+            }
+        }
+        return 0;
+    }
+
+    private static void clear(long[] key, int offset) {
+        for (int i = 0; i < KEY_WORDS; i++) {
+            key[offset + i] = 0L;
+        }
+    }
+
+    private static int appendTrimmed(String value, long[] key, int position, int limit, boolean dropPeriods) {
+        return value == null ? position : append(value.trim(), key, position, limit, dropPeriods);
+    }
+
+    private static int append(String value, long[] key, int position, int limit, boolean dropPeriods) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (dropPeriods && c == '.') {
+                continue;
+            }
+            if (position >= limit) {
+                return limit + 1;
+            }
+            put(key, position++, (byte) c);
+        }
+        return position;
+    }
+
+    private static int appendTrimmed(ByteBuffer line, int lineStart, int lineEnd, Range column,
+                                     long[] key, int position, boolean dropPeriods) {
+        int from = Math.min(lineStart + column.getMin() - 1, lineEnd);
+        int to = Math.min(lineStart + column.getMax(), lineEnd);
+        while (from < to && (line.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (line.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+        for (int i = from; i < to; i++) {
+            byte b = line.get(i);
+            if (!dropPeriods || b != '.') {
+                put(key, position++, b);
+            }
+        }
+        return position;
+    }
+
+    private static void put(long[] key, int position, byte b) {
+        key[position >>> 3] |= (b & 0xFFL) << ((position & 7) << 3);
+    }
+
+    private static byte get(long[] keys, int offset, int position) {
+        return (byte) (keys[offset + (position >>> 3)] >>> ((position & 7) << 3));
+    }
+
+    private static String decode(long[] keys, int offset, int from, int width) {
+        byte[] bytes = new byte[width];
+        int length = 0;
+        while (length < width) {
+            byte b = get(keys, offset, from + length);
+            if (b == 0) {
+                break;
+            }
+            bytes[length++] = b;
+        }
+        return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void checkOverflow(int position, int limit, Object source) {
+        if (position > limit) {
+            throw new IllegalArgumentException("Client or product information too long to pack: " + source);
+        }
+    }
+}
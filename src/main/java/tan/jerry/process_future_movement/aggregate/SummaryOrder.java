@@ -0,0 +1,87 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+/**
+ * SummaryOrder is an order of the entries of a daily summary, by one of the columns of the summary
+ * report. Entries with the same value are ordered by client information, then product information,
+ * so every order is total and a position in it can be resumed from, in a later version of the summary too.
+ */
+public enum SummaryOrder {
+
+    CLIENT_INFORMATION("clientInformation"),
+
+    PRODUCT_INFORMATION("productInformation"),
+
+    TOTAL_TRANSACTION_AMOUNT("totalTransactionAmount");
+
+    private final String label;
+
+    SummaryOrder(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return The name of the column, as the summary report labels it.
+     */
+    public String label() {
+        return label;
+    }
+
+    /**
+     * Looks up an order by the label of its column.
+     *
+     * @param label The label, such as "clientInformation".
+     * @return The order.
+     * @throws IllegalArgumentException if no column has that label.
+     */
+    public static SummaryOrder ofLabel(String label) {
+        for (SummaryOrder order : values()) {
+            if (order.label.equals(label)) {
+                return order;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort column: " + label);
+    }
+
+    /**
+     * Compares two entries in this order.
+     *
+     * @param aUnits  The total of the first entry, in units of {@link FixedPoint#SCALE}.
+     * @param a       The array holding the packed key of the first entry.
+     * @param aOffset The index of the first word of the first key.
+     * @param bUnits  The total of the second entry, in units of {@link FixedPoint#SCALE}.
+     * @param b       The array holding the packed key of the second entry.
+     * @param bOffset The index of the first word of the second key.
+     * @return A negative number, zero or a positive number as the first entry sorts before, with or after the second.
+     */
+    int compare(long aUnits, long[] a, int aOffset, long bUnits, long[] b, int bOffset) {
+        int c;
+        switch (this) {
+            case PRODUCT_INFORMATION:
+                c = SummaryKeys.compareProductInformation(a, aOffset, b, bOffset);
+                return c != 0 ? c : SummaryKeys.compareClientInformation(a, aOffset, b, bOffset);
+            case TOTAL_TRANSACTION_AMOUNT:
+                c = Long.compare(aUnits, bUnits);
+                if (c != 0) {
+                    return c;
+                }
+                // fall through to the key
+            default:
+                c = SummaryKeys.compareClientInformation(a, aOffset, b, bOffset);
+                return c != 0 ? c : SummaryKeys.compareProductInformation(a, aOffset, b, bOffset);
+        }
+    }
+}
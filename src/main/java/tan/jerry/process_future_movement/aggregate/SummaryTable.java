@@ -0,0 +1,572 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import tan.jerry.process_future_movement.domain.MovementRecord;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SummaryTable is an open-addressing hash table that aggregates total transaction amounts
+ * per client-product key. Keys are packed into {@link SummaryKeys#KEY_WORDS} longs and
+ * stored inline in one long array, totals are stored in a parallel long array as units of
+ * {@link FixedPoint#SCALE}, so adding an amount allocates nothing once the key is present
+ * and totals are exact whatever order the amounts are added and merged in. Totals are only
+ * converted to doubles when they are read.
+ *
+ * <p>Besides the total, which is {@link Metric#NET_QUANTITY}, the table accumulates every
+ * other {@link Metric} in a column of its own, parallel to the keys, so that fees, commission
+ * and notional are summarized by the same scan as the net quantity. The methods taking a single
+ * amount only add to the total; {@link #addMetrics(long[], long[])} adds to every column.</p>
+ *
+ * <p>The table is not thread-safe. Parallel processors build one table per worker and
+ * combine them with {@link #mergeFrom(SummaryTable)}. Use {@link #toMap()} and
+ * {@link #fromMap(Map)} to convert at the edges where a {@code Map<String, Double>}
+ * is expected.</p>
+ */
+public final class SummaryTable {
+
+    private static final int KEY_WORDS = SummaryKeys.KEY_WORDS;
+    private static final int MIN_CAPACITY = 16;
+    private static final Metric[] METRICS = Metric.values();
+
+    private long[] keys;
+    private long[][] columns;
+
+    /**
+     * The {@link Metric#NET_QUANTITY} column.
+     */
+    private long[] totals;
+    private boolean[] used;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    /**
+     * Movements and amounts added, including those of the tables merged into this one.
+     */
+    private long movements;
+
+    /**
+     * Scratch key for the convenience add methods; never escapes this table.
+     */
+    private final long[] scratch = new long[KEY_WORDS];
+
+    /**
+     * Scratch metrics for {@link #addMovement(MovementRecord, boolean)}; never escapes this table.
+     */
+    private final long[] measured = new long[Metric.COUNT];
+
+    /**
+     * Constructs an empty SummaryTable with a default initial capacity.
+     */
+    public SummaryTable() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty SummaryTable sized for the given number of keys.
+     *
+     * @param expectedSize The number of distinct keys expected.
+     */
+    public SummaryTable(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Converts a map of "clientInformation,productInformation" keys into a SummaryTable.
+     *
+     * @param map A map containing client-product keys and corresponding transaction amounts.
+     * @return A new SummaryTable holding the same totals.
+     */
+    public static SummaryTable fromMap(Map<String, Double> map) {
+        SummaryTable table = new SummaryTable(map.size());
+        map.forEach((key, total) -> {
+            int comma = key.indexOf(',');
+            String clientInformation = comma < 0 ? key : key.substring(0, comma);
+            String productInformation = comma < 0 ? "" : key.substring(comma + 1);
+            table.add(clientInformation, productInformation, total);
+        });
+        return table;
+    }
+
+    /**
+     * Adds an amount, in units of {@link FixedPoint#SCALE}, to the total of a packed key.
+     *
+     * @param key   The packed key, as filled by {@link SummaryKeys}.
+     * @param units The amount to add, in units of {@link FixedPoint#SCALE}.
+     * @throws ArithmeticException if the total overflows.
+     */
+    public void addUnits(long[] key, long units) {
+        movements++;
+        int slot = findSlot(key, 0);
+        if (used[slot]) {
+            totals[slot] = Math.addExact(totals[slot], units);
+        } else {
+            insert(slot, key, 0, units);
+        }
+    }
+
+    /**
+     * Adds an amount, in units of {@link FixedPoint#SCALE}, to the total of the client-product key of an InputRecord.
+     *
+     * @param record The record containing client and product data.
+     * @param units  The amount to add, in units of {@link FixedPoint#SCALE}.
+     */
+    public void addUnits(MovementRecord record, long units) {
+        SummaryKeys.pack(record, scratch);
+        addUnits(scratch, units);
+    }
+
+    /**
+     * Adds the metrics of a movement to the columns of a packed key.
+     *
+     * @param key    The packed key, as filled by {@link SummaryKeys}.
+     * @param values The value of every metric, indexed by {@link Metric#ordinal()}, as measured by {@link MovementMetrics}.
+     * @throws ArithmeticException if an amount overflows.
+     */
+    public void addMetrics(long[] key, long[] values) {
+        movements++;
+        int slot = findSlot(key, 0);
+        if (used[slot]) {
+            for (int m = 0; m < METRICS.length; m++) {
+                columns[m][slot] = METRICS[m].combine(columns[m][slot], values[m]);
+            }
+        } else {
+            insert(slot, key, 0, values);
+        }
+    }
+
+    /**
+     * Adds the metrics of a movement to the columns of the client-product key of an InputRecord.
+     *
+     * @param record The record containing client and product data.
+     * @param values The value of every metric, indexed by {@link Metric#ordinal()}.
+     */
+    public void addMetrics(MovementRecord record, long[] values) {
+        SummaryKeys.pack(record, scratch);
+        addMetrics(scratch, values);
+    }
+
+    /**
+     * Measures every metric of a movement and adds them to the columns of its client-product key.
+     *
+     * @param record               The record.
+     * @param ignoreSignIndicators Whether {@link Metric#NET_QUANTITY}, the total, ignores the sign columns.
+     * @throws NumberFormatException if a quantity, fee or price of the record is not a number.
+     */
+    public void addMovement(MovementRecord record, boolean ignoreSignIndicators) {
+        addMetrics(record, MovementMetrics.measure(record, ignoreSignIndicators, measured));
+    }
+
+    /**
+     * Adds an amount to the total of a packed key, rounded to {@link FixedPoint#SCALE} decimal places.
+     *
+     * @param key    The packed key, as filled by {@link SummaryKeys}.
+     * @param amount The amount to add.
+     */
+    public void add(long[] key, double amount) {
+        addUnits(key, FixedPoint.fromDouble(amount, FixedPoint.SCALE));
+    }
+
+    /**
+     * Adds an amount to the total of the client-product key of an InputRecord,
+     * rounded to {@link FixedPoint#SCALE} decimal places.
+     *
+     * @param record The record containing client and product data.
+     * @param amount The amount to add.
+     */
+    public void add(MovementRecord record, double amount) {
+        SummaryKeys.pack(record, scratch);
+        add(scratch, amount);
+    }
+
+    /**
+     * Adds an amount to the total of a client-product key given in String form,
+     * rounded to {@link FixedPoint#SCALE} decimal places.
+     *
+     * @param clientInformation  The client information.
+     * @param productInformation The product information.
+     * @param amount             The amount to add.
+     */
+    public void add(String clientInformation, String productInformation, double amount) {
+        SummaryKeys.pack(clientInformation, productInformation, scratch);
+        add(scratch, amount);
+    }
+
+    /**
+     * Returns the total of a packed key.
+     *
+     * @param key The packed key.
+     * @return The total, or 0.0 if the key is absent.
+     */
+    public double get(long[] key) {
+        return FixedPoint.toDouble(getUnits(key), FixedPoint.SCALE);
+    }
+
+    /**
+     * Returns the exact total of a packed key.
+     *
+     * @param key The packed key.
+     * @return The total in units of {@link FixedPoint#SCALE}, or 0 if the key is absent.
+     */
+    public long getUnits(long[] key) {
+        int slot = findSlot(key, 0);
+        return used[slot] ? totals[slot] : 0L;
+    }
+
+    /**
+     * Returns the value of one metric of a packed key.
+     *
+     * @param key    The packed key.
+     * @param metric The metric.
+     * @return The value, or 0 if the key is absent.
+     */
+    public long getMetric(long[] key, Metric metric) {
+        int slot = findSlot(key, 0);
+        return used[slot] ? columns[metric.ordinal()][slot] : 0L;
+    }
+
+    /**
+     * Checks whether a packed key is present.
+     *
+     * @param key The packed key.
+     * @return True if an amount was added for the key.
+     */
+    public boolean contains(long[] key) {
+        return used[findSlot(key, 0)];
+    }
+
+    /**
+     * Adds every total of another table into this one. The other table is left unchanged.
+     *
+     * @param other The table to merge from.
+     * @return This table, to allow use as a reduction combiner.
+     */
+    public SummaryTable mergeFrom(SummaryTable other) {
+        movements += other.movements;
+        for (int i = 0; i < other.used.length; i++) {
+            if (other.used[i]) {
+                int offset = i * KEY_WORDS;
+                int slot = findSlot(other.keys, offset);
+                if (used[slot]) {
+                    for (int m = 0; m < METRICS.length; m++) {
+                        columns[m][slot] = METRICS[m].combine(columns[m][slot], other.columns[m][i]);
+                    }
+                } else {
+                    insert(slot, other.keys, offset, other.columns, i);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return The number of distinct keys in the table.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of movements and amounts added to the table and to the tables merged
+     * into it; not kept by {@link #snapshot()}.
+     */
+    public long movements() {
+        return movements;
+    }
+
+    /**
+     * @return True if the table holds no keys.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Visits every key in its packed form, without decoding it or its total.
+     *
+     * @param visitor The visitor receiving the key array, the offset of the key and its total in units of {@link FixedPoint#SCALE}.
+     */
+    public void forEachPacked(PackedEntryVisitor visitor) {
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                visitor.visit(keys, i * KEY_WORDS, totals[i]);
+            }
+        }
+    }
+
+    /**
+     * Visits every key decoded into its client and product information.
+     *
+     * @param visitor The visitor receiving the client information, product information and total.
+     */
+    public void forEach(EntryVisitor visitor) {
+        forEachPacked((packed, offset, units) -> visitor.visit(
+                SummaryKeys.clientInformation(packed, offset),
+                SummaryKeys.productInformation(packed, offset),
+                FixedPoint.toDouble(units, FixedPoint.SCALE)));
+    }
+
+    /**
+     * Returns a cursor over the entries of the table. The cursor reads the table in place,
+     * so it must not be used after the table is modified.
+     *
+     * @return A cursor positioned before the first entry.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Converts the table into a map keyed by "clientInformation,productInformation".
+     *
+     * @return A new map containing client-product keys and their total transaction amounts.
+     */
+    public Map<String, Double> toMap() {
+        Map<String, Double> map = new HashMap<>(Math.max(MIN_CAPACITY, (int) (size / 0.75f) + 1));
+        forEach((clientInformation, productInformation, total) ->
+                map.put(clientInformation + "," + productInformation, total));
+        return map;
+    }
+
+    /**
+     * Copies the entries into a compact, serializable snapshot, for instance to checkpoint
+     * partial totals in a Spring Batch ExecutionContext.
+     *
+     * @return A snapshot of the current entries.
+     */
+    public Snapshot snapshot() {
+        long[] packedKeys = new long[size * KEY_WORDS];
+        long[][] packedColumns = new long[METRICS.length][size];
+        int entry = 0;
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                System.arraycopy(keys, i * KEY_WORDS, packedKeys, entry * KEY_WORDS, KEY_WORDS);
+                for (int m = 0; m < METRICS.length; m++) {
+                    packedColumns[m][entry] = columns[m][i];
+                }
+                entry++;
+            }
+        }
+        return new Snapshot(packedKeys, packedColumns);
+    }
+
+    /**
+     * Rebuilds a table from a snapshot.
+     *
+     * @param snapshot A snapshot taken by {@link #snapshot()}.
+     * @return A new SummaryTable holding the totals of the snapshot.
+     */
+    public static SummaryTable fromSnapshot(Snapshot snapshot) {
+        int entries = snapshot.keys().length / KEY_WORDS;
+        SummaryTable table = new SummaryTable(entries);
+        for (int entry = 0; entry < entries; entry++) {
+            int offset = entry * KEY_WORDS;
+            int slot = table.findSlot(snapshot.keys(), offset);
+            if (table.used[slot]) {
+                for (int m = 0; m < METRICS.length; m++) {
+                    table.columns[m][slot] = METRICS[m].combine(table.columns[m][slot], snapshot.columns()[m][entry]);
+                }
+            } else {
+                table.insert(slot, snapshot.keys(), offset, snapshot.columns(), entry);
+            }
+        }
+        return table;
+    }
+
+    private int findSlot(long[] key, int offset) {
+        int slot = SummaryKeys.hash(key, offset) & mask;
+        while (used[slot] && !keyEquals(slot, key, offset)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean keyEquals(int slot, long[] key, int offset) {
+        int base = slot * KEY_WORDS;
+        for (int i = 0; i < KEY_WORDS; i++) {
+            if (keys[base + i] != key[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(int slot, long[] key, int offset, long units) {
+        System.arraycopy(key, offset, keys, slot * KEY_WORDS, KEY_WORDS);
+        totals[slot] = units;
+        used[slot] = true;
+        if (++size > resizeThreshold) {
+            resize();
+        }
+    }
+
+    private void insert(int slot, long[] key, int offset, long[] values) {
+        System.arraycopy(key, offset, keys, slot * KEY_WORDS, KEY_WORDS);
+        for (int m = 0; m < METRICS.length; m++) {
+            columns[m][slot] = values[m];
+        }
+        used[slot] = true;
+        if (++size > resizeThreshold) {
+            resize();
+        }
+    }
+
+    private void insert(int slot, long[] key, int offset, long[][] sourceColumns, int index) {
+        System.arraycopy(key, offset, keys, slot * KEY_WORDS, KEY_WORDS);
+        for (int m = 0; m < METRICS.length; m++) {
+            columns[m][slot] = sourceColumns[m][index];
+        }
+        used[slot] = true;
+        if (++size > resizeThreshold) {
+            resize();
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity * KEY_WORDS];
+        columns = new long[METRICS.length][capacity];
+        totals = columns[Metric.NET_QUANTITY.ordinal()];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = capacity / 2;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[][] oldColumns = columns;
+        boolean[] oldUsed = used;
+        allocate(oldUsed.length * 2);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int slot = findSlot(oldKeys, i * KEY_WORDS);
+                System.arraycopy(oldKeys, i * KEY_WORDS, keys, slot * KEY_WORDS, KEY_WORDS);
+                for (int m = 0; m < METRICS.length; m++) {
+                    columns[m][slot] = oldColumns[m][i];
+                }
+                used[slot] = true;
+            }
+        }
+    }
+
+    /**
+     * Forward-only cursor over the entries of a SummaryTable. Unlike the visitors it can be
+     * driven from code that throws checked exceptions, such as CSV writers.
+     */
+    public final class Cursor {
+
+        private int slot = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * Advances to the next entry.
+         *
+         * @return True if the cursor is positioned on an entry, false once the table is exhausted.
+         */
+        public boolean next() {
+            while (++slot < used.length) {
+                if (used[slot]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return The client information of the current entry.
+         */
+        public String clientInformation() {
+            return SummaryKeys.clientInformation(keys, slot * KEY_WORDS);
+        }
+
+        /**
+         * @return The product information of the current entry.
+         */
+        public String productInformation() {
+            return SummaryKeys.productInformation(keys, slot * KEY_WORDS);
+        }
+
+        /**
+         * Copies the packed key of the current entry.
+         *
+         * @param target The destination, at least {@link SummaryKeys#KEY_WORDS} long.
+         */
+        public void copyKey(long[] target) {
+            System.arraycopy(keys, slot * KEY_WORDS, target, 0, KEY_WORDS);
+        }
+
+        /**
+         * @return The total transaction amount of the current entry.
+         */
+        public double total() {
+            return FixedPoint.toDouble(totals[slot], FixedPoint.SCALE);
+        }
+
+        /**
+         * @return The exact total transaction amount of the current entry, in units of {@link FixedPoint#SCALE}.
+         */
+        public long units() {
+            return totals[slot];
+        }
+
+        /**
+         * @param metric The metric.
+         * @return The value of a metric of the current entry: an amount in units of {@link FixedPoint#SCALE}
+         * or a currency packed by {@link MovementMetrics}.
+         */
+        public long metric(Metric metric) {
+            return columns[metric.ordinal()][slot];
+        }
+    }
+
+    /**
+     * The entries of a SummaryTable in packed form: {@link SummaryKeys#KEY_WORDS} longs per key,
+     * and the values of each key at the same index in one column per {@link Metric}.
+     *
+     * @param keys    The packed keys, one after the other.
+     * @param columns The values of every metric, indexed by {@link Metric#ordinal()}, in key order.
+     */
+    public record Snapshot(long[] keys, long[][] columns) implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 3L;
+    }
+
+    /**
+     * Receives the entries of a SummaryTable with their keys still packed.
+     */
+    @FunctionalInterface
+    public interface PackedEntryVisitor {
+        void visit(long[] keys, int offset, long units);
+    }
+
+    /**
+     * Receives the entries of a SummaryTable with their keys decoded.
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(String clientInformation, String productInformation, double total);
+    }
+}
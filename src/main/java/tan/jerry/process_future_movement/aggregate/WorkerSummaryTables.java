@@ -0,0 +1,121 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * WorkerSummaryTables gives every worker thread its own SummaryTable, so parallel
+ * processors can aggregate without sharing mutable state, and merges them once all
+ * workers are done. A worker must not be running two aggregations on the same
+ * instance at the same time, which holds for tasks that do not join other tasks.
+ */
+public final class WorkerSummaryTables {
+
+    private final ConcurrentMap<Thread, SummaryTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the table of the calling thread, creating it on first use.
+     *
+     * @return The SummaryTable owned by the calling thread.
+     */
+    public SummaryTable local() {
+        return tables.computeIfAbsent(Thread.currentThread(), thread -> new SummaryTable());
+    }
+
+    /**
+     * @return The number of workers that have aggregated into this instance.
+     */
+    public int workerCount() {
+        return tables.size();
+    }
+
+    /**
+     * Merges the tables of all workers. Must only be called once every worker has finished.
+     *
+     * @return A SummaryTable holding the combined totals.
+     */
+    public SummaryTable merge() {
+        SummaryTable result = null;
+        for (SummaryTable table : tables.values()) {
+            result = result == null ? table : result.mergeFrom(table);
+        }
+        return result == null ? new SummaryTable() : result;
+    }
+
+    /**
+     * Merges the tables of all workers as a balanced binary tree on a Fork/Join pool: the two halves
+     * are merged in parallel, and the right result is then merged into the left one in place, so no
+     * table is ever copied. Must only be called once every worker has finished.
+     *
+     * @param pool The pool running the merges.
+     * @return A SummaryTable holding the combined totals.
+     */
+    public SummaryTable merge(ForkJoinPool pool) {
+        return merge(new ArrayList<>(tables.values()), pool);
+    }
+
+    /**
+     * Merges tables as a balanced binary tree on a Fork/Join pool, merging into the tables themselves.
+     *
+     * @param tables The tables to merge; they are modified.
+     * @param pool   The pool running the merges.
+     * @return A SummaryTable holding the combined totals; one of the given tables, or a new one if there are none.
+     */
+    public static SummaryTable merge(List<SummaryTable> tables, ForkJoinPool pool) {
+        if (tables.isEmpty()) {
+            return new SummaryTable();
+        }
+        return pool.invoke(new MergeTask(tables, 0, tables.size()));
+    }
+
+    /**
+     * Merges the tables of a slice of the list, halving it until single tables are left.
+     */
+    private static class MergeTask extends RecursiveTask<SummaryTable> {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final List<SummaryTable> tables;
+        private final int start;
+        private final int end;
+
+        MergeTask(List<SummaryTable> tables, int start, int end) {
+            this.tables = tables;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected SummaryTable compute() {
+            if (end - start == 1) {
+                return tables.get(start);
+            }
+            int mid = (start + end) >>> 1;
+            MergeTask left = new MergeTask(tables, start, mid);
+            MergeTask right = new MergeTask(tables, mid, end);
+            right.fork();
+            SummaryTable merged = left.compute();
+            return merged.mergeFrom(right.join());
+        }
+    }
+}
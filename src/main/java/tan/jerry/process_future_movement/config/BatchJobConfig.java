@@ -16,31 +16,47 @@ package tan.jerry.process_future_movement.config;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.partition.support.Partitioner;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.core.step.tasklet.Tasklet;
-import org.springframework.batch.item.ItemProcessor;
-import org.springframework.batch.item.ItemReader;
-import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
 import tan.jerry.process_future_movement.domain.InputRecord;
-import tan.jerry.process_future_movement.domain.OutputRecord;
+import tan.jerry.process_future_movement.listener.FlightRecorderListener;
 import tan.jerry.process_future_movement.listener.JobStatusListener;
+import tan.jerry.process_future_movement.listener.StepMetricsListener;
 import tan.jerry.process_future_movement.log.Ayaka;
+import tan.jerry.process_future_movement.reader.InputFiles;
+import tan.jerry.process_future_movement.reader.InputLineValidator;
+import tan.jerry.process_future_movement.reader.ProcessFutureMovementPartitioner;
 import tan.jerry.process_future_movement.reader.ProcessFutureMovementReader;
-import tan.jerry.process_future_movement.service.ProcessFutureMovementProcessor;
+import tan.jerry.process_future_movement.reader.QuarantineWriters;
 import tan.jerry.process_future_movement.service.ProcessFutureMovementTaskletProcessor;
-import tan.jerry.process_future_movement.writer.ProcessFutureMovementWriter;
+import tan.jerry.process_future_movement.writer.ProcessFutureMovementSummaryWriter;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 /**
  * BatchJobConfig is a configuration class that sets up the Spring Batch job,
@@ -70,15 +86,64 @@ public class BatchJobConfig {
      */
     private final JobStatusListener listener;
 
+    /**
+     * Listener timing the chunks, items and commits of pfm_worker_step.
+     */
+    private final StepMetricsListener stepMetrics;
+
+    /**
+     * Listener marking job and step executions in Flight Recorder recordings.
+     */
+    private final FlightRecorderListener flightRecorder;
+
     @Value("${input.file.name}")
     private String input_file_name;
 
     @Value("${output.file.name}")
     private String output_file_name;
 
+    @Value("${outputex.file.name}")
+    private String outputex_file_name;
+
     @Value("${ayaka.log.name}")
     private String ayaka_log;
 
+    /**
+     * Number of records per chunk, and so per commit to the job repository, in each partition.
+     */
+    @Value("${pfm.step.chunk.size:1000}")
+    private int chunk_size;
+
+    /**
+     * Number of commits between full snapshots of a partition's totals; the totals added since are saved at every commit.
+     */
+    @Value("${pfm.step.snapshot.interval:10}")
+    private int snapshot_interval;
+
+    /**
+     * Number of partitions of pfm_step; 0 uses one per available processor.
+     */
+    @Value("${pfm.step.partitions:0}")
+    private int partitions;
+
+    /**
+     * Threads running the partitions: platform, virtual (JDK 21+) or sync.
+     */
+    @Value("${pfm.step.task.executor:platform}")
+    private String task_executor;
+
+    /**
+     * File receiving the input lines that fail validation, created only if a line does.
+     */
+    @Value("${pfm.quarantine.file.name:quarantine.csv}")
+    private String quarantine_file_name;
+
+    /**
+     * Record codes accepted by the input validation.
+     */
+    @Value("${pfm.validation.record.codes:315}")
+    private String[] record_codes;
+
     private static boolean ignoreSignIndicators;
 
     /**
@@ -106,11 +171,16 @@ public class BatchJobConfig {
      * @param jobRepository        The job repository.
      * @param transactionManager   The transaction manager.
      * @param listener             The job status listener.
+     * @param stepMetrics          The step metrics listener.
+     * @param flightRecorder       The Flight Recorder listener.
      */
-    public BatchJobConfig(JobRepository jobRepository, PlatformTransactionManager transactionManager, JobStatusListener listener) {
+    public BatchJobConfig(JobRepository jobRepository, PlatformTransactionManager transactionManager, JobStatusListener listener,
+                          StepMetricsListener stepMetrics, FlightRecorderListener flightRecorder) {
         this.jobRepository = jobRepository;
         this.transactionManager = transactionManager;
         this.listener = listener;
+        this.stepMetrics = stepMetrics;
+        this.flightRecorder = flightRecorder;
     }
 
     /**
@@ -121,6 +191,8 @@ public class BatchJobConfig {
     @Bean
     public Job job() {
         return new JobBuilder("pfm_job", jobRepository)
+                .listener(flightRecorder)
+                .listener(pfm_quarantines())
                 .start(pfm_step())
                 .next(finalize_step())
                 .build();
@@ -139,7 +211,8 @@ public class BatchJobConfig {
     }
 
     /**
-     * Defines the main step for processing future movements.
+     * Defines the main step for processing future movements. The input file is split into
+     * byte ranges by pfm_partitioner, and each range is processed by its own pfm_worker_step.
      *
      * @return The configured Step instance for processing.
      */
@@ -148,41 +221,116 @@ public class BatchJobConfig {
         Ayaka ayaka = new Ayaka(ayaka_log);
         ayaka.log("Invoking pfm_step");
         return new StepBuilder("pfm_step", jobRepository)
-                .<InputRecord, OutputRecord>chunk(10, transactionManager)
-                .reader(pfm_reader())
-                .processor(pfm_processor())
-                .writer(pfm_writer())
+                .partitioner("pfm_worker_step", pfm_partitioner())
+                .step(pfm_worker_step())
+                .gridSize(gridSize())
+                .taskExecutor(pfm_task_executor())
+                .listener(flightRecorder)
+                .build();
+    }
+
+    /**
+     * Defines the step processing one partition of the input file, in chunks of the configured size.
+     * Each chunk is folded into the partition's summary, which finalize_step merges. The
+     * StepMetricsListener times its chunks, reads, writes and commits.
+     *
+     * @return The configured Step instance for one partition.
+     */
+    @Bean
+    public Step pfm_worker_step() {
+        return new StepBuilder("pfm_worker_step", jobRepository)
+                .<InputRecord, InputRecord>chunk(chunk_size, transactionManager)
+                .reader(pfm_reader(null))
+                .writer(pfm_summary_writer())
+                .listener((ChunkListener) stepMetrics)
+                .listener((ItemReadListener<Object>) stepMetrics)
+                .listener((ItemProcessListener<Object, Object>) stepMetrics)
+                .listener((ItemWriteListener<Object>) stepMetrics)
+                .listener((StepExecutionListener) flightRecorder)
                 .build();
     }
 
     /**
-     * Defines the ItemReader for the job.
+     * Defines the Partitioner splitting the input file into newline-aligned byte ranges. The input
+     * is located like the reader's, on the file system first, so that a packaged application splits
+     * an input given as a file-system path.
+     *
+     * @return The configured Partitioner instance.
+     */
+    @Bean
+    public Partitioner pfm_partitioner() {
+        return new ProcessFutureMovementPartitioner(InputFiles.resource(input_file_name));
+    }
+
+    /**
+     * Creates the TaskExecutor running the partitions of pfm_step, one thread per partition.
+     * It is deliberately not a bean: an Executor bean would replace Spring Boot's application task executor.
+     *
+     * @return The configured TaskExecutor instance.
+     */
+    TaskExecutor pfm_task_executor() {
+        String mode = task_executor.trim().toLowerCase();
+        if ("sync".equals(mode)) {
+            return new SyncTaskExecutor();
+        }
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("pfm-partition-");
+        if ("virtual".equals(mode)) {
+            if (Runtime.version().feature() >= 21) {
+                executor.setVirtualThreads(true);
+            } else {
+                logger.warn("Virtual threads need JDK 21 or later; running the partitions on platform threads");
+            }
+        }
+        executor.setConcurrencyLimit(gridSize());
+        return executor;
+    }
+
+    /**
+     * Returns the configured number of partitions, or the number of available processors if none is set.
+     */
+    private int gridSize() {
+        return partitions > 0 ? partitions : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Defines the ItemReader for the job; step-scoped, so that each partition gets its own reader.
+     * The concrete return type lets the step scope proxy expose the reader as an ItemStream.
+     * It saves its read position at every commit, in the same ExecutionContext as the totals of
+     * pfm_summary_writer, so a partition that failed resumes from its last commit.
      *
+     * @param jobInstanceId The job instance whose quarantine the reader writes to; bound from the step execution.
      * @return The configured ItemReader instance.
      */
     @Bean
-    public ItemReader<? extends InputRecord> pfm_reader() {
-        return new ProcessFutureMovementReader();
+    @StepScope
+    public ProcessFutureMovementReader pfm_reader(@Value("#{stepExecution.jobExecution.jobInstance.instanceId}") Long jobInstanceId) {
+        ProcessFutureMovementReader reader = new ProcessFutureMovementReader();
+        reader.setValidator(new InputLineValidator(Arrays.asList(record_codes)));
+        reader.setQuarantine(pfm_quarantines().forJobInstance(jobInstanceId));
+        return reader;
     }
 
     /**
-     * Defines the ItemProcessor for the job.
+     * Defines the quarantines of the job, one per job instance, shared by the readers of all its
+     * partitions; lines failing validation are written to it instead of failing the job.
      *
-     * @return The configured ItemProcessor instance.
+     * @return The QuarantineWriters naming their files after pfm.quarantine.file.name.
      */
     @Bean
-    public ItemProcessor<? super InputRecord, ? extends OutputRecord> pfm_processor() {
-        return new ProcessFutureMovementProcessor();
+    public QuarantineWriters pfm_quarantines() {
+        return new QuarantineWriters(Paths.get(quarantine_file_name));
     }
 
     /**
-     * Defines the ItemWriter for the job.
+     * Defines the ItemWriter folding chunks into the daily summary; step-scoped, so that each
+     * partition sums its own totals and checkpoints them at every commit.
      *
      * @return The configured ItemWriter instance.
      */
     @Bean
-    public ItemWriter<? super OutputRecord> pfm_writer() {
-        return new ProcessFutureMovementWriter();
+    @StepScope
+    public ProcessFutureMovementSummaryWriter pfm_summary_writer() {
+        return new ProcessFutureMovementSummaryWriter(snapshot_interval);
     }
 
     /**
@@ -194,6 +342,7 @@ public class BatchJobConfig {
     public Step finalize_step() {
         return new StepBuilder("finalize_step", jobRepository)
                 .tasklet(finalize_tasklet(), transactionManager)
+                .listener(flightRecorder)
                 .build();
     }
 
@@ -230,7 +379,8 @@ public class BatchJobConfig {
     }
 
     /**
-     * Defines the Tasklet for the finalization step.
+     * Defines the Tasklet for the finalization step, which merges the partial summaries of the
+     * partitions and writes the daily summary to output.file.name and outputex.file.name.
      *
      * @return The configured Tasklet instance for finalization.
      */
@@ -240,7 +390,11 @@ public class BatchJobConfig {
             @Override
             public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
                 logger.trace("executing finalize_tasklet");
-                ProcessFutureMovementTaskletProcessor.main(null);
+                // the partitions of pfm_step have already summed the input; merge their totals instead of reading it again
+                JobExecution jobExecution = chunkContext.getStepContext().getStepExecution().getJobExecution();
+                SummaryTable summary = ProcessFutureMovementSummaryWriter.collect(jobExecution, jobRepository, "pfm_worker_step");
+                ProcessFutureMovementTaskletProcessor.publishDailySummary(summary, outputex_file_name);
+                ProcessFutureMovementTaskletProcessor.writeOutputFile(output_file_name, summary);
                 return RepeatStatus.FINISHED;
             }
         };
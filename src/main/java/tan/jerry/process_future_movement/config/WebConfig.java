@@ -36,6 +36,7 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOrigins("http://localhost:4200") // TODO: Refactor hard-coded strings to configuration
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders("Location", "X-Total-Count", "X-Next-Cursor") // read by the paging clients
                 .allowCredentials(true);
     }
 }
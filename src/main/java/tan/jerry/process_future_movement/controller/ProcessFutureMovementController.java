@@ -14,83 +14,539 @@
  */
 package tan.jerry.process_future_movement.controller;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import tan.jerry.process_future_movement.service.ProcessFutureMovementTaskletProcessor;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tan.jerry.process_future_movement.aggregate.Dimension;
+import tan.jerry.process_future_movement.aggregate.FixedPoint;
+import tan.jerry.process_future_movement.aggregate.GroupingSet;
+import tan.jerry.process_future_movement.aggregate.GroupingTable;
+import tan.jerry.process_future_movement.aggregate.Metric;
+import tan.jerry.process_future_movement.aggregate.OffHeapSummaryStore;
+import tan.jerry.process_future_movement.aggregate.SummaryKeys;
+import tan.jerry.process_future_movement.aggregate.SummaryOrder;
+import tan.jerry.process_future_movement.service.DailySummaryCache;
+import tan.jerry.process_future_movement.service.SummaryJob;
+import tan.jerry.process_future_movement.service.SummaryJobs;
 import com.opencsv.CSVWriter;
 
-import java.io.StringWriter;
-import java.util.Map;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * REST controller for handling requests related to processing future movements.
- * Provides endpoints for accessing the daily summary report.
+ * Provides endpoints for accessing the daily summary report, and for building it in the background.
  */
 @RestController
 @RequestMapping("/api")
 public class ProcessFutureMovementController {
 
-    private final ProcessFutureMovementTaskletProcessor processor;
+    /**
+     * Rows in a page of the summary report when the request does not give a limit.
+     */
+    static final int DEFAULT_PAGE_SIZE = 1000;
+
+    /**
+     * The most rows a page of the summary report holds.
+     */
+    static final int MAX_PAGE_SIZE = 10_000;
+
+    /**
+     * Writes streamed JSON; the response stream is left for the servlet to close.
+     */
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private final DailySummaryCache summaryCache;
+
+    private final SummaryJobs summaryJobs;
 
     /**
      * Constructs a new ProcessFutureMovementController.
      *
-     * @param processor The ProcessFutureMovementTaskletProcessor used to process future movements.
+     * @param summaryCache The cache holding the daily summary of the current input file.
+     * @param summaryJobs  The jobs building the daily summary in the background.
      */
     @Autowired
-    public ProcessFutureMovementController(ProcessFutureMovementTaskletProcessor processor) {
-        this.processor = processor;
+    public ProcessFutureMovementController(DailySummaryCache summaryCache, SummaryJobs summaryJobs) {
+        this.summaryCache = summaryCache;
+        this.summaryJobs = summaryJobs;
+    }
+
+    /**
+     * Handles POST requests to the /api/jobs endpoint.
+     * This endpoint starts building the daily summary of the current input file in the background and
+     * returns at once with the job, whose Location is polled at /api/jobs/{id} or watched at
+     * /api/jobs/{id}/events. A job already queued or running is returned instead of starting another.
+     *
+     * @param refresh True to rebuild the summary even if the input file looks unchanged.
+     * @return 202 with the status of the job, or 503 if too many jobs are queued.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitJob(@RequestParam(value = "refresh", defaultValue = "false") boolean refresh) {
+        SummaryJob job;
+        try {
+            job = summaryJobs.submit(refresh);
+        } catch (RejectedExecutionException e) {
+            return new ResponseEntity<>("Too many jobs queued, try again later", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/jobs/" + job.id()))
+                .body(job.status());
+    }
+
+    /**
+     * Handles GET requests to the /api/jobs/{id} endpoint.
+     * This endpoint returns the state of a job and the live progress of its build: the stage, the input
+     * bytes and records read, the throughput and the estimated time left.
+     *
+     * @param id The id of the job.
+     * @return The status of the job, or 404 if it is unknown.
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<?> getJob(@PathVariable("id") String id) {
+        return summaryJobs.find(id)
+                .<ResponseEntity<?>>map(job -> ResponseEntity.ok(job.status()))
+                .orElseGet(() -> new ResponseEntity<>("Unknown job: " + id, HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * Handles GET requests to the /api/jobs/{id}/events endpoint.
+     * This endpoint streams the status of a job as server-sent "progress" events at a fixed interval,
+     * and completes after the event in which the job is done.
+     *
+     * @param id The id of the job.
+     * @return The event stream, or 404 if the job is unknown.
+     */
+    @GetMapping(value = "/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> watchJob(@PathVariable("id") String id) {
+        // the emitter is only streamed when it is the declared body type, so a 404 has no message
+        Optional<SummaryJob> job = summaryJobs.find(id);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        SseEmitter emitter = new SseEmitter(0L); // ends with the job, not on a timeout
+        Runnable stop = summaryJobs.watch(job.get(), status -> {
+            try {
+                emitter.send(SseEmitter.event().name("progress").data(status));
+                if (status.state() == SummaryJob.State.COMPLETED || status.state() == SummaryJob.State.FAILED) {
+                    emitter.complete();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // the client has gone; stop watching
+            }
+        });
+        emitter.onCompletion(stop);
+        emitter.onError(error -> stop.run());
+        return ResponseEntity.ok(emitter);
     }
 
     /**
      * Handles GET requests to the /api/get_daily_summary_report endpoint.
      * This endpoint returns a daily summary report as a map of client-product combinations and their total transaction amounts.
      * It can return the data either in JSON format or as a downloadable CSV file, depending on the client's request.
+     * Either way the report is streamed from the cached summary store as it is written, so no copy of the whole
+     * report is built on the heap first.
      *
      * Clients can specify the desired format through the "Accept" header in the HTTP request:
      * - To receive JSON: "Accept: application/json"
      * - To download as CSV: "Accept: text/csv"
      *
+     * With any of limit, cursor or sort, the report is returned one page at a time instead, sorted on the server.
+     * A JSON page is an object with the total number of rows, the sort and order, the rows as objects with
+     * clientInformation, productInformation and totalTransactionAmount, and the nextCursor that requests the
+     * following page, null on the last page. A CSV page carries the total and the next cursor in the
+     * X-Total-Count and X-Next-Cursor headers. A cursor is the position of the last row of its page, so it
+     * resumes at the right place even if the summary has been rebuilt in between.
+     *
      * @param acceptHeader The Accept header from the HTTP request, specifying the desired response format.
-     * @return A ResponseEntity containing the report data in the requested format.
+     * @param limit        The rows in a page, up to {@link #MAX_PAGE_SIZE}; {@link #DEFAULT_PAGE_SIZE} if only cursor or sort is given.
+     * @param cursor       The nextCursor of the previous page; absent for the first page.
+     * @param sort         The column to sort by: clientInformation (the default), productInformation or totalTransactionAmount.
+     * @param order        asc (the default) or desc.
+     * @return A ResponseEntity streaming the report data in the requested format, or 400 for an invalid page request.
      */
     @GetMapping("/get_daily_summary_report")
-    public ResponseEntity<?> getDailySummaryReport(@RequestHeader(value = "Accept", defaultValue = "application/json") String acceptHeader) {
-        // Process the data using the processor
-        ProcessFutureMovementTaskletProcessor.main(null);
-        Map<String, Double> summaryReport = processor.calculateDailySummary();
+    public ResponseEntity<StreamingResponseBody> getDailySummaryReport(@RequestHeader(value = "Accept", defaultValue = "application/json") String acceptHeader,
+                                                                       @RequestParam(value = "limit", required = false) Integer limit,
+                                                                       @RequestParam(value = "cursor", required = false) String cursor,
+                                                                       @RequestParam(value = "sort", required = false) String sort,
+                                                                       @RequestParam(value = "order", required = false) String order) {
+        boolean csv = acceptHeader.contains("text/csv");
+        if (limit == null && cursor == null && sort == null) {
+            // The input is only processed again when it has changed since the cached summary was built
+            OffHeapSummaryStore summaryReport = summaryCache.acquire(); // released by the body once streamed
+            if (csv) {
+                return csvReport(summaryReport, null, false, 0, summaryReport.size(), new HttpHeaders());
+            }
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body((StreamingResponseBody) out -> {
+                try (summaryReport; JsonGenerator json = JSON.createGenerator(out)) {
+                    json.writeStartObject();
+                    OffHeapSummaryStore.Cursor row = summaryReport.cursor();
+                    while (row.next()) {
+                        json.writeNumberField(row.clientInformation() + "," + row.productInformation(), row.total());
+                    }
+                    json.writeEndObject();
+                }
+            });
+        }
 
-        // Check the Accept header to determine the response format
-        if (acceptHeader.contains("text/csv")) {
-            // Convert the summary report to CSV format
-            StringWriter csvOutput = new StringWriter();
-            try (CSVWriter csvWriter = new CSVWriter(csvOutput)) {
-                // Write headers
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return badRequest("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        PageCursor after;
+        SummaryOrder by;
+        boolean descending;
+        try {
+            after = cursor == null ? null : PageCursor.decode(cursor);
+            by = sort != null ? SummaryOrder.ofLabel(sort) : after != null ? after.by() : SummaryOrder.CLIENT_INFORMATION;
+            descending = order != null ? isDescending(order) : after != null && after.descending();
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+        if (after != null && (after.by() != by || after.descending() != descending)) {
+            return badRequest("The cursor belongs to another sort order");
+        }
+
+        OffHeapSummaryStore summaryReport = summaryCache.acquire(); // released by the body once streamed
+        int size = summaryReport.size();
+        int[] sorted;
+        int from;
+        String next = null;
+        try {
+            sorted = summaryReport.order(by);
+            from = after == null ? 0 : summaryReport.offsetAfter(by, descending, after.units(), after.key());
+            if (from + pageSize < size) {
+                OffHeapSummaryStore.Cursor last = summaryReport.cursor();
+                last.moveTo(record(sorted, descending, from + pageSize - 1));
+                next = new PageCursor(by, descending, last).encode();
+            }
+        } catch (RuntimeException | Error e) {
+            summaryReport.close();
+            throw e;
+        }
+        int to = Math.min(from + pageSize, size);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-Total-Count", String.valueOf(size));
+        if (next != null) {
+            headers.add("X-Next-Cursor", next);
+        }
+        if (csv) {
+            return csvReport(summaryReport, sorted, descending, from, to, headers);
+        }
+        String nextCursor = next;
+        return ResponseEntity.ok().headers(headers).contentType(MediaType.APPLICATION_JSON).body((StreamingResponseBody) out -> {
+            try (summaryReport; JsonGenerator json = JSON.createGenerator(out)) {
+                json.writeStartObject();
+                json.writeNumberField("total", size);
+                json.writeStringField("sort", by.label());
+                json.writeStringField("order", descending ? "desc" : "asc");
+                json.writeArrayFieldStart("rows");
+                OffHeapSummaryStore.Cursor row = summaryReport.cursor();
+                for (int i = from; i < to; i++) {
+                    row.moveTo(record(sorted, descending, i));
+                    json.writeStartObject();
+                    json.writeStringField("clientInformation", row.clientInformation());
+                    json.writeStringField("productInformation", row.productInformation());
+                    json.writeNumberField("totalTransactionAmount", row.total());
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+                json.writeStringField("nextCursor", nextCursor);
+                json.writeEndObject();
+            }
+        });
+    }
+
+    /**
+     * Streams rows of the summary report as a CSV download and releases the store once they are written.
+     *
+     * @param summaryReport The store, retained for the response.
+     * @param sorted        The record numbers in ascending order, or null for the order they were copied in.
+     * @param descending    True to read the sorted records from the end.
+     * @param from          The index of the first row.
+     * @param to            The index after the last row.
+     * @param headers       Headers to add to the CSV headers.
+     */
+    private static ResponseEntity<StreamingResponseBody> csvReport(OffHeapSummaryStore summaryReport, int[] sorted, boolean descending,
+                                                                   int from, int to, HttpHeaders headers) {
+        // Set headers for CSV file download
+        headers.add(HttpHeaders.CONTENT_TYPE, "text/csv");
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=daily_summary_report.csv");
+        return new ResponseEntity<>(out -> {
+            try (summaryReport) {
+                // the servlet closes the response stream, so the writer is only flushed
+                CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
                 csvWriter.writeNext(new String[]{"Client-Product", "Total Transaction Amount"});
+                OffHeapSummaryStore.Cursor row = summaryReport.cursor();
+                for (int i = from; i < to; i++) {
+                    if (sorted == null) {
+                        row.next();
+                    } else {
+                        row.moveTo(record(sorted, descending, i));
+                    }
+                    csvWriter.writeNext(new String[]{
+                            row.clientInformation() + "," + row.productInformation(),
+                            String.valueOf(row.total())});
+                }
+                csvWriter.flush();
+            }
+        }, headers, HttpStatus.OK);
+    }
+
+    /**
+     * The body of a streamed endpoint is always streamed, so an error message is too.
+     */
+    private static ResponseEntity<StreamingResponseBody> badRequest(String message) {
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(message.getBytes(StandardCharsets.UTF_8)));
+    }
 
-                // Write data rows
-                summaryReport.forEach((clientProduct, amount) ->
-                        csvWriter.writeNext(new String[]{clientProduct, String.valueOf(amount)})
-                );
-            } catch (Exception e) {
-                // Return error response if CSV generation fails
-                return new ResponseEntity<>("Error generating CSV", HttpStatus.INTERNAL_SERVER_ERROR);
+    /**
+     * @return The record at an index of an ascending order read in the given direction.
+     */
+    private static int record(int[] sorted, boolean descending, int index) {
+        return sorted[descending ? sorted.length - 1 - index : index];
+    }
+
+    private static boolean isDescending(String order) {
+        if ("desc".equalsIgnoreCase(order)) {
+            return true;
+        }
+        if ("asc".equalsIgnoreCase(order)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown sort order: " + order);
+    }
+
+    /**
+     * Handles GET requests to the /api/get_daily_metrics_report endpoint.
+     * This endpoint returns every metric accumulated per client-product combination: the net quantity
+     * (signed, unsigned and as configured), the exchange and broker fees, clearing fees and commission
+     * with their currencies, and the notional. A currency is "MIXED" when the records of a combination
+     * carry more than one, and the fee in that currency is then left empty.
+     *
+     * Like /api/get_daily_summary_report, the report is streamed as it is written and the format is
+     * selected with the "Accept" header:
+     * - To receive JSON: "Accept: application/json"
+     * - To download as CSV: "Accept: text/csv"
+     *
+     * @param acceptHeader The Accept header from the HTTP request, specifying the desired response format.
+     * @return A ResponseEntity streaming the report data in the requested format.
+     */
+    @GetMapping("/get_daily_metrics_report")
+    public ResponseEntity<StreamingResponseBody> getDailyMetricsReport(@RequestHeader(value = "Accept", defaultValue = "application/json") String acceptHeader) {
+        OffHeapSummaryStore summaryReport = summaryCache.acquire(); // released by the body once streamed
+        Metric[] metrics = Metric.values();
+
+        if (acceptHeader.contains("text/csv")) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.add(HttpHeaders.CONTENT_TYPE, "text/csv");
+            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=daily_metrics_report.csv");
+            return new ResponseEntity<>(out -> {
+                try (summaryReport) {
+                    // the servlet closes the response stream, so the writer is only flushed
+                    CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    String[] header = new String[metrics.length + 2];
+                    header[0] = "Client_Information";
+                    header[1] = "Product_Information";
+                    for (Metric metric : metrics) {
+                        header[metric.ordinal() + 2] = metric.label();
+                    }
+                    csvWriter.writeNext(header);
+
+                    OffHeapSummaryStore.Cursor cursor = summaryReport.cursor();
+                    String[] row = new String[header.length];
+                    while (cursor.next()) {
+                        row[0] = cursor.clientInformation();
+                        row[1] = cursor.productInformation();
+                        for (Metric metric : metrics) {
+                            row[metric.ordinal() + 2] = Objects.toString(metric.format(cursor::metric), "");
+                        }
+                        csvWriter.writeNext(row);
+                    }
+                    csvWriter.flush();
+                }
+            }, headers, HttpStatus.OK);
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body((StreamingResponseBody) out -> {
+            try (summaryReport; JsonGenerator json = JSON.createGenerator(out)) {
+                json.writeStartArray();
+                OffHeapSummaryStore.Cursor cursor = summaryReport.cursor();
+                while (cursor.next()) {
+                    json.writeStartObject();
+                    json.writeStringField("clientInformation", cursor.clientInformation());
+                    json.writeStringField("productInformation", cursor.productInformation());
+                    for (Metric metric : metrics) {
+                        writeMetric(json, metric.label(), metric.format(cursor::metric));
+                    }
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
             }
+        });
+    }
 
-            // Set headers for CSV file download
+    /**
+     * Handles GET requests to the /api/get_daily_rollup_report endpoint.
+     * This endpoint returns every metric rolled up by one grouping set: CLIENT, EXCHANGE,
+     * PRODUCT_GROUP_SYMBOL, EXPIRATION_DATE or TRADER. All rollups are derived from a single
+     * scan of the input, so switching between them does not read the input again.
+     *
+     * Like /api/get_daily_summary_report, the report is streamed as it is written and the format is
+     * selected with the "Accept" header:
+     * - To receive JSON: "Accept: application/json"
+     * - To download as CSV: "Accept: text/csv"
+     *
+     * @param groupingSet  The name of the grouping set, case-insensitive.
+     * @param acceptHeader The Accept header from the HTTP request, specifying the desired response format.
+     * @return A ResponseEntity streaming the report data in the requested format, or 400 for an unknown grouping set.
+     */
+    @GetMapping("/get_daily_rollup_report")
+    public ResponseEntity<StreamingResponseBody> getDailyRollupReport(@RequestParam("groupingSet") String groupingSet,
+                                                                      @RequestHeader(value = "Accept", defaultValue = "application/json") String acceptHeader) {
+        GroupingSet set;
+        try {
+            set = GroupingSet.valueOf(groupingSet.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return badRequest("Unknown grouping set: " + groupingSet);
+        }
+        GroupingTable rollup = summaryCache.getRollup(set);
+        List<Dimension> dimensions = rollup.dimensions();
+        Metric[] metrics = Metric.values();
+
+        if (acceptHeader.contains("text/csv")) {
             HttpHeaders headers = new HttpHeaders();
             headers.add(HttpHeaders.CONTENT_TYPE, "text/csv");
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=daily_summary_report.csv");
-            return new ResponseEntity<>(csvOutput.toString(), headers, HttpStatus.OK);
+            headers.add(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=daily_rollup_report_" + set.name().toLowerCase(Locale.ROOT) + ".csv");
+            return new ResponseEntity<>(out -> {
+                // the servlet closes the response stream, so the writer is only flushed
+                CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                String[] header = new String[dimensions.size() + metrics.length];
+                for (int i = 0; i < dimensions.size(); i++) {
+                    header[i] = dimensions.get(i).label();
+                }
+                for (Metric metric : metrics) {
+                    header[dimensions.size() + metric.ordinal()] = metric.label();
+                }
+                csvWriter.writeNext(header);
+
+                GroupingTable.Cursor cursor = rollup.cursor();
+                String[] row = new String[header.length];
+                while (cursor.next()) {
+                    for (int i = 0; i < dimensions.size(); i++) {
+                        row[i] = cursor.dimension(dimensions.get(i));
+                    }
+                    for (Metric metric : metrics) {
+                        row[dimensions.size() + metric.ordinal()] = Objects.toString(metric.format(cursor::metric), "");
+                    }
+                    csvWriter.writeNext(row);
+                }
+                csvWriter.flush();
+            }, headers, HttpStatus.OK);
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body((StreamingResponseBody) out -> {
+            try (JsonGenerator json = JSON.createGenerator(out)) {
+                json.writeStartArray();
+                GroupingTable.Cursor cursor = rollup.cursor();
+                while (cursor.next()) {
+                    json.writeStartObject();
+                    for (Dimension dimension : dimensions) {
+                        json.writeStringField(dimension.label(), cursor.dimension(dimension));
+                    }
+                    for (Metric metric : metrics) {
+                        writeMetric(json, metric.label(), metric.format(cursor::metric));
+                    }
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+            }
+        });
+    }
+
+    /**
+     * Writes a value formatted by {@link Metric#format}: an amount as a number, a currency as a string, or null.
+     */
+    private static void writeMetric(JsonGenerator json, String field, Object value) throws IOException {
+        if (value instanceof Double amount) {
+            json.writeNumberField(field, amount);
+        } else if (value == null) {
+            json.writeNullField(field);
         } else {
-            // Default response is JSON
-            return ResponseEntity.ok(summaryReport);
+            json.writeStringField(field, value.toString());
+        }
+    }
+
+    /**
+     * The position of the last row of a page in a sort order, from which the next page resumes. It is
+     * sent to the client as an opaque URL-safe token.
+     *
+     * @param by                 The order.
+     * @param descending         True if the order is read from the end.
+     * @param units              The total of the row, in units of {@link FixedPoint#SCALE}.
+     * @param clientInformation  The client information of the row.
+     * @param productInformation The product information of the row.
+     */
+    private record PageCursor(SummaryOrder by, boolean descending, long units,
+                              String clientInformation, String productInformation) {
+
+        PageCursor(SummaryOrder by, boolean descending, OffHeapSummaryStore.Cursor row) {
+            this(by, descending, row.units(), row.clientInformation(), row.productInformation());
+        }
+
+        String encode() {
+            String position = String.join("\n", by.label(), descending ? "desc" : "asc", String.valueOf(units),
+                    clientInformation, productInformation);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static PageCursor decode(String token) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\n", -1);
+                if (parts.length == 5) {
+                    PageCursor cursor = new PageCursor(SummaryOrder.ofLabel(parts[0]), isDescending(parts[1]),
+                            Long.parseLong(parts[2]), parts[3], parts[4]);
+                    cursor.key(); // rejects a position that cannot be packed
+                    return cursor;
+                }
+            } catch (IllegalArgumentException e) {
+                // not a cursor this endpoint issued
+            }
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+
+        long[] key() {
+            long[] key = new long[SummaryKeys.KEY_WORDS];
+            SummaryKeys.pack(clientInformation, productInformation, key);
+            return key;
         }
     }
 }
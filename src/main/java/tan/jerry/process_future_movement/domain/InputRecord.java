@@ -23,6 +23,9 @@ package tan.jerry.process_future_movement.domain;
  * a compact syntax for immutable data carriers. The @Data annotation
  * is commented out as a placeholder if the class implementation is
  * changed from record to a traditional Java class in the future.
+ *
+ * Code that only reads records should accept the {@link MovementRecord} interface it
+ * implements, so that a lazily decoded view can be passed instead.
  */
 //@Data - placeholder if we decide later to use Java class rather than record
 public record InputRecord(
@@ -61,7 +64,7 @@ public record InputRecord(
         String oppositeTraderId,
         String openCloseCode,
         String filler
-) {
+) implements MovementRecord {
     /**
      * @param recordCode          The record code indicating the type of record.
      * @param clientType          The type of client, such as individual or institutional.
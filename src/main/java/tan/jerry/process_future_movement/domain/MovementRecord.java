@@ -0,0 +1,98 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.domain;
+
+/**
+ * MovementRecord is the read side of a future movement record: one accessor per fixed-width field,
+ * named and ordered like the components of {@link InputRecord}, which documents each field.
+ *
+ * <p>InputRecord implements it with a String per field, decoded up front. Code that only reads
+ * records, such as the summary keys and metrics, the tasklet processors and the ItemProcessor,
+ * accepts a MovementRecord instead, so that it can also be given a
+ * {@link tan.jerry.process_future_movement.reader.InputRecordView}, which decodes a field only
+ * when its accessor is called and is reused from one line to the next.</p>
+ */
+public interface MovementRecord {
+
+    String recordCode();
+
+    String clientType();
+
+    String clientNumber();
+
+    String accountNumber();
+
+    String subAccountNumber();
+
+    String oppositePartyCode();
+
+    String productGroupCode();
+
+    String exchangeCode();
+
+    String symbol();
+
+    String expirationDate();
+
+    String currencyCode();
+
+    String movementCode();
+
+    String buySellCode();
+
+    String quantityLongSign();
+
+    String quantityLong();
+
+    String quantityShortSign();
+
+    String quantityShort();
+
+    String exchBrokerFeeDec();
+
+    String exchBrokerFeeDC();
+
+    String exchBrokerFeeCurCode();
+
+    String clearingFeeDec();
+
+    String clearingFeeDC();
+
+    String clearingFeeCurCode();
+
+    String commission();
+
+    String commissionDC();
+
+    String commissionCurCode();
+
+    String transactionDate();
+
+    String futureReference();
+
+    String ticketNumber();
+
+    String externalNumber();
+
+    String transactionPriceDec();
+
+    String traderInitials();
+
+    String oppositeTraderId();
+
+    String openCloseCode();
+
+    String filler();
+}
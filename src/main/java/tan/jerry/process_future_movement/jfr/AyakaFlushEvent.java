@@ -0,0 +1,44 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * AyakaFlushEvent spans one batch of the Ayaka writer thread, from taking its first entry to
+ * flushing the file.
+ */
+@Name("tan.jerry.pfm.AyakaFlush")
+@Label("Ayaka Flush")
+@Category({"Process Future Movement", "Logging"})
+@Description("A batch of log lines written and flushed by an Ayaka writer thread")
+@StackTrace(false)
+public class AyakaFlushEvent extends Event {
+
+    @Label("Log File")
+    public String fileName;
+
+    @Label("Entries")
+    public int entries;
+
+    @Label("Dropped")
+    @Description("Messages dropped since the previous batch because the buffer was full")
+    public long dropped;
+}
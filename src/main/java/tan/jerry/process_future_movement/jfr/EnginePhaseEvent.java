@@ -0,0 +1,46 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * EnginePhaseEvent marks the end of a stage of an engine run, as timed by
+ * {@link tan.jerry.process_future_movement.metrics.EngineMetrics}. It is committed when the stage
+ * ends, so its elapsed field, not its duration, gives the length of the stage.
+ */
+@Name("tan.jerry.pfm.EnginePhase")
+@Label("Engine Phase")
+@Category({"Process Future Movement", "Engine"})
+@Description("A stage of a ProcessFutureMovementService engine run")
+@StackTrace(false)
+public class EnginePhaseEvent extends Event {
+
+    @Label("Engine")
+    public String engine;
+
+    @Label("Stage")
+    public String stage;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    public long elapsed;
+}
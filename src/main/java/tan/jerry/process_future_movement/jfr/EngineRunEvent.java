@@ -0,0 +1,57 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * EngineRunEvent marks the end of a whole engine run, from reading the input to writing the output.
+ */
+@Name("tan.jerry.pfm.EngineRun")
+@Label("Engine Run")
+@Category({"Process Future Movement", "Engine"})
+@Description("A ProcessFutureMovementService engine run")
+@StackTrace(false)
+public class EngineRunEvent extends Event {
+
+    @Label("Engine")
+    public String engine;
+
+    @Label("Input File")
+    public String inputFileName;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    public long elapsed;
+
+    @Label("Records")
+    @Description("Movements summarized")
+    public long records;
+
+    @Label("Input Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Keys")
+    @Description("Client-product keys in the result")
+    public long keys;
+}
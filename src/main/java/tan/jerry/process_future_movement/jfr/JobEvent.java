@@ -0,0 +1,57 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JobEvent spans a Spring Batch job execution, from before its first step to after its last one.
+ */
+@Name("tan.jerry.pfm.Job")
+@Label("Batch Job")
+@Category({"Process Future Movement", "Batch"})
+@Description("A Spring Batch job execution")
+@StackTrace(false)
+public class JobEvent extends Event {
+
+    @Label("Job Name")
+    public String jobName;
+
+    @Label("Job Execution Id")
+    public long jobExecutionId;
+
+    @Label("Status")
+    public String status;
+
+    @Label("Exit Code")
+    public String exitCode;
+
+    @Label("Steps")
+    @Description("Step executions, including partitions")
+    public int steps;
+
+    @Label("Read Count")
+    @Description("Items read by the top-level steps; partitions are counted by their manager step")
+    public long readCount;
+
+    @Label("Write Count")
+    @Description("Items written by the top-level steps; partitions are counted by their manager step")
+    public long writeCount;
+}
@@ -0,0 +1,67 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * StepEvent spans a Spring Batch step execution, a partition of pfm_step included, with the
+ * counts of its StepExecution at the end.
+ */
+@Name("tan.jerry.pfm.Step")
+@Label("Batch Step")
+@Category({"Process Future Movement", "Batch"})
+@Description("A Spring Batch step or partition execution")
+@StackTrace(false)
+public class StepEvent extends Event {
+
+    @Label("Step Name")
+    public String stepName;
+
+    @Label("Step Execution Id")
+    public long stepExecutionId;
+
+    @Label("Job Execution Id")
+    public long jobExecutionId;
+
+    @Label("Status")
+    public String status;
+
+    @Label("Exit Code")
+    public String exitCode;
+
+    @Label("Read Count")
+    public long readCount;
+
+    @Label("Write Count")
+    public long writeCount;
+
+    @Label("Commit Count")
+    public long commitCount;
+
+    @Label("Rollback Count")
+    public long rollbackCount;
+
+    @Label("Skip Count")
+    public long skipCount;
+
+    @Label("Filter Count")
+    public long filterCount;
+}
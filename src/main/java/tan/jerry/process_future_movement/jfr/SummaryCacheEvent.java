@@ -0,0 +1,63 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * SummaryCacheEvent spans a lookup in the daily summary cache by a REST request, including the
+ * rebuild it started or waited for.
+ */
+@Name("tan.jerry.pfm.SummaryCache")
+@Label("Summary Cache Lookup")
+@Category({"Process Future Movement", "REST"})
+@Description("A lookup of the daily summary or rollups")
+@StackTrace(false)
+public class SummaryCacheEvent extends Event {
+
+    /**
+     * The cached value was current and complete.
+     */
+    public static final String HIT = "hit";
+
+    /**
+     * The lookup waited for a rebuild another request had started.
+     */
+    public static final String JOINED = "joined";
+
+    /**
+     * The lookup rebuilt the value.
+     */
+    public static final String BUILT = "built";
+
+    @Label("Cache")
+    @Description("summary or rollups")
+    public String cache;
+
+    @Label("Input File")
+    public String inputFileName;
+
+    @Label("Outcome")
+    @Description("hit, joined or built")
+    public String outcome;
+
+    @Label("Failed")
+    public boolean failed;
+}
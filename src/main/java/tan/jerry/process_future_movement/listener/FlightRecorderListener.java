@@ -0,0 +1,99 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.listener;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.stereotype.Component;
+import tan.jerry.process_future_movement.jfr.JobEvent;
+import tan.jerry.process_future_movement.jfr.StepEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * FlightRecorderListener marks job and step executions in a Flight Recorder recording: a
+ * {@link JobEvent} or {@link StepEvent} begins when the execution starts and is committed with its
+ * status and counts when it ends. Partitions are steps of their own, so a recording shows which
+ * partition of pfm_step was slow. While no recording enables the events, nothing is kept.
+ */
+@Component
+public class FlightRecorderListener implements JobExecutionListener, StepExecutionListener {
+
+    private final Map<Long, JobEvent> jobs = new ConcurrentHashMap<>();
+
+    private final Map<Long, StepEvent> steps = new ConcurrentHashMap<>();
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        JobEvent event = new JobEvent();
+        if (event.isEnabled() && jobExecution.getId() != null) {
+            event.begin();
+            jobs.put(jobExecution.getId(), event);
+        }
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        JobEvent event = jobExecution.getId() == null ? null : jobs.remove(jobExecution.getId());
+        if (event == null || !event.shouldCommit()) {
+            return;
+        }
+        event.jobName = jobExecution.getJobInstance().getJobName();
+        event.jobExecutionId = jobExecution.getId();
+        event.status = jobExecution.getStatus().name();
+        event.exitCode = jobExecution.getExitStatus().getExitCode();
+        for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+            event.steps++;
+            if (stepExecution.getStepName().indexOf(':') < 0) { // a partition is counted by its manager step
+                event.readCount += stepExecution.getReadCount();
+                event.writeCount += stepExecution.getWriteCount();
+            }
+        }
+        event.commit();
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        StepEvent event = new StepEvent();
+        if (event.isEnabled() && stepExecution.getId() != null) {
+            event.begin();
+            steps.put(stepExecution.getId(), event);
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        StepEvent event = stepExecution.getId() == null ? null : steps.remove(stepExecution.getId());
+        if (event != null && event.shouldCommit()) {
+            event.stepName = stepExecution.getStepName();
+            event.stepExecutionId = stepExecution.getId();
+            event.jobExecutionId = stepExecution.getJobExecutionId();
+            event.status = stepExecution.getStatus().name();
+            event.exitCode = stepExecution.getExitStatus().getExitCode();
+            event.readCount = stepExecution.getReadCount();
+            event.writeCount = stepExecution.getWriteCount();
+            event.commitCount = stepExecution.getCommitCount();
+            event.rollbackCount = stepExecution.getRollbackCount();
+            event.skipCount = stepExecution.getSkipCount();
+            event.filterCount = stepExecution.getFilterCount();
+            event.commit();
+        }
+        return null;
+    }
+}
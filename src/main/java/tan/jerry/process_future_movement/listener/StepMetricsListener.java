@@ -0,0 +1,324 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.listener;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tan.jerry.process_future_movement.reader.ProcessFutureMovementReader;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * StepMetricsListener records where the time of a chunk-oriented step goes, to Micrometer, with
+ * every meter tagged by the step name (without its partition suffix):
+ * <ul>
+ *   <li>{@code pfm.step.chunk}: chunk latency, from the start of the chunk to the end of its commit, tagged by outcome;</li>
+ *   <li>{@code pfm.step.read} and {@code pfm.step.process}: sampled per-item read and process times;</li>
+ *   <li>{@code pfm.step.write}: time the writer takes for a chunk;</li>
+ *   <li>{@code pfm.step.commit}: time from the end of the write to the end of the commit, which
+ *   covers saving the ExecutionContext to the job repository;</li>
+ *   <li>{@code pfm.step.items.per.second}: items written per second of each chunk;</li>
+ *   <li>{@code pfm.step.items}, {@code pfm.step.skips} and {@code pfm.step.errors}: counters of
+ *   items read and written, of items skipped or quarantined, and of read, process and write errors.</li>
+ * </ul>
+ *
+ * <p>Partitions run on their own threads, so the state of the chunk in progress is kept per thread
+ * and one listener serves every partition. Per-item timers only time one item in
+ * pfm.step.metrics.sample.rate (0 disables them), so that timing reads costs a countdown per item.</p>
+ *
+ * <p>Skips are reported by Spring Batch only for fault-tolerant steps. pfm_worker_step is not one:
+ * its reader quarantines malformed lines instead, and the lines quarantined by each chunk are
+ * counted as skips in the quarantine phase.</p>
+ */
+@Component
+public class StepMetricsListener implements ChunkListener, ItemReadListener<Object>, ItemProcessListener<Object, Object>,
+        ItemWriteListener<Object>, SkipListener<Object, Object> {
+
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private final MeterRegistry meterRegistry;
+
+    private final int sampleRate;
+
+    private final Map<String, StepMeters> steps = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<ChunkState> chunks = ThreadLocal.withInitial(ChunkState::new);
+
+    @Autowired
+    public StepMetricsListener(MeterRegistry meterRegistry, @Value("${pfm.step.metrics.sample.rate:64}") int sampleRate) {
+        this.meterRegistry = meterRegistry;
+        this.sampleRate = Math.max(sampleRate, 0);
+    }//ctor
+
+    /**
+     * Starts timing a chunk. The first chunk of a step execution also sets the quarantine baseline,
+     * so that lines quarantined before a restart are not counted again.
+     *
+     * @param context The context of the chunk.
+     */
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        ChunkState chunk = chunks.get();
+        StepExecution stepExecution = context.getStepContext().getStepExecution();
+        if (chunk.stepExecution != stepExecution) {
+            chunk.stepExecution = stepExecution;
+            chunk.meters = steps.computeIfAbsent(stepName(stepExecution), this::register);
+            chunk.quarantined = ProcessFutureMovementReader.quarantined(stepExecution.getExecutionContext());
+            chunk.untilSample = 1;
+            chunk.untilProcessSample = 1;
+        }
+        chunk.start = System.nanoTime();
+        chunk.writeEnd = NOT_TIMED;
+        chunk.readStart = NOT_TIMED;
+        chunk.processStart = NOT_TIMED;
+        chunk.read = 0;
+        chunk.written = 0;
+    }
+
+    /**
+     * Records a committed chunk: its latency, its commit time, its throughput and its quarantined lines.
+     *
+     * @param context The context of the chunk.
+     */
+    @Override
+    public void afterChunk(ChunkContext context) {
+        ChunkState chunk = chunks.get();
+        if (chunk.meters == null) {
+            return;
+        }
+        long end = System.nanoTime();
+        StepMeters meters = chunk.meters;
+        meters.committed.record(end - chunk.start, TimeUnit.NANOSECONDS);
+        if (chunk.writeEnd != NOT_TIMED) {
+            meters.commit.record(end - chunk.writeEnd, TimeUnit.NANOSECONDS);
+        }
+        if (chunk.written > 0) {
+            meters.itemsPerSecond.record(chunk.written * 1e9 / Math.max(end - chunk.start, 1));
+        }
+        meters.read.increment(chunk.read);
+        meters.written.increment(chunk.written);
+        long quarantined = ProcessFutureMovementReader.quarantined(chunk.stepExecution.getExecutionContext());
+        meters.quarantined.increment(Math.max(quarantined - chunk.quarantined, 0));
+        chunk.quarantined = quarantined;
+    }
+
+    /**
+     * Records a chunk that was rolled back.
+     *
+     * @param context The context of the chunk.
+     */
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        ChunkState chunk = chunks.get();
+        if (chunk.meters != null) {
+            chunk.meters.rolledBack.record(System.nanoTime() - chunk.start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void beforeRead() {
+        ChunkState chunk = chunks.get();
+        if (sampleRate > 0 && --chunk.untilSample <= 0) {
+            chunk.untilSample = sampleRate;
+            chunk.readStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterRead(Object item) {
+        ChunkState chunk = chunks.get();
+        chunk.read++;
+        if (chunk.readStart != NOT_TIMED) {
+            chunk.meters.readItem.record(System.nanoTime() - chunk.readStart, TimeUnit.NANOSECONDS);
+            chunk.readStart = NOT_TIMED;
+        }
+    }
+
+    @Override
+    public void onReadError(Exception ex) {
+        ChunkState chunk = chunks.get();
+        chunk.readStart = NOT_TIMED;
+        if (chunk.meters != null) {
+            chunk.meters.readErrors.increment();
+        }
+    }
+
+    @Override
+    public void beforeProcess(Object item) {
+        ChunkState chunk = chunks.get();
+        if (sampleRate > 0 && --chunk.untilProcessSample <= 0) {
+            chunk.untilProcessSample = sampleRate;
+            chunk.processStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterProcess(Object item, Object result) {
+        ChunkState chunk = chunks.get();
+        if (chunk.processStart != NOT_TIMED) {
+            chunk.meters.processItem.record(System.nanoTime() - chunk.processStart, TimeUnit.NANOSECONDS);
+            chunk.processStart = NOT_TIMED;
+        }
+    }
+
+    @Override
+    public void onProcessError(Object item, Exception e) {
+        ChunkState chunk = chunks.get();
+        chunk.processStart = NOT_TIMED;
+        if (chunk.meters != null) {
+            chunk.meters.processErrors.increment();
+        }
+    }
+
+    @Override
+    public void beforeWrite(Chunk<?> items) {
+        chunks.get().writeStart = System.nanoTime();
+    }
+
+    @Override
+    public void afterWrite(Chunk<?> items) {
+        ChunkState chunk = chunks.get();
+        chunk.writeEnd = System.nanoTime();
+        chunk.written += items.size();
+        if (chunk.meters != null) {
+            chunk.meters.write.record(chunk.writeEnd - chunk.writeStart, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void onWriteError(Exception exception, Chunk<?> items) {
+        ChunkState chunk = chunks.get();
+        if (chunk.meters != null) {
+            chunk.meters.writeErrors.increment();
+        }
+    }
+
+    @Override
+    public void onSkipInRead(Throwable t) {
+        skipped(StepMeters::readSkips);
+    }
+
+    @Override
+    public void onSkipInProcess(Object item, Throwable t) {
+        skipped(StepMeters::processSkips);
+    }
+
+    @Override
+    public void onSkipInWrite(Object item, Throwable t) {
+        skipped(StepMeters::writeSkips);
+    }
+
+    private void skipped(Function<StepMeters, Counter> counter) {
+        ChunkState chunk = chunks.get();
+        if (chunk.meters != null) {
+            counter.apply(chunk.meters).increment();
+        }
+    }
+
+    /**
+     * Returns the name of a step without the partition suffix, so that partitions share their meters.
+     */
+    private static String stepName(StepExecution stepExecution) {
+        String name = stepExecution.getStepName();
+        int colon = name.indexOf(':');
+        return colon < 0 ? name : name.substring(0, colon);
+    }
+
+    private StepMeters register(String step) {
+        return new StepMeters(meterRegistry, step);
+    }
+
+    /**
+     * The chunk in progress on one thread.
+     */
+    private static final class ChunkState {
+        StepExecution stepExecution;
+        StepMeters meters;
+        long start;
+        long readStart = NOT_TIMED;
+        long processStart = NOT_TIMED;
+        long writeStart;
+        long writeEnd = NOT_TIMED;
+        long read;
+        long written;
+        long quarantined;
+        int untilSample = 1;
+        int untilProcessSample = 1;
+    }
+
+    /**
+     * The meters of one step.
+     */
+    private record StepMeters(Timer committed, Timer rolledBack, Timer readItem, Timer processItem, Timer write,
+                              Timer commit, DistributionSummary itemsPerSecond, Counter read, Counter written,
+                              Counter readSkips, Counter processSkips, Counter writeSkips, Counter quarantined,
+                              Counter readErrors, Counter processErrors, Counter writeErrors) {
+
+        StepMeters(MeterRegistry registry, String step) {
+            this(timer(registry, "pfm.step.chunk", step, "Chunk latency, from the start of the chunk to the end of its commit", "outcome", "committed"),
+                    timer(registry, "pfm.step.chunk", step, "Chunk latency, from the start of the chunk to the end of its commit", "outcome", "rolled_back"),
+                    timer(registry, "pfm.step.read", step, "Sampled time to read one item"),
+                    timer(registry, "pfm.step.process", step, "Sampled time to process one item"),
+                    timer(registry, "pfm.step.write", step, "Time to write one chunk"),
+                    timer(registry, "pfm.step.commit", step, "Time from the end of the write to the end of the commit"),
+                    DistributionSummary.builder("pfm.step.items.per.second")
+                            .description("Items written per second of each chunk")
+                            .tag("step", step)
+                            .publishPercentileHistogram()
+                            .register(registry),
+                    counter(registry, "pfm.step.items", step, "kind", "read"),
+                    counter(registry, "pfm.step.items", step, "kind", "written"),
+                    counter(registry, "pfm.step.skips", step, "phase", "read"),
+                    counter(registry, "pfm.step.skips", step, "phase", "process"),
+                    counter(registry, "pfm.step.skips", step, "phase", "write"),
+                    counter(registry, "pfm.step.skips", step, "phase", "quarantine"),
+                    counter(registry, "pfm.step.errors", step, "phase", "read"),
+                    counter(registry, "pfm.step.errors", step, "phase", "process"),
+                    counter(registry, "pfm.step.errors", step, "phase", "write"));
+        }
+
+        private static Timer timer(MeterRegistry registry, String name, String step, String description, String... tags) {
+            return Timer.builder(name)
+                    .description(description)
+                    .tag("step", step)
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        private static Counter counter(MeterRegistry registry, String name, String step, String key, String value) {
+            return Counter.builder(name)
+                    .tag("step", step)
+                    .tag(key, value)
+                    .register(registry);
+        }
+    }
+}
@@ -14,11 +14,20 @@
  */
 package tan.jerry.process_future_movement.log;
 
+import tan.jerry.process_future_movement.jfr.AyakaFlushEvent;
+
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.time.LocalDateTime;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Ayaka is a custom logger designed to handle logging independently of
@@ -26,14 +35,43 @@ import java.time.format.DateTimeFormatter;
  * cases where Spring framework configurations override application-level
  * logging settings. This logger writes messages to a specified file, allowing
  * for separate filtering and more controlled logging output.
+ * <p>
+ * Logging is asynchronous: {@link #log(String, LogLevel)} only appends the message and its time
+ * to a bounded, lock-free ring buffer, and a single background thread per file drains the buffer,
+ * formats the timestamps and writes and flushes the lines in batches. All Ayaka instances for
+ * the same file share that buffer and thread, so creating one is cheap and never opens another
+ * file handle. Messages below {@link #getLevel()} are discarded before anything is allocated;
+ * callers building an expensive message should check {@link #isEnabled(LogLevel)} first.
+ * <p>
+ * When the buffer is full, TRACE, INFO and DEBUG messages are dropped and counted, and the count
+ * is written to the file once there is room again; WARN and FATAL messages wait for room instead.
+ * Every batch the writer thread flushes is an {@link AyakaFlushEvent} in a Flight Recorder recording.
  */
 public class Ayaka {
 
+    /**
+     * Number of messages a file's buffer holds before the overflow policy applies.
+     */
+    static final int BUFFER_CAPACITY = 8192;
+
+    /**
+     * How long the writer thread sleeps when its buffer is empty.
+     */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final ConcurrentMap<String, Sink> SINKS = new ConcurrentHashMap<>();
+
+    private static volatile LogLevel threshold = LogLevel.valueOf(System.getProperty("ayaka.level", LogLevel.TRACE.name()));
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> SINKS.values().forEach(Sink::flush), "ayaka-shutdown"));
+    }
+
     private String filename = "ayaka.log";
-    private BufferedWriter writer;
+    private final Sink sink;
 
     /**
-     * Enum representing the various log levels supported by Ayaka.
+     * Enum representing the various log levels supported by Ayaka, from the most to the least verbose.
      */
     public enum LogLevel {
         TRACE, INFO, DEBUG, WARN, FATAL
@@ -41,17 +79,41 @@ public class Ayaka {
 
     /**
      * Constructs an Ayaka logger with the specified log file name.
-     * Initializes a BufferedWriter for the specified file, appending to the file if it exists.
+     * The file is opened for appending by the first logger of that name; later loggers share it.
      *
      * @param filename The name of the file where logs will be written.
      */
     public Ayaka(String filename) {
         this.filename = filename;
-        try {
-            this.writer = new BufferedWriter(new FileWriter(filename, true));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        this.sink = SINKS.computeIfAbsent(filename, Sink::new);
+    }
+
+    /**
+     * Sets the least severe level that is logged; messages below it are discarded.
+     * Applies to every Ayaka logger. The initial level is read from the {@code ayaka.level}
+     * system property and defaults to TRACE, which logs everything.
+     *
+     * @param level The least severe level to log.
+     */
+    public static void setLevel(LogLevel level) {
+        threshold = level;
+    }
+
+    /**
+     * @return The least severe level that is logged.
+     */
+    public static LogLevel getLevel() {
+        return threshold;
+    }
+
+    /**
+     * Checks whether messages of a level are logged, so that callers can skip building them.
+     *
+     * @param level The log level.
+     * @return true if messages of the level are logged.
+     */
+    public boolean isEnabled(LogLevel level) {
+        return level.ordinal() >= threshold.ordinal();
     }
 
     /**
@@ -70,28 +132,31 @@ public class Ayaka {
      * @param level   The log level to use for the message.
      */
     public void log(String message, LogLevel level) {
-        try {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            writer.write(String.format("%s [%s] - %s", timestamp, level.name(), message));
-            writer.newLine();
-            writer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (isEnabled(level)) {
+            sink.append(new Entry(System.currentTimeMillis(), level, message));
         }
     }
 
     /**
-     * Closes the BufferedWriter when logging is complete.
-     * Ensures that all buffered messages are written to the file.
+     * @return The number of messages dropped so far because the buffer of this logger's file was full.
+     */
+    public long droppedCount() {
+        return sink.dropped.get();
+    }
+
+    /**
+     * Waits until every message logged so far to this logger's file has been written and flushed.
+     */
+    public void flush() {
+        sink.flush();
+    }
+
+    /**
+     * Writes out the messages logged so far. The file itself stays open for the other
+     * loggers sharing it and is flushed once more when the JVM shuts down.
      */
     public void close() {
-        try {
-            if (writer != null) {
-                writer.close();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        flush();
     }
 
     /**
@@ -109,4 +174,175 @@ public class Ayaka {
         logger.log("This is a FATAL error message.", LogLevel.FATAL);
         logger.close();
     }
+
+    /**
+     * A logged message; the timestamp is formatted by the writer thread.
+     */
+    private record Entry(long timeMillis, LogLevel level, String message) {
+    }
+
+    /**
+     * The buffer and writer thread of one log file. The buffer is a bounded multi-producer,
+     * single-consumer ring: producers claim a slot by advancing {@code tail} with a CAS and
+     * publish the entry by advancing the slot's sequence number, which the writer thread
+     * waits for before it takes the entry.
+     */
+    private static final class Sink implements Runnable {
+
+        private static final DateTimeFormatter TIMESTAMP =
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+        private final Entry[] entries = new Entry[BUFFER_CAPACITY];
+        private final AtomicLongArray sequences = new AtomicLongArray(BUFFER_CAPACITY);
+        private final AtomicLong tail = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final String filename;
+        private final Thread thread;
+        private BufferedWriter writer;
+
+        /**
+         * Position of the next entry to take; only used by the writer thread.
+         */
+        private long head;
+
+        /**
+         * Number of entries written and flushed so far.
+         */
+        private volatile long written;
+
+        private long reportedDrops;
+        private long lastSecond = Long.MIN_VALUE;
+        private String lastTimestamp;
+
+        Sink(String filename) {
+            this.filename = filename;
+            for (int i = 0; i < BUFFER_CAPACITY; i++) {
+                sequences.set(i, i);
+            }
+            try {
+                writer = new BufferedWriter(new FileWriter(filename, true));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            thread = new Thread(this, "ayaka-writer-" + filename);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void append(Entry entry) {
+            while (!offer(entry)) {
+                if (entry.level().ordinal() < LogLevel.WARN.ordinal()) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(thread);
+                Thread.onSpinWait();
+            }
+        }
+
+        private boolean offer(Entry entry) {
+            long position = tail.get();
+            while (true) {
+                int slot = (int) (position & (BUFFER_CAPACITY - 1));
+                long difference = sequences.get(slot) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        entries[slot] = entry;
+                        sequences.set(slot, position + 1); // publishes the entry to the writer thread
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false; // the writer thread has not taken this slot's previous entry yet
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        private Entry poll() {
+            int slot = (int) (head & (BUFFER_CAPACITY - 1));
+            if (sequences.get(slot) != head + 1) {
+                return null;
+            }
+            Entry entry = entries[slot];
+            entries[slot] = null;
+            sequences.set(slot, head + BUFFER_CAPACITY); // frees the slot for the next lap
+            head++;
+            return entry;
+        }
+
+        void flush() {
+            long target = tail.get();
+            while (written < target && thread.isAlive()) {
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(IDLE_NANOS / 10);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                AyakaFlushEvent event = new AyakaFlushEvent();
+                event.begin();
+                int entries = 0;
+                Entry entry;
+                while ((entry = poll()) != null) {
+                    write(entry);
+                    entries++;
+                }
+                long drops = dropped.get();
+                boolean wrote = entries > 0;
+                if (drops != reportedDrops) {
+                    write(new Entry(System.currentTimeMillis(), LogLevel.WARN,
+                            (drops - reportedDrops) + " messages dropped because the log buffer was full"));
+                    event.dropped = drops - reportedDrops;
+                    reportedDrops = drops;
+                    wrote = true;
+                }
+                if (wrote) {
+                    try {
+                        if (writer != null) {
+                            writer.flush();
+                        }
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    written = head;
+                    if (event.shouldCommit()) {
+                        event.fileName = filename;
+                        event.entries = entries;
+                        event.commit();
+                    }
+                } else {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                }
+            }
+        }
+
+        private void write(Entry entry) {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.write(timestamp(entry.timeMillis()));
+                writer.write(" [");
+                writer.write(entry.level().name());
+                writer.write("] - ");
+                writer.write(String.valueOf(entry.message()));
+                writer.newLine();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private String timestamp(long timeMillis) {
+            long second = Math.floorDiv(timeMillis, 1000);
+            if (second != lastSecond) {
+                lastTimestamp = TIMESTAMP.format(Instant.ofEpochSecond(second));
+                lastSecond = second;
+            }
+            return lastTimestamp;
+        }
+    }
 }
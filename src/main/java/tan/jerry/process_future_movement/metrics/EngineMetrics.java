@@ -0,0 +1,317 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.jfr.EnginePhaseEvent;
+import tan.jerry.process_future_movement.jfr.EngineRunEvent;
+import tan.jerry.process_future_movement.reader.InputFiles;
+import tan.jerry.process_future_movement.reader.InputLineValidator.Reason;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EngineMetrics publishes the timings and throughput of the ProcessFutureMovementService engines
+ * to Micrometer, every meter tagged with the engine name:
+ * <ul>
+ *   <li>{@code pfm.engine.stage}: a timer with a percentile histogram per {@link Stage};</li>
+ *   <li>{@code pfm.engine.run}: a timer with a percentile histogram of whole runs;</li>
+ *   <li>{@code pfm.engine.records} and {@code pfm.engine.bytes}: counters of the movements and
+ *   input bytes summarized, with {@code pfm.engine.records.per.second} and
+ *   {@code pfm.engine.bytes.per.second} gauges of the last run;</li>
+ *   <li>{@code pfm.engine.keys}: a gauge of the client-product keys of the last run;</li>
+ *   <li>{@code pfm.engine.invalid.lines}: a counter of quarantined lines, also tagged by reason.</li>
+ * </ul>
+ *
+ * <p>Recording can be switched on and off at runtime. An engine takes a token from
+ * {@link #start()} before a stage and hands it back to {@link #stop(Stage, long)}; while recording
+ * is off the token is {@link #OFF} and both calls do nothing but read a volatile flag, so the
+ * instrumentation costs next to nothing. Stages are timed around whole phases of a run, never
+ * per line.</p>
+ *
+ * <p>Stages and runs are also committed as {@link EnginePhaseEvent} and {@link EngineRunEvent}
+ * to a Flight Recorder recording that enables them, whether or not the meters are recording.</p>
+ *
+ * <p>Meters are registered in {@link Metrics#globalRegistry} until {@link #bind(MeterRegistry)}
+ * is given the application registry, which the actuator exports.</p>
+ */
+public final class EngineMetrics {
+
+    /**
+     * A phase of an engine run. An engine that does several phases in one pass over the input,
+     * such as reading, parsing and aggregating each line in turn, times the pass as the last of them.
+     */
+    public enum Stage {
+        /**
+         * Reading the input file, and parsing it when it is parsed up front.
+         */
+        READ,
+        /**
+         * Folding movements into summary tables.
+         */
+        AGGREGATE,
+        /**
+         * Merging the partial tables of workers, mappers or partitions.
+         */
+        MERGE,
+        /**
+         * Writing the output file.
+         */
+        WRITE;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+
+        /**
+         * @return The stage name in lowercase, as it is tagged.
+         */
+        public String tag() {
+            return tag;
+        }
+    }
+
+    /**
+     * The token {@link #start()} returns while recording is off.
+     */
+    public static final long OFF = Long.MIN_VALUE;
+
+    private static final Map<String, EngineMetrics> ENGINES = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled;
+
+    private static volatile MeterRegistry registry = Metrics.globalRegistry;
+
+    private final String engine;
+
+    private volatile Meters meters;
+
+    private EngineMetrics(String engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Returns the metrics of an engine.
+     *
+     * @param engine The engine name, used as the engine tag.
+     * @return The metrics of the engine; the same instance for the same name.
+     */
+    public static EngineMetrics forEngine(String engine) {
+        return ENGINES.computeIfAbsent(engine, EngineMetrics::new);
+    }
+
+    /**
+     * @return True if the engines are recording.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switches recording on or off; runs already started finish as they began.
+     *
+     * @param enabled True to record.
+     */
+    public static void setEnabled(boolean enabled) {
+        EngineMetrics.enabled = enabled;
+    }
+
+    /**
+     * Registers the meters of every engine in the given registry from now on.
+     *
+     * @param registry The registry, typically the one exported by the actuator.
+     */
+    public static void bind(MeterRegistry registry) {
+        EngineMetrics.registry = registry;
+    }
+
+    /**
+     * @return The engine name.
+     */
+    public String engine() {
+        return engine;
+    }
+
+    /**
+     * Starts timing a stage or a run.
+     *
+     * @return The start time, or {@link #OFF} if neither the meters nor Flight Recorder are recording.
+     */
+    public long start() {
+        return enabled || new EnginePhaseEvent().isEnabled() ? System.nanoTime() : OFF;
+    }
+
+    /**
+     * Records the time of a stage since its token was taken.
+     *
+     * @param stage The stage.
+     * @param start The token returned by {@link #start()}.
+     */
+    public void stop(Stage stage, long start) {
+        if (start == OFF) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (enabled) {
+            meters().stages.get(stage).record(elapsed, TimeUnit.NANOSECONDS);
+        }
+        EnginePhaseEvent event = new EnginePhaseEvent();
+        if (event.shouldCommit()) {
+            event.engine = engine;
+            event.stage = stage.tag;
+            event.elapsed = elapsed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a whole run since its token was taken: its time, the movements summarized, the size
+     * of the input file and the keys of the result.
+     *
+     * @param start         The token returned by {@link #start()} when the run began.
+     * @param inputFileName The name of the input file, on the file system or the classpath.
+     * @param result        The summary produced by the run.
+     */
+    public void completed(long start, String inputFileName, SummaryTable result) {
+        if (start == OFF) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes;
+        try {
+            bytes = Files.size(InputFiles.resolve(inputFileName));
+        } catch (IOException e) {
+            bytes = 0;
+        }
+        EngineRunEvent event = new EngineRunEvent();
+        if (event.shouldCommit()) {
+            event.engine = engine;
+            event.inputFileName = inputFileName;
+            event.elapsed = elapsed;
+            event.records = result.movements();
+            event.bytes = bytes;
+            event.keys = result.size();
+            event.commit();
+        }
+        if (!enabled) {
+            return;
+        }
+        Meters meters = meters();
+        double seconds = Math.max(elapsed, 1) / 1e9;
+        meters.run.record(elapsed, TimeUnit.NANOSECONDS);
+        meters.records.increment(result.movements());
+        meters.bytes.increment(bytes);
+        meters.recordsPerSecond = result.movements() / seconds;
+        meters.bytesPerSecond = bytes / seconds;
+        meters.keys = result.size();
+    }
+
+    /**
+     * Counts lines the engine quarantined instead of summarizing.
+     *
+     * @param reason The reason the lines were rejected.
+     * @param count  The number of lines.
+     */
+    public void invalidLines(Reason reason, long count) {
+        if (enabled && count > 0) {
+            meters().invalidLines.get(reason).increment(count);
+        }
+    }
+
+    /**
+     * Returns the meters of this engine in the current registry, registering them on first use.
+     */
+    private Meters meters() {
+        MeterRegistry current = registry;
+        Meters cached = meters;
+        if (cached == null || cached.registry != current) {
+            synchronized (this) {
+                cached = meters;
+                if (cached == null || cached.registry != current) {
+                    meters = cached = new Meters(current, engine);
+                }
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * The meters of one engine in one registry.
+     */
+    private static final class Meters {
+
+        private final MeterRegistry registry;
+        private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+        private final Map<Reason, Counter> invalidLines = new EnumMap<>(Reason.class);
+        private final Timer run;
+        private final Counter records;
+        private final Counter bytes;
+        private volatile double recordsPerSecond;
+        private volatile double bytesPerSecond;
+        private volatile double keys;
+
+        Meters(MeterRegistry registry, String engine) {
+            this.registry = registry;
+            for (Stage stage : Stage.values()) {
+                stages.put(stage, Timer.builder("pfm.engine.stage")
+                        .description("Time an engine spends in one stage of a run")
+                        .tags("engine", engine, "stage", stage.tag)
+                        .publishPercentileHistogram()
+                        .register(registry));
+            }
+            for (Reason reason : Reason.values()) {
+                invalidLines.put(reason, Counter.builder("pfm.engine.invalid.lines")
+                        .description("Input lines quarantined instead of summarized")
+                        .tags("engine", engine, "reason", reason.name())
+                        .register(registry));
+            }
+            run = Timer.builder("pfm.engine.run")
+                    .description("Time of a whole engine run, from reading the input to writing the output")
+                    .tag("engine", engine)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            records = Counter.builder("pfm.engine.records")
+                    .description("Movements summarized")
+                    .tag("engine", engine)
+                    .register(registry);
+            bytes = Counter.builder("pfm.engine.bytes")
+                    .baseUnit("bytes")
+                    .description("Input bytes summarized")
+                    .tag("engine", engine)
+                    .register(registry);
+            Gauge.builder("pfm.engine.records.per.second", this, meters -> meters.recordsPerSecond)
+                    .description("Movements summarized per second in the last run")
+                    .tag("engine", engine)
+                    .register(registry);
+            Gauge.builder("pfm.engine.bytes.per.second", this, meters -> meters.bytesPerSecond)
+                    .description("Input bytes summarized per second in the last run")
+                    .tag("engine", engine)
+                    .register(registry);
+            Gauge.builder("pfm.engine.keys", this, meters -> meters.keys)
+                    .description("Client-product keys in the result of the last run")
+                    .tag("engine", engine)
+                    .register(registry);
+        }
+    }
+}
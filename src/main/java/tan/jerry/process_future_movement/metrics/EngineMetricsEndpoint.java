@@ -0,0 +1,61 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * EngineMetricsEndpoint binds {@link EngineMetrics} to the application MeterRegistry, so that
+ * the engine meters are exported with the others at /actuator/prometheus, and switches their
+ * recording at runtime: GET /actuator/enginemetrics shows whether the engines are recording, and
+ * POST /actuator/enginemetrics with {@code {"enabled": false}} stops them.
+ */
+@Component
+@Endpoint(id = "enginemetrics")
+public class EngineMetricsEndpoint {
+
+    public EngineMetricsEndpoint(MeterRegistry meterRegistry,
+                                 @Value("${pfm.metrics.engines.enabled:true}") boolean enabled) {
+        EngineMetrics.bind(meterRegistry);
+        EngineMetrics.setEnabled(enabled);
+    }//ctor
+
+    /**
+     * @return Whether the engines are recording.
+     */
+    @ReadOperation
+    public Map<String, Boolean> enabled() {
+        return Map.of("enabled", EngineMetrics.isEnabled());
+    }
+
+    /**
+     * Switches the recording of the engines.
+     *
+     * @param enabled True to record.
+     * @return Whether the engines are recording.
+     */
+    @WriteOperation
+    public Map<String, Boolean> setEnabled(boolean enabled) {
+        EngineMetrics.setEnabled(enabled);
+        return enabled();
+    }
+}
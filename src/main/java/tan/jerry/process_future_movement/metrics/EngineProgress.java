@@ -0,0 +1,132 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.metrics;
+
+import tan.jerry.process_future_movement.metrics.EngineMetrics.Stage;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * EngineProgress follows one engine run while it is running: the stage it is in and the input bytes
+ * and movements it has got through, from which {@link #snapshot()} derives the throughput and an
+ * estimate of the time left. An engine given a progress reports it in batches of lines, never per
+ * line, and from as many threads as it likes.
+ */
+public final class EngineProgress {
+
+    /**
+     * Lines an engine reads between two reports of its progress.
+     */
+    public static final int REPORT_INTERVAL = 4096;
+
+    private final LongAdder bytes = new LongAdder();
+
+    private final LongAdder records = new LongAdder();
+
+    private volatile long totalBytes = -1;
+
+    private volatile long startNanos;
+
+    private volatile long endNanos;
+
+    private volatile Stage stage;
+
+    /**
+     * Marks the start of the run.
+     *
+     * @param totalBytes The size of the input in bytes, or -1 if it is not known.
+     */
+    public void start(long totalBytes) {
+        this.totalBytes = totalBytes;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks the stage the run has entered.
+     *
+     * @param stage The stage.
+     */
+    public void stage(Stage stage) {
+        this.stage = stage;
+    }
+
+    /**
+     * Adds input the run has got through since its last report.
+     *
+     * @param records The movements read.
+     * @param bytes   The input bytes read.
+     */
+    public void advance(long records, long bytes) {
+        this.records.add(records);
+        this.bytes.add(bytes);
+    }
+
+    /**
+     * Marks the end of the run.
+     */
+    public void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * @return True once {@link #start(long)} has been called.
+     */
+    public boolean isStarted() {
+        return startNanos != 0;
+    }
+
+    /**
+     * Takes a consistent enough view of the progress for reporting; the counters are read one
+     * after the other while the run goes on.
+     *
+     * @return The progress so far.
+     */
+    public Snapshot snapshot() {
+        long start = startNanos;
+        if (start == 0) {
+            return new Snapshot(null, 0, totalBytes, 0, 0, 0, null);
+        }
+        long end = endNanos;
+        long bytesRead = bytes.sum();
+        long recordsRead = records.sum();
+        double seconds = Math.max((end != 0 ? end : System.nanoTime()) - start, 1) / 1e9;
+        double bytesPerSecond = bytesRead / seconds;
+        Double etaSeconds = null;
+        if (end != 0) {
+            etaSeconds = 0.0;
+        } else if (totalBytes >= 0 && bytesPerSecond > 0) {
+            etaSeconds = Math.max(totalBytes - bytesRead, 0) / bytesPerSecond;
+        }
+        Stage current = stage;
+        return new Snapshot(current == null ? null : current.tag(), bytesRead, totalBytes, recordsRead,
+                recordsRead / seconds, bytesPerSecond, etaSeconds);
+    }
+
+    /**
+     * The progress of a run at one moment.
+     *
+     * @param stage            The stage the run is in, lowercase; null before its first stage.
+     * @param bytesProcessed   The input bytes read so far.
+     * @param totalBytes       The size of the input in bytes, or -1 if it is not known.
+     * @param records          The movements read so far.
+     * @param recordsPerSecond The movements read per second since the run started.
+     * @param bytesPerSecond   The input bytes read per second since the run started.
+     * @param etaSeconds       The estimated seconds left at that rate; 0 once the run is over,
+     *                         null if the size of the input or the rate is not known yet.
+     */
+    public record Snapshot(String stage, long bytesProcessed, long totalBytes, long records,
+                           double recordsPerSecond, double bytesPerSecond, Double etaSeconds) {
+    }
+}
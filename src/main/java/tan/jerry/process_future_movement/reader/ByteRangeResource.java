@@ -0,0 +1,119 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * ByteRangeResource exposes a byte range of another resource as a resource of its own, so that
+ * a FlatFileItemReader can read one partition of an input file as if it were the whole file.
+ * The range is expected to start and end on line boundaries.
+ */
+public class ByteRangeResource extends AbstractResource {
+
+    private final Resource delegate;
+    private final long start;
+    private final long end;
+
+    /**
+     * @param delegate The resource holding the whole file.
+     * @param start    The offset of the first byte of the range.
+     * @param end      The offset just past the last byte of the range.
+     */
+    public ByteRangeResource(Resource delegate, long start, long end) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid byte range [" + start + ", " + end + ")");
+        }
+        this.delegate = delegate;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public boolean exists() {
+        return delegate.exists();
+    }
+
+    @Override
+    public long contentLength() {
+        return end - start;
+    }
+
+    @Override
+    public String getDescription() {
+        return delegate.getDescription() + " bytes [" + start + ", " + end + ")";
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        InputStream in = delegate.getInputStream();
+        try {
+            in.skipNBytes(start);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new FilterInputStream(in) {
+
+            private long remaining = end - start;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = super.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int read = super.read(b, off, (int) Math.min(len, remaining));
+                if (read > 0) {
+                    remaining -= read;
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(Math.min(n, remaining));
+                remaining -= skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() throws IOException {
+                return (int) Math.min(super.available(), remaining);
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * FileByteRange is a run of whole lines of a file, delimited by byte offsets that always fall
+ * on line boundaries. A range can hand its leading part off to another worker, which is how the
+ * parallel tasklet processors split an input file without reading it first: only the few bytes
+ * around each split point are looked at, to move the split to the next line start.
+ * <p>
+ * Ranges of the same file share one FileChannel, which supports concurrent positional reads and
+ * mappings. A range itself is not thread-safe and belongs to one worker at a time.
+ */
+public final class FileByteRange {
+
+    /**
+     * Largest region mapped at once; FileChannel.map is limited to Integer.MAX_VALUE bytes.
+     */
+    private static final int MAP_WINDOW_SIZE = 1 << 28;
+
+    /**
+     * Number of bytes read at a time while looking for the end of a line.
+     */
+    private static final int SCAN_BUFFER_SIZE = 512;
+
+    private final FileChannel channel;
+    private long start;
+    private final long end;
+
+    private FileByteRange(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Creates a range covering the whole file.
+     *
+     * @param channel The channel of the file, opened for reading.
+     * @return A range from the first to the last byte of the file.
+     * @throws IOException if the size of the file cannot be read.
+     */
+    public static FileByteRange of(FileChannel channel) throws IOException {
+        return new FileByteRange(channel, 0, channel.size());
+    }
+
+    public long start() {
+        return start;
+    }
+
+    public long end() {
+        return end;
+    }
+
+    public long size() {
+        return end - start;
+    }
+
+    public boolean isEmpty() {
+        return start >= end;
+    }
+
+    /**
+     * Splits off the lines in roughly the first {@code bytes} bytes of this range. The split point
+     * is moved forward to the next line start, so the returned range can be slightly larger; if no
+     * line starts after it, the whole range is returned and this range becomes empty.
+     *
+     * @param bytes The approximate number of bytes to split off.
+     * @return The leading part of this range; this range keeps the rest.
+     * @throws IOException if the bytes around the split point cannot be read.
+     */
+    public FileByteRange takePrefix(long bytes) throws IOException {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("bytes must be positive");
+        }
+        long splitPoint = bytes >= size() ? end : nextLineStart(start + bytes);
+        FileByteRange prefix = new FileByteRange(channel, start, splitPoint);
+        start = splitPoint;
+        return prefix;
+    }
+
+    /**
+     * Splits this range in two halves at the line boundary nearest after its middle.
+     *
+     * @param minSize The smallest size worth splitting off; ranges under twice this size are not split.
+     * @return The leading half of this range, or null if the range is too small to split.
+     * @throws IOException if the bytes around the split point cannot be read.
+     */
+    public FileByteRange trySplit(long minSize) throws IOException {
+        if (size() < 2 * Math.max(minSize, 1)) {
+            return null;
+        }
+        FileByteRange prefix = takePrefix(size() / 2);
+        if (isEmpty()) {
+            // the first half ended in a line running to the end of the range; undo the split
+            start = prefix.start;
+            return null;
+        }
+        return prefix;
+    }
+
+    /**
+     * Maps this range window by window and visits each of its non-blank lines.
+     *
+     * @param visitor The visitor called for every line.
+     * @throws IOException if the range cannot be mapped, or a line is longer than a map window.
+     */
+    public void forEachLine(FixedWidthLines.LineVisitor visitor) throws IOException {
+        long position = start;
+        while (position < end) {
+            int length = (int) Math.min(MAP_WINDOW_SIZE, end - position);
+            boolean lastWindow = position + length == end;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            int consumed = FixedWidthLines.forEachLine(window, length, lastWindow, visitor);
+            if (consumed == 0) {
+                throw new IOException("Line at offset " + position + " is longer than the map window");
+            }
+            position += consumed;
+        }
+    }
+
+    /**
+     * Finds the first line start at or after a position: the position itself if the byte before
+     * it is a line feed, otherwise the byte after the next line feed, or the end of this range.
+     */
+    private long nextLineStart(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long offset = position - 1;
+        while (offset < end) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read && offset + i < end; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return "FileByteRange[" + start + ", " + end + ")";
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.springframework.batch.item.file.transform.Range;
+import tan.jerry.process_future_movement.aggregate.FixedPoint;
+import tan.jerry.process_future_movement.aggregate.Metric;
+import tan.jerry.process_future_movement.aggregate.MovementMetrics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * FixedWidthLines reads fixed-width input lines straight from a ByteBuffer, using the column
+ * ranges of {@link ProcessFutureMovementReader}. It is shared by the byte-level tasklet
+ * processors so that none of them has to build a String or an InputRecord per line.
+ */
+public final class FixedWidthLines {
+
+    private static final Range QUANTITY_LONG_SIGN = ProcessFutureMovementReader.column("quantityLongSign");
+    private static final Range QUANTITY_LONG = ProcessFutureMovementReader.column("quantityLong");
+    private static final Range QUANTITY_SHORT_SIGN = ProcessFutureMovementReader.column("quantityShortSign");
+    private static final Range QUANTITY_SHORT = ProcessFutureMovementReader.column("quantityShort");
+    private static final Range EXCH_BROKER_FEE = ProcessFutureMovementReader.column("exchBrokerFeeDec");
+    private static final Range EXCH_BROKER_FEE_DC = ProcessFutureMovementReader.column("exchBrokerFeeDC");
+    private static final Range EXCH_BROKER_FEE_CURRENCY = ProcessFutureMovementReader.column("exchBrokerFeeCurCode");
+    private static final Range CLEARING_FEE = ProcessFutureMovementReader.column("clearingFeeDec");
+    private static final Range CLEARING_FEE_DC = ProcessFutureMovementReader.column("clearingFeeDC");
+    private static final Range CLEARING_FEE_CURRENCY = ProcessFutureMovementReader.column("clearingFeeCurCode");
+    private static final Range COMMISSION = ProcessFutureMovementReader.column("commission");
+    private static final Range COMMISSION_DC = ProcessFutureMovementReader.column("commissionDC");
+    private static final Range COMMISSION_CURRENCY = ProcessFutureMovementReader.column("commissionCurCode");
+    private static final Range TRANSACTION_PRICE = ProcessFutureMovementReader.column("transactionPriceDec");
+
+    private FixedWidthLines() {
+    }
+
+    /**
+     * Receives one non-blank line, without its line terminator.
+     */
+    @FunctionalInterface
+    public interface LineVisitor {
+        void visit(ByteBuffer buffer, int lineStart, int lineEnd);
+    }
+
+    /**
+     * Visits the complete lines in the first {@code length} bytes of a buffer. Lines end with
+     * '\n' or "\r\n"; blank lines are skipped.
+     *
+     * @param buffer     The buffer holding the lines, indexed absolutely from 0.
+     * @param length     The number of bytes to scan.
+     * @param endOfInput Whether the buffer ends the input, so that a line without a terminator is complete.
+     * @param visitor    The visitor called for every line.
+     * @return The number of bytes consumed; a trailing partial line is left for the caller to re-read.
+     */
+    public static int forEachLine(ByteBuffer buffer, int length, boolean endOfInput, LineVisitor visitor) {
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            if (lineEnd == length && !endOfInput) {
+                return lineStart;
+            }
+            int contentEnd = lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > lineStart) {
+                visitor.visit(buffer, lineStart, contentEnd);
+            }
+            lineStart = lineEnd + 1;
+        }
+        return length;
+    }
+
+    /**
+     * Calculates the total transaction amount of one line, with the same rules as the String-based
+     * tasklet processors: quantity long minus quantity short, each negated unless its sign is '+'.
+     *
+     * @param line                 The buffer holding the line.
+     * @param lineStart            The offset of the first byte of the line.
+     * @param lineEnd              The offset just past the last byte of the line.
+     * @param ignoreSignIndicators Whether the sign columns are ignored.
+     * @return The calculated total transaction amount.
+     */
+    public static double transactionAmount(ByteBuffer line, int lineStart, int lineEnd, boolean ignoreSignIndicators) {
+        return FixedPoint.toDouble(transactionUnits(line, lineStart, lineEnd, ignoreSignIndicators), FixedPoint.SCALE);
+    }
+
+    /**
+     * Calculates the total transaction amount of one line exactly, in units of {@link FixedPoint#SCALE}.
+     *
+     * @see #transactionAmount(ByteBuffer, int, int, boolean)
+     */
+    public static long transactionUnits(ByteBuffer line, int lineStart, int lineEnd, boolean ignoreSignIndicators) {
+        long quantityLong = parseUnits(line, lineStart, lineEnd, QUANTITY_LONG, FixedPoint.SCALE);
+        long quantityShort = parseUnits(line, lineStart, lineEnd, QUANTITY_SHORT, FixedPoint.SCALE);
+        if (!ignoreSignIndicators) {
+            quantityLong = isPlus(line, lineStart, lineEnd, QUANTITY_LONG_SIGN) ? quantityLong : -quantityLong;
+            quantityShort = isPlus(line, lineStart, lineEnd, QUANTITY_SHORT_SIGN) ? quantityShort : -quantityShort;
+        }
+        return quantityLong - quantityShort;
+    }
+
+    /**
+     * Measures every {@link Metric} of one line, with the same rules as
+     * {@link MovementMetrics#measure(tan.jerry.process_future_movement.domain.MovementRecord, boolean, long[])}.
+     *
+     * @param line                 The buffer holding the line.
+     * @param lineStart            The offset of the first byte of the line.
+     * @param lineEnd              The offset just past the last byte of the line.
+     * @param ignoreSignIndicators Whether {@link Metric#NET_QUANTITY} ignores the sign columns.
+     * @param values               The array receiving the values, of length {@link Metric#COUNT}.
+     * @return The values array.
+     * @throws NumberFormatException if a quantity is not a number.
+     */
+    public static long[] measure(ByteBuffer line, int lineStart, int lineEnd, boolean ignoreSignIndicators, long[] values) {
+        long quantityLong = parseUnits(line, lineStart, lineEnd, QUANTITY_LONG, FixedPoint.SCALE);
+        long quantityShort = parseUnits(line, lineStart, lineEnd, QUANTITY_SHORT, FixedPoint.SCALE);
+        long unsigned = quantityLong - quantityShort;
+        long signed = (isPlus(line, lineStart, lineEnd, QUANTITY_LONG_SIGN) ? quantityLong : -quantityLong)
+                - (isPlus(line, lineStart, lineEnd, QUANTITY_SHORT_SIGN) ? quantityShort : -quantityShort);
+        values[Metric.NET_QUANTITY.ordinal()] = ignoreSignIndicators ? unsigned : signed;
+        values[Metric.SIGNED_NET_QUANTITY.ordinal()] = signed;
+        values[Metric.UNSIGNED_NET_QUANTITY.ordinal()] = unsigned;
+        measureFee(line, lineStart, lineEnd, values, Metric.EXCH_BROKER_FEE, EXCH_BROKER_FEE, EXCH_BROKER_FEE_DC, EXCH_BROKER_FEE_CURRENCY);
+        measureFee(line, lineStart, lineEnd, values, Metric.CLEARING_FEE, CLEARING_FEE, CLEARING_FEE_DC, CLEARING_FEE_CURRENCY);
+        measureFee(line, lineStart, lineEnd, values, Metric.COMMISSION, COMMISSION, COMMISSION_DC, COMMISSION_CURRENCY);
+        try {
+            values[Metric.NOTIONAL.ordinal()] = MovementMetrics.notional(
+                    optionalUnits(line, lineStart, lineEnd, TRANSACTION_PRICE), quantityLong + quantityShort);
+        } catch (NumberFormatException e) {
+            values[Metric.NOTIONAL.ordinal()] = MovementMetrics.INVALID_AMOUNT;
+        }
+        return values;
+    }
+
+    /**
+     * Measures a fee and its currency like {@link MovementMetrics}: a malformed column makes the fee
+     * {@link MovementMetrics#INVALID_AMOUNT}, without a currency.
+     */
+    private static void measureFee(ByteBuffer line, int lineStart, int lineEnd, long[] values, Metric fee,
+                                   Range amount, Range debitCredit, Range currency) {
+        try {
+            values[fee.currency().ordinal()] = currency(line, lineStart, lineEnd, currency);
+            values[fee.ordinal()] = fee(line, lineStart, lineEnd, amount, debitCredit);
+        } catch (IllegalArgumentException e) {
+            values[fee.currency().ordinal()] = MovementMetrics.NO_CURRENCY;
+            values[fee.ordinal()] = MovementMetrics.INVALID_AMOUNT;
+        }
+    }
+
+    /**
+     * Checks whether a one-character sign column holds '+'.
+     */
+    public static boolean isPlus(ByteBuffer line, int lineStart, int lineEnd, Range column) {
+        return is(line, lineStart, lineEnd, column, '+');
+    }
+
+    private static boolean is(ByteBuffer line, int lineStart, int lineEnd, Range column, char indicator) {
+        int from = trimStart(line, fieldStart(lineStart, lineEnd, column), fieldEnd(lineStart, lineEnd, column));
+        int to = trimEnd(line, from, fieldEnd(lineStart, lineEnd, column));
+        return to - from == 1 && line.get(from) == indicator;
+    }
+
+    private static long fee(ByteBuffer line, int lineStart, int lineEnd, Range amount, Range debitCredit) {
+        long units = FixedPoint.rescale(optionalUnits(line, lineStart, lineEnd, amount), FixedPoint.FEE_SCALE, FixedPoint.SCALE);
+        return is(line, lineStart, lineEnd, debitCredit, 'D') ? -units : units;
+    }
+
+    /**
+     * Parses a column with implied decimals, or returns 0 if it is blank.
+     */
+    private static long optionalUnits(ByteBuffer line, int lineStart, int lineEnd, Range column) {
+        int from = trimStart(line, fieldStart(lineStart, lineEnd, column), fieldEnd(lineStart, lineEnd, column));
+        return from == fieldEnd(lineStart, lineEnd, column) ? 0L : parseUnits(line, lineStart, lineEnd, column, 0);
+    }
+
+    private static long currency(ByteBuffer line, int lineStart, int lineEnd, Range column) {
+        int from = trimStart(line, fieldStart(lineStart, lineEnd, column), fieldEnd(lineStart, lineEnd, column));
+        int to = trimEnd(line, from, fieldEnd(lineStart, lineEnd, column));
+        long packed = MovementMetrics.NO_CURRENCY;
+        for (int i = from; i < to; i++) {
+            byte c = line.get(i);
+            if (c < 0) {
+                throw new IllegalArgumentException("Currency code is not ASCII: " + ascii(line, from, to));
+            }
+            packed = packed << 8 | c;
+        }
+        return packed;
+    }
+
+    /**
+     * Parses a numeric column into units of 10<sup>-scale</sup>, like {@link FixedPoint#parse(CharSequence, int)}.
+     * Plain digit runs are accumulated in place; anything else is decoded and parsed as a decimal.
+     * For the fee and price columns, whose decimals are implied, a scale of 0 returns their digits,
+     * which are the units of {@link FixedPoint#FEE_SCALE} and {@link FixedPoint#PRICE_SCALE}.
+     *
+     * @throws NumberFormatException if the column is empty or not a number.
+     */
+    public static long parseUnits(ByteBuffer line, int lineStart, int lineEnd, Range column, int scale) {
+        int from = trimStart(line, fieldStart(lineStart, lineEnd, column), fieldEnd(lineStart, lineEnd, column));
+        int to = trimEnd(line, from, fieldEnd(lineStart, lineEnd, column));
+        if (from == to || to - from > 18) {
+            return FixedPoint.parseDecimal(ascii(line, from, to), scale);
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = line.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return FixedPoint.parseDecimal(ascii(line, from, to), scale);
+            }
+            value = value * 10 + digit;
+        }
+        return FixedPoint.scaleUp(value, scale);
+    }
+
+    /**
+     * Decodes a region of the buffer as ASCII.
+     */
+    public static String ascii(ByteBuffer line, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        line.get(from, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static int fieldStart(int lineStart, int lineEnd, Range column) {
+        return Math.min(lineStart + column.getMin() - 1, lineEnd);
+    }
+
+    private static int fieldEnd(int lineStart, int lineEnd, Range column) {
+        return Math.min(lineStart + column.getMax(), lineEnd);
+    }
+
+    private static int trimStart(ByteBuffer line, int from, int to) {
+        while (from < to && (line.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(ByteBuffer line, int from, int to) {
+        while (to > from && (line.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+}
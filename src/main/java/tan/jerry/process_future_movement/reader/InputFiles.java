@@ -0,0 +1,87 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * InputFiles locates input files for the processors, on the file system first and on the classpath
+ * otherwise, whether they read them through a FileChannel or a Reader.
+ */
+public final class InputFiles {
+
+    private InputFiles() {
+    }
+
+    /**
+     * Locates the input file as a Resource, with the same precedence as {@link #resolve(String)}:
+     * a file-system path when one is configured, the classpath otherwise. Spring Batch readers
+     * and partitioners read it through the Resource, so a classpath input inside a jar still works.
+     *
+     * @param inputFileName The name of the input file.
+     * @return The input file.
+     */
+    public static Resource resource(String inputFileName) {
+        Path path = Paths.get(inputFileName);
+        return Files.isRegularFile(path) ? new FileSystemResource(path) : new ClassPathResource(inputFileName);
+    }
+
+    /**
+     * Opens the input file as text, located like {@link #resource(String)}, so that a classpath
+     * input inside a jar can still be read line by line.
+     *
+     * @param inputFileName The name of the input file.
+     * @return A reader of the input file, which the caller closes.
+     * @throws IOException if the file cannot be found or opened.
+     */
+    public static BufferedReader newReader(String inputFileName) throws IOException {
+        return new BufferedReader(new InputStreamReader(resource(inputFileName).getInputStream()));
+    }
+
+    /**
+     * Resolves the input file on the file system first and falls back to the classpath,
+     * which is where the default Input.txt is packaged.
+     *
+     * @param inputFileName The name of the input file.
+     * @return The path of the input file.
+     * @throws IOException if the file cannot be found.
+     */
+    public static Path resolve(String inputFileName) throws IOException {
+        Path path = Paths.get(inputFileName);
+        if (Files.isRegularFile(path)) {
+            return path;
+        }
+        URL resource = InputFiles.class.getClassLoader().getResource(inputFileName);
+        if (resource == null || !"file".equals(resource.getProtocol())) {
+            throw new IOException("Input file not found or not mappable: " + inputFileName);
+        }
+        try {
+            return Paths.get(resource.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid input file location: " + resource, e);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.springframework.batch.item.file.transform.Range;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * InputLineValidator checks a fixed-width line with a few byte comparisons before it is parsed,
+ * so that a malformed line is reported with a reason instead of failing the parse with an exception.
+ * A line that passes can be parsed and measured without a NumberFormatException or an
+ * index out of bounds.
+ *
+ * <p>The checks are, in order: the line is not blank; it reaches the end of the transaction price,
+ * the last column the summary reads; its record code is one of the accepted codes; both quantities
+ * are digits; the fees and the transaction price are digits or blank. Validation allocates nothing
+ * and never throws, and the validator holds no mutable state, so one instance can be shared by
+ * every worker.</p>
+ */
+public final class InputLineValidator {
+
+    /**
+     * Why a line was rejected.
+     */
+    public enum Reason {
+        /**
+         * The line holds nothing but whitespace.
+         */
+        BLANK,
+        /**
+         * The line ends before the transaction price column.
+         */
+        TOO_SHORT,
+        /**
+         * The record code is not one of the accepted codes.
+         */
+        BAD_RECORD_CODE,
+        /**
+         * A quantity is blank or not made of digits.
+         */
+        BAD_QUANTITY,
+        /**
+         * A fee or the commission is not made of digits.
+         */
+        BAD_FEE,
+        /**
+         * The transaction price is not made of digits.
+         */
+        BAD_PRICE
+    }
+
+    /**
+     * The record code of the future movements in Input.txt.
+     */
+    public static final Set<String> DEFAULT_RECORD_CODES = Set.of("315");
+
+    private static final Range RECORD_CODE = ProcessFutureMovementReader.column("recordCode");
+    private static final Range QUANTITY_LONG = ProcessFutureMovementReader.column("quantityLong");
+    private static final Range QUANTITY_SHORT = ProcessFutureMovementReader.column("quantityShort");
+    private static final Range[] FEES = {
+            ProcessFutureMovementReader.column("exchBrokerFeeDec"),
+            ProcessFutureMovementReader.column("clearingFeeDec"),
+            ProcessFutureMovementReader.column("commission")
+    };
+    private static final Range TRANSACTION_PRICE = ProcessFutureMovementReader.column("transactionPriceDec");
+
+    /**
+     * The shortest valid line: it must reach the end of the transaction price.
+     */
+    public static final int MIN_LENGTH = TRANSACTION_PRICE.getMax();
+
+    private static final int RECORD_CODE_LENGTH = RECORD_CODE.getMax() - RECORD_CODE.getMin() + 1;
+
+    /**
+     * The accepted record codes, one after the other.
+     */
+    private final byte[] recordCodes;
+
+    /**
+     * Constructs a validator accepting the {@link #DEFAULT_RECORD_CODES}.
+     */
+    public InputLineValidator() {
+        this(DEFAULT_RECORD_CODES);
+    }
+
+    /**
+     * Constructs a validator accepting the given record codes.
+     *
+     * @param recordCodes The accepted record codes, each as wide as the record code column.
+     * @throws IllegalArgumentException if no code is given or a code has the wrong width.
+     */
+    public InputLineValidator(Collection<String> recordCodes) {
+        if (recordCodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one record code must be accepted");
+        }
+        this.recordCodes = new byte[recordCodes.size() * RECORD_CODE_LENGTH];
+        int position = 0;
+        for (String code : recordCodes) {
+            if (code.length() != RECORD_CODE_LENGTH) {
+                throw new IllegalArgumentException("Record code must be " + RECORD_CODE_LENGTH + " characters: " + code);
+            }
+            for (int i = 0; i < RECORD_CODE_LENGTH; i++) {
+                this.recordCodes[position++] = (byte) code.charAt(i);
+            }
+        }
+    }
+
+    /**
+     * Validates a line read as text.
+     *
+     * @param line The line, without its line terminator.
+     * @return The reason the line is rejected, or null if it is valid.
+     */
+    public Reason validate(CharSequence line) {
+        int length = line.length();
+        if (isBlank(line, 0, length)) {
+            return Reason.BLANK;
+        }
+        if (length < MIN_LENGTH) {
+            return Reason.TOO_SHORT;
+        }
+        if (!isAcceptedRecordCode(line)) {
+            return Reason.BAD_RECORD_CODE;
+        }
+        if (!isDigits(line, QUANTITY_LONG, false) || !isDigits(line, QUANTITY_SHORT, false)) {
+            return Reason.BAD_QUANTITY;
+        }
+        for (Range fee : FEES) {
+            if (!isDigits(line, fee, true)) {
+                return Reason.BAD_FEE;
+            }
+        }
+        return isDigits(line, TRANSACTION_PRICE, true) ? null : Reason.BAD_PRICE;
+    }
+
+    /**
+     * Validates a line straight from the bytes of a buffer.
+     *
+     * @param line      The buffer holding the line, indexed absolutely.
+     * @param lineStart The index of the first byte of the line.
+     * @param lineEnd   The index just past the last byte of the line, excluding the line terminator.
+     * @return The reason the line is rejected, or null if it is valid.
+     */
+    public Reason validate(ByteBuffer line, int lineStart, int lineEnd) {
+        if (isBlank(line, lineStart, lineEnd)) {
+            return Reason.BLANK;
+        }
+        if (lineEnd - lineStart < MIN_LENGTH) {
+            return Reason.TOO_SHORT;
+        }
+        if (!isAcceptedRecordCode(line, lineStart)) {
+            return Reason.BAD_RECORD_CODE;
+        }
+        if (!isDigits(line, lineStart, QUANTITY_LONG, false) || !isDigits(line, lineStart, QUANTITY_SHORT, false)) {
+            return Reason.BAD_QUANTITY;
+        }
+        for (Range fee : FEES) {
+            if (!isDigits(line, lineStart, fee, true)) {
+                return Reason.BAD_FEE;
+            }
+        }
+        return isDigits(line, lineStart, TRANSACTION_PRICE, true) ? null : Reason.BAD_PRICE;
+    }
+
+    private boolean isAcceptedRecordCode(CharSequence line) {
+        int start = RECORD_CODE.getMin() - 1;
+        for (int code = 0; code < recordCodes.length; code += RECORD_CODE_LENGTH) {
+            int i = 0;
+            while (i < RECORD_CODE_LENGTH && line.charAt(start + i) == recordCodes[code + i]) {
+                i++;
+            }
+            if (i == RECORD_CODE_LENGTH) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isAcceptedRecordCode(ByteBuffer line, int lineStart) {
+        int start = lineStart + RECORD_CODE.getMin() - 1;
+        for (int code = 0; code < recordCodes.length; code += RECORD_CODE_LENGTH) {
+            int i = 0;
+            while (i < RECORD_CODE_LENGTH && line.get(start + i) == recordCodes[code + i]) {
+                i++;
+            }
+            if (i == RECORD_CODE_LENGTH) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks that a column holds digits, surrounded by optional padding; a blank column passes only if optional.
+     */
+    private static boolean isDigits(CharSequence line, Range column, boolean optional) {
+        int from = column.getMin() - 1;
+        int to = column.getMax();
+        while (from < to && line.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && line.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        if (from == to) {
+            return optional;
+        }
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigits(ByteBuffer line, int lineStart, Range column, boolean optional) {
+        int from = lineStart + column.getMin() - 1;
+        int to = lineStart + column.getMax();
+        while (from < to && (line.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (line.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+        if (from == to) {
+            return optional;
+        }
+        for (int i = from; i < to; i++) {
+            byte b = line.get(i);
+            if (b < '0' || b > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBlank(CharSequence line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBlank(ByteBuffer line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ((line.get(i) & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.file.transform.IncorrectLineLengthException;
+import org.springframework.batch.item.file.transform.Range;
+import tan.jerry.process_future_movement.domain.InputRecord;
+
+import java.lang.reflect.RecordComponent;
+
+/**
+ * InputRecordLineMapper maps a fixed-width line straight to an InputRecord through its canonical
+ * constructor, using the column layout of {@link ProcessFutureMovementReader}. It produces the
+ * same records as a FixedLengthTokenizer followed by a RecordFieldSetMapper, values untrimmed,
+ * but without building a FieldSet or binding its values reflectively for every line.
+ * <p>
+ * In lenient mode, fields that a short line does not reach are empty and a field the line ends
+ * in is cut short, like a non-strict FixedLengthTokenizer. In strict mode, a line must reach the
+ * start of the last field, the free-form filler, or an IncorrectLineLengthException is thrown.
+ */
+public class InputRecordLineMapper implements LineMapper<InputRecord> {
+
+    /**
+     * 0-based start offsets of the fields, in the order of the InputRecord components.
+     */
+    private final int[] starts;
+
+    /**
+     * 0-based, exclusive end offsets of the fields, in the order of the InputRecord components.
+     */
+    private final int[] ends;
+
+    private final boolean strict;
+
+    private final int minimumLength;
+
+    /**
+     * Constructs a new InputRecordLineMapper.
+     *
+     * @param strict true to reject lines that end before the filler field.
+     */
+    public InputRecordLineMapper(boolean strict) {
+        RecordComponent[] components = InputRecord.class.getRecordComponents();
+        this.starts = new int[components.length];
+        this.ends = new int[components.length];
+        for (int i = 0; i < components.length; i++) {
+            Range column = ProcessFutureMovementReader.column(components[i].getName());
+            starts[i] = column.getMin() - 1;
+            ends[i] = column.getMax();
+        }
+        this.strict = strict;
+        this.minimumLength = starts[starts.length - 1];
+    }
+
+    /**
+     * Maps one line to an InputRecord.
+     *
+     * @param line       The line, without its line terminator.
+     * @param lineNumber The line number, not used.
+     * @return The InputRecord holding the fields of the line.
+     * @throws IncorrectLineLengthException if the mapper is strict and the line ends before the filler field.
+     */
+    @Override
+    public InputRecord mapLine(String line, int lineNumber) {
+        if (strict && line.length() < minimumLength) {
+            throw new IncorrectLineLengthException("Line is shorter than the input record layout: expected at least "
+                    + minimumLength + " characters, found " + line.length(), minimumLength, line.length(), line);
+        }
+        return new InputRecord(
+                field(line, 0), field(line, 1), field(line, 2), field(line, 3), field(line, 4),
+                field(line, 5), field(line, 6), field(line, 7), field(line, 8), field(line, 9),
+                field(line, 10), field(line, 11), field(line, 12), field(line, 13), field(line, 14),
+                field(line, 15), field(line, 16), field(line, 17), field(line, 18), field(line, 19),
+                field(line, 20), field(line, 21), field(line, 22), field(line, 23), field(line, 24),
+                field(line, 25), field(line, 26), field(line, 27), field(line, 28), field(line, 29),
+                field(line, 30), field(line, 31), field(line, 32), field(line, 33), field(line, 34));
+    }
+
+    private String field(String line, int index) {
+        int start = starts[index];
+        int length = line.length();
+        if (start >= length) {
+            return "";
+        }
+        return line.substring(start, Math.min(ends[index], length));
+    }
+}
@@ -0,0 +1,343 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.springframework.batch.item.file.transform.Range;
+import tan.jerry.process_future_movement.domain.InputRecord;
+import tan.jerry.process_future_movement.domain.MovementRecord;
+
+import java.lang.reflect.RecordComponent;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * InputRecordView is a flyweight {@link MovementRecord} over one fixed-width line, either the raw
+ * bytes of a buffer or a String. Wrapping a line only records where it is; a field is decoded, with
+ * the column layout of {@link ProcessFutureMovementReader}, the first time its accessor is called,
+ * so the summary path, which reads about ten of the 35 fields, never decodes the rest, such as the
+ * 127-character filler.
+ *
+ * <p>Field values are trimmed, like those of the tasklet processors' parseInputRecord, and fields a
+ * short line does not reach are empty, like the lenient line mapper. One view is meant to be reused
+ * from line to line in a hot loop: each {@code wrap} replaces the line, so a view must not be kept,
+ * nor handed to code that keeps its records, such as a Spring Batch chunk. Use {@link #toInputRecord()}
+ * to keep a line. A view is not thread-safe; use one per worker.</p>
+ */
+public final class InputRecordView implements MovementRecord {
+
+    private static final int FIELDS;
+
+    /**
+     * 0-based start offsets of the fields, in the order of the InputRecord components.
+     */
+    private static final int[] STARTS;
+
+    /**
+     * 0-based, exclusive end offsets of the fields, in the order of the InputRecord components.
+     */
+    private static final int[] ENDS;
+
+    static {
+        RecordComponent[] components = InputRecord.class.getRecordComponents();
+        FIELDS = components.length;
+        STARTS = new int[FIELDS];
+        ENDS = new int[FIELDS];
+        for (int i = 0; i < FIELDS; i++) {
+            Range column = ProcessFutureMovementReader.column(components[i].getName());
+            STARTS[i] = column.getMin() - 1;
+            ENDS[i] = column.getMax();
+        }
+    }
+
+    private ByteBuffer bytes;
+    private String text;
+    private int lineStart;
+    private int lineEnd;
+
+    /**
+     * The fields decoded since the line was wrapped; null until their accessor is called.
+     */
+    private final String[] decoded = new String[FIELDS];
+
+    /**
+     * Points the view at a line of a buffer.
+     *
+     * @param buffer    The buffer holding the line, indexed absolutely.
+     * @param lineStart The index of the first byte of the line.
+     * @param lineEnd   The index just past the last byte of the line, excluding the line terminator.
+     * @return This view.
+     */
+    public InputRecordView wrap(ByteBuffer buffer, int lineStart, int lineEnd) {
+        this.bytes = buffer;
+        this.text = null;
+        this.lineStart = lineStart;
+        this.lineEnd = lineEnd;
+        Arrays.fill(decoded, null);
+        return this;
+    }
+
+    /**
+     * Points the view at a line read as a String.
+     *
+     * @param line The line, without its line terminator.
+     * @return This view.
+     */
+    public InputRecordView wrap(String line) {
+        this.bytes = null;
+        this.text = line;
+        this.lineStart = 0;
+        this.lineEnd = line.length();
+        Arrays.fill(decoded, null);
+        return this;
+    }
+
+    /**
+     * Decodes every field of the current line into an InputRecord, which can be kept after the
+     * view moves on.
+     *
+     * @return A new InputRecord with the same field values as the view.
+     */
+    public InputRecord toInputRecord() {
+        return new InputRecord(
+                field(0), field(1), field(2), field(3), field(4),
+                field(5), field(6), field(7), field(8), field(9),
+                field(10), field(11), field(12), field(13), field(14),
+                field(15), field(16), field(17), field(18), field(19),
+                field(20), field(21), field(22), field(23), field(24),
+                field(25), field(26), field(27), field(28), field(29),
+                field(30), field(31), field(32), field(33), field(34));
+    }
+
+    @Override
+    public String recordCode() {
+        return field(0);
+    }
+
+    @Override
+    public String clientType() {
+        return field(1);
+    }
+
+    @Override
+    public String clientNumber() {
+        return field(2);
+    }
+
+    @Override
+    public String accountNumber() {
+        return field(3);
+    }
+
+    @Override
+    public String subAccountNumber() {
+        return field(4);
+    }
+
+    @Override
+    public String oppositePartyCode() {
+        return field(5);
+    }
+
+    @Override
+    public String productGroupCode() {
+        return field(6);
+    }
+
+    @Override
+    public String exchangeCode() {
+        return field(7);
+    }
+
+    @Override
+    public String symbol() {
+        return field(8);
+    }
+
+    @Override
+    public String expirationDate() {
+        return field(9);
+    }
+
+    @Override
+    public String currencyCode() {
+        return field(10);
+    }
+
+    @Override
+    public String movementCode() {
+        return field(11);
+    }
+
+    @Override
+    public String buySellCode() {
+        return field(12);
+    }
+
+    @Override
+    public String quantityLongSign() {
+        return field(13);
+    }
+
+    @Override
+    public String quantityLong() {
+        return field(14);
+    }
+
+    @Override
+    public String quantityShortSign() {
+        return field(15);
+    }
+
+    @Override
+    public String quantityShort() {
+        return field(16);
+    }
+
+    @Override
+    public String exchBrokerFeeDec() {
+        return field(17);
+    }
+
+    @Override
+    public String exchBrokerFeeDC() {
+        return field(18);
+    }
+
+    @Override
+    public String exchBrokerFeeCurCode() {
+        return field(19);
+    }
+
+    @Override
+    public String clearingFeeDec() {
+        return field(20);
+    }
+
+    @Override
+    public String clearingFeeDC() {
+        return field(21);
+    }
+
+    @Override
+    public String clearingFeeCurCode() {
+        return field(22);
+    }
+
+    @Override
+    public String commission() {
+        return field(23);
+    }
+
+    @Override
+    public String commissionDC() {
+        return field(24);
+    }
+
+    @Override
+    public String commissionCurCode() {
+        return field(25);
+    }
+
+    @Override
+    public String transactionDate() {
+        return field(26);
+    }
+
+    @Override
+    public String futureReference() {
+        return field(27);
+    }
+
+    @Override
+    public String ticketNumber() {
+        return field(28);
+    }
+
+    @Override
+    public String externalNumber() {
+        return field(29);
+    }
+
+    @Override
+    public String transactionPriceDec() {
+        return field(30);
+    }
+
+    @Override
+    public String traderInitials() {
+        return field(31);
+    }
+
+    @Override
+    public String oppositeTraderId() {
+        return field(32);
+    }
+
+    @Override
+    public String openCloseCode() {
+        return field(33);
+    }
+
+    @Override
+    public String filler() {
+        return field(34);
+    }
+
+    /**
+     * Lists the fields of the current line, decoding them all; meant for log and error messages.
+     */
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "InputRecordView[", "]");
+        for (int i = 0; i < FIELDS; i++) {
+            joiner.add(field(i));
+        }
+        return joiner.toString();
+    }
+
+    private String field(int index) {
+        String value = decoded[index];
+        if (value == null) {
+            value = decode(index);
+            decoded[index] = value;
+        }
+        return value;
+    }
+
+    private String decode(int index) {
+        int from = Math.min(lineStart + STARTS[index], lineEnd);
+        int to = Math.min(lineStart + ENDS[index], lineEnd);
+        if (text != null) {
+            while (from < to && text.charAt(from) <= ' ') {
+                from++;
+            }
+            while (to > from && text.charAt(to - 1) <= ' ') {
+                to--;
+            }
+            return text.substring(from, to);
+        }
+        if (bytes == null) {
+            throw new IllegalStateException("No line has been wrapped");
+        }
+        while (from < to && (bytes.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (bytes.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+        return from == to ? "" : FixedWidthLines.ascii(bytes, from, to);
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * LineBatchReader reads an input file in batches of lines on a background thread, keeping
+ * at most a fixed number of batches queued ahead of the consumer. Processors use it to
+ * stream records into aggregation: memory stays bounded by the batch size and prefetch
+ * depth rather than the file size, and reading overlaps with parsing and summing.
+ */
+public class LineBatchReader implements AutoCloseable {
+
+    /**
+     * Default number of lines per batch; about 700 KB of 176-character lines.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    private static final Object END_OF_INPUT = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final Thread prefetcher;
+    private boolean exhausted;
+
+    /**
+     * Constructs a LineBatchReader and starts prefetching.
+     *
+     * @param reader          The reader to read lines from; it is closed when reading ends or the batch reader is closed.
+     * @param batchSize       The number of lines per batch.
+     * @param prefetchBatches The number of batches that may be read ahead of the consumer.
+     */
+    public LineBatchReader(BufferedReader reader, int batchSize, int prefetchBatches) {
+        if (batchSize < 1 || prefetchBatches < 1) {
+            throw new IllegalArgumentException("batchSize and prefetchBatches must be positive");
+        }
+        this.queue = new ArrayBlockingQueue<>(prefetchBatches + 1);
+        this.prefetcher = new Thread(() -> prefetch(reader, batchSize), "pfm-line-batch-reader");
+        this.prefetcher.setDaemon(true);
+        this.prefetcher.start();
+    }
+
+    /**
+     * Returns the next batch of lines, blocking until the background thread has read it.
+     *
+     * @return The next non-empty batch of lines, or null once the input is exhausted.
+     * @throws IOException if reading the input failed.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> nextBatch() throws IOException {
+        if (exhausted) {
+            return null;
+        }
+        Object next;
+        try {
+            next = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the next batch of lines");
+        }
+        if (next == END_OF_INPUT) {
+            exhausted = true;
+            return null;
+        }
+        if (next instanceof IOException e) {
+            exhausted = true;
+            throw e;
+        }
+        return (List<String>) next;
+    }
+
+    /**
+     * Stops prefetching. Batches already read are discarded.
+     */
+    @Override
+    public void close() {
+        exhausted = true;
+        prefetcher.interrupt();
+    }
+
+    private void prefetch(BufferedReader reader, int batchSize) {
+        Object last = END_OF_INPUT;
+        try (reader) {
+            List<String> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                batch.add(line);
+                if (batch.size() == batchSize) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                queue.put(batch);
+            }
+        } catch (IOException e) {
+            last = e;
+        } catch (InterruptedException e) {
+            return; // closed by the consumer
+        }
+        try {
+            queue.put(last);
+        } catch (InterruptedException e) {
+            // closed by the consumer
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ProcessFutureMovementPartitioner splits the input file into newline-aligned byte ranges of
+ * about equal size, one per partition of pfm_step. Each range is stored in the ExecutionContext
+ * of its partition, where {@link ProcessFutureMovementReader} picks it up; since the reader keeps
+ * its own restart state in the same context, a restarted partition resumes within its range.
+ * <p>
+ * Input that is not a plain file, such as a resource inside a jar, cannot be split and is
+ * read as a single partition, with a warning; configure input.file.name as a file-system path
+ * to split it.
+ */
+public class ProcessFutureMovementPartitioner implements Partitioner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessFutureMovementPartitioner.class);
+
+    /**
+     * ExecutionContext key of the offset of the first byte of a partition.
+     */
+    public static final String START_BYTE_KEY = "pfm.partition.start.byte";
+
+    /**
+     * ExecutionContext key of the offset just past the last byte of a partition.
+     */
+    public static final String END_BYTE_KEY = "pfm.partition.end.byte";
+
+    private static final String PARTITION_PREFIX = "partition";
+
+    private final Resource input;
+
+    /**
+     * @param input The input file to split.
+     */
+    public ProcessFutureMovementPartitioner(Resource input) {
+        this.input = input;
+    }
+
+    /**
+     * Splits the input file into at most {@code gridSize} partitions; fewer when the file has
+     * fewer lines, and one when it cannot be split.
+     *
+     * @param gridSize The number of partitions wanted.
+     * @return The ExecutionContext of each partition, by partition name.
+     */
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+        if (!input.isFile()) {
+            logger.warn("{} is not a file and cannot be split; reading it as a single partition instead of {}",
+                    input.getDescription(), gridSize);
+            partitions.put(PARTITION_PREFIX + 0, new ExecutionContext());
+            return partitions;
+        }
+        try (FileChannel channel = FileChannel.open(input.getFile().toPath(), StandardOpenOption.READ)) {
+            FileByteRange remaining = FileByteRange.of(channel);
+            long rangeSize = Math.max(1, (remaining.size() + gridSize - 1) / Math.max(gridSize, 1));
+            do {
+                FileByteRange range = remaining.isEmpty() ? remaining : remaining.takePrefix(rangeSize);
+                ExecutionContext context = new ExecutionContext();
+                context.putLong(START_BYTE_KEY, range.start());
+                context.putLong(END_BYTE_KEY, range.end());
+                partitions.put(PARTITION_PREFIX + partitions.size(), context);
+            } while (!remaining.isEmpty());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to partition " + input.getDescription(), e);
+        }
+        return partitions;
+    }
+}
@@ -15,95 +15,305 @@
 package tan.jerry.process_future_movement.reader;
 
 import jakarta.annotation.PostConstruct;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.file.FlatFileItemReader;
-import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
-import org.springframework.batch.item.file.mapping.DefaultLineMapper;
-import org.springframework.batch.item.file.transform.FixedLengthTokenizer;
+import org.springframework.batch.item.file.LineMapper;
 import org.springframework.batch.item.file.transform.Range;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
 import tan.jerry.process_future_movement.domain.InputRecord;
 import tan.jerry.process_future_movement.log.Ayaka;
+import tan.jerry.process_future_movement.reader.InputLineValidator.Reason;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * ProcessFutureMovementReader is a custom implementation of FlatFileItemReader for reading
  * fixed-width input records from a file and mapping them to InputRecord objects.
  * It utilizes the Ayaka logging system to provide detailed logs, particularly useful
  * when Spring framework logging configurations override application-level settings.
+ * <p>
+ * When a {@link QuarantineWriter} is set, every line is checked by an {@link InputLineValidator}
+ * before it is mapped; a rejected line is quarantined and skipped instead of reaching the writer,
+ * where it would fail the chunk. The lines quarantined by a partition are counted per reason in its
+ * ExecutionContext. Rejected lines are handed to the quarantine when the read position is saved,
+ * before the chunk that read them is committed, so a restarted partition, which reads again the
+ * lines after its last commit, quarantines each line once.
  */
 public class ProcessFutureMovementReader extends FlatFileItemReader<InputRecord> {
 
+    /**
+     * Names of the fixed-width fields, in the same order as {@link #COLUMNS}.
+     */
+    private static final String[] FIELD_NAMES = {
+            "recordCode", "clientType", "clientNumber", "accountNumber", "subAccountNumber",
+            "oppositePartyCode", "productGroupCode", "exchangeCode", "symbol", "expirationDate",
+            "currencyCode", "movementCode", "buySellCode", "quantityLongSign", "quantityLong",
+            "quantityShortSign", "quantityShort", "exchBrokerFeeDec", "exchBrokerFeeDC", "exchBrokerFeeCurCode",
+            "clearingFeeDec", "clearingFeeDC", "clearingFeeCurCode", "commission", "commissionDC",
+            "commissionCurCode", "transactionDate", "futureReference", "ticketNumber", "externalNumber",
+            "transactionPriceDec", "traderInitials", "oppositeTraderId", "openCloseCode", "filler"
+    };
+
+    /**
+     * Column ranges (1-based, inclusive) of the fixed-width fields, in the same order as {@link #FIELD_NAMES}.
+     */
+    private static final Range[] COLUMNS = {
+            new Range(1, 3),    // recordCode
+            new Range(4, 7),    // clientType
+            new Range(8, 11),   // clientNumber
+            new Range(12, 15),  // accountNumber
+            new Range(16, 19),  // subAccountNumber
+            new Range(20, 25),  // oppositePartyCode
+            new Range(26, 27),  // productGroupCode
+            new Range(28, 31),  // exchangeCode
+            new Range(32, 37),  // symbol
+            new Range(38, 45),  // expirationDate
+            new Range(46, 48),  // currencyCode
+            new Range(49, 50),  // movementCode
+            new Range(51, 51),  // buySellCode
+            new Range(52, 52),  // quantityLongSign
+            new Range(53, 62),  // quantityLong
+            new Range(63, 63),  // quantityShortSign
+            new Range(64, 73),  // quantityShort
+            new Range(74, 85),  // exchBrokerFeeDec
+            new Range(86, 86),  // exchBrokerFeeDC
+            new Range(87, 89),  // exchBrokerFeeCurCode
+            new Range(90, 101), // clearingFeeDec
+            new Range(102, 102), // clearingFeeDC
+            new Range(103, 105), // clearingFeeCurCode
+            new Range(106, 117), // commission
+            new Range(118, 118), // commissionDC
+            new Range(119, 121), // commissionCurCode
+            new Range(122, 129), // transactionDate
+            new Range(130, 135), // futureReference
+            new Range(136, 141), // ticketNumber
+            new Range(142, 147), // externalNumber
+            new Range(148, 162), // transactionPriceDec
+            new Range(163, 168), // traderInitials
+            new Range(169, 175), // oppositeTraderId
+            new Range(176, 176), // openCloseCode
+            new Range(177, 303)  // filler
+    };
+
     @Value("${input.file.name}")
     private String inputFileName;
 
+    @Value("${pfm.reader.strict:false}")
+    private boolean strict;
+
     @Value("${ayaka.log.name}")
     private String ayaka_log;
 
     private Ayaka logger;
 
+    /**
+     * The whole input file; a partition reads a byte range of it.
+     */
+    private Resource input;
+
+    private InputLineValidator validator = new InputLineValidator();
+
+    private QuarantineWriter quarantine;
+
+    /**
+     * Lines quarantined by this reader, per {@link Reason}; saved in the ExecutionContext.
+     */
+    private final long[] quarantined = new long[Reason.values().length];
+
+    /**
+     * Lines rejected since the read position was last saved, and their reasons.
+     */
+    private final List<Reason> pendingReasons = new ArrayList<>();
+
+    private final List<String> pendingLines = new ArrayList<>();
+
+    /**
+     * Set by the line mapper when it quarantines the line it was given, which it then maps to null.
+     */
+    private boolean lineQuarantined;
+
+    /**
+     * Looks up the column range of a fixed-width field by name, so that byte-level parsers
+     * can share the layout used by the tokenizer instead of repeating the offsets.
+     *
+     * @param fieldName The field name, as declared on InputRecord.
+     * @return The 1-based, inclusive column range of the field.
+     * @throws IllegalArgumentException if the field name is unknown.
+     */
+    public static Range column(String fieldName) {
+        for (int i = 0; i < FIELD_NAMES.length; i++) {
+            if (FIELD_NAMES[i].equals(fieldName)) {
+                return COLUMNS[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown input field: " + fieldName);
+    }
+
     /**
      * Initializes the reader by setting the resource to the specified input file
-     * and configuring the line mapper and tokenizer for reading fixed-width records.
+     * and configuring the line mapper for reading fixed-width records. Unless pfm.reader.strict
+     * is set, lines shorter than the layout are allowed and their missing fields are empty.
      * The Ayaka log is used to capture detailed logging information.
      */
     @PostConstruct
     public void init() {
-        setResource(new ClassPathResource(inputFileName));
-
-        setLineMapper(new DefaultLineMapper<InputRecord>() {{
-            setLineTokenizer(new FixedLengthTokenizer() {{
-                setStrict(false); // Allow lines shorter than specified ranges
-                setNames("recordCode", "clientType", "clientNumber", "accountNumber", "subAccountNumber",
-                        "oppositePartyCode", "productGroupCode", "exchangeCode", "symbol", "expirationDate",
-                        "currencyCode", "movementCode", "buySellCode", "quantityLongSign", "quantityLong",
-                        "quantityShortSign", "quantityShort", "exchBrokerFeeDec", "exchBrokerFeeDC", "exchBrokerFeeCurCode",
-                        "clearingFeeDec", "clearingFeeDC", "clearingFeeCurCode", "commission", "commissionDC",
-                        "commissionCurCode", "transactionDate", "futureReference", "ticketNumber", "externalNumber",
-                        "transactionPriceDec", "traderInitials", "oppositeTraderId", "openCloseCode", "filler");
-                setColumns(
-                        new Range(1, 3),    // recordCode
-                        new Range(4, 7),    // clientType
-                        new Range(8, 11),   // clientNumber
-                        new Range(12, 15),  // accountNumber
-                        new Range(16, 19),  // subAccountNumber
-                        new Range(20, 25),  // oppositePartyCode
-                        new Range(26, 27),  // productGroupCode
-                        new Range(28, 31),  // exchangeCode
-                        new Range(32, 37),  // symbol
-                        new Range(38, 45),  // expirationDate
-                        new Range(46, 48),  // currencyCode
-                        new Range(49, 50),  // movementCode
-                        new Range(51, 51),  // buySellCode
-                        new Range(52, 52),  // quantityLongSign
-                        new Range(53, 62),  // quantityLong
-                        new Range(63, 63),  // quantityShortSign
-                        new Range(64, 73),  // quantityShort
-                        new Range(74, 85),  // exchBrokerFeeDec
-                        new Range(86, 86),  // exchBrokerFeeDC
-                        new Range(87, 89),  // exchBrokerFeeCurCode
-                        new Range(90, 101), // clearingFeeDec
-                        new Range(102, 102), // clearingFeeDC
-                        new Range(103, 105), // clearingFeeCurCode
-                        new Range(106, 117), // commission
-                        new Range(118, 118), // commissionDC
-                        new Range(119, 121), // commissionCurCode
-                        new Range(122, 129), // transactionDate
-                        new Range(130, 135), // futureReference
-                        new Range(136, 141), // ticketNumber
-                        new Range(142, 147), // externalNumber
-                        new Range(148, 162), // transactionPriceDec
-                        new Range(163, 168), // traderInitials
-                        new Range(169, 175), // oppositeTraderId
-                        new Range(176, 176), // openCloseCode
-                        new Range(177, 303)  // filler
-                );
-            }});
-            setFieldSetMapper(new BeanWrapperFieldSetMapper<InputRecord>() {{
-                setTargetType(InputRecord.class);
-            }});
-        }});
+        logger = new Ayaka("pfm_reader" + ayaka_log);
+        input = InputFiles.resource(inputFileName);
+        setResource(input);
+
+        LineMapper<InputRecord> mapper = new InputRecordLineMapper(strict); // builds InputRecord from the column offsets, without a FieldSet
+        setLineMapper(quarantine == null ? mapper : (line, lineNumber) -> {
+            Reason reason = validator.validate(line);
+            if (reason == null) {
+                return mapper.mapLine(line, lineNumber);
+            }
+            pendingReasons.add(reason);
+            pendingLines.add(line);
+            quarantined[reason.ordinal()]++;
+            lineQuarantined = true;
+            return null;
+        });
     }//init
 
+    /**
+     * Sets the validator checking every line before it is mapped, when a quarantine is set.
+     *
+     * @param validator The validator; by default one accepting {@link InputLineValidator#DEFAULT_RECORD_CODES}.
+     */
+    public void setValidator(InputLineValidator validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * Sets the quarantine receiving the lines the validator rejects. Without one, lines are not
+     * validated, and a malformed line fails when it is parsed.
+     *
+     * @param quarantine The quarantine, shared by the partitions.
+     */
+    public void setQuarantine(QuarantineWriter quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * @return The lines this reader has quarantined, per reason, including those counted before a restart.
+     */
+    public Map<Reason, Long> quarantined() {
+        Map<Reason, Long> counts = new EnumMap<>(Reason.class);
+        for (Reason reason : Reason.values()) {
+            counts.put(reason, quarantined[reason.ordinal()]);
+        }
+        return counts;
+    }
+
+    /**
+     * Opens the reader. When pfm_step is partitioned, the ExecutionContext of the partition holds
+     * the byte range set by {@link ProcessFutureMovementPartitioner}, and only that range is read;
+     * if the reader saves its state, the read count saved in the same context then restarts the
+     * partition within its range, and the quarantine counts resume from those saved with it.
+     *
+     * @param executionContext The ExecutionContext of the step or partition.
+     */
+    @Override
+    public void open(ExecutionContext executionContext) {
+        if (input != null && executionContext.containsKey(ProcessFutureMovementPartitioner.START_BYTE_KEY)) {
+            setResource(new ByteRangeResource(input,
+                    executionContext.getLong(ProcessFutureMovementPartitioner.START_BYTE_KEY),
+                    executionContext.getLong(ProcessFutureMovementPartitioner.END_BYTE_KEY)));
+        }
+        for (Reason reason : Reason.values()) {
+            String key = getExecutionContextKey(quarantineKey(reason));
+            quarantined[reason.ordinal()] = isSaveState() && executionContext.containsKey(key) ? executionContext.getLong(key) : 0L;
+            if (executionContext.containsKey(key)) {
+                executionContext.putLong(key, quarantined[reason.ordinal()]);
+            }
+        }
+        pendingReasons.clear();
+        pendingLines.clear();
+        super.open(executionContext);
+    }
+
+    /**
+     * Saves the read position, if the reader saves its state, and, when lines are validated,
+     * writes the lines rejected since the last call to the quarantine and saves the quarantine
+     * counts, which step listeners read.
+     *
+     * @param executionContext The ExecutionContext of the step or partition.
+     * @throws java.io.UncheckedIOException if the quarantine file cannot be written.
+     */
+    @Override
+    public void update(ExecutionContext executionContext) {
+        super.update(executionContext);
+        if (quarantine != null) {
+            if (!pendingLines.isEmpty()) {
+                for (int i = 0; i < pendingLines.size(); i++) {
+                    quarantine.reject(pendingReasons.get(i), pendingLines.get(i));
+                }
+                pendingReasons.clear();
+                pendingLines.clear();
+                quarantine.flush();
+            }
+            for (Reason reason : Reason.values()) {
+                executionContext.putLong(getExecutionContextKey(quarantineKey(reason)), quarantined[reason.ordinal()]);
+            }
+        }
+    }
+
+    /**
+     * Closes the reader. Lines rejected since the last {@link #update(ExecutionContext)} are dropped:
+     * the chunk that read them was not committed, and a restart reads them again.
+     */
+    @Override
+    public void close() {
+        super.close();
+        pendingReasons.clear();
+        pendingLines.clear();
+    }
+
+    /**
+     * Reads lines until one maps to a record. A quarantined line is counted as an item, so that
+     * a restart skips it along with the records read before it.
+     *
+     * @return The next record, or null at the end of the input.
+     * @throws Exception if a line cannot be read or mapped.
+     */
+    @Override
+    protected InputRecord doRead() throws Exception {
+        InputRecord record = super.doRead();
+        while (record == null && lineQuarantined) {
+            lineQuarantined = false;
+            setCurrentItemCount(getCurrentItemCount() + 1);
+            record = super.doRead();
+        }
+        return record;
+    }
+
+    private static String quarantineKey(Reason reason) {
+        return "quarantined." + reason.name();
+    }
+
+    /**
+     * Sums the quarantine counts a reader has saved in an ExecutionContext, for listeners that
+     * watch a step without access to its reader.
+     *
+     * @param executionContext The ExecutionContext of the step or partition.
+     * @return The lines quarantined so far, for every reason; 0 if lines are not validated.
+     */
+    public static long quarantined(ExecutionContext executionContext) {
+        long total = 0;
+        for (Map.Entry<String, Object> entry : executionContext.entrySet()) {
+            for (Reason reason : Reason.values()) {
+                if (entry.getKey().endsWith(quarantineKey(reason)) && entry.getValue() instanceof Long count) {
+                    total += count;
+                }
+            }
+        }
+        return total;
+    }
+
     /**
      * Reads and returns the next record from the input file.
      * Logs detailed information about the record read using Ayaka logger.
@@ -113,11 +323,15 @@ public class ProcessFutureMovementReader extends FlatFileItemReader<InputRecord>
      */
     @Override
     public InputRecord read() throws Exception {
-        logger = new Ayaka("pfm_reader" + ayaka_log);
+        if (logger == null) {
+            logger = new Ayaka("pfm_reader" + ayaka_log);
+        }
         logger.log("Invoking read from pfm_reader");
         InputRecord record = super.read();
         if (record != null) {
-            logger.log("Read record: " + record.toString(), Ayaka.LogLevel.INFO);
+            if (logger.isEnabled(Ayaka.LogLevel.INFO)) { // skip building the message when INFO is off
+                logger.log("Read record: " + record, Ayaka.LogLevel.INFO);
+            }
         } else {
             logger.log("End of file reached or no more records to read.", Ayaka.LogLevel.INFO);
         }
@@ -0,0 +1,193 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import tan.jerry.process_future_movement.reader.InputLineValidator.Reason;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * QuarantineWriter sets aside the input lines that {@link InputLineValidator} rejects, so that a
+ * file with bad rows is still summarized instead of failing. Each rejected line is appended to a
+ * CSV file as its reason code, a comma and the raw line, and counted per reason.
+ *
+ * <p>The file is created on the first rejected line, so a clean input leaves no file behind. Lines
+ * are buffered and appended under a lock; the counters are LongAdders, so that concurrent partitions
+ * and workers can quarantine thousands of lines without contending or slowing the valid ones.
+ * Call {@link #flush()} at the end of a run so that the file is complete, and {@link #close()} when
+ * done with it.</p>
+ */
+public class QuarantineWriter implements Closeable {
+
+    /**
+     * The header of the quarantine file.
+     */
+    public static final String HEADER = "Reason,Line";
+
+    private static final Reason[] REASONS = Reason.values();
+
+    private final Path path;
+
+    private final boolean append;
+
+    private final LongAdder[] counts = new LongAdder[REASONS.length];
+
+    private BufferedWriter writer;
+
+    /**
+     * Constructs a QuarantineWriter.
+     *
+     * @param path The quarantine file; it is replaced when the first line is quarantined.
+     */
+    public QuarantineWriter(Path path) {
+        this(path, false);
+    }
+
+    /**
+     * Constructs a QuarantineWriter that replaces or appends to its file.
+     *
+     * @param path   The quarantine file.
+     * @param append True to append to the file, writing the header only if it is new or empty,
+     *               such as when a restarted job resumes; false to replace it on the first quarantined line.
+     */
+    public QuarantineWriter(Path path, boolean append) {
+        this.path = path;
+        this.append = append;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Quarantines a line read as text.
+     *
+     * @param reason The reason the line was rejected.
+     * @param line   The line, without its line terminator.
+     * @throws UncheckedIOException if the quarantine file cannot be written.
+     */
+    public void reject(Reason reason, CharSequence line) {
+        counts[reason.ordinal()].increment();
+        synchronized (this) {
+            try {
+                writer().append(reason.name()).append(',').append(line).append('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Quarantines a line straight from the bytes of a buffer.
+     *
+     * @param reason    The reason the line was rejected.
+     * @param line      The buffer holding the line, indexed absolutely.
+     * @param lineStart The index of the first byte of the line.
+     * @param lineEnd   The index just past the last byte of the line, excluding the line terminator.
+     * @throws UncheckedIOException if the quarantine file cannot be written.
+     */
+    public void reject(Reason reason, ByteBuffer line, int lineStart, int lineEnd) {
+        reject(reason, FixedWidthLines.ascii(line, lineStart, lineEnd));
+    }
+
+    /**
+     * @param reason The reason.
+     * @return The number of lines quarantined for the reason so far.
+     */
+    public long count(Reason reason) {
+        return counts[reason.ordinal()].sum();
+    }
+
+    /**
+     * @return The number of lines quarantined so far, for any reason.
+     */
+    public long total() {
+        long total = 0;
+        for (LongAdder count : counts) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of lines quarantined so far, per reason; reasons without lines are included with 0.
+     */
+    public Map<Reason, Long> counts() {
+        Map<Reason, Long> result = new EnumMap<>(Reason.class);
+        for (Reason reason : REASONS) {
+            result.put(reason, count(reason));
+        }
+        return result;
+    }
+
+    /**
+     * @return The quarantine file, which exists only once a line has been quarantined.
+     */
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * Writes the buffered lines to the quarantine file.
+     *
+     * @throws UncheckedIOException if the quarantine file cannot be written.
+     */
+    public synchronized void flush() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered lines and closes the quarantine file. A line quarantined afterwards
+     * starts a new file, or is appended to it if this writer appends.
+     *
+     * @throws IOException if the quarantine file cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private BufferedWriter writer() throws IOException {
+        if (writer == null) {
+            writer = append
+                    ? Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                    : Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            if (!append || Files.size(path) == 0) {
+                writer.write(HEADER);
+                writer.newLine();
+            }
+        }
+        return writer;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * QuarantineWriters hands out one {@link QuarantineWriter} per job instance, shared by the readers
+ * of all its partitions. Each job instance quarantines to its own file, named after the configured
+ * one with the instance id added, so that concurrent or successive runs never truncate each other's
+ * rejects. A restarted execution of the same instance appends to the file of the failed one. The
+ * readers hand their rejects over only when they save their read position, so the lines a failed
+ * partition read after its last commit, which the restart reads again, are quarantined once.
+ * <p>
+ * Registered as a listener of the job, it closes the writer of an execution when the execution ends.
+ */
+public class QuarantineWriters implements JobExecutionListener {
+
+    private final Path path;
+
+    private final Map<Long, QuarantineWriter> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a QuarantineWriters.
+     *
+     * @param path The configured quarantine file, which the file of each job instance is named after.
+     */
+    public QuarantineWriters(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the quarantine of a job instance, creating it on first use.
+     *
+     * @param jobInstanceId The id of the job instance.
+     * @return The quarantine writer of the job instance, appending to its file.
+     */
+    public QuarantineWriter forJobInstance(long jobInstanceId) {
+        return writers.computeIfAbsent(jobInstanceId, id -> new QuarantineWriter(path(id), true));
+    }
+
+    /**
+     * Names the quarantine file of a job instance: "quarantine.csv" becomes "quarantine-42.csv" for instance 42.
+     *
+     * @param jobInstanceId The id of the job instance.
+     * @return The quarantine file of the job instance.
+     */
+    public Path path(long jobInstanceId) {
+        String name = path.getFileName().toString();
+        int extension = name.lastIndexOf('.');
+        String file = extension > 0
+                ? name.substring(0, extension) + "-" + jobInstanceId + name.substring(extension)
+                : name + "-" + jobInstanceId;
+        return path.resolveSibling(file);
+    }
+
+    /**
+     * Writes and closes the quarantine of the job instance of an execution that has ended.
+     *
+     * @param jobExecution The job execution.
+     * @throws UncheckedIOException if the quarantine file cannot be written.
+     */
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        QuarantineWriter writer = writers.remove(jobExecution.getJobInstance().getInstanceId());
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,407 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import tan.jerry.process_future_movement.aggregate.GroupingKeys;
+import tan.jerry.process_future_movement.aggregate.GroupingTable;
+import tan.jerry.process_future_movement.aggregate.Metric;
+import tan.jerry.process_future_movement.aggregate.PartitionedSummaryTable;
+import tan.jerry.process_future_movement.aggregate.SpillingSummaryTable;
+import tan.jerry.process_future_movement.aggregate.SummaryKeys;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.aggregate.WorkerSummaryTables;
+import tan.jerry.process_future_movement.config.BatchJobConfig;
+import tan.jerry.process_future_movement.reader.FileByteRange;
+import tan.jerry.process_future_movement.reader.FixedWidthLines;
+import tan.jerry.process_future_movement.reader.InputLineValidator;
+import tan.jerry.process_future_movement.reader.InputLineValidator.Reason;
+import tan.jerry.process_future_movement.reader.QuarantineWriter;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.StreamSupport;
+
+/**
+ * ByteRangeAggregation lets parallel workers parse and aggregate their own newline-aligned
+ * byte ranges of the input file, straight from the mapped bytes. Nothing is read up front:
+ * ranges are split further while workers are idle, so a worker that finishes early steals
+ * and re-splits the remaining work of a slower one.
+ */
+final class ByteRangeAggregation {
+
+    /**
+     * Default size of the slices a worker aggregates between checks for idle workers.
+     */
+    static final long DEFAULT_SPLIT_SIZE = 1 << 20;
+
+    /**
+     * Number of forked but not yet started ranges a worker keeps queued for thieves.
+     */
+    private static final int SURPLUS_TASKS = 2;
+
+    private ByteRangeAggregation() {
+    }
+
+    /**
+     * Aggregates every line of a range into a table.
+     *
+     * @param range The range to aggregate.
+     * @param table The table receiving the transaction amounts.
+     * @return The table.
+     * @throws IOException if the range cannot be read.
+     */
+    static SummaryTable aggregate(FileByteRange range, SummaryTable table) throws IOException {
+        scan(range, new long[SummaryKeys.KEY_WORDS], SummaryKeys::pack, null, null, table::addMetrics);
+        return table;
+    }
+
+    /**
+     * Aggregates every valid line of a range into a table, and quarantines the others. A line is
+     * checked before its key is packed, so a malformed line costs no exception and leaves no
+     * partial amounts in the table.
+     *
+     * @param range      The range to aggregate.
+     * @param table      The table receiving the transaction amounts.
+     * @param validator  The validator checking every line.
+     * @param quarantine The quarantine receiving the rejected lines.
+     * @return The table.
+     * @throws IOException if the range cannot be read.
+     */
+    static SummaryTable aggregate(FileByteRange range, SummaryTable table, InputLineValidator validator,
+                                  QuarantineWriter quarantine) throws IOException {
+        scan(range, new long[SummaryKeys.KEY_WORDS], SummaryKeys::pack, validator, quarantine, table::addMetrics);
+        return table;
+    }
+
+    /**
+     * Aggregates every line of a range into a table of the finest grouping grain.
+     *
+     * @param range The range to aggregate.
+     * @param table The table receiving the metrics.
+     * @return The table.
+     * @throws IOException if the range cannot be read.
+     */
+    static GroupingTable aggregate(FileByteRange range, GroupingTable table) throws IOException {
+        return aggregate(range, table, null);
+    }
+
+    /**
+     * Aggregates every valid line of a range into a table of the finest grouping grain, and drops the others.
+     *
+     * @param range     The range to aggregate.
+     * @param table     The table receiving the metrics.
+     * @param validator The validator checking every line, or null to take every line.
+     * @return The table.
+     * @throws IOException if the range cannot be read.
+     */
+    static GroupingTable aggregate(FileByteRange range, GroupingTable table, InputLineValidator validator) throws IOException {
+        scan(range, new long[GroupingKeys.KEY_WORDS], GroupingKeys::pack, validator, null, table::addMetrics);
+        return table;
+    }
+
+    /**
+     * Aggregates every line of a range into the partitions of a mapper output.
+     *
+     * @param range The range to aggregate.
+     * @param table The partitioned table receiving the metrics.
+     * @return The table.
+     * @throws IOException if the range cannot be read.
+     */
+    static PartitionedSummaryTable aggregate(FileByteRange range, PartitionedSummaryTable table) throws IOException {
+        scan(range, new long[SummaryKeys.KEY_WORDS], SummaryKeys::pack, null, null, table::addMetrics);
+        return table;
+    }
+
+    /**
+     * Aggregates every line of a range into a table that spills to disk beyond its memory budget.
+     *
+     * @param range The range to aggregate.
+     * @param table The spilling table receiving the metrics.
+     * @return The table.
+     * @throws IOException if the range cannot be read or the table cannot spill.
+     */
+    static SpillingSummaryTable aggregate(FileByteRange range, SpillingSummaryTable table) throws IOException {
+        scan(range, new long[SummaryKeys.KEY_WORDS], SummaryKeys::pack, null, null, table::addMetrics);
+        return table;
+    }
+
+    /**
+     * Scans every line of a range: packs its key, measures its metrics and hands both to a sink.
+     * With a validator, a line is checked before its key is packed, and a rejected line goes to
+     * the quarantine, if any, instead of the sink.
+     *
+     * @param range      The range to scan.
+     * @param key        The array the key of each line is packed into, reused for every line.
+     * @param packer     Packs the key of a line, for the key layout of the sink's table.
+     * @param validator  The validator checking every line, or null to take every line.
+     * @param quarantine The quarantine receiving the rejected lines, or null to drop them.
+     * @param sink       Receives the key and the metrics of every line taken.
+     * @throws IOException if the range cannot be read, or the sink fails to write.
+     */
+    private static void scan(FileByteRange range, long[] key, KeyPacker packer, InputLineValidator validator,
+                             QuarantineWriter quarantine, LineSink sink) throws IOException {
+        long[] values = new long[Metric.COUNT];
+        boolean ignoreSignIndicators = BatchJobConfig.shouldIgnoreSignIndicators();
+        try {
+            range.forEachLine((line, lineStart, lineEnd) -> {
+                if (validator != null) {
+                    Reason reason = validator.validate(line, lineStart, lineEnd);
+                    if (reason != null) {
+                        if (quarantine != null) {
+                            quarantine.reject(reason, line, lineStart, lineEnd);
+                        }
+                        return;
+                    }
+                }
+                packer.pack(line, lineStart, lineEnd, key);
+                try {
+                    sink.accept(key, FixedWidthLines.measure(line, lineStart, lineEnd, ignoreSignIndicators, values));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Aggregates a range on a Fork/Join pool. Each task aggregates its range slice by slice and
+     * forks off half of what is left whenever its queue of work for thieves runs low.
+     *
+     * @param range     The range to aggregate.
+     * @param pool      The pool running the tasks.
+     * @param splitSize The approximate size of the slices aggregated between splits.
+     * @return A SummaryTable holding the totals of the whole range.
+     * @throws IOException if the range cannot be read.
+     */
+    static SummaryTable forkJoin(FileByteRange range, ForkJoinPool pool, long splitSize) throws IOException {
+        WorkerSummaryTables tables = new WorkerSummaryTables();
+        try {
+            pool.invoke(new RangeTask(range, splitSize, slice -> aggregate(slice, tables.local())));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return tables.merge(pool);
+    }
+
+    /**
+     * Aggregates a range on a Fork/Join pool into the finest grouping grain, from which the
+     * rollups of every {@link tan.jerry.process_future_movement.aggregate.GroupingSet} are derived.
+     * The range is split and stolen exactly as by {@link #forkJoin(FileByteRange, ForkJoinPool, long)}.
+     *
+     * @param range     The range to aggregate.
+     * @param pool      The pool running the tasks.
+     * @param splitSize The approximate size of the slices aggregated between splits.
+     * @param validator The validator checking every line, or null to take every line; rejected lines are dropped.
+     * @return A GroupingTable holding the metrics of the whole range.
+     * @throws IOException if the range cannot be read.
+     */
+    static GroupingTable groupingSets(FileByteRange range, ForkJoinPool pool, long splitSize,
+                                      InputLineValidator validator) throws IOException {
+        GroupingTable result = new GroupingTable();
+        byWorker(range, pool, splitSize, GroupingTable::new, (slice, table) -> aggregate(slice, table, validator))
+                .forEach(result::mergeFrom);
+        return result;
+    }
+
+    /**
+     * Map step of a map/shuffle/reduce aggregation of a range on a Fork/Join pool: every worker
+     * aggregates the slices it runs into its own partitioned table, for {@link ShuffleAggregation#reduce}.
+     *
+     * @param range      The range to aggregate.
+     * @param pool       The pool running the tasks.
+     * @param splitSize  The approximate size of the slices aggregated between splits.
+     * @param partitions The number of reducer partitions.
+     * @return The partitioned table of every worker.
+     * @throws IOException if the range cannot be read.
+     */
+    static Collection<PartitionedSummaryTable> mapPartitioned(FileByteRange range, ForkJoinPool pool, long splitSize,
+                                                             int partitions) throws IOException {
+        return byWorker(range, pool, splitSize, () -> new PartitionedSummaryTable(partitions), ByteRangeAggregation::aggregate);
+    }
+
+    private static <T> Collection<T> byWorker(FileByteRange range, ForkJoinPool pool, long splitSize,
+                                              Supplier<T> newTable, SliceFold<T> fold) throws IOException {
+        Map<Thread, T> tables = new ConcurrentHashMap<>();
+        try {
+            pool.invoke(new RangeTask(range, splitSize,
+                    slice -> fold.aggregate(slice, tables.computeIfAbsent(Thread.currentThread(), thread -> newTable.get()))));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return tables.values();
+    }
+
+    /**
+     * Aggregates a range with a parallel stream over a splitting range spliterator.
+     *
+     * @param range     The range to aggregate.
+     * @param splitSize The smallest range worth splitting off.
+     * @return A SummaryTable holding the totals of the whole range.
+     * @throws IOException if the range cannot be read.
+     */
+    static SummaryTable parallelStream(FileByteRange range, long splitSize) throws IOException {
+        try {
+            return StreamSupport.stream(new RangeSpliterator(range, splitSize), true)
+                    .collect(SummaryTable::new, ByteRangeAggregation::aggregateUnchecked, SummaryTable::mergeFrom);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void aggregateUnchecked(SummaryTable table, FileByteRange range) {
+        try {
+            aggregate(range, table);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Packs the key of a line into a reused array.
+     */
+    @FunctionalInterface
+    private interface KeyPacker {
+        void pack(ByteBuffer line, int lineStart, int lineEnd, long[] key);
+    }
+
+    /**
+     * Receives the key and the metrics of a scanned line; both arrays are reused for the next line.
+     */
+    @FunctionalInterface
+    private interface LineSink {
+        void accept(long[] key, long[] values) throws IOException;
+    }
+
+    /**
+     * Folds a slice of a range into a table.
+     */
+    @FunctionalInterface
+    private interface SliceFold<T> {
+        T aggregate(FileByteRange slice, T table) throws IOException;
+    }
+
+    /**
+     * Aggregates a slice of a range into the table of the worker running it.
+     */
+    @FunctionalInterface
+    private interface SliceAggregator {
+        void aggregate(FileByteRange slice) throws IOException;
+    }
+
+    /**
+     * A ForkJoinTask aggregating one range into the table of the worker running it.
+     */
+    private static class RangeTask extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final FileByteRange range;
+        private final long splitSize;
+        private final SliceAggregator aggregator;
+
+        RangeTask(FileByteRange range, long splitSize, SliceAggregator aggregator) {
+            this.range = range;
+            this.splitSize = splitSize;
+            this.aggregator = aggregator;
+        }
+
+        @Override
+        protected void compute() {
+            List<RangeTask> forked = new ArrayList<>();
+            try {
+                while (!range.isEmpty()) {
+                    FileByteRange half;
+                    if (getSurplusQueuedTaskCount() < SURPLUS_TASKS && (half = range.trySplit(splitSize)) != null) {
+                        RangeTask task = new RangeTask(half, splitSize, aggregator);
+                        task.fork();
+                        forked.add(task);
+                    } else {
+                        aggregator.aggregate(range.takePrefix(splitSize));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (RangeTask task : forked) {
+                task.join();
+            }
+        }
+    }
+
+    /**
+     * A Spliterator with a single range as its element, which splits by halving the range at a
+     * line boundary. Its size estimate is in bytes, so parallel streams split it down to about
+     * four ranges per worker, and work stealing balances the rest.
+     */
+    private static class RangeSpliterator implements Spliterator<FileByteRange> {
+
+        private final FileByteRange range;
+        private final long splitSize;
+        private boolean consumed;
+
+        RangeSpliterator(FileByteRange range, long splitSize) {
+            this.range = range;
+            this.splitSize = splitSize;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super FileByteRange> action) {
+            if (consumed) {
+                return false;
+            }
+            consumed = true;
+            action.accept(range);
+            return true;
+        }
+
+        @Override
+        public Spliterator<FileByteRange> trySplit() {
+            if (consumed) {
+                return null;
+            }
+            try {
+                FileByteRange half = range.trySplit(splitSize);
+                return half == null ? null : new RangeSpliterator(half, splitSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return consumed ? 0 : range.size();
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import tan.jerry.process_future_movement.aggregate.GroupingSet;
+import tan.jerry.process_future_movement.aggregate.GroupingTable;
+import tan.jerry.process_future_movement.aggregate.OffHeapSummaryStore;
+import tan.jerry.process_future_movement.config.BatchJobConfig;
+import tan.jerry.process_future_movement.jfr.SummaryCacheEvent;
+import tan.jerry.process_future_movement.metrics.EngineProgress;
+import tan.jerry.process_future_movement.reader.FileByteRange;
+import tan.jerry.process_future_movement.reader.InputFiles;
+import tan.jerry.process_future_movement.reader.InputLineValidator;
+import tan.jerry.process_future_movement.reader.InputRecordView;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * DailySummaryCache keeps the daily summary of the input file in memory, so that the REST API
+ * does not parse the whole input on every request. The summary is keyed by the identity of the
+ * input file, its location, size and last modification time, and is rebuilt only when that
+ * identity changes. The input is located once per lookup with {@link InputFiles#resource(String)},
+ * a file on the file system first and the classpath otherwise, and that one location is both
+ * the identity and the file the summary and the rollups are built from.
+ * <p>
+ * Requests that arrive while the summary is being rebuilt wait for that rebuild instead of
+ * starting their own, so N concurrent requests cost one parse of the input. A rebuild that
+ * fails is not cached; the next request tries again.
+ * <p>
+ * The summary is kept off the heap, in an {@link OffHeapSummaryStore}, so that holding it all day
+ * adds nothing to old-generation garbage collection. Each request takes a reference to the store with
+ * {@link #acquire()} and gives it back when done; when a new version of the input replaces the summary,
+ * the direct memory of the old one is freed as soon as the last request reading it is done.
+ * <p>
+ * The rollups of every {@link GroupingSet} are cached the same way. They are built together,
+ * from one scan of the input into the finest grouping grain, the first time any of them is requested.
+ * The scan validates the lines as the processor does and leaves out the ones it rejects, which
+ * the summary build has already quarantined, so the rollups add up to the summary.
+ */
+@Service
+public class DailySummaryCache {
+
+    private final ProcessFutureMovementTaskletProcessor processor;
+
+    private final AtomicReference<Entry<OffHeapSummaryStore>> current = new AtomicReference<>();
+
+    private final AtomicReference<Entry<Map<GroupingSet, GroupingTable>>> rollups = new AtomicReference<>();
+
+    /**
+     * Constructs a new DailySummaryCache.
+     *
+     * @param processor The processor that builds the summary of its configured input file.
+     */
+    @Autowired
+    public DailySummaryCache(ProcessFutureMovementTaskletProcessor processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * Returns the summary of the current input file, rebuilding it if the file has changed since
+     * the summary was built, or joining a rebuild that is already running. The caller holds a
+     * reference to the summary and must close it when done, typically with try-with-resources.
+     *
+     * @return The daily summary store, retained for the caller; shared, and read-only.
+     */
+    public OffHeapSummaryStore acquire() {
+        return acquireWithProgress(null);
+    }
+
+    /**
+     * Returns the summary of the current input file like {@link #acquire()}. If this call rebuilds
+     * the summary, the rebuild reports to the given progress; a call that finds the summary cached,
+     * or joins a rebuild already running, leaves it untouched.
+     *
+     * @param progress The progress of a rebuild, or null.
+     * @return The daily summary store, retained for the caller; shared, and read-only.
+     */
+    public OffHeapSummaryStore acquireWithProgress(EngineProgress progress) {
+        while (true) {
+            OffHeapSummaryStore store = get(current, "summary", input -> buildSummary(progress), OffHeapSummaryStore::close);
+            if (store.tryRetain()) {
+                return store;
+            }
+            // replaced and released between the lookup and the retain; look up the new one
+        }
+    }
+
+    /**
+     * Returns the rollup of the current input file for a grouping set, rebuilding the rollups
+     * if the file has changed since they were built, or joining a rebuild that is already running.
+     *
+     * @param groupingSet The grouping set.
+     * @return The rollup table; shared, so it must not be modified.
+     */
+    public GroupingTable getRollup(GroupingSet groupingSet) {
+        return get(rollups, "rollups", this::buildRollups, replaced -> {
+        }).get(groupingSet);
+    }
+
+    /**
+     * Returns the cached value for the current input file, or builds it. A value replaced by a
+     * rebuild is handed to retire once it is complete, whether it is still being built or not.
+     * Every lookup is a {@link SummaryCacheEvent} in a Flight Recorder recording.
+     */
+    private <T> T get(AtomicReference<Entry<T>> cached, String cacheName, Function<Resource, T> builder, Consumer<T> retire) {
+        SummaryCacheEvent event = new SummaryCacheEvent();
+        event.begin();
+        Resource input = InputFiles.resource(inputFileName());
+        InputIdentity identity = InputIdentity.of(input, inputFileName());
+        while (true) {
+            Entry<T> entry = cached.get();
+            if (entry != null && entry.identity().equals(identity) && !entry.value().isCompletedExceptionally()) {
+                String outcome = entry.value().isDone() ? SummaryCacheEvent.HIT : SummaryCacheEvent.JOINED;
+                return await(entry.value(), event, cacheName, outcome);
+            }
+            Entry<T> rebuild = new Entry<>(identity, new CompletableFuture<>());
+            if (cached.compareAndSet(entry, rebuild)) {
+                if (entry != null) {
+                    entry.value().thenAccept(retire);
+                }
+                try {
+                    rebuild.value().complete(builder.apply(input));
+                } catch (RuntimeException | Error e) {
+                    rebuild.value().completeExceptionally(e);
+                }
+                return await(rebuild.value(), event, cacheName, SummaryCacheEvent.BUILT);
+            }
+            // another request started a rebuild first; share it
+        }
+    }
+
+    /**
+     * Awaits a cached value and commits the event of its lookup, failed if the value could not be built.
+     */
+    private <T> T await(CompletableFuture<T> value, SummaryCacheEvent event, String cacheName, String outcome) {
+        event.failed = true;
+        try {
+            T result = await(value);
+            event.failed = false;
+            return result;
+        } finally {
+            if (event.shouldCommit()) {
+                event.cache = cacheName;
+                event.inputFileName = processor.inputFileName;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Summarizes the input file on the heap and copies the summary off the heap; the heap table
+     * dies young. The processor locates the input with {@link InputFiles#resource(String)} too,
+     * so it reads the file the identity was taken from.
+     */
+    private OffHeapSummaryStore buildSummary(EngineProgress progress) {
+        return OffHeapSummaryStore.copyOf(progress == null ? processor.summarize() : processor.summarize(progress));
+    }
+
+    /**
+     * Scans the input file once into the finest grouping grain and derives every rollup from it.
+     * An input that is a file is scanned in parallel through a FileChannel, on the pool dedicated
+     * to the Fork/Join processors; one packaged inside the application jar has no file to open,
+     * so it is read line by line.
+     */
+    private Map<GroupingSet, GroupingTable> buildRollups(Resource input) {
+        InputLineValidator validator = processor.validator();
+        if (!input.isFile()) {
+            return groupingSets(openOrNull(input), inputFileName(), validator).rollups(EnumSet.allOf(GroupingSet.class));
+        }
+        try (FileChannel channel = FileChannel.open(input.getFile().toPath(), StandardOpenOption.READ)) {
+            GroupingTable finest = ByteRangeAggregation.groupingSets(FileByteRange.of(channel),
+                    ProcessFutureMovementForkJoinTaskletProcessor.defaultPool(), ByteRangeAggregation.DEFAULT_SPLIT_SIZE, validator);
+            return finest.rollups(EnumSet.allOf(GroupingSet.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The input, open for reading, or null if it does not exist.
+     */
+    private static InputStream openOrNull(Resource input) {
+        try {
+            return input.getInputStream();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String inputFileName() {
+        return null == processor.inputFileName ? "Input.txt" : processor.inputFileName;
+    }
+
+    /**
+     * Reads the input line by line into the finest grouping grain.
+     *
+     * @param input     The input, or null if it could not be found.
+     * @param name      The name of the input file, for error messages.
+     * @param validator The validator checking every line, or null to take every line; rejected lines are dropped.
+     * @return A GroupingTable holding the metrics of the whole input.
+     * @throws UncheckedIOException if the input is missing or cannot be read.
+     */
+    static GroupingTable groupingSets(InputStream input, String name, InputLineValidator validator) {
+        if (input == null) {
+            throw new UncheckedIOException(new FileNotFoundException(name + " is neither a file nor on the classpath"));
+        }
+        GroupingTable finest = new GroupingTable();
+        boolean ignoreSignIndicators = BatchJobConfig.shouldIgnoreSignIndicators();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
+            InputRecordView record = new InputRecordView();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (validator == null || validator.validate(line) == null) {
+                    finest.addMovement(record.wrap(line), ignoreSignIndicators);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + name, e);
+        }
+        return finest;
+    }
+
+    /**
+     * Drops the cached summary and rollups, so that the next request rebuilds them even if the input file
+     * looks unchanged, for example after a copy that preserved its size and modification time.
+     */
+    public void invalidate() {
+        Entry<OffHeapSummaryStore> replaced = current.getAndSet(null);
+        if (replaced != null) {
+            replaced.value().thenAccept(OffHeapSummaryStore::close);
+        }
+        rollups.set(null);
+    }
+
+    /**
+     * Releases the cached summary when the application shuts down.
+     */
+    @PreDestroy
+    public void close() {
+        invalidate();
+    }
+
+    private static <T> T await(CompletableFuture<T> value) {
+        try {
+            return value.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A summary or rollups, finished or still being built, of one version of the input file.
+     */
+    private record Entry<T>(InputIdentity identity, CompletableFuture<T> value) {
+    }
+
+    /**
+     * Identifies a version of the input file, wherever it was located.
+     * A file that cannot be found has size -1, so that it gets its own summary once it appears.
+     *
+     * @param location     The URL of the input file, or its name if it cannot be found.
+     * @param size         The size of the input file in bytes.
+     * @param lastModified The last modification time of the input file, in milliseconds.
+     */
+    record InputIdentity(String location, long size, long lastModified) {
+
+        static InputIdentity of(Resource input, String name) {
+            try {
+                return new InputIdentity(input.getURL().toString(), input.contentLength(), input.lastModified());
+            } catch (IOException e) {
+                return new InputIdentity(name, -1, -1);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+/**
+ * InputMode selects how a parallel tasklet processor gets records from the input file
+ * into its workers.
+ */
+public enum InputMode {
+
+    /**
+     * Read and parse the whole file into a list of InputRecord objects, then aggregate the list.
+     * Peak heap grows with the file size; kept for comparison and small files.
+     */
+    MATERIALIZED,
+
+    /**
+     * Read the file in bounded batches of lines that are parsed and aggregated by the workers
+     * while the next batches are being read. Peak heap is independent of the file size.
+     */
+    STREAMING,
+
+    /**
+     * Split the file into newline-aligned byte ranges that the workers map, parse and aggregate
+     * on their own, without a shared reader. Ranges are split further while workers are idle.
+     */
+    SPLIT
+}
@@ -14,21 +14,79 @@
  */
 package tan.jerry.process_future_movement.service;
 
+import tan.jerry.process_future_movement.aggregate.FixedPoint;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.aggregate.WorkerSummaryTables;
 import tan.jerry.process_future_movement.config.BatchJobConfig;
 import tan.jerry.process_future_movement.domain.InputRecord;
+import tan.jerry.process_future_movement.domain.MovementRecord;
+import tan.jerry.process_future_movement.metrics.EngineMetrics;
+import tan.jerry.process_future_movement.metrics.EngineMetrics.Stage;
+import tan.jerry.process_future_movement.reader.FileByteRange;
+import tan.jerry.process_future_movement.reader.InputFiles;
+import tan.jerry.process_future_movement.reader.InputRecordView;
+import tan.jerry.process_future_movement.reader.LineBatchReader;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * ProcessFutureMovementForkJoinTaskletProcessor uses the Fork/Join framework
  * to parallelize the processing of InputRecord objects into OutputRecord objects.
+ * Tasks are split down to leaves sized from the input size and the pool parallelism, and every
+ * leaf adds to the table of the worker running it; the worker tables are merged once, as a tree.
  */
 public class ProcessFutureMovementForkJoinTaskletProcessor implements ProcessFutureMovementService { // TODO => implements ItemProcessor<InputRecord, OutputRecord>
 
-    private static final ForkJoinPool forkJoinPool = new ForkJoinPool();
+    /**
+     * System property setting the parallelism of the default pool; the number of available processors if unset.
+     */
+    public static final String PARALLELISM_PROPERTY = "pfm.forkjoin.parallelism";
+
+    /**
+     * Leaves per worker in materialized mode, so that a worker that finishes early has work to steal.
+     */
+    static final int LEAVES_PER_WORKER = 8;
+
+    /**
+     * Smallest leaf in materialized mode; below it the cost of a task outweighs the records it aggregates.
+     */
+    static final int MIN_LEAF_SIZE = 1024;
+
+    /**
+     * Stage timings and throughput of this engine.
+     */
+    private static final EngineMetrics METRICS = EngineMetrics.forEngine("forkjoin");
+
+    /**
+     * The pool running the tasks; the default pool unless one is set.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * How records get from the input file to the workers; streaming by default.
+     */
+    private InputMode inputMode = InputMode.STREAMING;
+
+    /**
+     * Number of lines per batch in streaming mode.
+     */
+    private int batchSize = LineBatchReader.DEFAULT_BATCH_SIZE;
+
+    /**
+     * Approximate number of bytes per range in split mode.
+     */
+    private long splitSize = ByteRangeAggregation.DEFAULT_SPLIT_SIZE;
+
+    /**
+     * Number of records per leaf task in materialized mode; 0 sizes the leaves adaptively.
+     */
+    private int leafSize;
 
     /**
      * Main method for testing the Fork/Join implementation.
@@ -44,30 +102,203 @@ public class ProcessFutureMovementForkJoinTaskletProcessor implements ProcessFut
      *
      * @param inputFileName  The name of the input file.
      * @param outputFileName The name of the output file.
-     * @return
+     * @return A map representing the client-product keys and their corresponding total transaction amounts.
      */
     public Map<String, Double> process(String inputFileName, String outputFileName) {
-        List<InputRecord> records = readInputFile(inputFileName);
-        Map<String, Double> result = forkJoinPool.invoke(new SummaryTask(records, 0, records.size()));
+        return summarize(inputFileName, outputFileName).toMap();
+    }
+
+    /**
+     * Processes the input file into a summary table and generates the output CSV using Fork/Join.
+     *
+     * @param inputFileName  The name of the input file.
+     * @param outputFileName The name of the output file.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     */
+    @Override
+    public SummaryTable summarize(String inputFileName, String outputFileName) {
+        long run = METRICS.start();
+        SummaryTable result = switch (inputMode) {
+            case MATERIALIZED -> summarizeMaterialized(inputFileName);
+            case STREAMING -> summarizeStreaming(inputFileName);
+            case SPLIT -> summarizeSplit(inputFileName);
+        };
+        long write = METRICS.start();
         writeOutputFile(outputFileName, result);
+        METRICS.stop(Stage.WRITE, write);
+        METRICS.completed(run, inputFileName, result);
         return result;
     }
 
     /**
-     * Reads the input file and parses it into a list of InputRecord objects.
+     * Sets how records get from the input file to the workers.
+     *
+     * @param inputMode The input mode to use.
+     */
+    public void setInputMode(InputMode inputMode) {
+        this.inputMode = inputMode;
+    }
+
+    /**
+     * Sets the number of lines per batch in streaming mode.
+     *
+     * @param batchSize The number of lines per batch.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the approximate number of bytes per range in split mode; ranges are never split below it.
+     *
+     * @param splitSize The number of bytes per range.
+     */
+    public void setSplitSize(long splitSize) {
+        if (splitSize < 1) {
+            throw new IllegalArgumentException("splitSize must be positive");
+        }
+        this.splitSize = splitSize;
+    }
+
+    /**
+     * Sets the pool running the tasks, instead of the default pool shared by the Fork/Join processors.
+     *
+     * @param pool The pool to use.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the number of records per leaf task in materialized mode.
+     *
+     * @param leafSize The number of records per leaf; 0 sizes the leaves from the input size and the pool parallelism.
+     */
+    public void setLeafSize(int leafSize) {
+        if (leafSize < 0) {
+            throw new IllegalArgumentException("leafSize must not be negative");
+        }
+        this.leafSize = leafSize;
+    }
+
+    /**
+     * @return The pool running the tasks.
+     */
+    ForkJoinPool pool() {
+        return pool != null ? pool : defaultPool();
+    }
+
+    /**
+     * @return The pool dedicated to the Fork/Join processors, shared with the other services that
+     * scan the input in parallel so that they stay off the common pool.
+     */
+    static ForkJoinPool defaultPool() {
+        return DefaultPool.INSTANCE;
+    }
+
+    /**
+     * Sizes the leaves so that every worker gets about {@link #LEAVES_PER_WORKER} of them, but no
+     * leaf is smaller than {@link #MIN_LEAF_SIZE} records.
+     *
+     * @param records     The number of records.
+     * @param parallelism The parallelism of the pool.
+     * @return The number of records per leaf.
+     */
+    static int adaptiveLeafSize(int records, int parallelism) {
+        long leaves = (long) parallelism * LEAVES_PER_WORKER;
+        return (int) Math.max(MIN_LEAF_SIZE, (records + leaves - 1) / leaves);
+    }
+
+    /**
+     * Reads the whole input file into memory and aggregates it with a recursive SummaryTask.
      *
      * @param inputFileName The name of the input file.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     */
+    private SummaryTable summarizeMaterialized(String inputFileName) {
+        long read = METRICS.start();
+        List<InputRecord> records = readInputFile(inputFileName);
+        METRICS.stop(Stage.READ, read);
+        ForkJoinPool pool = pool();
+        int leaf = leafSize > 0 ? leafSize : adaptiveLeafSize(records.size(), pool.getParallelism());
+        WorkerSummaryTables tables = new WorkerSummaryTables();
+        long aggregate = METRICS.start();
+        pool.invoke(new SummaryTask(records, 0, records.size(), leaf, tables));
+        METRICS.stop(Stage.AGGREGATE, aggregate);
+        long merge = METRICS.start();
+        SummaryTable result = tables.merge(pool);
+        METRICS.stop(Stage.MERGE, merge);
+        return result;
+    }
+
+    /**
+     * Streams the input file in batches of lines that the Fork/Join pool parses and aggregates
+     * into per-worker tables while the next batches are read.
+     *
+     * @param inputFileName The name of the input file, on the file system or the classpath.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     * @throws UncheckedIOException if the input cannot be found or read.
+     */
+    private SummaryTable summarizeStreaming(String inputFileName) {
+        ForkJoinPool pool = pool();
+        int parallelism = pool.getParallelism();
+        try (LineBatchReader batches = new LineBatchReader(InputFiles.newReader(inputFileName), batchSize, parallelism)) {
+            long aggregate = METRICS.start();
+            List<SummaryTable> tables = new ArrayList<>(StreamingAggregation.aggregateByWorker(batches, pool, 2 * parallelism,
+                    SummaryTable::new, (lines, table) -> {
+                        InputRecordView record = new InputRecordView(); // decodes only the fields the summary reads
+                        for (String line : lines) {
+                            table.addMovement(record.wrap(line), BatchJobConfig.shouldIgnoreSignIndicators());
+                        }
+                    }));
+            METRICS.stop(Stage.AGGREGATE, aggregate);
+            long merge = METRICS.start();
+            SummaryTable result = WorkerSummaryTables.merge(tables, pool);
+            METRICS.stop(Stage.MERGE, merge);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + inputFileName, e);
+        }
+    }
+
+    /**
+     * Splits the input file into newline-aligned byte ranges that the Fork/Join pool parses and aggregates
+     * straight from the mapped bytes. Each task aggregates its own range and re-splits it while other workers are idle.
+     *
+     * @param inputFileName The name of the input file, on the file system or the classpath.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     * @throws UncheckedIOException if the input cannot be found or read.
+     */
+    private SummaryTable summarizeSplit(String inputFileName) {
+        try (FileChannel channel = FileChannel.open(InputFiles.resolve(inputFileName), StandardOpenOption.READ)) {
+            long aggregate = METRICS.start(); // the worker tables are merged within, so the merge counts as aggregating
+            SummaryTable result = ByteRangeAggregation.forkJoin(FileByteRange.of(channel), pool(), splitSize);
+            METRICS.stop(Stage.AGGREGATE, aggregate);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + inputFileName, e);
+        }
+    }
+
+    /**
+     * Reads the input file and parses it into a list of InputRecord objects.
+     *
+     * @param inputFileName The name of the input file, on the file system or the classpath.
      * @return A list of InputRecord objects.
+     * @throws UncheckedIOException if the input cannot be found or read.
      */
     private List<InputRecord> readInputFile(String inputFileName) {
         List<InputRecord> records = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFileName))) {
+        try (BufferedReader reader = InputFiles.newReader(inputFileName)) {
             String line;
             while ((line = reader.readLine()) != null) {
                 records.add(parseInputRecord(line));
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("Unable to read " + inputFileName, e);
         }
         return records;
     }
@@ -76,14 +307,15 @@ public class ProcessFutureMovementForkJoinTaskletProcessor implements ProcessFut
      * Writes the results to the output CSV file.
      *
      * @param outputFileName The name of the output file.
-     * @param result         The result map to write to the file.
+     * @param result         The summary table to write to the file.
      */
-    private void writeOutputFile(String outputFileName, Map<String, Double> result) {
+    void writeOutputFile(String outputFileName, SummaryTable result) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFileName))) {
             writer.write("Client_Information,Product_Information,Total_Transaction_Amount");
             writer.newLine();
-            for (Map.Entry<String, Double> entry : result.entrySet()) {
-                writer.write(entry.getKey() + "," + entry.getValue());
+            SummaryTable.Cursor cursor = result.cursor();
+            while (cursor.next()) {
+                writer.write(cursor.clientInformation() + "," + cursor.productInformation() + "," + cursor.total());
                 writer.newLine();
             }
         } catch (IOException e) {
@@ -97,7 +329,7 @@ public class ProcessFutureMovementForkJoinTaskletProcessor implements ProcessFut
      * @param line The line from the input file.
      * @return An InputRecord object.
      */
-    private InputRecord parseInputRecord(String line) {
+    InputRecord parseInputRecord(String line) {
         return new InputRecord(
                 line.substring(0, 3).trim(),  // Record Code
                 line.substring(3, 7).trim(),  // Client Type
@@ -116,18 +348,18 @@ public class ProcessFutureMovementForkJoinTaskletProcessor implements ProcessFut
                 line.substring(52, 62).trim(), // Quantity Long
                 line.substring(62, 63).trim(), // Quantity Short Sign
                 line.substring(63, 73).trim(), // Quantity Short
-                line.substring(73, 86).trim(), // Exchange Broker Fee Decimal
-                line.substring(86, 87).trim(), // Exchange Broker Fee DC
-                line.substring(87, 90).trim(), // Exchange Broker Fee Currency Code
-                line.substring(90, 101).trim(), // Clearing Fee Decimal
+                line.substring(73, 85).trim(), // Exchange Broker Fee Decimal
+                line.substring(85, 86).trim(), // Exchange Broker Fee DC
+                line.substring(86, 89).trim(), // Exchange Broker Fee Currency Code
+                line.substring(89, 101).trim(), // Clearing Fee Decimal
                 line.substring(101, 102).trim(), // Clearing Fee DC
                 line.substring(102, 105).trim(), // Clearing Fee Currency Code
-                line.substring(105, 118).trim(), // Commission
-                line.substring(118, 119).trim(), // Commission DC
-                line.substring(119, 122).trim(), // Commission Currency Code
-                line.substring(122, 130).trim(), // Transaction Date
-                line.substring(130, 136).trim(), // Future Reference
-                line.substring(136, 141).trim(), // Ticket Number
+                line.substring(105, 117).trim(), // Commission
+                line.substring(117, 118).trim(), // Commission DC
+                line.substring(118, 121).trim(), // Commission Currency Code
+                line.substring(121, 129).trim(), // Transaction Date
+                line.substring(129, 135).trim(), // Future Reference
+                line.substring(135, 141).trim(), // Ticket Number
                 line.substring(141, 147).trim(), // External Number
                 line.substring(147, 162).trim(), // Transaction Price Decimal
                 line.substring(162, 168).trim(), // Trader Initials
@@ -146,95 +378,80 @@ public class ProcessFutureMovementForkJoinTaskletProcessor implements ProcessFut
     }
 
     /**
-     * A ForkJoinTask for processing a sublist of InputRecord objects and aggregating the results.
+     * A ForkJoinTask for processing a slice of InputRecord objects. Slices are halved down to the leaf
+     * size, and each leaf adds its records to the table of the worker running it, so tasks return
+     * nothing and there is nothing to merge on the way back up.
      */
-    private class SummaryTask extends RecursiveTask<Map<String, Double>> {
+    private static class SummaryTask extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
 
         private final List<InputRecord> records;
         private final int start;
         private final int end;
+        private final int leafSize;
+        private final WorkerSummaryTables tables;
 
-        SummaryTask(List<InputRecord> records, int start, int end) {
+        SummaryTask(List<InputRecord> records, int start, int end, int leafSize, WorkerSummaryTables tables) {
             this.records = records;
             this.start = start;
             this.end = end;
+            this.leafSize = leafSize;
+            this.tables = tables;
         }
 
         @Override
-        protected Map<String, Double> compute() {
-            if (end - start <= 10) {
-                return processSublist(records.subList(start, end));
-            } else {
-                int mid = (start + end) / 2;
-                SummaryTask leftTask = new SummaryTask(records, start, mid);
-                SummaryTask rightTask = new SummaryTask(records, mid, end);
-                invokeAll(leftTask, rightTask);
-                return mergeResults(leftTask.join(), rightTask.join());
-            }
-        }
-
-        private Map<String, Double> processSublist(List<InputRecord> sublist) {
-            Map<String, Double> result = new HashMap<>();
-            for (InputRecord record : sublist) {
-                String clientInfo = getClientInformation(record);
-                String productInfo = getProductInformation(record);
-                double transactionAmount = calculateTransactionAmount(record);
-
-                // Remove period character from Product Information if present
-                if (productInfo.contains(".")) {
-                    System.out.println("Period detected in Product Information: " + productInfo);
-                    productInfo = productInfo.replace(".", "");
+        protected void compute() {
+            if (end - start <= leafSize) {
+                SummaryTable table = tables.local();
+                boolean ignoreSignIndicators = BatchJobConfig.shouldIgnoreSignIndicators();
+                for (int i = start; i < end; i++) {
+                    table.addMovement(records.get(i), ignoreSignIndicators);
                 }
-
-                String key = clientInfo + "," + productInfo;
-                result.merge(key, transactionAmount, Double::sum);
+            } else {
+                int mid = (start + end) >>> 1;
+                invokeAll(new SummaryTask(records, start, mid, leafSize, tables),
+                        new SummaryTask(records, mid, end, leafSize, tables));
             }
-            return result;
-        }
-
-        private Map<String, Double> mergeResults(Map<String, Double> left, Map<String, Double> right) {
-            Map<String, Double> result = new HashMap<>(left);
-            right.forEach((key, value) -> result.merge(key, value, Double::sum));
-            return result;
         }
     }
 
     /**
-     * Constructs a client information string from an InputRecord.
-     *
-     * @param record The InputRecord containing client data.
-     * @return A string combining client type, client number, account number, and subaccount number.
+     * The default pool, dedicated to the Fork/Join processors and created on first use. Its workers
+     * are daemon threads named "pfm-forkjoin-N"; its parallelism is read from {@link #PARALLELISM_PROPERTY}.
      */
-    private String getClientInformation(InputRecord record) {
-        return record.clientType() + record.clientNumber() + record.accountNumber() + record.subAccountNumber();
+    private static final class DefaultPool {
+
+        static final ForkJoinPool INSTANCE = new ForkJoinPool(
+                Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors()),
+                pool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("pfm-forkjoin-" + thread.getPoolIndex());
+                    return thread;
+                },
+                null, false);
     }
 
     /**
-     * Constructs a product information string from an InputRecord.
+     * Calculates the total transaction amount based on the quantities and their signs from an InputRecord.
+     * This method considers the `ignoreSignIndicators` configuration from BatchJobConfig.
      *
-     * @param record The InputRecord containing product data.
-     * @return A string combining exchange code, product group code, symbol, and expiration date.
+     * @param record The record containing quantity and sign information.
+     * @return The calculated total transaction amount.
      */
-    private String getProductInformation(InputRecord record) {
-        return record.exchangeCode() + record.productGroupCode() + record.symbol() + record.expirationDate();
+    double calculateTransactionAmount(MovementRecord record) {
+        return FixedPoint.toDouble(calculateTransactionUnits(record), FixedPoint.SCALE);
     }
 
     /**
-     * Calculates the total transaction amount based on the quantities and their signs from an InputRecord.
-     * This method considers the `ignoreSignIndicators` configuration from BatchJobConfig.
+     * Calculates the transaction amount of an InputRecord exactly, as a fixed-point number in units
+     * of {@link FixedPoint#SCALE}, parsing the quantities without going through double.
      *
-     * @param record The InputRecord containing quantity and sign information.
-     * @return The calculated total transaction amount.
+     * @param record The record containing quantity and sign information.
+     * @return The transaction amount in units of {@link FixedPoint#SCALE}.
      */
-    private double calculateTransactionAmount(InputRecord record) {
-        if (BatchJobConfig.shouldIgnoreSignIndicators()) {
-            double quantityLong = Double.parseDouble(record.quantityLong());
-            double quantityShort = Double.parseDouble(record.quantityShort());
-            return quantityLong - quantityShort;
-        } else {
-            double quantityLong = Double.parseDouble(record.quantityLong()) * ("+".equals(record.quantityLongSign()) ? 1 : -1);
-            double quantityShort = Double.parseDouble(record.quantityShort()) * ("+".equals(record.quantityShortSign()) ? 1 : -1);
-            return quantityLong - quantityShort;
-        }
+    long calculateTransactionUnits(MovementRecord record) {
+        return FixedPoint.transactionUnits(record, BatchJobConfig.shouldIgnoreSignIndicators());
     }
 }
@@ -14,22 +14,67 @@
  */
 package tan.jerry.process_future_movement.service;
 
+import tan.jerry.process_future_movement.aggregate.FixedPoint;
+import tan.jerry.process_future_movement.aggregate.PartitionedSummaryTable;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
 import tan.jerry.process_future_movement.config.BatchJobConfig;
 import tan.jerry.process_future_movement.domain.InputRecord;
+import tan.jerry.process_future_movement.domain.MovementRecord;
+import tan.jerry.process_future_movement.metrics.EngineMetrics;
+import tan.jerry.process_future_movement.metrics.EngineMetrics.Stage;
+import tan.jerry.process_future_movement.reader.FileByteRange;
+import tan.jerry.process_future_movement.reader.InputFiles;
+import tan.jerry.process_future_movement.reader.InputRecordView;
+import tan.jerry.process_future_movement.reader.LineBatchReader;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * ProcessFutureMovementMapReduceTaskletProcessor uses a MapReduce-like approach
  * to parallelize the processing of InputRecord objects into OutputRecord objects.
+ * Map step: every mapper aggregates its share of the input into a table of its own, split into
+ * hash partitions of the client-product keys. Shuffle and reduce steps: each reducer merges one
+ * partition of every mapper, so reducers never contend for a key, however skewed the input is.
  */
 public class ProcessFutureMovementMapReduceTaskletProcessor implements ProcessFutureMovementService { // TODO => implements ItemProcessor<InputRecord, OutputRecord>
 
+    /**
+     * Stage timings and throughput of this engine.
+     */
+    private static final EngineMetrics METRICS = EngineMetrics.forEngine("mapreduce");
+
+    /**
+     * How records get from the input file to the workers; streaming by default.
+     */
+    private InputMode inputMode = InputMode.STREAMING;
+
+    /**
+     * Number of lines per batch in streaming mode.
+     */
+    private int batchSize = LineBatchReader.DEFAULT_BATCH_SIZE;
+
+    /**
+     * Approximate number of bytes per range in split mode.
+     */
+    private long splitSize = ByteRangeAggregation.DEFAULT_SPLIT_SIZE;
+
+    /**
+     * The pool running the mappers and reducers; the common pool by default.
+     */
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Number of reducer partitions; 0 uses one per worker of the pool.
+     */
+    private int partitions;
+
     /**
      * Main method for testing the MapReduce implementation.
      *
@@ -44,49 +89,192 @@ public class ProcessFutureMovementMapReduceTaskletProcessor implements ProcessFu
      *
      * @param inputFileName  The name of the input file.
      * @param outputFileName The name of the output file.
-     * @return
+     * @return A map representing the client-product keys and their corresponding total transaction amounts.
      */
     public Map<String, Double> process(String inputFileName, String outputFileName) {
+        return summarize(inputFileName, outputFileName).toMap();
+    }
+
+    /**
+     * Processes the input file into a summary table and generates the output CSV using MapReduce.
+     *
+     * @param inputFileName  The name of the input file.
+     * @param outputFileName The name of the output file.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     */
+    @Override
+    public SummaryTable summarize(String inputFileName, String outputFileName) {
+        long run = METRICS.start();
+        SummaryTable result = switch (inputMode) {
+            case MATERIALIZED -> summarizeMaterialized(inputFileName);
+            case STREAMING -> summarizeStreaming(inputFileName);
+            case SPLIT -> summarizeSplit(inputFileName);
+        };
+        long write = METRICS.start();
+        writeOutputFile(outputFileName, result);
+        METRICS.stop(Stage.WRITE, write);
+        METRICS.completed(run, inputFileName, result);
+        return result;
+    }
+
+    /**
+     * Sets how records get from the input file to the workers.
+     *
+     * @param inputMode The input mode to use.
+     */
+    public void setInputMode(InputMode inputMode) {
+        this.inputMode = inputMode;
+    }
+
+    /**
+     * Sets the number of lines per batch in streaming mode.
+     *
+     * @param batchSize The number of lines per batch.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the approximate number of bytes per range in split mode; ranges are never split below it.
+     *
+     * @param splitSize The number of bytes per range.
+     */
+    public void setSplitSize(long splitSize) {
+        if (splitSize < 1) {
+            throw new IllegalArgumentException("splitSize must be positive");
+        }
+        this.splitSize = splitSize;
+    }
+
+    /**
+     * Sets the pool running the mappers and reducers, for instance to bound the number of cores used.
+     *
+     * @param pool The pool to use.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the number of reducer partitions the keys are shuffled into.
+     *
+     * @param partitions The number of partitions; 0 uses one per worker of the pool.
+     */
+    public void setPartitions(int partitions) {
+        if (partitions < 0) {
+            throw new IllegalArgumentException("partitions must not be negative");
+        }
+        this.partitions = partitions;
+    }
+
+    /**
+     * @return The number of reducer partitions in effect.
+     */
+    int partitions() {
+        return partitions > 0 ? partitions : pool.getParallelism();
+    }
+
+    /**
+     * Reads the whole input file into memory and aggregates it in map and reduce steps.
+     *
+     * @param inputFileName The name of the input file.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     */
+    private SummaryTable summarizeMaterialized(String inputFileName) {
+        long read = METRICS.start();
         List<InputRecord> records = readInputFile(inputFileName);
+        METRICS.stop(Stage.READ, read);
 
-        // Map step: create intermediate map of client-product keys and transaction amounts
-        Map<String, Double> intermediateMap = new ConcurrentHashMap<>();
-        records.parallelStream().forEach(record -> {
-            String clientInfo = getClientInformation(record);
-            String productInfo = getProductInformation(record);
-            double transactionAmount = calculateTransactionAmount(record);
-
-            // Remove period character from Product Information if present
-            if (productInfo.contains(".")) {
-                System.out.println("Period detected in Product Information: " + productInfo);
-                productInfo = productInfo.replace(".", "");
-            }
+        // Map step: each mapper aggregates a slice of the records into partitioned tables of client-product keys
+        long aggregate = METRICS.start();
+        Collection<PartitionedSummaryTable> mapped = ShuffleAggregation.map(records, pool, pool.getParallelism(), partitions());
+        METRICS.stop(Stage.AGGREGATE, aggregate);
+        // Shuffle and reduce steps: each reducer merges one partition of every mapper
+        return reduce(mapped);
+    }
 
-            String key = clientInfo + "," + productInfo;
-            intermediateMap.merge(key, transactionAmount, Double::sum);
-        });
+    /**
+     * Streams the input file in batches of lines. Map step: pool workers parse and aggregate
+     * the batches into per-worker partitioned tables while the next batches are read. Shuffle and
+     * reduce steps: once the input is exhausted, each reducer merges one partition of every worker.
+     *
+     * @param inputFileName The name of the input file, on the file system or the classpath.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     * @throws UncheckedIOException if the input cannot be found or read.
+     */
+    private SummaryTable summarizeStreaming(String inputFileName) {
+        int parallelism = pool.getParallelism();
+        int reducers = partitions();
+        try (LineBatchReader batches = new LineBatchReader(InputFiles.newReader(inputFileName), batchSize, parallelism)) {
+            long aggregate = METRICS.start();
+            Collection<PartitionedSummaryTable> mapped = StreamingAggregation.aggregateByWorker(batches, pool, 2 * parallelism,
+                    () -> new PartitionedSummaryTable(reducers), (lines, table) -> {
+                        InputRecordView record = new InputRecordView(); // decodes only the fields the summary reads
+                        for (String line : lines) {
+                            table.addMovement(record.wrap(line), BatchJobConfig.shouldIgnoreSignIndicators());
+                        }
+                    });
+            METRICS.stop(Stage.AGGREGATE, aggregate);
+            return reduce(mapped);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + inputFileName, e);
+        }
+    }
 
-        // Reduce step: merge intermediate map into final result map
-        Map<String, Double> result = new HashMap<>(intermediateMap);
-        writeOutputFile(outputFileName, result);
-        return intermediateMap;
+    /**
+     * Splits the input file into newline-aligned byte ranges that the pool parses and aggregates
+     * straight from the mapped bytes. Each worker maps its ranges into its own partitioned table,
+     * and each reducer merges one partition of every worker.
+     *
+     * @param inputFileName The name of the input file, on the file system or the classpath.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     */
+    private SummaryTable summarizeSplit(String inputFileName) {
+        try (FileChannel channel = FileChannel.open(InputFiles.resolve(inputFileName), StandardOpenOption.READ)) {
+            long aggregate = METRICS.start();
+            Collection<PartitionedSummaryTable> mapped =
+                    ByteRangeAggregation.mapPartitioned(FileByteRange.of(channel), pool, splitSize, partitions());
+            METRICS.stop(Stage.AGGREGATE, aggregate);
+            return reduce(mapped);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new SummaryTable();
+        }
+    }
+
+    /**
+     * Shuffle and reduce steps, timed as the merge stage.
+     *
+     * @param mapped The partitioned table of every mapper.
+     * @return A summary table holding the totals of every mapper.
+     */
+    private SummaryTable reduce(Collection<PartitionedSummaryTable> mapped) {
+        long merge = METRICS.start();
+        SummaryTable result = ShuffleAggregation.reduce(mapped, pool);
+        METRICS.stop(Stage.MERGE, merge);
+        return result;
     }
 
     /**
      * Reads the input file and parses it into a list of InputRecord objects.
      *
-     * @param inputFileName The name of the input file.
+     * @param inputFileName The name of the input file, on the file system or the classpath.
      * @return A list of InputRecord objects.
+     * @throws UncheckedIOException if the input cannot be found or read.
      */
     private List<InputRecord> readInputFile(String inputFileName) {
         List<InputRecord> records = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFileName))) {
+        try (BufferedReader reader = InputFiles.newReader(inputFileName)) {
             String line;
             while ((line = reader.readLine()) != null) {
                 records.add(parseInputRecord(line));
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("Unable to read " + inputFileName, e);
         }
         return records;
     }
@@ -95,14 +283,15 @@ public class ProcessFutureMovementMapReduceTaskletProcessor implements ProcessFu
      * Writes the results to the output CSV file.
      *
      * @param outputFileName The name of the output file.
-     * @param result         The result map to write to the file.
+     * @param result         The summary table to write to the file.
      */
-    private void writeOutputFile(String outputFileName, Map<String, Double> result) {
+    void writeOutputFile(String outputFileName, SummaryTable result) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFileName))) {
             writer.write("Client_Information,Product_Information,Total_Transaction_Amount");
             writer.newLine();
-            for (Map.Entry<String, Double> entry : result.entrySet()) {
-                writer.write(entry.getKey() + "," + entry.getValue());
+            SummaryTable.Cursor cursor = result.cursor();
+            while (cursor.next()) {
+                writer.write(cursor.clientInformation() + "," + cursor.productInformation() + "," + cursor.total());
                 writer.newLine();
             }
         } catch (IOException e) {
@@ -116,7 +305,7 @@ public class ProcessFutureMovementMapReduceTaskletProcessor implements ProcessFu
      * @param line The line from the input file.
      * @return An InputRecord object.
      */
-    private InputRecord parseInputRecord(String line) {
+    InputRecord parseInputRecord(String line) {
         return new InputRecord(
                 line.substring(0, 3).trim(),  // Record Code
                 line.substring(3, 7).trim(),  // Client Type
@@ -135,18 +324,18 @@ public class ProcessFutureMovementMapReduceTaskletProcessor implements ProcessFu
                 line.substring(52, 62).trim(), // Quantity Long
                 line.substring(62, 63).trim(), // Quantity Short Sign
                 line.substring(63, 73).trim(), // Quantity Short
-                line.substring(73, 86).trim(), // Exchange Broker Fee Decimal
-                line.substring(86, 87).trim(), // Exchange Broker Fee DC
-                line.substring(87, 90).trim(), // Exchange Broker Fee Currency Code
-                line.substring(90, 101).trim(), // Clearing Fee Decimal
+                line.substring(73, 85).trim(), // Exchange Broker Fee Decimal
+                line.substring(85, 86).trim(), // Exchange Broker Fee DC
+                line.substring(86, 89).trim(), // Exchange Broker Fee Currency Code
+                line.substring(89, 101).trim(), // Clearing Fee Decimal
                 line.substring(101, 102).trim(), // Clearing Fee DC
                 line.substring(102, 105).trim(), // Clearing Fee Currency Code
-                line.substring(105, 118).trim(), // Commission
-                line.substring(118, 119).trim(), // Commission DC
-                line.substring(119, 122).trim(), // Commission Currency Code
-                line.substring(122, 130).trim(), // Transaction Date
-                line.substring(130, 136).trim(), // Future Reference
-                line.substring(136, 141).trim(), // Ticket Number
+                line.substring(105, 117).trim(), // Commission
+                line.substring(117, 118).trim(), // Commission DC
+                line.substring(118, 121).trim(), // Commission Currency Code
+                line.substring(121, 129).trim(), // Transaction Date
+                line.substring(129, 135).trim(), // Future Reference
+                line.substring(135, 141).trim(), // Ticket Number
                 line.substring(141, 147).trim(), // External Number
                 line.substring(147, 162).trim(), // Transaction Price Decimal
                 line.substring(162, 168).trim(), // Trader Initials
@@ -157,42 +346,25 @@ public class ProcessFutureMovementMapReduceTaskletProcessor implements ProcessFu
     }
 
     /**
-     * Constructs a client information string from an InputRecord.
-     *
-     * @param record The InputRecord containing client data.
-     * @return A string combining client type, client number, account number, and subaccount number.
-     */
-    private String getClientInformation(InputRecord record) {
-        return record.clientType() + record.clientNumber() + record.accountNumber() + record.subAccountNumber();
-    }
-
-    /**
-     * Constructs a product information string from an InputRecord.
+     * Calculates the total transaction amount based on the quantities and their signs from an InputRecord.
+     * This method considers the `ignoreSignIndicators` configuration from BatchJobConfig.
      *
-     * @param record The InputRecord containing product data.
-     * @return A string combining exchange code, product group code, symbol, and expiration date.
+     * @param record The record containing quantity and sign information.
+     * @return The calculated total transaction amount.
      */
-    private String getProductInformation(InputRecord record) {
-        return record.exchangeCode() + record.productGroupCode() + record.symbol() + record.expirationDate();
+    double calculateTransactionAmount(MovementRecord record) {
+        return FixedPoint.toDouble(calculateTransactionUnits(record), FixedPoint.SCALE);
     }
 
     /**
-     * Calculates the total transaction amount based on the quantities and their signs from an InputRecord.
-     * This method considers the `ignoreSignIndicators` configuration from BatchJobConfig.
+     * Calculates the transaction amount of an InputRecord exactly, as a fixed-point number in units
+     * of {@link FixedPoint#SCALE}, parsing the quantities without going through double.
      *
-     * @param record The InputRecord containing quantity and sign information.
-     * @return The calculated total transaction amount.
+     * @param record The record containing quantity and sign information.
+     * @return The transaction amount in units of {@link FixedPoint#SCALE}.
      */
-    private double calculateTransactionAmount(InputRecord record) {
-        if (BatchJobConfig.shouldIgnoreSignIndicators()) {
-            double quantityLong = Double.parseDouble(record.quantityLong());
-            double quantityShort = Double.parseDouble(record.quantityShort());
-            return quantityLong - quantityShort;
-        } else {
-            double quantityLong = Double.parseDouble(record.quantityLong()) * ("+".equals(record.quantityLongSign()) ? 1 : -1);
-            double quantityShort = Double.parseDouble(record.quantityShort()) * ("+".equals(record.quantityShortSign()) ? 1 : -1);
-            return quantityLong - quantityShort;
-        }
+    long calculateTransactionUnits(MovementRecord record) {
+        return FixedPoint.transactionUnits(record, BatchJobConfig.shouldIgnoreSignIndicators());
     }
 
     public Map<String, Double> process(Map<String, Double> expectedResults) {
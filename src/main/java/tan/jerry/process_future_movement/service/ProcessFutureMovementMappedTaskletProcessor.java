@@ -0,0 +1,229 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import tan.jerry.process_future_movement.aggregate.SpillingSummaryTable;
+import tan.jerry.process_future_movement.aggregate.SpillingSummaryTable.SpillStats;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.metrics.EngineMetrics;
+import tan.jerry.process_future_movement.metrics.EngineMetrics.Stage;
+import tan.jerry.process_future_movement.reader.FileByteRange;
+import tan.jerry.process_future_movement.reader.InputFiles;
+import tan.jerry.process_future_movement.reader.InputLineValidator;
+import tan.jerry.process_future_movement.reader.InputLineValidator.Reason;
+import tan.jerry.process_future_movement.reader.ProcessFutureMovementReader;
+import tan.jerry.process_future_movement.reader.QuarantineWriter;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * ProcessFutureMovementMappedTaskletProcessor memory-maps the input file and reads the
+ * client, product and quantity columns straight from the ASCII bytes, using the column
+ * ranges of {@link ProcessFutureMovementReader}. Unlike the other tasklet processors it
+ * never builds an InputRecord: keys are packed from the bytes into a {@link SummaryTable},
+ * so aggregating a line allocates nothing.
+ *
+ * <p>{@link #summarizeExternally(String, String)} aggregates within a memory budget instead,
+ * spilling to a {@link SpillingSummaryTable} and writing the output partition by partition,
+ * for days with more client-product keys than the heap can hold.</p>
+ *
+ * <p>With a {@link QuarantineWriter} set, {@link #summarize(String, String)} validates every line
+ * first and quarantines the malformed ones instead of failing on them.</p>
+ */
+public class ProcessFutureMovementMappedTaskletProcessor implements ProcessFutureMovementService {
+
+    /**
+     * Heap, in bytes, the in-memory table of {@link #summarizeExternally(String, String)} may take by default.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+
+    /**
+     * Stage timings and throughput of this engine.
+     */
+    private static final EngineMetrics METRICS = EngineMetrics.forEngine("mapped");
+
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+    private Path spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+
+    private InputLineValidator validator = new InputLineValidator();
+
+    private QuarantineWriter quarantine;
+
+    /**
+     * Main method for testing the memory-mapped implementation.
+     *
+     * @param args Command line arguments (not used).
+     */
+    public static void main(String[] args) {
+        new ProcessFutureMovementMappedTaskletProcessor().process("Input.txt", "OutputEx.csv");
+    }
+
+    /**
+     * Processes the input file and generates the output CSV from the memory-mapped bytes.
+     *
+     * @param inputFileName  The name of the input file, on the file system or the classpath.
+     * @param outputFileName The name of the output file.
+     * @return A map representing the client-product keys and their corresponding total transaction amounts.
+     */
+    public Map<String, Double> process(String inputFileName, String outputFileName) {
+        return summarize(inputFileName, outputFileName).toMap();
+    }
+
+    /**
+     * Processes the input file into a summary table and generates the output CSV from the memory-mapped bytes.
+     *
+     * @param inputFileName  The name of the input file, on the file system or the classpath.
+     * @param outputFileName The name of the output file.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     * @throws UncheckedIOException if the input cannot be found or mapped, or the output cannot be written.
+     */
+    @Override
+    public SummaryTable summarize(String inputFileName, String outputFileName) {
+        long run = METRICS.start();
+        SummaryTable result;
+        try {
+            result = summarize(InputFiles.resolve(inputFileName));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + inputFileName, e);
+        }
+        long write = METRICS.start();
+        writeOutputFile(outputFileName, result);
+        METRICS.stop(Stage.WRITE, write);
+        METRICS.completed(run, inputFileName, result);
+        return result;
+    }
+
+    /**
+     * Processes the input file within the memory budget and generates the output CSV one partition
+     * at a time. Keys beyond the budget are spilled to run files in the spill directory, which are
+     * deleted once aggregated; the rows come out grouped by partition rather than in input order.
+     *
+     * @param inputFileName  The name of the input file, on the file system or the classpath.
+     * @param outputFileName The name of the output file.
+     * @return The spill counts and bytes; all zero if the keys fitted in the budget.
+     * @throws UncheckedIOException if the input cannot be read, or the run files or the output cannot be written.
+     */
+    public SpillStats summarizeExternally(String inputFileName, String outputFileName) {
+        try (FileChannel channel = FileChannel.open(InputFiles.resolve(inputFileName), StandardOpenOption.READ);
+             SpillingSummaryTable table = new SpillingSummaryTable(memoryBudget, spillDirectory);
+             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFileName))) {
+            ByteRangeAggregation.aggregate(FileByteRange.of(channel), table);
+            writeHeader(writer);
+            table.forEachPartition(partition -> writeRows(writer, partition));
+            return table.stats();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sets the heap the in-memory table of {@link #summarizeExternally(String, String)} may take.
+     *
+     * @param memoryBudget The budget in bytes.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Sets the directory {@link #summarizeExternally(String, String)} spills run files to.
+     *
+     * @param spillDirectory The directory, java.io.tmpdir by default.
+     */
+    public void setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Sets the validator checking every line when a quarantine is set.
+     *
+     * @param validator The validator; by default one accepting {@link InputLineValidator#DEFAULT_RECORD_CODES}.
+     */
+    public void setValidator(InputLineValidator validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * Sets the quarantine receiving the lines the validator rejects. Without one, lines are not
+     * validated, and a malformed line fails the run.
+     *
+     * @param quarantine The quarantine, flushed at the end of every run.
+     */
+    public void setQuarantine(QuarantineWriter quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * Maps the input file window by window and aggregates every line into a client-product summary.
+     *
+     * @param inputPath The path of the input file.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     * @throws IOException if the file cannot be mapped.
+     */
+    SummaryTable summarize(Path inputPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(inputPath, StandardOpenOption.READ)) {
+            long aggregate = METRICS.start(); // parses and aggregates the mapped bytes in one pass
+            if (quarantine == null) {
+                SummaryTable table = ByteRangeAggregation.aggregate(FileByteRange.of(channel), new SummaryTable());
+                METRICS.stop(Stage.AGGREGATE, aggregate);
+                return table;
+            }
+            Map<Reason, Long> before = quarantine.counts();
+            SummaryTable table = ByteRangeAggregation.aggregate(FileByteRange.of(channel), new SummaryTable(), validator, quarantine);
+            METRICS.stop(Stage.AGGREGATE, aggregate);
+            quarantine.flush();
+            quarantine.counts().forEach((reason, count) -> METRICS.invalidLines(reason, count - before.get(reason)));
+            return table;
+        }
+    }
+
+    /**
+     * Writes the results to the output CSV file.
+     *
+     * @param outputFileName The name of the output file.
+     * @param result         The summary table to write to the file.
+     * @throws UncheckedIOException if the output cannot be written.
+     */
+    void writeOutputFile(String outputFileName, SummaryTable result) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFileName))) {
+            writeHeader(writer);
+            writeRows(writer, result);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write " + outputFileName, e);
+        }
+    }
+
+    private static void writeHeader(BufferedWriter writer) throws IOException {
+        writer.write("Client_Information,Product_Information,Total_Transaction_Amount");
+        writer.newLine();
+    }
+
+    private static void writeRows(BufferedWriter writer, SummaryTable result) throws IOException {
+        SummaryTable.Cursor cursor = result.cursor();
+        while (cursor.next()) {
+            writer.write(cursor.clientInformation() + "," + cursor.productInformation() + "," + cursor.total());
+            writer.newLine();
+        }
+    }
+}
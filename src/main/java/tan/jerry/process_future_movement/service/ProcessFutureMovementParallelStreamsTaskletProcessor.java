@@ -14,15 +14,23 @@
  */
 package tan.jerry.process_future_movement.service;
 
+import tan.jerry.process_future_movement.aggregate.FixedPoint;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
 import tan.jerry.process_future_movement.config.BatchJobConfig;
 import tan.jerry.process_future_movement.domain.InputRecord;
+import tan.jerry.process_future_movement.domain.MovementRecord;
+import tan.jerry.process_future_movement.metrics.EngineMetrics;
+import tan.jerry.process_future_movement.metrics.EngineMetrics.Stage;
+import tan.jerry.process_future_movement.reader.FileByteRange;
+import tan.jerry.process_future_movement.reader.InputFiles;
+import tan.jerry.process_future_movement.reader.LineBatchReader;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentMap;
-import java.util.stream.Collectors;
 
 /**
  * ProcessFutureMovementParallelStreamsTaskletProcessor uses Java Parallel Streams
@@ -30,6 +38,26 @@ import java.util.stream.Collectors;
  */
 public class ProcessFutureMovementParallelStreamsTaskletProcessor implements ProcessFutureMovementService { // TODO => implements ItemProcessor<InputRecord, OutputRecord>
 
+    /**
+     * Stage timings and throughput of this engine.
+     */
+    private static final EngineMetrics METRICS = EngineMetrics.forEngine("parallelstreams");
+
+    /**
+     * How records get from the input file to the workers; streaming by default.
+     */
+    private InputMode inputMode = InputMode.STREAMING;
+
+    /**
+     * Number of lines per batch in streaming mode.
+     */
+    private int batchSize = LineBatchReader.DEFAULT_BATCH_SIZE;
+
+    /**
+     * Approximate number of bytes per range in split mode.
+     */
+    private long splitSize = ByteRangeAggregation.DEFAULT_SPLIT_SIZE;
+
     /**
      * Main method for testing the Parallel Streams implementation.
      *
@@ -46,33 +74,147 @@ public class ProcessFutureMovementParallelStreamsTaskletProcessor implements Pro
      * @param outputFileName The name of the output file.
      */
     public void process(String inputFileName, String outputFileName) {
+        summarize(inputFileName, outputFileName);
+    }
+
+    /**
+     * Processes the input file into a summary table and generates the output CSV using Parallel Streams.
+     *
+     * @param inputFileName  The name of the input file.
+     * @param outputFileName The name of the output file.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     */
+    @Override
+    public SummaryTable summarize(String inputFileName, String outputFileName) {
+        long run = METRICS.start();
+        SummaryTable result = switch (inputMode) {
+            case MATERIALIZED -> summarizeMaterialized(inputFileName);
+            case STREAMING -> summarizeStreaming(inputFileName);
+            case SPLIT -> summarizeSplit(inputFileName);
+        };
+        long write = METRICS.start();
+        writeOutputFile(outputFileName, result);
+        METRICS.stop(Stage.WRITE, write);
+        METRICS.completed(run, inputFileName, result);
+        return result;
+    }
+
+    /**
+     * Sets how records get from the input file to the workers.
+     *
+     * @param inputMode The input mode to use.
+     */
+    public void setInputMode(InputMode inputMode) {
+        this.inputMode = inputMode;
+    }
+
+    /**
+     * Sets the number of lines per batch in streaming mode.
+     *
+     * @param batchSize The number of lines per batch.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the approximate number of bytes per range in split mode; ranges are never split below it.
+     *
+     * @param splitSize The number of bytes per range.
+     */
+    public void setSplitSize(long splitSize) {
+        if (splitSize < 1) {
+            throw new IllegalArgumentException("splitSize must be positive");
+        }
+        this.splitSize = splitSize;
+    }
+
+    /**
+     * Reads the whole input file into memory and aggregates it with one parallel stream.
+     *
+     * @param inputFileName The name of the input file.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     */
+    private SummaryTable summarizeMaterialized(String inputFileName) {
+        long read = METRICS.start();
         List<InputRecord> records = readInputFile(inputFileName);
+        METRICS.stop(Stage.READ, read);
 
-        // Process records using parallel streams to calculate transaction amounts
-        ConcurrentMap<String, Double> result = records.parallelStream()
-                .collect(Collectors.groupingByConcurrent(
-                        record -> getClientInformation(record) + "," + getProductInformation(record),
-                        Collectors.summingDouble(this::calculateTransactionAmount)
-                ));
+        // Process records using parallel streams; each worker accumulates into its own table, merged as the stream joins
+        long aggregate = METRICS.start();
+        SummaryTable result = records.parallelStream()
+                .collect(SummaryTable::new,
+                        (table, record) -> table.addMovement(record, BatchJobConfig.shouldIgnoreSignIndicators()),
+                        SummaryTable::mergeFrom);
+        METRICS.stop(Stage.AGGREGATE, aggregate);
+        return result;
+    }
 
-        writeOutputFile(outputFileName, result);
+    /**
+     * Streams the input file in batches of lines and aggregates each batch with a parallel stream,
+     * while a background thread reads the following batches.
+     *
+     * @param inputFileName The name of the input file, on the file system or the classpath.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     * @throws UncheckedIOException if the input cannot be found or read.
+     */
+    private SummaryTable summarizeStreaming(String inputFileName) {
+        SummaryTable result = new SummaryTable();
+        long aggregate = METRICS.start(); // batches are read while the previous ones are aggregated
+        try (LineBatchReader batches = new LineBatchReader(InputFiles.newReader(inputFileName), batchSize, 2)) {
+            List<String> lines;
+            while ((lines = batches.nextBatch()) != null) {
+                result.mergeFrom(lines.parallelStream()
+                        .map(this::parseInputRecord)
+                        .collect(SummaryTable::new,
+                                (table, record) -> table.addMovement(record, BatchJobConfig.shouldIgnoreSignIndicators()),
+                                SummaryTable::mergeFrom));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read " + inputFileName, e);
+        }
+        METRICS.stop(Stage.AGGREGATE, aggregate);
+        return result;
+    }
+
+    /**
+     * Splits the input file into newline-aligned byte ranges that a parallel stream parses and aggregates
+     * straight from the mapped bytes. The stream splits the file into ranges at line boundaries and balances them by work stealing.
+     *
+     * @param inputFileName The name of the input file, on the file system or the classpath.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     */
+    private SummaryTable summarizeSplit(String inputFileName) {
+        try (FileChannel channel = FileChannel.open(InputFiles.resolve(inputFileName), StandardOpenOption.READ)) {
+            long aggregate = METRICS.start();
+            SummaryTable result = ByteRangeAggregation.parallelStream(FileByteRange.of(channel), splitSize);
+            METRICS.stop(Stage.AGGREGATE, aggregate);
+            return result;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new SummaryTable();
+        }
     }
 
     /**
      * Reads the input file and parses it into a list of InputRecord objects.
      *
-     * @param inputFileName The name of the input file.
+     * @param inputFileName The name of the input file, on the file system or the classpath.
      * @return A list of InputRecord objects.
+     * @throws UncheckedIOException if the input cannot be found or read.
      */
     private List<InputRecord> readInputFile(String inputFileName) {
         List<InputRecord> records = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFileName))) {
+        try (BufferedReader reader = InputFiles.newReader(inputFileName)) {
             String line;
             while ((line = reader.readLine()) != null) {
                 records.add(parseInputRecord(line));
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("Unable to read " + inputFileName, e);
         }
         return records;
     }
@@ -81,14 +223,15 @@ public class ProcessFutureMovementParallelStreamsTaskletProcessor implements Pro
      * Writes the results to the output CSV file.
      *
      * @param outputFileName The name of the output file.
-     * @param result         The result map to write to the file.
+     * @param result         The summary table to write to the file.
      */
-    private void writeOutputFile(String outputFileName, Map<String, Double> result) {
+    void writeOutputFile(String outputFileName, SummaryTable result) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFileName))) {
             writer.write("Client_Information,Product_Information,Total_Transaction_Amount");
             writer.newLine();
-            for (Map.Entry<String, Double> entry : result.entrySet()) {
-                writer.write(entry.getKey() + "," + entry.getValue());
+            SummaryTable.Cursor cursor = result.cursor();
+            while (cursor.next()) {
+                writer.write(cursor.clientInformation() + "," + cursor.productInformation() + "," + cursor.total());
                 writer.newLine();
             }
         } catch (IOException e) {
@@ -102,7 +245,7 @@ public class ProcessFutureMovementParallelStreamsTaskletProcessor implements Pro
      * @param line The line from the input file.
      * @return An InputRecord object.
      */
-    private InputRecord parseInputRecord(String line) {
+    InputRecord parseInputRecord(String line) {
         return new InputRecord(
                 line.substring(0, 3).trim(),  // Record Code
                 line.substring(3, 7).trim(),  // Client Type
@@ -121,18 +264,18 @@ public class ProcessFutureMovementParallelStreamsTaskletProcessor implements Pro
                 line.substring(52, 62).trim(), // Quantity Long
                 line.substring(62, 63).trim(), // Quantity Short Sign
                 line.substring(63, 73).trim(), // Quantity Short
-                line.substring(73, 86).trim(), // Exchange Broker Fee Decimal
-                line.substring(86, 87).trim(), // Exchange Broker Fee DC
-                line.substring(87, 90).trim(), // Exchange Broker Fee Currency Code
-                line.substring(90, 101).trim(), // Clearing Fee Decimal
+                line.substring(73, 85).trim(), // Exchange Broker Fee Decimal
+                line.substring(85, 86).trim(), // Exchange Broker Fee DC
+                line.substring(86, 89).trim(), // Exchange Broker Fee Currency Code
+                line.substring(89, 101).trim(), // Clearing Fee Decimal
                 line.substring(101, 102).trim(), // Clearing Fee DC
                 line.substring(102, 105).trim(), // Clearing Fee Currency Code
-                line.substring(105, 118).trim(), // Commission
-                line.substring(118, 119).trim(), // Commission DC
-                line.substring(119, 122).trim(), // Commission Currency Code
-                line.substring(122, 130).trim(), // Transaction Date
-                line.substring(130, 136).trim(), // Future Reference
-                line.substring(136, 141).trim(), // Ticket Number
+                line.substring(105, 117).trim(), // Commission
+                line.substring(117, 118).trim(), // Commission DC
+                line.substring(118, 121).trim(), // Commission Currency Code
+                line.substring(121, 129).trim(), // Transaction Date
+                line.substring(129, 135).trim(), // Future Reference
+                line.substring(135, 141).trim(), // Ticket Number
                 line.substring(141, 147).trim(), // External Number
                 line.substring(147, 162).trim(), // Transaction Price Decimal
                 line.substring(162, 168).trim(), // Trader Initials
@@ -143,42 +286,25 @@ public class ProcessFutureMovementParallelStreamsTaskletProcessor implements Pro
     }
 
     /**
-     * Constructs a client information string from an InputRecord.
-     *
-     * @param record The InputRecord containing client data.
-     * @return A string combining client type, client number, account number, and subaccount number.
-     */
-    private String getClientInformation(InputRecord record) {
-        return record.clientType() + record.clientNumber() + record.accountNumber() + record.subAccountNumber();
-    }
-
-    /**
-     * Constructs a product information string from an InputRecord.
+     * Calculates the total transaction amount based on the quantities and their signs from an InputRecord.
+     * This method considers the `ignoreSignIndicators` configuration from BatchJobConfig.
      *
-     * @param record The InputRecord containing product data.
-     * @return A string combining exchange code, product group code, symbol, and expiration date.
+     * @param record The record containing quantity and sign information.
+     * @return The calculated total transaction amount.
      */
-    private String getProductInformation(InputRecord record) {
-        return record.exchangeCode() + record.productGroupCode() + record.symbol() + record.expirationDate();
+    double calculateTransactionAmount(MovementRecord record) {
+        return FixedPoint.toDouble(calculateTransactionUnits(record), FixedPoint.SCALE);
     }
 
     /**
-     * Calculates the total transaction amount based on the quantities and their signs from an InputRecord.
-     * This method considers the `ignoreSignIndicators` configuration from BatchJobConfig.
+     * Calculates the transaction amount of an InputRecord exactly, as a fixed-point number in units
+     * of {@link FixedPoint#SCALE}, parsing the quantities without going through double.
      *
-     * @param record The InputRecord containing quantity and sign information.
-     * @return The calculated total transaction amount.
+     * @param record The record containing quantity and sign information.
+     * @return The transaction amount in units of {@link FixedPoint#SCALE}.
      */
-    private double calculateTransactionAmount(InputRecord record) {
-        if (BatchJobConfig.shouldIgnoreSignIndicators()) {
-            double quantityLong = Double.parseDouble(record.quantityLong());
-            double quantityShort = Double.parseDouble(record.quantityShort());
-            return quantityLong - quantityShort;
-        } else {
-            double quantityLong = Double.parseDouble(record.quantityLong()) * ("+".equals(record.quantityLongSign()) ? 1 : -1);
-            double quantityShort = Double.parseDouble(record.quantityShort()) * ("+".equals(record.quantityShortSign()) ? 1 : -1);
-            return quantityLong - quantityShort;
-        }
+    long calculateTransactionUnits(MovementRecord record) {
+        return FixedPoint.transactionUnits(record, BatchJobConfig.shouldIgnoreSignIndicators());
     }
 
     public Map<String, Double> process() {
@@ -18,15 +18,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.beans.factory.annotation.Value;
-import tan.jerry.process_future_movement.domain.InputRecord;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.domain.MovementRecord;
 import tan.jerry.process_future_movement.domain.OutputRecord;
 
 /**
  * ProcessFutureMovementProcessor processes input records to produce output records.
  * It implements the ItemProcessor interface, enabling transformation of InputRecord
- * objects into OutputRecord objects during the Spring Batch processing flow.
+ * objects into OutputRecord objects during the Spring Batch processing flow. It accepts
+ * any MovementRecord, so an InputRecordView over a raw line works as well as an InputRecord.
  */
-public class ProcessFutureMovementProcessor implements ItemProcessor<InputRecord, OutputRecord>, ProcessFutureMovementService  {
+public class ProcessFutureMovementProcessor implements ItemProcessor<MovementRecord, OutputRecord>, ProcessFutureMovementService  {
 
     private static final Logger logger = LoggerFactory.getLogger(ProcessFutureMovementProcessor.class);
 
@@ -43,7 +45,7 @@ public class ProcessFutureMovementProcessor implements ItemProcessor<InputRecord
      * @throws Exception if an error occurs during processing.
      */
     @Override
-    public OutputRecord process(InputRecord item) throws Exception {
+    public OutputRecord process(MovementRecord item) throws Exception {
         logger.info("Processing item: {}", item);
 
         // Calculate total transaction amount based on quantity and sign
@@ -69,6 +71,19 @@ public class ProcessFutureMovementProcessor implements ItemProcessor<InputRecord
         return new OutputRecord(clientInformation, productInformation, totalTransactionAmount);
     }//process
 
+    /**
+     * Summarizes a whole input file. This processor maps one record at a time inside a chunk, so
+     * the file is read by the sequential engine, which aggregates the records the same way.
+     *
+     * @param inputFileName  The name of the input file on the classpath.
+     * @param outputFileName The path to the output CSV file.
+     * @return A summary table containing client-product keys and their total transaction amounts.
+     */
+    @Override
+    public SummaryTable summarize(String inputFileName, String outputFileName) {
+        return new ProcessFutureMovementTaskletProcessor().summarize(inputFileName, outputFileName);
+    }
+
     /**
      * A stub method for processing input records in a different way, potentially for debugging.
      * If the debug flag is set, this method copies pertinent records from InputRecord to OutputRecord.
@@ -79,7 +94,7 @@ public class ProcessFutureMovementProcessor implements ItemProcessor<InputRecord
      * @throws Exception if an error occurs during processing.
      */
     //@Override
-    public OutputRecord process_ex2(InputRecord item) throws Exception {
+    public OutputRecord process_ex2(MovementRecord item) throws Exception {
         logger.trace("Processing item: {}", item);
         if (debug_flag) {
             logger.debug("Debug flag is set. Copying input record to output record.");
@@ -122,7 +137,7 @@ public class ProcessFutureMovementProcessor implements ItemProcessor<InputRecord
      * @throws Exception if an error occurs during processing.
      */
     //@Override
-    public OutputRecord process_ex(InputRecord item) throws Exception {
+    public OutputRecord process_ex(MovementRecord item) throws Exception {
         logger.trace("processing item: " + item.toString());
 
         // TODO => implement processing logic
@@ -14,6 +14,8 @@
  */
 package tan.jerry.process_future_movement.service;
 
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+
 import java.util.Map;
 
 /**
@@ -52,4 +54,26 @@ public interface ProcessFutureMovementService {
     public default Map<String, Double> process(Map<String, Double> map) {
         return map;
     }
+
+    /**
+     * Processes a summary table of client-product totals. This is the primitive counterpart of
+     * {@link #process(Map)}; the default implementation returns the table unchanged.
+     *
+     * @param table A summary table containing client-product keys and corresponding transaction amounts.
+     * @return A summary table with processed transaction data.
+     */
+    public default SummaryTable process(SummaryTable table) {
+        return table;
+    }
+
+    /**
+     * Reads the input file, aggregates the total transaction amount per client-product key and
+     * writes the output CSV. Callers that need a {@code Map<String, Double>} convert the result
+     * with {@link SummaryTable#toMap()}.
+     *
+     * @param inputFileName  The name of the input file.
+     * @param outputFileName The name of the output file.
+     * @return A summary table containing client-product keys and their total transaction amounts.
+     */
+    public SummaryTable summarize(String inputFileName, String outputFileName);
 }
@@ -15,29 +15,59 @@
 package tan.jerry.process_future_movement.service;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import tan.jerry.process_future_movement.aggregate.FixedPoint;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
 import tan.jerry.process_future_movement.config.BatchJobConfig;
 import tan.jerry.process_future_movement.domain.InputRecord;
+import tan.jerry.process_future_movement.domain.MovementRecord;
+import tan.jerry.process_future_movement.metrics.EngineMetrics;
+import tan.jerry.process_future_movement.metrics.EngineMetrics.Stage;
+import tan.jerry.process_future_movement.metrics.EngineProgress;
+import tan.jerry.process_future_movement.reader.InputFiles;
+import tan.jerry.process_future_movement.reader.InputLineValidator;
+import tan.jerry.process_future_movement.reader.InputLineValidator.Reason;
+import tan.jerry.process_future_movement.reader.InputRecordView;
+import tan.jerry.process_future_movement.reader.QuarantineWriter;
 
 import java.io.*;
-import java.util.HashMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
  * ProcessFutureMovementTaskletProcessor is a service class responsible for processing
  * the input data and generating a daily summary report. The class reads input records,
  * calculates transaction amounts, and produces an output CSV file.
+ *
+ * <p>With a quarantine file configured, as it is for the application, every line is validated
+ * before it is parsed, and the malformed ones are written to the quarantine file instead of
+ * failing the summary. The file holds the rejects of the last run only.</p>
  */
 @Service
 public class ProcessFutureMovementTaskletProcessor implements ProcessFutureMovementService { // TODO => implements ItemProcessor<InputRecord, OutputRecord>
 
-    @Value("input.file.name")
+    @Value("${input.file.name}")
     String inputFileName;
 
-    @Value("outputex.file.name")
+    @Value("${outputex.file.name}")
     String outputFilePath;
 
-    static Map<String, Double> report_map;
+    @Value("${pfm.summary.quarantine.file.name:summary-quarantine.csv}")
+    String quarantineFilePath;
+
+    @Value("${pfm.validation.record.codes:315}")
+    String[] recordCodes;
+
+    static SummaryTable report_table;
+
+    /**
+     * Stage timings and throughput of this engine.
+     */
+    private static final EngineMetrics METRICS = EngineMetrics.forEngine("tasklet");
 
     /**
      * Main method for executing the tasklet processor.
@@ -51,42 +81,158 @@ public class ProcessFutureMovementTaskletProcessor implements ProcessFutureMovem
 
     /**
      * Processes the input data by reading records, calculating transaction amounts,
-     * and writing the results to an output CSV file. This method also handles
-     * checking and replacing periods in product information.
+     * and writing the results to an output CSV file.
      *
      * @return A map representing the client-product keys and their corresponding total transaction amounts.
      */
     public Map<String, Double> process() {
+        return summarize().toMap();
+    }
+
+    /**
+     * Processes the configured input file into a summary table.
+     *
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     */
+    public SummaryTable summarize() {
+        return summarize(inputFileName, outputFilePath);
+    }
+
+    /**
+     * Processes the configured input file into a summary table, reporting how far it has got.
+     *
+     * @param progress The progress of the run, polled by another thread.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     */
+    public SummaryTable summarize(EngineProgress progress) {
+        return summarize(inputFileName, outputFilePath, progress);
+    }
+
+    /**
+     * Processes the input data by reading records, calculating transaction amounts,
+     * and writing the results to an output CSV file. Periods in product information
+     * are removed when the client-product key is packed.
+     *
+     * @param inputFileName  The name of the input file, on the file system or the classpath.
+     * @param outputFilePath The path to the output CSV file.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     */
+    @Override
+    public SummaryTable summarize(String inputFileName, String outputFilePath) {
+        return summarize(inputFileName, outputFilePath, null);
+    }
+
+    /**
+     * Processes the input data like {@link #summarize(String, String)}, reporting the stage and
+     * the lines read to a progress every {@link EngineProgress#REPORT_INTERVAL} lines.
+     *
+     * @param inputFileName  The name of the input file, on the file system or the classpath.
+     * @param outputFilePath The path to the output CSV file.
+     * @param progress       The progress of the run, or null.
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     * @throws UncheckedIOException if the input file cannot be found or read.
+     */
+    public SummaryTable summarize(String inputFileName, String outputFilePath, EngineProgress progress) {
 
-        Map<String, Double> transactionMap = new HashMap<>();
+        long run = METRICS.start();
+        SummaryTable transactionTable = new SummaryTable();
 
         inputFileName = null == inputFileName ? "Input.txt" : inputFileName;
+        Resource input = InputFiles.resource(inputFileName);
+        if (progress != null) {
+            progress.start(inputSize(input));
+        }
 
-        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(inputFileName);
-             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+        InputStream inputStream;
+        try {
+            inputStream = input.getInputStream();
+        } catch (IOException e) {
+            if (progress != null) {
+                progress.finish();
+            }
+            throw new UncheckedIOException(new FileNotFoundException(inputFileName + " is neither a file nor on the classpath"));
+        }
+
+        InputLineValidator validator = validator();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+             QuarantineWriter quarantine = validator == null ? null : newQuarantine()) {
+            InputRecordView record = new InputRecordView(); // reused for every line; decodes only the fields the summary reads
+            long aggregate = METRICS.start(); // reads, parses and aggregates in one pass
+            if (progress != null) {
+                progress.stage(Stage.AGGREGATE);
+            }
+            int lines = 0;
+            long bytes = 0;
             String line;
             while ((line = reader.readLine()) != null) {
-                InputRecord record = parseInputRecord(line);
-                String clientInfo = getClientInformation(record);
-                String productInfo = getProductInformation(record);
-                double transactionAmount = calculateTransactionAmount(record);
-
-                // Remove period character from Product Information if present
-                if (productInfo.contains(".")) {
-                    System.out.println("Period detected in Product Information: " + productInfo);
-                    productInfo = productInfo.replace(".", "");
+                Reason reason = validator == null ? null : validator.validate(line);
+                if (reason == null) {
+                    transactionTable.addMovement(record.wrap(line), BatchJobConfig.shouldIgnoreSignIndicators());
+                } else {
+                    quarantine.reject(reason, line);
                 }
-
-                String key = clientInfo + "," + productInfo;
-                transactionMap.merge(key, transactionAmount, Double::sum);
+                if (progress != null) {
+                    bytes += line.length() + 1; // fixed-width ASCII, one byte per character and the newline
+                    if (++lines == EngineProgress.REPORT_INTERVAL) {
+                        progress.advance(lines, bytes);
+                        lines = 0;
+                        bytes = 0;
+                    }
+                }
+            }
+            if (progress != null) {
+                progress.advance(lines, bytes);
+            }
+            METRICS.stop(Stage.AGGREGATE, aggregate);
+            if (quarantine != null) {
+                quarantine.counts().forEach(METRICS::invalidLines);
             }
 
-            writeOutputFile(outputFilePath, transactionMap);
+            long write = METRICS.start();
+            if (progress != null) {
+                progress.stage(Stage.WRITE);
+            }
+            writeOutputFile(outputFilePath, transactionTable);
+            METRICS.stop(Stage.WRITE, write);
+            METRICS.completed(run, inputFileName, transactionTable);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("Unable to read " + inputFileName, e);
         } finally {
-            report_map = transactionMap;
-            return report_map;
+            if (progress != null) {
+                progress.finish();
+            }
+        }
+        report_table = transactionTable;
+        return report_table;
+    }
+
+    /**
+     * @return The validator of the lines, or null if no quarantine file is configured and lines are not validated.
+     */
+    InputLineValidator validator() {
+        if (quarantineFilePath == null || quarantineFilePath.isBlank()) {
+            return null;
+        }
+        return recordCodes == null ? new InputLineValidator() : new InputLineValidator(Arrays.asList(recordCodes));
+    }
+
+    /**
+     * Opens the quarantine of a run, dropping the rejects of the previous run so that a clean input leaves no file.
+     */
+    private QuarantineWriter newQuarantine() throws IOException {
+        Path path = Paths.get(quarantineFilePath);
+        Files.deleteIfExists(path);
+        return new QuarantineWriter(path);
+    }
+
+    /**
+     * @return The size of the input file in bytes, or -1 if it cannot be found.
+     */
+    private static long inputSize(Resource input) {
+        try {
+            return input.contentLength();
+        } catch (IOException e) {
+            return -1;
         }
     }
 
@@ -97,7 +243,7 @@ public class ProcessFutureMovementTaskletProcessor implements ProcessFutureMovem
      * @param line The line of text representing a record.
      * @return The InputRecord object populated with data from the line.
      */
-    private static InputRecord parseInputRecord(String line) {
+    static InputRecord parseInputRecord(String line) {
         return new InputRecord(
                 line.substring(0, 3).trim(),  // Record Code
                 line.substring(3, 7).trim(),  // Client Type
@@ -116,18 +262,18 @@ public class ProcessFutureMovementTaskletProcessor implements ProcessFutureMovem
                 line.substring(52, 62).trim(), // Quantity Long
                 line.substring(62, 63).trim(), // Quantity Short Sign
                 line.substring(63, 73).trim(), // Quantity Short
-                line.substring(73, 86).trim(), // Exchange Broker Fee Decimal
-                line.substring(86, 87).trim(), // Exchange Broker Fee DC
-                line.substring(87, 90).trim(), // Exchange Broker Fee Currency Code
-                line.substring(90, 101).trim(), // Clearing Fee Decimal
+                line.substring(73, 85).trim(), // Exchange Broker Fee Decimal
+                line.substring(85, 86).trim(), // Exchange Broker Fee DC
+                line.substring(86, 89).trim(), // Exchange Broker Fee Currency Code
+                line.substring(89, 101).trim(), // Clearing Fee Decimal
                 line.substring(101, 102).trim(), // Clearing Fee DC
                 line.substring(102, 105).trim(), // Clearing Fee Currency Code
-                line.substring(105, 118).trim(), // Commission
-                line.substring(118, 119).trim(), // Commission DC
-                line.substring(119, 122).trim(), // Commission Currency Code
-                line.substring(122, 130).trim(), // Transaction Date
-                line.substring(130, 136).trim(), // Future Reference
-                line.substring(136, 141).trim(), // Ticket Number
+                line.substring(105, 117).trim(), // Commission
+                line.substring(117, 118).trim(), // Commission DC
+                line.substring(118, 121).trim(), // Commission Currency Code
+                line.substring(121, 129).trim(), // Transaction Date
+                line.substring(129, 135).trim(), // Future Reference
+                line.substring(135, 141).trim(), // Ticket Number
                 line.substring(141, 147).trim(), // External Number
                 line.substring(147, 162).trim(), // Transaction Price Decimal
                 line.substring(162, 168).trim(), // Trader Initials
@@ -138,59 +284,43 @@ public class ProcessFutureMovementTaskletProcessor implements ProcessFutureMovem
     }
 
     /**
-     * Constructs a client information string from an InputRecord.
+     * Calculates the total transaction amount based on the quantities and their signs from an InputRecord.
+     * This method considers the `ignoreSignIndicators` configuration from BatchJobConfig.
      *
-     * @param record The InputRecord containing client data.
-     * @return A string combining client type, client number, account number, and subaccount number.
+     * @param record The record containing quantity and sign information.
+     * @return The calculated total transaction amount.
      */
-    private static String getClientInformation(InputRecord record) {
-        return record.clientType() + record.clientNumber() + record.accountNumber() + record.subAccountNumber();
-    }
+    public static double calculateTransactionAmount(MovementRecord record) { // this is the most important part
+        return FixedPoint.toDouble(calculateTransactionUnits(record), FixedPoint.SCALE);
+    }//this is the most important part
 
     /**
-     * Constructs a product information string from an InputRecord.
+     * Calculates the transaction amount of an InputRecord exactly, as a fixed-point number in units
+     * of {@link FixedPoint#SCALE}, parsing the quantities without going through double.
      *
-     * @param record The InputRecord containing product data.
-     * @return A string combining exchange code, product group code, symbol, and expiration date.
+     * @param record The record containing quantity and sign information.
+     * @return The transaction amount in units of {@link FixedPoint#SCALE}.
      */
-    private static String getProductInformation(InputRecord record) {
-        return record.exchangeCode() + record.productGroupCode() + record.symbol() + record.expirationDate();
+    public static long calculateTransactionUnits(MovementRecord record) {
+        return FixedPoint.transactionUnits(record, BatchJobConfig.shouldIgnoreSignIndicators());
     }
 
-    /**
-     * Calculates the total transaction amount based on the quantities and their signs from an InputRecord.
-     * This method considers the `ignoreSignIndicators` configuration from BatchJobConfig.
-     *
-     * @param record The InputRecord containing quantity and sign information.
-     * @return The calculated total transaction amount.
-     */
-    private static double calculateTransactionAmount(InputRecord record) { // this is the most important part
-        if (BatchJobConfig.shouldIgnoreSignIndicators()) {
-            double quantityLong = Double.parseDouble(record.quantityLong());
-            double quantityShort = Double.parseDouble(record.quantityShort());
-            return quantityLong - quantityShort;
-        } else {
-            double quantityLong = Double.parseDouble(record.quantityLong()) * ("+".equals(record.quantityLongSign()) ? 1 : -1);
-            double quantityShort = Double.parseDouble(record.quantityShort()) * ("+".equals(record.quantityShortSign()) ? 1 : -1);
-            return quantityLong - quantityShort;
-        }//if else
-    }//this is the most important part
-
     /**
      * Writes the output CSV file containing the client-product information and their total transaction amounts.
      *
      * @param outputFilePath The path to the output CSV file.
-     * @param transactionMap A map containing client-product keys and their corresponding total transaction amounts.
+     * @param transactionTable A summary table containing client-product keys and their corresponding total transaction amounts.
      */
-    private static void writeOutputFile(String outputFilePath, Map<String, Double> transactionMap) {
+    public static void writeOutputFile(String outputFilePath, SummaryTable transactionTable) {
 
         outputFilePath = null == outputFilePath ? "OutputEx.csv" : outputFilePath;
 
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFilePath))) {
             writer.write("Client_Information,Product_Information,Total_Transaction_Amount");
             writer.newLine();
-            for (Map.Entry<String, Double> entry : transactionMap.entrySet()) {
-                writer.write(entry.getKey() + "," + entry.getValue());
+            SummaryTable.Cursor cursor = transactionTable.cursor();
+            while (cursor.next()) {
+                writer.write(cursor.clientInformation() + "," + cursor.productInformation() + "," + cursor.total());
                 writer.newLine();
             }
         } catch (IOException e) {
@@ -198,13 +328,34 @@ public class ProcessFutureMovementTaskletProcessor implements ProcessFutureMovem
         }
     }
 
+    /**
+     * Publishes a daily summary built elsewhere, such as by the Spring Batch job, as the current
+     * report and writes it to the output CSV file, just as the main process does.
+     *
+     * @param summary        The summary table to publish.
+     * @param outputFilePath The path to the output CSV file; null for the default.
+     */
+    public static void publishDailySummary(SummaryTable summary, String outputFilePath) {
+        writeOutputFile(outputFilePath, summary);
+        report_table = summary;
+    }
+
     /**
      * Calculates the daily summary report by executing the main process and returning the report map.
      *
      * @return A map representing the client-product keys and their corresponding total transaction amounts.
      */
     public static Map<String, Double> calculateDailySummary() {
+        return calculateDailySummaryTable().toMap();
+    }
+
+    /**
+     * Calculates the daily summary report by executing the main process and returning the report table.
+     *
+     * @return A summary table representing the client-product keys and their corresponding total transaction amounts.
+     */
+    public static SummaryTable calculateDailySummaryTable() {
         ProcessFutureMovementTaskletProcessor.main(null);
-        return report_map;
+        return report_table;
     }
 }
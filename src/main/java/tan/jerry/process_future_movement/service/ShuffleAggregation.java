@@ -0,0 +1,126 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import tan.jerry.process_future_movement.aggregate.PartitionedSummaryTable;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.config.BatchJobConfig;
+import tan.jerry.process_future_movement.domain.InputRecord;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * ShuffleAggregation runs the shuffle and reduce steps of a map/shuffle/reduce aggregation.
+ * Mappers aggregate their share of the input into a {@link PartitionedSummaryTable} of their own,
+ * which routes every key to one of R partitions by its hash. Reducer r then merges partition r of
+ * every mapper into a table that no other reducer touches, so the reducers run in parallel without
+ * sharing state, however skewed the keys are. The reduced partitions hold disjoint keys.
+ */
+final class ShuffleAggregation {
+
+    private ShuffleAggregation() {
+    }
+
+    /**
+     * Map step over records already in memory: the list is cut into one contiguous slice per mapper.
+     *
+     * @param records    The records to aggregate.
+     * @param pool       The pool running the mappers.
+     * @param mappers    The number of mappers.
+     * @param partitions The number of reducer partitions.
+     * @return The output of every mapper.
+     */
+    static List<PartitionedSummaryTable> map(List<InputRecord> records, ForkJoinPool pool, int mappers, int partitions) {
+        boolean ignoreSignIndicators = BatchJobConfig.shouldIgnoreSignIndicators();
+        int slices = Math.max(1, Math.min(mappers, records.size()));
+        List<Callable<PartitionedSummaryTable>> tasks = new ArrayList<>(slices);
+        for (int i = 0; i < slices; i++) {
+            List<InputRecord> slice = records.subList(
+                    (int) ((long) records.size() * i / slices), (int) ((long) records.size() * (i + 1) / slices));
+            tasks.add(() -> {
+                PartitionedSummaryTable table = new PartitionedSummaryTable(partitions);
+                for (InputRecord record : slice) {
+                    table.addMovement(record, ignoreSignIndicators);
+                }
+                return table;
+            });
+        }
+        return invokeAll(pool, tasks);
+    }
+
+    /**
+     * Shuffle and reduce steps: reducer r merges partition r of every mapper output, and the
+     * disjoint reduced partitions are then gathered into one table.
+     *
+     * @param mapOutputs The outputs of the mappers, all with the same number of partitions.
+     * @param pool       The pool running the reducers.
+     * @return A SummaryTable holding the totals of every mapper.
+     */
+    static SummaryTable reduce(Collection<PartitionedSummaryTable> mapOutputs, ForkJoinPool pool) {
+        if (mapOutputs.isEmpty()) {
+            return new SummaryTable();
+        }
+        int partitions = mapOutputs.iterator().next().partitions();
+        List<Callable<SummaryTable>> reducers = new ArrayList<>(partitions);
+        for (int r = 0; r < partitions; r++) {
+            int partition = r;
+            reducers.add(() -> {
+                SummaryTable reduced = null;
+                for (PartitionedSummaryTable mapOutput : mapOutputs) {
+                    SummaryTable table = mapOutput.partition(partition);
+                    reduced = reduced == null ? table : reduced.mergeFrom(table);
+                }
+                return reduced;
+            });
+        }
+        List<SummaryTable> reduced = invokeAll(pool, reducers);
+        int size = 0;
+        for (SummaryTable table : reduced) {
+            size += table.size();
+        }
+        SummaryTable result = new SummaryTable(size);
+        for (SummaryTable table : reduced) {
+            result.mergeFrom(table);
+        }
+        return result;
+    }
+
+    private static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        for (Future<T> future : pool.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a map or reduce task", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+}
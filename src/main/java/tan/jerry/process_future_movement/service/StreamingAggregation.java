@@ -0,0 +1,115 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.reader.LineBatchReader;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * StreamingAggregation hands batches from a {@link LineBatchReader} to an executor and lets
+ * each worker fold them into its own table. The number of batches handed out but not yet
+ * aggregated is capped, so a slow pool applies backpressure to the reader instead of
+ * letting batches pile up on the heap.
+ */
+final class StreamingAggregation {
+
+    private StreamingAggregation() {
+    }
+
+    /**
+     * Aggregates every batch of the reader on the executor.
+     *
+     * @param batches     The source of line batches.
+     * @param executor    The executor running the batch aggregations.
+     * @param maxInFlight The maximum number of batches submitted but not yet aggregated.
+     * @param aggregator  Folds one batch into the table of the worker running it.
+     * @return A SummaryTable holding the totals of all batches.
+     * @throws IOException if reading the input failed.
+     */
+    static SummaryTable aggregate(LineBatchReader batches, Executor executor, int maxInFlight,
+                                  BatchAggregator<SummaryTable> aggregator) throws IOException {
+        SummaryTable result = null;
+        for (SummaryTable table : aggregateByWorker(batches, executor, maxInFlight, SummaryTable::new, aggregator)) {
+            result = result == null ? table : result.mergeFrom(table);
+        }
+        return result == null ? new SummaryTable() : result;
+    }
+
+    /**
+     * Aggregates every batch of the reader on the executor, and returns the table of each worker
+     * without merging them, for callers that combine them in their own way.
+     *
+     * @param batches     The source of line batches.
+     * @param executor    The executor running the batch aggregations.
+     * @param maxInFlight The maximum number of batches submitted but not yet aggregated.
+     * @param newTable    Creates the table of a worker, on its first batch.
+     * @param aggregator  Folds one batch into the table of the worker running it.
+     * @param <T>         The type of the worker tables.
+     * @return The table of every worker that aggregated at least one batch.
+     * @throws IOException if reading the input failed.
+     */
+    static <T> Collection<T> aggregateByWorker(LineBatchReader batches, Executor executor, int maxInFlight,
+                                               Supplier<T> newTable, BatchAggregator<T> aggregator) throws IOException {
+        Map<Thread, T> tables = new ConcurrentHashMap<>();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try {
+            List<String> batch;
+            while (failure.get() == null && (batch = batches.nextBatch()) != null) {
+                inFlight.acquireUninterruptibly();
+                List<String> lines = batch;
+                try {
+                    executor.execute(() -> {
+                        try {
+                            aggregator.aggregate(lines, tables.computeIfAbsent(Thread.currentThread(), thread -> newTable.get()));
+                        } catch (RuntimeException e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            }
+        } finally {
+            // Wait for the batches still being aggregated before touching the worker tables
+            inFlight.acquireUninterruptibly(maxInFlight);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return tables.values();
+    }
+
+    /**
+     * Folds a batch of raw input lines into a table, such as a SummaryTable.
+     */
+    @FunctionalInterface
+    interface BatchAggregator<T> {
+        void aggregate(List<String> lines, T table);
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import tan.jerry.process_future_movement.metrics.EngineProgress;
+
+import java.time.Instant;
+
+/**
+ * SummaryJob is one run of the daily summary submitted through {@link SummaryJobs}. It is updated by
+ * the thread running it and read, through {@link #status()}, by the requests polling it.
+ */
+public final class SummaryJob {
+
+    /**
+     * The lifecycle of a job.
+     */
+    public enum State {
+        /**
+         * Waiting for a worker.
+         */
+        QUEUED,
+        /**
+         * Building the summary, or waiting for a build already running.
+         */
+        RUNNING,
+        /**
+         * The summary of the current input is cached.
+         */
+        COMPLETED,
+        /**
+         * The summary could not be built.
+         */
+        FAILED
+    }
+
+    private final String id;
+
+    private final boolean refresh;
+
+    private final Instant submittedAt = Instant.now();
+
+    private final EngineProgress progress = new EngineProgress();
+
+    private volatile State state = State.QUEUED;
+
+    private volatile Instant startedAt;
+
+    private volatile Instant finishedAt;
+
+    private volatile int keys = -1;
+
+    private volatile String error;
+
+    SummaryJob(String id, boolean refresh) {
+        this.id = id;
+        this.refresh = refresh;
+    }
+
+    /**
+     * @return The id of the job.
+     */
+    public String id() {
+        return id;
+    }
+
+    /**
+     * @return True if the job drops the cached summary and builds it again.
+     */
+    public boolean isRefresh() {
+        return refresh;
+    }
+
+    /**
+     * @return The current state of the job.
+     */
+    public State state() {
+        return state;
+    }
+
+    /**
+     * @return True once the job has completed or failed.
+     */
+    public boolean isDone() {
+        State current = state;
+        return current == State.COMPLETED || current == State.FAILED;
+    }
+
+    /**
+     * @return The progress the engine building the summary reports to.
+     */
+    EngineProgress progress() {
+        return progress;
+    }
+
+    void running() {
+        startedAt = Instant.now();
+        state = State.RUNNING;
+    }
+
+    void completed(int keys) {
+        this.keys = keys;
+        finishedAt = Instant.now();
+        state = State.COMPLETED;
+    }
+
+    void failed(Throwable cause) {
+        error = cause.getMessage() == null ? cause.getClass().getName() : cause.getMessage();
+        finishedAt = Instant.now();
+        state = State.FAILED;
+    }
+
+    /**
+     * @return The status of the job at this moment, with the live progress of its build.
+     */
+    public Status status() {
+        State current = state;
+        boolean done = current == State.COMPLETED || current == State.FAILED;
+        return new Status(id, current, refresh, submittedAt, startedAt, finishedAt,
+                done ? progress.isStarted() : null, keys < 0 ? null : keys, error, progress.snapshot());
+    }
+
+    /**
+     * The status of a job, as the REST API returns it.
+     *
+     * @param id          The id of the job.
+     * @param state       The state of the job.
+     * @param refresh     True if the job drops the cached summary first.
+     * @param submittedAt When the job was submitted.
+     * @param startedAt   When a worker started it; null while it is queued.
+     * @param finishedAt  When it completed or failed; null until then.
+     * @param built       Once done, true if the job built the summary itself, false if it found it
+     *                    cached or joined a build started by a request; null until then.
+     * @param keys        The client-product keys of the summary; null until it completes.
+     * @param error       Why the job failed; null unless it failed.
+     * @param progress    The progress of the build; empty if the job did not build the summary.
+     */
+    public record Status(String id, State state, boolean refresh, Instant submittedAt, Instant startedAt,
+                         Instant finishedAt, Boolean built, Integer keys, String error,
+                         EngineProgress.Snapshot progress) {
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tan.jerry.process_future_movement.aggregate.OffHeapSummaryStore;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * SummaryJobs runs the daily summary in the background, so that a request never holds a Tomcat
+ * thread for a whole parse of the input. A submitted {@link SummaryJob} builds the summary into
+ * {@link DailySummaryCache} on a worker thread with a bounded queue, where the report endpoints then find it, and returns
+ * at once; its status and the live progress of the engine are polled, or watched at a fixed interval.
+ * <p>
+ * A job submitted while another is queued or running shares it rather than queueing a second parse
+ * of the same input. When the queue is full, submissions are rejected. The most recent jobs are kept
+ * for their status once they are done.
+ */
+@Service
+public class SummaryJobs {
+
+    private final DailySummaryCache summaryCache;
+
+    private final ThreadPoolExecutor executor;
+
+    private final ScheduledExecutorService ticker;
+
+    private final int retained;
+
+    private final long intervalMillis;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * The jobs by id, oldest first; guarded by this.
+     */
+    private final Map<String, SummaryJob> jobs = new LinkedHashMap<>();
+
+    /**
+     * Constructs a new SummaryJobs.
+     *
+     * @param summaryCache   The cache the jobs build the summary into.
+     * @param queueCapacity  The jobs waiting for the worker before submissions are rejected.
+     * @param retained       The jobs kept for their status, done or not.
+     * @param intervalMillis The interval at which a watched job reports its status.
+     */
+    @Autowired
+    public SummaryJobs(DailySummaryCache summaryCache,
+                       @Value("${pfm.jobs.queue.capacity:4}") int queueCapacity,
+                       @Value("${pfm.jobs.retained:100}") int retained,
+                       @Value("${pfm.jobs.progress.interval.ms:500}") long intervalMillis) {
+        this.summaryCache = summaryCache;
+        this.retained = retained;
+        this.intervalMillis = intervalMillis;
+        // one worker: builds of the same input would only join each other in the cache
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "pfm-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pfm-job-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits a run of the daily summary, or returns the job already doing it.
+     *
+     * @param refresh True to drop the cached summary and build it again even if the input looks
+     *                unchanged; false to build it only if the input has changed.
+     * @return The job, queued or running.
+     * @throws RejectedExecutionException if the queue is full or the application is shutting down.
+     */
+    public synchronized SummaryJob submit(boolean refresh) {
+        for (SummaryJob job : jobs.values()) {
+            // a refresh only shares a job that has not started reading the input yet
+            if (!job.isDone() && (!refresh || job.isRefresh() && job.state() == SummaryJob.State.QUEUED)) {
+                return job;
+            }
+        }
+        SummaryJob job = new SummaryJob(String.valueOf(ids.incrementAndGet()), refresh);
+        executor.execute(() -> run(job));
+        jobs.put(job.id(), job);
+        evict();
+        return job;
+    }
+
+    /**
+     * Looks up a job.
+     *
+     * @param id The id of the job.
+     * @return The job, or empty if there is no such job or it has been evicted.
+     */
+    public synchronized Optional<SummaryJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Hands the status of a job to a listener now and then at the configured interval, until the job
+     * is done, the listener throws, or the returned handle is run.
+     *
+     * @param job      The job.
+     * @param listener The listener, called on the ticker thread.
+     * @return A handle that stops watching the job.
+     */
+    public Runnable watch(SummaryJob job, Consumer<SummaryJob.Status> listener) {
+        Watch watch = new Watch(job, listener);
+        watch.future = ticker.scheduleWithFixedDelay(watch, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        if (watch.stopped) {
+            watch.future.cancel(false); // stopped before its future was set
+        }
+        return watch::stop;
+    }
+
+    /**
+     * Builds the summary of a job into the cache; the job only holds the summary long enough to count it.
+     */
+    private void run(SummaryJob job) {
+        job.running();
+        try {
+            if (job.isRefresh()) {
+                summaryCache.invalidate();
+            }
+            try (OffHeapSummaryStore summary = summaryCache.acquireWithProgress(job.progress())) {
+                job.completed(summary.size());
+            }
+        } catch (RuntimeException | Error e) {
+            job.failed(e);
+        }
+    }
+
+    /**
+     * Drops the oldest jobs that are done while more than the retained number are kept.
+     */
+    private void evict() {
+        Iterator<SummaryJob> oldest = jobs.values().iterator();
+        while (jobs.size() > retained && oldest.hasNext()) {
+            if (oldest.next().isDone()) {
+                oldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Stops the workers and the ticker when the application shuts down.
+     */
+    @PreDestroy
+    public void close() {
+        ticker.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * A listener called with the status of a job at a fixed interval.
+     */
+    private static final class Watch implements Runnable {
+
+        private final SummaryJob job;
+
+        private final Consumer<SummaryJob.Status> listener;
+
+        private volatile Future<?> future;
+
+        private volatile boolean stopped;
+
+        Watch(SummaryJob job, Consumer<SummaryJob.Status> listener) {
+            this.job = job;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+            SummaryJob.Status status = job.status();
+            try {
+                listener.accept(status);
+            } catch (RuntimeException e) {
+                stop();
+                return;
+            }
+            if (status.state() == SummaryJob.State.COMPLETED || status.state() == SummaryJob.State.FAILED) {
+                stop();
+            }
+        }
+
+        void stop() {
+            stopped = true;
+            Future<?> scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+    }
+}
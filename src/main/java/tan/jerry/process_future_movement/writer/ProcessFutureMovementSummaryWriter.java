@@ -0,0 +1,213 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.writer;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamWriter;
+import tan.jerry.process_future_movement.aggregate.Metric;
+import tan.jerry.process_future_movement.aggregate.MovementMetrics;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.config.BatchJobConfig;
+import tan.jerry.process_future_movement.domain.MovementRecord;
+
+import java.util.List;
+
+/**
+ * ProcessFutureMovementSummaryWriter folds each chunk of input records into the daily summary
+ * instead of writing one line per record, so that the Spring Batch job produces the summary
+ * from a single read of the input.
+ * <p>
+ * The totals are checkpointed in the ExecutionContext of the step, or partition, at every chunk
+ * commit, in the same context as the read position of its reader, so a restarted partition resumes
+ * both from its last commit. The context is written to the job repository whole at every commit, so
+ * the writer does not copy every total into it each time: it saves a full snapshot every
+ * {@code snapshotInterval} commits, and at the other commits only the totals added since that
+ * snapshot, which cover at most {@code snapshotInterval} chunks. When the step completes, the
+ * totals are saved as one snapshot.
+ * Not thread-safe: every partition needs its own instance, which the step scope provides.
+ */
+public class ProcessFutureMovementSummaryWriter implements ItemStreamWriter<MovementRecord>, StepExecutionListener {
+
+    /**
+     * ExecutionContext key of the snapshot of the partial totals.
+     */
+    public static final String SUMMARY_KEY = "pfm.summary";
+
+    /**
+     * ExecutionContext key of the totals added since the snapshot under {@link #SUMMARY_KEY}.
+     */
+    public static final String DELTA_KEY = "pfm.summary.delta";
+
+    /**
+     * Default number of commits between full snapshots.
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 10;
+
+    private final int snapshotInterval;
+
+    /**
+     * The totals as of the last snapshot.
+     */
+    private SummaryTable snapshotted = new SummaryTable();
+
+    /**
+     * The totals added since the last snapshot.
+     */
+    private SummaryTable delta = new SummaryTable();
+
+    private int updates;
+
+    /**
+     * Constructs a ProcessFutureMovementSummaryWriter taking a full snapshot every {@value #DEFAULT_SNAPSHOT_INTERVAL} commits.
+     */
+    public ProcessFutureMovementSummaryWriter() {
+        this(DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Constructs a ProcessFutureMovementSummaryWriter.
+     *
+     * @param snapshotInterval The number of commits between full snapshots of the totals; 1 snapshots them at every commit.
+     * @throws IllegalArgumentException if the interval is less than 1.
+     */
+    public ProcessFutureMovementSummaryWriter(int snapshotInterval) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be at least 1: " + snapshotInterval);
+        }
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Restores the totals checkpointed in the ExecutionContext of a restarted step, or starts from
+     * an empty summary.
+     *
+     * @param executionContext The ExecutionContext of the step or partition.
+     */
+    @Override
+    public void open(ExecutionContext executionContext) {
+        snapshotted = restore(executionContext);
+        delta = new SummaryTable();
+        updates = 0;
+    }
+
+    /**
+     * Adds the metrics of a chunk to the summary. All records are measured before any is
+     * added, so a record that fails to parse leaves the summary untouched.
+     *
+     * @param chunk The chunk of input records.
+     */
+    @Override
+    public void write(Chunk<? extends MovementRecord> chunk) {
+        List<? extends MovementRecord> records = chunk.getItems();
+        boolean ignoreSignIndicators = BatchJobConfig.shouldIgnoreSignIndicators();
+        long[][] metrics = new long[records.size()][];
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] = MovementMetrics.measure(records.get(i), ignoreSignIndicators, new long[Metric.COUNT]);
+        }
+        for (int i = 0; i < metrics.length; i++) {
+            delta.addMetrics(records.get(i), metrics[i]);
+        }
+    }
+
+    /**
+     * Checkpoints the totals before a chunk commit: a full snapshot every snapshotInterval calls,
+     * starting with the first, and otherwise the totals added since the last one.
+     *
+     * @param executionContext The ExecutionContext of the step or partition.
+     */
+    @Override
+    public void update(ExecutionContext executionContext) {
+        if (updates++ % snapshotInterval == 0) {
+            snapshotted.mergeFrom(delta);
+            delta = new SummaryTable();
+            executionContext.put(SUMMARY_KEY, snapshotted.snapshot());
+        }
+        executionContext.put(DELTA_KEY, delta.snapshot());
+    }
+
+    /**
+     * Saves the totals of a step that completed as one snapshot, before its ExecutionContext is
+     * written for the last time. A step that failed keeps its last checkpoint.
+     *
+     * @param stepExecution The step or partition execution.
+     * @return null, leaving the exit status unchanged.
+     */
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (stepExecution.getStatus() == BatchStatus.COMPLETED) {
+            snapshotted.mergeFrom(delta);
+            delta = new SummaryTable();
+            stepExecution.getExecutionContext().put(SUMMARY_KEY, snapshotted.snapshot());
+            stepExecution.getExecutionContext().remove(DELTA_KEY);
+        }
+        return null;
+    }
+
+    /**
+     * @return A copy of the totals written so far.
+     */
+    public SummaryTable getSummary() {
+        return new SummaryTable(snapshotted.size() + delta.size()).mergeFrom(snapshotted).mergeFrom(delta);
+    }
+
+    /**
+     * Rebuilds the totals checkpointed in an ExecutionContext: its snapshot and the totals added since.
+     *
+     * @param executionContext The ExecutionContext of a step or partition.
+     * @return The totals; empty if none were checkpointed.
+     */
+    public static SummaryTable restore(ExecutionContext executionContext) {
+        SummaryTable totals = executionContext.containsKey(SUMMARY_KEY)
+                ? SummaryTable.fromSnapshot((SummaryTable.Snapshot) executionContext.get(SUMMARY_KEY))
+                : new SummaryTable();
+        if (executionContext.containsKey(DELTA_KEY)) {
+            totals.mergeFrom(SummaryTable.fromSnapshot((SummaryTable.Snapshot) executionContext.get(DELTA_KEY)));
+        }
+        return totals;
+    }
+
+    /**
+     * Merges the totals saved by the summary writers of a job execution's steps. Partitions that
+     * completed in an earlier execution of a restarted job are not run again, so their totals
+     * are read from their last execution in the job repository.
+     *
+     * @param jobExecution  The job execution.
+     * @param jobRepository The job repository holding earlier executions.
+     * @param stepName      The name of the step writing the summary; partitions are named after it.
+     * @return The summary of the whole input.
+     */
+    public static SummaryTable collect(JobExecution jobExecution, JobRepository jobRepository, String stepName) {
+        SummaryTable result = new SummaryTable();
+        for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+            if (!stepExecution.getStepName().equals(stepName) && !stepExecution.getStepName().startsWith(stepName + ":")) {
+                continue;
+            }
+            ExecutionContext context = stepExecution.getExecutionContext();
+            if (!context.containsKey(SUMMARY_KEY)) {
+                StepExecution last = jobRepository.getLastStepExecution(jobExecution.getJobInstance(), stepExecution.getStepName());
+                context = last != null ? last.getExecutionContext() : context;
+            }
+            result.mergeFrom(restore(context));
+        }
+        return result;
+    }
+}
@@ -47,8 +47,9 @@ public class ProcessFutureMovementWriter implements ItemWriter<OutputRecord> {
         }
     }
 
+    // synchronized so that the chunks of concurrent partitions are written whole, not interleaved line by line
     @Override
-    public void write(Chunk<? extends OutputRecord> chunk) throws Exception {
+    public synchronized void write(Chunk<? extends OutputRecord> chunk) throws Exception {
         System.out.println("SKY TREE BLUE MOON BREEZE => Writing chunk: " + chunk.toString());
         List<? extends OutputRecord> records = chunk.getItems();
         if (records == null || records.isEmpty()) {
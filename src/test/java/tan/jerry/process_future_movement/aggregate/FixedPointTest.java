@@ -0,0 +1,85 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import org.junit.jupiter.api.Test;
+import tan.jerry.process_future_movement.domain.InputRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FixedPoint.
+ */
+class FixedPointTest {
+
+    @Test
+    void parse_ScalesZeroPaddedDigits() {
+        assertEquals(500, FixedPoint.parse("0000000005", 2));
+        assertEquals(123_456_789_000L, FixedPoint.parse("1234567890", 2));
+        assertEquals(0, FixedPoint.parse("0000000000", 2));
+    }
+
+    @Test
+    void parse_IgnoresSurroundingWhitespace() {
+        assertEquals(4200, FixedPoint.parse("  42 ", 2));
+    }
+
+    @Test
+    void parse_AcceptsSignsAndDecimalPoints() {
+        assertEquals(-150, FixedPoint.parse("-1.5", 2));
+        assertEquals(1, FixedPoint.parse("0.01", 2));
+    }
+
+    @Test
+    void parse_RejectsInvalidNumbers() {
+        assertThrows(NumberFormatException.class, () -> FixedPoint.parse("INVALID", 2));
+        assertThrows(NumberFormatException.class, () -> FixedPoint.parse("", 2));
+        assertThrows(NumberFormatException.class, () -> FixedPoint.parse("1.005", 2));
+        assertThrows(NumberFormatException.class, () -> FixedPoint.parse("999999999999999999", 2));
+    }
+
+    @Test
+    void parseImplied_ReturnsUnitsOfTheColumnScale() {
+        long fee = FixedPoint.parseImplied("000000000060");
+        long price = FixedPoint.parseImplied("000092500000000");
+
+        assertEquals(60, fee);
+        assertEquals(0.6, FixedPoint.toDouble(fee, FixedPoint.FEE_SCALE));
+        assertEquals(9250.0, FixedPoint.toDouble(price, FixedPoint.PRICE_SCALE));
+    }
+
+    @Test
+    void transactionUnits_AppliesSignsUnlessIgnored() {
+        InputRecord record = record("+", "0000000005", "-", "0000000002");
+
+        assertEquals(700, FixedPoint.transactionUnits(record, false));
+        assertEquals(300, FixedPoint.transactionUnits(record, true));
+        assertEquals(-700, FixedPoint.transactionUnits(record("", "0000000005", "+", "0000000002"), false));
+    }
+
+    @Test
+    void toDouble_MatchesDecimalValue() {
+        assertEquals(3.5, FixedPoint.toDouble(350, 2));
+        assertEquals(-0.1, FixedPoint.toDouble(-10, 2));
+        assertEquals(0.3, FixedPoint.toDouble(FixedPoint.fromDouble(0.1, 2) + FixedPoint.fromDouble(0.2, 2), 2));
+    }
+
+    private static InputRecord record(String longSign, String quantityLong, String shortSign, String quantityShort) {
+        return new InputRecord("315", "CL", "4321", "0002", "0001", "SGXDC", "FU", "SGX", "NK", "20100910",
+                "JPY", "01", "B", longSign, quantityLong, shortSign, quantityShort, "000000000060", "D", "USD",
+                "000000000030", "D", "USD", "000000000000", "D", "JPY", "20100820", "001238", "0", "688032",
+                "000092500000000", "", "", "O", "");
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tan.jerry.process_future_movement.domain.InputRecord;
+import tan.jerry.process_future_movement.reader.InputRecordLineMapper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for GroupingTable, GroupingSet and the key packing in GroupingKeys.
+ */
+class GroupingTableTest {
+
+    private static final String LINE =
+            "315CL  432100020001SGXDC FUSGX NK    20100910JPY01B 0000000001 0000000000000000000060DUSD000000000030DUSD000000000000DJPY201008200012380     688032000092500000000             O";
+
+    private final InputRecordLineMapper lineMapper = new InputRecordLineMapper(false);
+
+    private List<InputRecord> records;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        records = new ArrayList<>();
+        String[] clients = {"4321", "1234"};
+        String[] exchanges = {"SGX ", "CME "};
+        String[] traders = {"      ", "JT    ", "AB    "};
+        int lineNumber = 0;
+        for (String client : clients) {
+            for (String exchange : exchanges) {
+                for (String trader : traders) {
+                    String line = LINE.substring(0, 7) + client + LINE.substring(11, 27) + exchange
+                            + LINE.substring(31, 162) + trader + LINE.substring(168);
+                    records.add(lineMapper.mapLine(line, ++lineNumber));
+                    records.add(lineMapper.mapLine(line.replace("+0000000001", "+0000000003"), ++lineNumber));
+                }
+            }
+        }
+    }
+
+    @Test
+    void pack_RecordAndBytesProduceSameKey() throws Exception {
+        String line = LINE.substring(0, 162) + "JT    " + LINE.substring(168);
+        long[] fromRecord = new long[GroupingKeys.KEY_WORDS];
+        long[] fromBytes = new long[GroupingKeys.KEY_WORDS];
+
+        GroupingKeys.pack(lineMapper.mapLine(line, 1), fromRecord);
+        GroupingKeys.pack(ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII)), 0, line.length(), fromBytes);
+
+        assertArrayEquals(fromRecord, fromBytes);
+        assertEquals("CL432100020001", GroupingKeys.decode(fromBytes, 0, Dimension.CLIENT));
+        assertEquals("SGX", GroupingKeys.decode(fromBytes, 0, Dimension.EXCHANGE_CODE));
+        assertEquals("FU", GroupingKeys.decode(fromBytes, 0, Dimension.PRODUCT_GROUP_CODE));
+        assertEquals("NK", GroupingKeys.decode(fromBytes, 0, Dimension.SYMBOL));
+        assertEquals("20100910", GroupingKeys.decode(fromBytes, 0, Dimension.EXPIRATION_DATE));
+        assertEquals("JT", GroupingKeys.decode(fromBytes, 0, Dimension.TRADER_INITIALS));
+    }
+
+    @Test
+    void pack_RecordAndBytesKeepANonAsciiByteAtTheEdgeOfAColumn() throws Exception {
+        String line = LINE.substring(0, 33) + "\u00C4" + LINE.substring(34); // after the symbol "NK"
+        long[] fromRecord = new long[GroupingKeys.KEY_WORDS];
+        long[] fromBytes = new long[GroupingKeys.KEY_WORDS];
+
+        GroupingKeys.pack(lineMapper.mapLine(line, 1), fromRecord);
+        GroupingKeys.pack(ByteBuffer.wrap(line.getBytes(StandardCharsets.ISO_8859_1)), 0, line.length(), fromBytes);
+
+        assertArrayEquals(fromRecord, fromBytes);
+        assertEquals(3, GroupingKeys.decode(fromBytes, 0, Dimension.SYMBOL).length(), "the byte is not trimmed");
+    }
+
+    @Test
+    void rollups_MatchAggregatingEachGrainDirectly() {
+        GroupingTable finest = new GroupingTable();
+        records.forEach(record -> finest.addMovement(record, false));
+
+        Map<GroupingSet, GroupingTable> rollups = finest.rollups(EnumSet.allOf(GroupingSet.class));
+
+        assertEquals(EnumSet.allOf(GroupingSet.class), rollups.keySet());
+        for (GroupingSet groupingSet : GroupingSet.values()) {
+            Map<String, Long> expected = new HashMap<>();
+            for (InputRecord record : records) {
+                GroupingTable single = new GroupingTable();
+                single.addMovement(record, false);
+                GroupingTable.Cursor cursor = single.rollup(groupingSet).cursor();
+                cursor.next();
+                expected.merge(key(cursor, groupingSet), cursor.metric(Metric.NET_QUANTITY), Long::sum);
+            }
+            Map<String, Long> actual = new HashMap<>();
+            GroupingTable.Cursor cursor = rollups.get(groupingSet).cursor();
+            while (cursor.next()) {
+                assertNull(actual.put(key(cursor, groupingSet), cursor.metric(Metric.NET_QUANTITY)));
+            }
+            assertEquals(expected, actual, groupingSet.name());
+        }
+        assertEquals(2, rollups.get(GroupingSet.CLIENT).size());
+        assertEquals(2, rollups.get(GroupingSet.EXCHANGE).size());
+        assertEquals(3, rollups.get(GroupingSet.TRADER).size());
+        assertEquals(1, rollups.get(GroupingSet.PRODUCT_GROUP_SYMBOL).size());
+    }
+
+    @Test
+    void rollup_ClearsTheOtherDimensions() {
+        GroupingTable finest = new GroupingTable();
+        records.forEach(record -> finest.addMovement(record, false));
+
+        GroupingTable.Cursor cursor = finest.rollup(GroupingSet.PRODUCT_GROUP_SYMBOL).cursor();
+
+        assertTrue(cursor.next());
+        assertEquals("FU", cursor.dimension(Dimension.PRODUCT_GROUP_CODE));
+        assertEquals("NK", cursor.dimension(Dimension.SYMBOL));
+        assertEquals("", cursor.dimension(Dimension.CLIENT));
+        assertEquals("", cursor.dimension(Dimension.EXCHANGE_CODE));
+        assertEquals(-12 * 200, cursor.metric(Metric.NET_QUANTITY));
+        assertEquals(-24 * 60, cursor.metric(Metric.EXCH_BROKER_FEE));
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    void toSummaryTable_MatchesSummaryTable() {
+        GroupingTable finest = new GroupingTable();
+        SummaryTable summary = new SummaryTable();
+        for (InputRecord record : records) {
+            finest.addMovement(record, true);
+            summary.addMovement(record, true);
+        }
+        GroupingTable other = new GroupingTable();
+        other.mergeFrom(finest);
+
+        SummaryTable derived = other.toSummaryTable();
+
+        assertEquals(summary.toMap(), derived.toMap());
+        long[] key = new long[SummaryKeys.KEY_WORDS];
+        SummaryKeys.pack("CL123400020001", "CMEFUNK20100910", key);
+        for (Metric metric : Metric.values()) {
+            assertEquals(summary.getMetric(key, metric), derived.getMetric(key, metric), metric.name());
+        }
+    }
+
+    private static String key(GroupingTable.Cursor cursor, GroupingSet groupingSet) {
+        return groupingSet.dimensions().stream().map(cursor::dimension).collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.file.transform.Range;
+import org.springframework.core.io.ClassPathResource;
+import tan.jerry.process_future_movement.domain.InputRecord;
+import tan.jerry.process_future_movement.reader.FixedWidthLines;
+import tan.jerry.process_future_movement.reader.InputRecordLineMapper;
+import tan.jerry.process_future_movement.reader.ProcessFutureMovementReader;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MovementMetrics.
+ */
+class MovementMetricsTest {
+
+    private static final String LINE = "315CL  432100020001SGXDC FUSGX NK    20100910JPY01B 0000000001 0000000000000000000060DUSD000000000030DUSD000000000000DJPY201008200012380     688032000092500000000             O";
+
+    private final InputRecordLineMapper lineMapper = new InputRecordLineMapper(false);
+
+    @Test
+    void measure_ReadsEveryMetricOfTheRecord() throws Exception {
+        long[] values = MovementMetrics.measure(lineMapper.mapLine(LINE, 1), false, new long[Metric.COUNT]);
+
+        assertEquals(-100, values[Metric.NET_QUANTITY.ordinal()]);
+        assertEquals(-100, values[Metric.SIGNED_NET_QUANTITY.ordinal()]);
+        assertEquals(100, values[Metric.UNSIGNED_NET_QUANTITY.ordinal()]);
+        assertEquals(-60, values[Metric.EXCH_BROKER_FEE.ordinal()]);
+        assertEquals("USD", MovementMetrics.currency(values[Metric.EXCH_BROKER_FEE_CURRENCY.ordinal()]));
+        assertEquals(-30, values[Metric.CLEARING_FEE.ordinal()]);
+        assertEquals("USD", MovementMetrics.currency(values[Metric.CLEARING_FEE_CURRENCY.ordinal()]));
+        assertEquals(0, values[Metric.COMMISSION.ordinal()]);
+        assertEquals("JPY", MovementMetrics.currency(values[Metric.COMMISSION_CURRENCY.ordinal()]));
+        assertEquals(925_000, values[Metric.NOTIONAL.ordinal()]);
+    }
+
+    @Test
+    void measure_BytesAndRecordAgreeForEveryInputLine() throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource("Input.txt").getInputStream(), StandardCharsets.US_ASCII))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                for (boolean ignoreSign : new boolean[]{false, true}) {
+                    long[] fromRecord = MovementMetrics.measure(lineMapper.mapLine(line, lineNumber), ignoreSign, new long[Metric.COUNT]);
+                    long[] fromBytes = FixedWidthLines.measure(ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII)),
+                            0, line.length(), ignoreSign, new long[Metric.COUNT]);
+                    assertArrayEquals(fromRecord, fromBytes, "line " + lineNumber);
+                }
+            }
+        }
+    }
+
+    @Test
+    void fee_IsNegativeForDebitsAndZeroWhenBlank() {
+        assertEquals(-60, MovementMetrics.fee("000000000060", "D"));
+        assertEquals(60, MovementMetrics.fee("000000000060", "C"));
+        assertEquals(60, MovementMetrics.fee("000000000060", " "));
+        assertEquals(0, MovementMetrics.fee("            ", "D"));
+    }
+
+    @Test
+    void notional_RoundsToTheAmountScale() {
+        long price = FixedPoint.parseImplied("000000012345678"); // 1.2345678
+
+        assertEquals(123, MovementMetrics.notional(price, 100));
+        assertEquals(-123, MovementMetrics.notional(-price, 100));
+        assertEquals(92_500_000_000_000_000L, MovementMetrics.notional(FixedPoint.parseImplied("000092500000000"), 10_000_000_000_000L));
+    }
+
+    @Test
+    void currencies_RoundTripAndCombine() {
+        long usd = MovementMetrics.packCurrency(" USD ");
+        long jpy = MovementMetrics.packCurrency("JPY");
+
+        assertEquals("USD", MovementMetrics.currency(usd));
+        assertEquals(MovementMetrics.NO_CURRENCY, MovementMetrics.packCurrency("   "));
+        assertEquals(usd, MovementMetrics.combineCurrencies(usd, usd));
+        assertEquals(usd, MovementMetrics.combineCurrencies(MovementMetrics.NO_CURRENCY, usd));
+        assertEquals(usd, MovementMetrics.combineCurrencies(usd, MovementMetrics.NO_CURRENCY));
+        assertEquals(MovementMetrics.MIXED_CURRENCY, MovementMetrics.combineCurrencies(usd, jpy));
+        assertEquals(MovementMetrics.MIXED, MovementMetrics.currency(MovementMetrics.combineCurrencies(MovementMetrics.MIXED_CURRENCY, usd)));
+        assertThrows(IllegalArgumentException.class, () -> MovementMetrics.packCurrency("TOOLONGCODE"));
+    }
+
+    @Test
+    void currencies_NonAsciiFailsOnlyItsFeeInRecordsAndBytes() throws Exception {
+        String line = LINE.substring(0, 86) + "US\u00C4" + LINE.substring(89);
+        byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+
+        for (long[] values : new long[][]{
+                MovementMetrics.measure(lineMapper.mapLine(line, 1), false, new long[Metric.COUNT]),
+                FixedWidthLines.measure(ByteBuffer.wrap(bytes), 0, bytes.length, false, new long[Metric.COUNT])}) {
+            assertEquals(MovementMetrics.INVALID_AMOUNT, values[Metric.EXCH_BROKER_FEE.ordinal()]);
+            assertEquals(MovementMetrics.NO_CURRENCY, values[Metric.EXCH_BROKER_FEE_CURRENCY.ordinal()]);
+            assertEquals(-30, values[Metric.CLEARING_FEE.ordinal()]);
+            assertEquals(-100, values[Metric.NET_QUANTITY.ordinal()]);
+        }
+    }
+
+    @Test
+    void measure_MalformedFeeOrPriceFailsOnlyItsOwnMetric() throws Exception {
+        String garbage = replace(replace(LINE, "exchBrokerFeeDec", "GARBAGE"), "transactionPriceDec", "NOT A PRICE");
+        long[] baseline = MovementMetrics.measure(lineMapper.mapLine(LINE, 1), true, new long[Metric.COUNT]);
+
+        for (long[] values : new long[][]{
+                MovementMetrics.measure(lineMapper.mapLine(garbage, 1), true, new long[Metric.COUNT]),
+                FixedWidthLines.measure(ByteBuffer.wrap(garbage.getBytes(StandardCharsets.US_ASCII)),
+                        0, garbage.length(), true, new long[Metric.COUNT])}) {
+            assertEquals(baseline[Metric.NET_QUANTITY.ordinal()], values[Metric.NET_QUANTITY.ordinal()]);
+            assertEquals(baseline[Metric.SIGNED_NET_QUANTITY.ordinal()], values[Metric.SIGNED_NET_QUANTITY.ordinal()]);
+            assertEquals(MovementMetrics.INVALID_AMOUNT, values[Metric.EXCH_BROKER_FEE.ordinal()]);
+            assertEquals(baseline[Metric.CLEARING_FEE.ordinal()], values[Metric.CLEARING_FEE.ordinal()]);
+            assertEquals(MovementMetrics.INVALID_AMOUNT, values[Metric.NOTIONAL.ordinal()]);
+        }
+
+        SummaryTable clean = new SummaryTable();
+        SummaryTable dirty = new SummaryTable();
+        clean.addMovement(lineMapper.mapLine(LINE, 1), true);
+        clean.addMovement(lineMapper.mapLine(LINE, 2), true);
+        dirty.addMovement(lineMapper.mapLine(LINE, 1), true);
+        dirty.addMovement(lineMapper.mapLine(garbage, 2), true);
+        assertEquals(clean.toMap(), dirty.toMap(), "the summary total does not read the fee or price columns");
+
+        SummaryTable.Cursor cursor = dirty.cursor();
+        assertTrue(cursor.next());
+        assertNull(Metric.EXCH_BROKER_FEE.format(cursor::metric), "a fee with a malformed record is reported empty");
+        assertNull(Metric.NOTIONAL.format(cursor::metric));
+        assertEquals(-0.6, Metric.CLEARING_FEE.format(cursor::metric));
+    }
+
+    /**
+     * Overwrites a field of a line with text, padded with spaces to the width of the field.
+     */
+    private static String replace(String line, String field, String text) {
+        Range column = ProcessFutureMovementReader.column(field);
+        String padded = String.format("%-" + (column.getMax() - column.getMin() + 1) + "s", text);
+        return line.substring(0, column.getMin() - 1) + padded + line.substring(column.getMax());
+    }
+
+    @Test
+    void format_LeavesAmountInMixedCurrenciesEmpty() {
+        long[] row = new long[Metric.COUNT];
+        row[Metric.EXCH_BROKER_FEE.ordinal()] = -90;
+        row[Metric.EXCH_BROKER_FEE_CURRENCY.ordinal()] = MovementMetrics.MIXED_CURRENCY;
+        row[Metric.CLEARING_FEE.ordinal()] = -30;
+        row[Metric.CLEARING_FEE_CURRENCY.ordinal()] = MovementMetrics.packCurrency("USD");
+
+        assertNull(Metric.EXCH_BROKER_FEE.format(metric -> row[metric.ordinal()]));
+        assertEquals(MovementMetrics.MIXED, Metric.EXCH_BROKER_FEE_CURRENCY.format(metric -> row[metric.ordinal()]));
+        assertEquals(-0.3, Metric.CLEARING_FEE.format(metric -> row[metric.ordinal()]));
+        assertEquals(0.0, Metric.NET_QUANTITY.format(metric -> row[metric.ordinal()]));
+    }
+}
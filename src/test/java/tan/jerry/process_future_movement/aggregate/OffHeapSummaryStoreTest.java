@@ -0,0 +1,157 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OffHeapSummaryStore.
+ */
+class OffHeapSummaryStoreTest {
+
+    @Test
+    void copyOf_KeepsEveryKeyAndMetric() {
+        SummaryTable table = new SummaryTable();
+        long[] key = new long[SummaryKeys.KEY_WORDS];
+        long[] values = new long[Metric.COUNT];
+        for (int i = 0; i < 1000; i++) {
+            SummaryKeys.pack("CL" + (i % 300), "SGXFUNK20100910", key);
+            for (Metric metric : Metric.values()) {
+                values[metric.ordinal()] = metric.ordinal() * 1000L + i;
+            }
+            table.addMetrics(key, values);
+        }
+
+        try (OffHeapSummaryStore store = OffHeapSummaryStore.copyOf(table)) {
+            assertEquals(300, store.size());
+            assertEquals(table.toMap(), store.toMap());
+            assertEquals(table.toMap(), store.toSummaryTable().toMap());
+            OffHeapSummaryStore.Cursor cursor = store.cursor();
+            while (cursor.next()) {
+                cursor.copyKey(key);
+                for (Metric metric : Metric.values()) {
+                    assertEquals(table.getMetric(key, metric), cursor.metric(metric));
+                    assertEquals(table.getMetric(key, metric), store.getMetric(key, metric));
+                }
+            }
+            SummaryKeys.pack("CL999", "SGXFUNK20100910", key);
+            assertFalse(store.contains(key));
+            assertEquals(0L, store.getMetric(key, Metric.NOTIONAL));
+        }
+    }
+
+    @Test
+    void close_FreesDirectMemoryWhenTheLastReferenceIsGivenBack() {
+        SummaryTable table = new SummaryTable();
+        long[] key = new long[SummaryKeys.KEY_WORDS];
+        for (int i = 0; i < 10_000; i++) {
+            SummaryKeys.pack("CL" + i, "SGXFUNK20100910", key);
+            table.addUnits(key, i);
+        }
+        BufferPoolMXBean direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .findFirst()
+                .orElseThrow();
+
+        OffHeapSummaryStore store = OffHeapSummaryStore.copyOf(table);
+        long held = direct.getMemoryUsed();
+        assertTrue(store.tryRetain());
+        store.close();
+        assertFalse(store.isReleased(), "the reader's reference is still held");
+        assertEquals(10_000, store.size());
+        store.close();
+
+        assertTrue(store.isReleased());
+        // at least the store's memory is back, without waiting for a garbage collection
+        assertTrue(held - direct.getMemoryUsed() >= store.allocatedBytes());
+        assertFalse(store.tryRetain());
+        assertThrows(IllegalStateException.class, store::cursor);
+        assertThrows(IllegalStateException.class, store::close);
+    }
+
+    @Test
+    void order_SortsLikeTheDecodedColumns() {
+        SummaryTable table = new SummaryTable();
+        long[] key = new long[SummaryKeys.KEY_WORDS];
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            SummaryKeys.pack("CL" + random.nextInt(80), "SGXFUN" + (char) ('A' + random.nextInt(26)) + "2010091" + random.nextInt(10), key);
+            table.addUnits(key, random.nextInt(2001) - 1000);
+        }
+
+        try (OffHeapSummaryStore store = OffHeapSummaryStore.copyOf(table)) {
+            Comparator<String[]> byClient = Comparator.<String[], String>comparing(row -> row[0]).thenComparing(row -> row[1]);
+            assertEquals(rows(store, SummaryOrder.CLIENT_INFORMATION), sorted(store, byClient));
+            assertEquals(rows(store, SummaryOrder.PRODUCT_INFORMATION),
+                    sorted(store, Comparator.<String[], String>comparing(row -> row[1]).thenComparing(row -> row[0])));
+            assertEquals(rows(store, SummaryOrder.TOTAL_TRANSACTION_AMOUNT),
+                    sorted(store, Comparator.<String[]>comparingDouble(row -> Double.parseDouble(row[2])).thenComparing(byClient)));
+            assertSame(store.order(SummaryOrder.CLIENT_INFORMATION), store.order(SummaryOrder.CLIENT_INFORMATION));
+        }
+    }
+
+    @Test
+    void offsetAfter_ResumesAfterAPositionPresentOrNot() {
+        SummaryTable table = new SummaryTable();
+        long[] key = new long[SummaryKeys.KEY_WORDS];
+        for (String client : new String[]{"CL1", "CL3", "CL5"}) {
+            SummaryKeys.pack(client, "SGXFUNK20100910", key);
+            table.addUnits(key, 100);
+        }
+
+        try (OffHeapSummaryStore store = OffHeapSummaryStore.copyOf(table)) {
+            SummaryKeys.pack("CL3", "SGXFUNK20100910", key);
+            assertEquals(2, store.offsetAfter(SummaryOrder.CLIENT_INFORMATION, false, 100, key));
+            assertEquals(2, store.offsetAfter(SummaryOrder.CLIENT_INFORMATION, true, 100, key));
+            SummaryKeys.pack("CL4", "SGXFUNK20100910", key); // gone from this version of the summary
+            assertEquals(2, store.offsetAfter(SummaryOrder.CLIENT_INFORMATION, false, 100, key));
+            assertEquals(1, store.offsetAfter(SummaryOrder.CLIENT_INFORMATION, true, 100, key));
+            SummaryKeys.pack("CL9", "SGXFUNK20100910", key);
+            assertEquals(3, store.offsetAfter(SummaryOrder.CLIENT_INFORMATION, false, 100, key));
+        }
+    }
+
+    /**
+     * Reads the rows of a store in an order, as client, product and total.
+     */
+    private static List<List<String>> rows(OffHeapSummaryStore store, SummaryOrder by) {
+        List<List<String>> rows = new ArrayList<>();
+        OffHeapSummaryStore.Cursor cursor = store.cursor();
+        for (int record : store.order(by)) {
+            cursor.moveTo(record);
+            rows.add(List.of(cursor.clientInformation(), cursor.productInformation(), String.valueOf(cursor.total())));
+        }
+        return rows;
+    }
+
+    private static List<List<String>> sorted(OffHeapSummaryStore store, Comparator<String[]> comparator) {
+        List<String[]> rows = new ArrayList<>();
+        OffHeapSummaryStore.Cursor cursor = store.cursor();
+        while (cursor.next()) {
+            rows.add(new String[]{cursor.clientInformation(), cursor.productInformation(), String.valueOf(cursor.total())});
+        }
+        rows.sort(comparator);
+        return rows.stream().map(List::of).toList();
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PartitionedSummaryTable.
+ */
+class PartitionedSummaryTableTest {
+
+    @Test
+    void addMetrics_RoutesEachKeyToOnePartition() {
+        PartitionedSummaryTable table = new PartitionedSummaryTable(8);
+        SummaryTable expected = new SummaryTable();
+        long[] key = new long[SummaryKeys.KEY_WORDS];
+        long[] values = new long[Metric.COUNT];
+        for (int i = 0; i < 1000; i++) {
+            SummaryKeys.pack("CL" + (i % 97), "SGXFUNK20100910", key);
+            values[Metric.NET_QUANTITY.ordinal()] = i;
+            table.addMetrics(key, values);
+            expected.addMetrics(key, values);
+        }
+
+        Map<String, Double> union = new HashMap<>();
+        for (int p = 0; p < table.partitions(); p++) {
+            SummaryTable partition = table.partition(p);
+            int index = p;
+            partition.forEachPacked((keys, offset, units) ->
+                    assertEquals(index, PartitionedSummaryTable.partitionOf(keys, offset, 8)));
+            partition.toMap().forEach((k, v) -> assertNull(union.put(k, v), "key in two partitions: " + k));
+        }
+        assertEquals(expected.toMap(), union);
+    }
+
+    @Test
+    void partitionOf_SpreadsKeysAcrossPartitions() {
+        int[] counts = new int[16];
+        long[] key = new long[SummaryKeys.KEY_WORDS];
+        for (int i = 0; i < 16_000; i++) {
+            SummaryKeys.pack("CL" + i, "SGXFUNK20100910", key);
+            counts[PartitionedSummaryTable.partitionOf(key, 0, counts.length)]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 500 && count < 1500, "unbalanced partition: " + count);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedSummaryTable(0));
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SpillingSummaryTable.
+ */
+class SpillingSummaryTableTest {
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    void forEachPartition_SpillsAndResplitsIntoDisjointPartitions() throws IOException {
+        SummaryTable expected = new SummaryTable();
+        Map<String, Double> union = new HashMap<>();
+        long[] key = new long[SummaryKeys.KEY_WORDS];
+        long[] values = new long[Metric.COUNT];
+        // room for 50 keys, spread over 4 runs: the 2000 keys must be split again at least once
+        try (SpillingSummaryTable table = new SpillingSummaryTable(50L * SpillingSummaryTable.BYTES_PER_ENTRY, spillDir, 4)) {
+            for (int i = 0; i < 10_000; i++) {
+                SummaryKeys.pack("CL" + (i % 2000), "SGXFUNK20100910", key);
+                values[Metric.NET_QUANTITY.ordinal()] = i;
+                values[Metric.COMMISSION.ordinal()] = 1;
+                table.addMetrics(key, values);
+                expected.addMetrics(key, values);
+            }
+
+            table.forEachPartition(partition -> {
+                assertTrue(partition.size() <= 50, "partition over budget: " + partition.size());
+                partition.toMap().forEach((k, v) -> assertNull(union.put(k, v), "key in two partitions: " + k));
+            });
+
+            SpillingSummaryTable.SpillStats stats = table.stats();
+            assertTrue(stats.spills() > 0);
+            assertTrue(stats.spilledEntries() >= 2000);
+            assertTrue(stats.spilledBytes() > 0);
+            assertTrue(stats.resplits() > 0);
+        }
+        assertEquals(expected.toMap(), union);
+        try (Stream<Path> files = Files.list(spillDir)) {
+            assertEquals(0, files.count(), "run files left behind");
+        }
+    }
+
+    @Test
+    void forEachPartition_KeepsSmallInputInMemory() throws IOException {
+        long[] key = new long[SummaryKeys.KEY_WORDS];
+        long[] values = new long[Metric.COUNT];
+        values[Metric.NET_QUANTITY.ordinal()] = 100;
+        int[] partitions = new int[1];
+        try (SpillingSummaryTable table = new SpillingSummaryTable(1 << 20, spillDir)) {
+            SummaryKeys.pack("CL432100020001", "SGXFUNK20100910", key);
+            table.addMetrics(key, values);
+            table.addMetrics(key, values);
+
+            table.forEachPartition(partition -> {
+                partitions[0]++;
+                assertEquals(Map.of("CL432100020001,SGXFUNK20100910", 2.0), partition.toMap());
+            });
+            assertEquals(new SpillingSummaryTable.SpillStats(0, 0, 0, 0), table.stats());
+        }
+        assertEquals(1, partitions[0]);
+        assertThrows(IllegalArgumentException.class, () -> new SpillingSummaryTable(0, spillDir));
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tan.jerry.process_future_movement.domain.InputRecord;
+import tan.jerry.process_future_movement.reader.InputRecordView;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SummaryTable and the key packing in SummaryKeys.
+ */
+class SummaryTableTest {
+
+    private static final String LINE =
+            "315CL  432100020001SGXDC FUSGX NK    20100910JPY01B 0000000001 0000000000000000000060DUSD000000000030DUSD000000000000DJPY201008200012380     688032000092500000000             O";
+
+    private SummaryTable table;
+
+    @BeforeEach
+    void setUp() {
+        table = new SummaryTable();
+    }
+
+    @Test
+    void add_SumsAmountsPerKey() {
+        table.add("CL432100020001", "SGXFUNK20100910", 1.0);
+        table.add("CL432100020001", "SGXFUNK20100910", 2.5);
+        table.add("CL123400030001", "CMEFUN120100910", -4.0);
+
+        Map<String, Double> result = table.toMap();
+        assertEquals(2, table.size());
+        assertEquals(3.5, result.get("CL432100020001,SGXFUNK20100910"));
+        assertEquals(-4.0, result.get("CL123400030001,CMEFUN120100910"));
+    }
+
+    @Test
+    void add_GrowsBeyondInitialCapacity() {
+        for (int i = 0; i < 10_000; i++) {
+            table.add("CL" + i, "SGXFUNK20100910", i);
+            table.add("CL" + i, "SGXFUNK20100910", 1.0);
+        }
+
+        Map<String, Double> result = table.toMap();
+        assertEquals(10_000, table.size());
+        assertEquals(10_000, result.size());
+        assertEquals(5000.0, result.get("CL4999,SGXFUNK20100910"));
+    }
+
+    @Test
+    void mergeFrom_AddsTotalsOfOtherTable() {
+        SummaryTable other = new SummaryTable();
+        table.add("CL432100020001", "SGXFUNK20100910", 1.0);
+        other.add("CL432100020001", "SGXFUNK20100910", 2.0);
+        other.add("CL123400030001", "CMEFUN120100910", 5.0);
+
+        table.mergeFrom(other);
+
+        assertEquals(2, table.size());
+        assertEquals(3.0, table.toMap().get("CL432100020001,SGXFUNK20100910"));
+        assertEquals(2, other.size(), "Merged table should be left unchanged");
+        assertEquals(3, table.movements(), "Movements of the merged table should be counted");
+    }
+
+    @Test
+    void mergeFrom_TotalsDoNotDependOnOrder() {
+        double[] amounts = {0.1, 0.2, 0.3, 1e6, -0.7, 12.34, 0.01};
+        SummaryTable forward = new SummaryTable();
+        SummaryTable backward = new SummaryTable();
+        SummaryTable other = new SummaryTable();
+        for (int i = 0; i < amounts.length; i++) {
+            forward.add("CL1", "SGXFUNK20100910", amounts[i]);
+            (i % 2 == 0 ? backward : other).add("CL1", "SGXFUNK20100910", amounts[amounts.length - 1 - i]);
+        }
+        backward.mergeFrom(other);
+
+        assertEquals(forward.toMap(), backward.toMap());
+        assertEquals(1_000_012.25, forward.toMap().get("CL1,SGXFUNK20100910"));
+    }
+
+    @Test
+    void fromMap_RoundTripsToMap() {
+        Map<String, Double> map = new HashMap<>();
+        map.put("CL432100030001,CMEFUN120100910", -79.0);
+        map.put("CL123400030001,CMEFUN120100910", 285.0);
+        map.put("CL432100020001,SGXFUNK20100910", 46.0);
+
+        assertEquals(map, SummaryTable.fromMap(map).toMap());
+    }
+
+    @Test
+    void snapshot_RoundTripsThroughSerialization() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            table.add("CL" + i, "SGXFUNK20100910", i);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(table.snapshot());
+        }
+        SummaryTable.Snapshot snapshot;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            snapshot = (SummaryTable.Snapshot) in.readObject();
+        }
+
+        assertEquals(table.toMap(), SummaryTable.fromSnapshot(snapshot).toMap());
+    }
+
+    @Test
+    void addMetrics_MergesAndSnapshotsEveryColumn() throws Exception {
+        long[] key = new long[SummaryKeys.KEY_WORDS];
+        SummaryKeys.pack(ByteBuffer.wrap(LINE.getBytes(StandardCharsets.US_ASCII)), 0, LINE.length(), key);
+        long[] usd = new long[Metric.COUNT];
+        usd[Metric.NET_QUANTITY.ordinal()] = 100;
+        usd[Metric.EXCH_BROKER_FEE.ordinal()] = -60;
+        usd[Metric.EXCH_BROKER_FEE_CURRENCY.ordinal()] = MovementMetrics.packCurrency("USD");
+        usd[Metric.NOTIONAL.ordinal()] = 925_000;
+        long[] jpy = usd.clone();
+        jpy[Metric.EXCH_BROKER_FEE_CURRENCY.ordinal()] = MovementMetrics.packCurrency("JPY");
+
+        table.addMetrics(key, usd);
+        table.addMetrics(key, usd);
+        SummaryTable other = new SummaryTable();
+        other.addMetrics(key, jpy);
+        table.mergeFrom(other);
+
+        assertEquals(300, table.getUnits(key));
+        assertEquals(-180, table.getMetric(key, Metric.EXCH_BROKER_FEE));
+        assertEquals(2_775_000, table.getMetric(key, Metric.NOTIONAL));
+        assertEquals(MovementMetrics.MIXED_CURRENCY, table.getMetric(key, Metric.EXCH_BROKER_FEE_CURRENCY));
+        assertEquals(MovementMetrics.NO_CURRENCY, table.getMetric(key, Metric.COMMISSION_CURRENCY));
+
+        SummaryTable restored = SummaryTable.fromSnapshot(table.snapshot());
+        for (Metric metric : Metric.values()) {
+            assertEquals(table.getMetric(key, metric), restored.getMetric(key, metric), metric.name());
+        }
+    }
+
+    @Test
+    void pack_RecordAndBytesProduceSameKey() {
+        InputRecord record = new InputRecord("315", "CL", "4321", "0002", "0001", "SGXDC", "FU", "SGX", "NK", "20100910",
+                "JPY", "01", "B", "", "0000000001", "", "0000000000", "000000000060", "D", "USD", "000000000030", "D", "USD",
+                "000000000000", "D", "JPY", "20100820", "001238", "0", "688032", "000092500000000", "", "", "O", "");
+        long[] fromRecord = new long[SummaryKeys.KEY_WORDS];
+        long[] fromBytes = new long[SummaryKeys.KEY_WORDS];
+
+        SummaryKeys.pack(record, fromRecord);
+        ByteBuffer line = ByteBuffer.wrap(LINE.getBytes(StandardCharsets.US_ASCII));
+        SummaryKeys.pack(line, 0, LINE.length(), fromBytes);
+
+        assertArrayEquals(fromRecord, fromBytes);
+        assertEquals("CL432100020001", SummaryKeys.clientInformation(fromBytes, 0));
+        assertEquals("SGXFUNK20100910", SummaryKeys.productInformation(fromBytes, 0));
+    }
+
+    @Test
+    void pack_RecordAndBytesKeepANonAsciiByteAtTheEdgeOfAColumn() {
+        String line = LINE.substring(0, 33) + "\u00C4" + LINE.substring(34); // after the symbol "NK"
+        long[] fromText = new long[SummaryKeys.KEY_WORDS];
+        long[] fromBytes = new long[SummaryKeys.KEY_WORDS];
+
+        SummaryKeys.pack(new InputRecordView().wrap(line), fromText);
+        SummaryKeys.pack(ByteBuffer.wrap(line.getBytes(StandardCharsets.ISO_8859_1)), 0, line.length(), fromBytes);
+
+        assertArrayEquals(fromText, fromBytes);
+        assertEquals(16, SummaryKeys.productInformation(fromBytes, 0).length(), "the byte is not trimmed");
+    }
+
+    @Test
+    void pack_RemovesPeriodsFromProductInformation() {
+        table.add("CL432100020001", "SGXFUN.K20100910", 1.0);
+        table.add("CL432100020001", "SGXFUNK20100910", 1.0);
+
+        assertEquals(1, table.size());
+        assertEquals(2.0, table.toMap().get("CL432100020001,SGXFUNK20100910"));
+    }
+
+    @Test
+    void pack_RejectsOversizedClientInformation() {
+        assertThrows(IllegalArgumentException.class, () -> table.add("CL4321000200010001", "SGXFUNK20100910", 1.0));
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for WorkerSummaryTables.
+ */
+class WorkerSummaryTablesTest {
+
+    @Test
+    void merge_TreeMergeMatchesSerialMerge() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (int count : new int[]{1, 2, 5, 16}) {
+                List<SummaryTable> tables = new ArrayList<>();
+                SummaryTable expected = new SummaryTable();
+                for (int t = 0; t < count; t++) {
+                    SummaryTable table = new SummaryTable();
+                    for (int k = 0; k < 50; k++) {
+                        table.add("CL" + (k + t * 10), "SGXFUNK20100910", k + t);
+                        expected.add("CL" + (k + t * 10), "SGXFUNK20100910", k + t);
+                    }
+                    tables.add(table);
+                }
+
+                assertEquals(expected.toMap(), WorkerSummaryTables.merge(tables, pool).toMap(), count + " tables");
+            }
+            assertTrue(WorkerSummaryTables.merge(new ArrayList<>(), pool).isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
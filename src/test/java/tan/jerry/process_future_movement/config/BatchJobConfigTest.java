@@ -14,20 +14,57 @@
  */
 package tan.jerry.process_future_movement.config;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.Step;
-import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.test.JobLauncherTestUtils;
 import org.springframework.batch.test.context.SpringBatchTest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
 import tan.jerry.process_future_movement.domain.InputRecord;
-import tan.jerry.process_future_movement.domain.OutputRecord;
+import tan.jerry.process_future_movement.reader.ProcessFutureMovementPartitioner;
+import tan.jerry.process_future_movement.service.ProcessFutureMovementTaskletProcessor;
+import tan.jerry.process_future_movement.writer.ProcessFutureMovementSummaryWriter;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -36,9 +73,33 @@ import static org.junit.jupiter.api.Assertions.*;
 @ActiveProfiles("test")
 class BatchJobConfigTest {
 
+    @TempDir
+    static Path outputDir;
+
+    @DynamicPropertySource
+    static void outputFiles(DynamicPropertyRegistry registry) {
+        registry.add("output.file.name", () -> outputDir.resolve("Output.csv").toString());
+        registry.add("outputex.file.name", () -> outputDir.resolve("OutputEx.csv").toString());
+    }
+
     @Autowired
     private BatchJobConfig batchJobConfig;
 
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @BeforeEach
     void setUp() {
         // Setup code if needed
@@ -71,21 +132,143 @@ class BatchJobConfigTest {
     }
 
     @Test
-    void pfm_reader() {
-        ItemReader<? extends InputRecord> reader = batchJobConfig.pfm_reader();
-        assertNotNull(reader);
+    void pfm_worker_step() {
+        Step step = batchJobConfig.pfm_worker_step();
+        assertNotNull(step);
+        assertEquals("pfm_worker_step", step.getName());
+    }
+
+    @Test
+    void pfm_partitioner() {
+        assertNotNull(batchJobConfig.pfm_partitioner());
+    }
+
+    @Test
+    void pfm_step_readsEveryLineOnceAcrossPartitions() throws Exception {
+        createJobRepositorySchema();
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep("pfm_step");
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        List<StepExecution> partitions = jobExecution.getStepExecutions().stream()
+                .filter(stepExecution -> stepExecution.getStepName().startsWith("pfm_worker_step"))
+                .toList();
+        assertFalse(partitions.isEmpty());
+        assertEquals(inputLines(), partitions.stream().mapToLong(StepExecution::getReadCount).sum());
+        partitions.forEach(partition -> assertTrue(
+                partition.getExecutionContext().containsKey(ProcessFutureMovementPartitioner.START_BYTE_KEY)));
+    }
+
+    @Test
+    void pfm_step_recordsChunkMetrics() throws Exception {
+        createJobRepositorySchema();
+        double readBefore = itemsRead();
+        long chunksBefore = chunksCommitted();
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchStep("pfm_step");
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        long readCount = jobExecution.getStepExecutions().stream()
+                .filter(stepExecution -> stepExecution.getStepName().startsWith("pfm_worker_step"))
+                .mapToLong(StepExecution::getReadCount).sum();
+        assertEquals(readCount, itemsRead() - readBefore);
+        assertTrue(chunksCommitted() > chunksBefore);
+        assertTrue(meterRegistry.get("pfm.step.commit").tag("step", "pfm_worker_step").timer().count() > 0);
+        assertTrue(meterRegistry.get("pfm.step.read").tag("step", "pfm_worker_step").timer().count() > 0);
+    }
+
+    private double itemsRead() {
+        Counter counter = meterRegistry.find("pfm.step.items").tags("step", "pfm_worker_step", "kind", "read").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private long chunksCommitted() {
+        Timer timer = meterRegistry.find("pfm.step.chunk").tags("step", "pfm_worker_step", "outcome", "committed").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @Test
+    void job_SummarizesInputInOneRead(@TempDir Path tempDir) throws Exception {
+        createJobRepositorySchema();
+        Files.deleteIfExists(outputDir.resolve("Output.csv"));
+        Files.deleteIfExists(outputDir.resolve("OutputEx.csv"));
+
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob();
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        SummaryTable expected = new ProcessFutureMovementTaskletProcessor()
+                .summarize("Input.txt", tempDir.resolve("Output.csv").toString());
+        assertEquals(expected.toMap(),
+                ProcessFutureMovementSummaryWriter.collect(jobExecution, jobRepository, "pfm_worker_step").toMap());
+        assertEquals(new HashSet<>(Files.readAllLines(tempDir.resolve("Output.csv"))),
+                new HashSet<>(Files.readAllLines(outputDir.resolve("Output.csv"))), "finalize_step writes output.file.name");
+        assertEquals(new HashSet<>(Files.readAllLines(tempDir.resolve("Output.csv"))),
+                new HashSet<>(Files.readAllLines(outputDir.resolve("OutputEx.csv"))), "finalize_step writes outputex.file.name");
     }
 
     @Test
-    void pfm_processor() {
-        ItemProcessor<? super InputRecord, ? extends OutputRecord> processor = batchJobConfig.pfm_processor();
-        assertNotNull(processor);
+    void pfm_worker_step_RestartsAFailedPartitionFromItsLastCommit(@TempDir Path tempDir) throws Exception {
+        createJobRepositorySchema();
+        ProcessFutureMovementSummaryWriter writer = batchJobConfig.pfm_summary_writer();
+        AtomicBoolean failed = new AtomicBoolean();
+        ItemWriter<InputRecord> failingOnce = chunk -> {
+            StepExecution partition = StepSynchronizationManager.getContext().getStepExecution();
+            if (partition.getStepName().endsWith("partition0") && partition.getWriteCount() >= 100 && failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("partition0 fails after two chunks");
+            }
+            writer.write(chunk);
+        };
+        Step worker = new StepBuilder("restart_worker_step", jobRepository)
+                .<InputRecord, InputRecord>chunk(50, transactionManager)
+                .reader(batchJobConfig.pfm_reader(null))
+                .writer(failingOnce)
+                .stream(writer)
+                .listener((StepExecutionListener) writer)
+                .build();
+        Job job = new JobBuilder("restart_job", jobRepository)
+                .start(new StepBuilder("restart_step", jobRepository)
+                        .partitioner("restart_worker_step", batchJobConfig.pfm_partitioner())
+                        .step(worker)
+                        .gridSize(2)
+                        .taskExecutor(new SyncTaskExecutor())
+                        .build())
+                .build();
+        JobParameters parameters = new JobParametersBuilder().addLong("run", System.nanoTime()).toJobParameters();
+
+        JobExecution failedExecution = jobLauncherTestUtils.getJobLauncher().run(job, parameters);
+        assertEquals(BatchStatus.FAILED, failedExecution.getStatus());
+        JobExecution restarted = jobLauncherTestUtils.getJobLauncher().run(job, parameters);
+
+        assertEquals(BatchStatus.COMPLETED, restarted.getStatus());
+        StepExecution before = stepExecutions(failedExecution).get("restart_worker_step:partition0");
+        StepExecution after = stepExecutions(restarted).get("restart_worker_step:partition0");
+        StepExecution other = stepExecutions(failedExecution).get("restart_worker_step:partition1");
+        assertEquals(100, before.getWriteCount(), "two chunks were committed before the failure");
+        assertEquals(inputLines() - other.getReadCount() - before.getWriteCount(), after.getReadCount(),
+                "the restarted partition resumes after its last commit");
+        SummaryTable clean = new ProcessFutureMovementTaskletProcessor()
+                .summarize("Input.txt", tempDir.resolve("Output.csv").toString());
+        assertEquals(clean.toMap(), ProcessFutureMovementSummaryWriter.collect(restarted, jobRepository, "restart_worker_step").toMap());
+    }
+
+    /**
+     * Indexes the step executions of a job execution by name; a method returning a StepExecution
+     * would be taken by @SpringBatchTest for the step scope of every test.
+     */
+    private static Map<String, StepExecution> stepExecutions(JobExecution jobExecution) {
+        return jobExecution.getStepExecutions().stream()
+                .collect(Collectors.toMap(StepExecution::getStepName, Function.identity()));
     }
 
     @Test
-    void pfm_writer() {
-        ItemWriter<? super OutputRecord> writer = batchJobConfig.pfm_writer();
-        assertNotNull(writer);
+    void pfm_summary_writer() {
+        assertNotNull(batchJobConfig.pfm_summary_writer());
+    }
+
+    @Test
+    void pfm_reader() {
+        ItemReader<? extends InputRecord> reader = batchJobConfig.pfm_reader(null);
+        assertNotNull(reader);
     }
 
     @Test
@@ -109,4 +292,22 @@ class BatchJobConfigTest {
     void finalize_tasklet() {
         assertNotNull(batchJobConfig.finalize_tasklet());
     }
+
+    private static long inputLines() throws IOException {
+        try (Stream<String> lines = new BufferedReader(new InputStreamReader(
+                new ClassPathResource("Input.txt").getInputStream())).lines()) {
+            return lines.count();
+        }
+    }
+
+    /**
+     * Creates the job repository tables; @EnableBatchProcessing turns off Spring Boot's schema initialization.
+     */
+    private void createJobRepositorySchema() {
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(
+                new ClassPathResource("org/springframework/batch/core/schema-drop-h2.sql"),
+                new ClassPathResource("org/springframework/batch/core/schema-h2.sql"));
+        schema.setIgnoreFailedDrops(true);
+        schema.execute(dataSource);
+    }
 }
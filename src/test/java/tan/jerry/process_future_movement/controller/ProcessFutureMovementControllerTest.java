@@ -0,0 +1,240 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import tan.jerry.process_future_movement.aggregate.GroupingSet;
+import tan.jerry.process_future_movement.aggregate.OffHeapSummaryStore;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.reader.QuarantineWriter;
+import tan.jerry.process_future_movement.service.DailySummaryCache;
+import tan.jerry.process_future_movement.service.ProcessFutureMovementTaskletProcessor;
+import tan.jerry.process_future_movement.service.SummaryJob;
+import tan.jerry.process_future_movement.service.SummaryJobs;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Unit tests for the streamed reports, the paged summary report and the job events of ProcessFutureMovementController.
+ */
+class ProcessFutureMovementControllerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path outputDir;
+
+    private DailySummaryCache cache;
+
+    private SummaryJobs jobs;
+
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        ProcessFutureMovementTaskletProcessor processor = new ProcessFutureMovementTaskletProcessor() {
+            @Override
+            public SummaryTable summarize() {
+                return summarize("Input.txt", outputDir.resolve("output.csv").toString());
+            }
+        };
+        cache = new DailySummaryCache(processor);
+        jobs = new SummaryJobs(cache, 1, 10, 100);
+        mvc = MockMvcBuilders.standaloneSetup(new ProcessFutureMovementController(cache, jobs)).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobs.close();
+        cache.close();
+    }
+
+    @Test
+    void getDailySummaryReport_StreamsTheWholeMap() throws Exception {
+        Map<String, Double> expected = new ProcessFutureMovementTaskletProcessor()
+                .summarize("Input.txt", outputDir.resolve("expected.csv").toString()).toMap();
+
+        JsonNode report = mapper.readTree(perform(get("/api/get_daily_summary_report")).getContentAsString());
+
+        Map<String, Double> actual = new HashMap<>();
+        report.fields().forEachRemaining(field -> actual.put(field.getKey(), field.getValue().asDouble()));
+        assertEquals(expected, actual);
+
+        String csv = perform(get("/api/get_daily_summary_report").header("Accept", "text/csv")).getContentAsString();
+        assertEquals(expected.size() + 1, csv.lines().count());
+        assertTrue(csv.startsWith("\"Client-Product\",\"Total Transaction Amount\""));
+    }
+
+    @Test
+    void getDailySummaryReport_PagesThroughTheSortedRows() throws Exception {
+        Map<String, Double> all;
+        try (OffHeapSummaryStore store = cache.acquire()) {
+            all = store.toMap();
+        }
+        List<Double> totals = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MockHttpServletRequestBuilder builder = get("/api/get_daily_summary_report")
+                    .param("limit", "2").param("sort", "totalTransactionAmount").param("order", "desc");
+            if (cursor != null) {
+                builder.param("cursor", cursor);
+            }
+            JsonNode page = mapper.readTree(perform(builder).getContentAsString());
+            page.get("rows").forEach(row -> totals.add(row.get("totalTransactionAmount").asDouble()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            assertEquals(all.size(), page.get("total").asInt());
+            pages++;
+        } while (cursor != null && pages < 100);
+
+        assertEquals(all.size(), totals.size());
+        assertEquals((all.size() + 1) / 2, pages);
+        for (int i = 1; i < totals.size(); i++) {
+            assertTrue(totals.get(i - 1) >= totals.get(i), "descending totals");
+        }
+    }
+
+    @Test
+    void getDailySummaryReport_CsvPageCarriesTheCursorInHeaders() throws Exception {
+        MockHttpServletResponse first = perform(get("/api/get_daily_summary_report").param("limit", "1")
+                .header("Accept", "text/csv"));
+
+        assertEquals(2, first.getContentAsString().lines().count());
+        assertNotNull(first.getHeader("X-Total-Count"));
+        String next = first.getHeader("X-Next-Cursor");
+        assertNotNull(next);
+
+        MockHttpServletResponse second = perform(get("/api/get_daily_summary_report").param("cursor", next)
+                .header("Accept", "text/csv"));
+        assertNotEquals(first.getContentAsString().lines().skip(1).findFirst(),
+                second.getContentAsString().lines().skip(1).findFirst());
+    }
+
+    @Test
+    void getDailySummaryReport_RejectsInvalidPageRequests() throws Exception {
+        assertEquals(400, perform(get("/api/get_daily_summary_report").param("limit", "0")).getStatus());
+        assertEquals(400, perform(get("/api/get_daily_summary_report").param("sort", "notional")).getStatus());
+        MockHttpServletResponse response = perform(get("/api/get_daily_summary_report").param("cursor", "bm90IGEgY3Vyc29y"));
+        assertEquals(400, response.getStatus());
+        assertTrue(response.getContentAsString().startsWith("Invalid cursor"));
+    }
+
+    @Test
+    void getDailyMetricsAndRollupReports_StreamEveryRow() throws Exception {
+        int size;
+        try (OffHeapSummaryStore store = cache.acquire()) {
+            size = store.size();
+        }
+
+        JsonNode metrics = mapper.readTree(perform(get("/api/get_daily_metrics_report")).getContentAsString());
+        assertEquals(size, metrics.size());
+        assertTrue(metrics.get(0).has("clientInformation"));
+        String csv = perform(get("/api/get_daily_metrics_report").header("Accept", "text/csv")).getContentAsString();
+        assertEquals(size + 1, csv.lines().count());
+        assertTrue(csv.startsWith("\"Client_Information\",\"Product_Information\""));
+
+        int clients = cache.getRollup(GroupingSet.CLIENT).size();
+        JsonNode rollup = mapper.readTree(perform(get("/api/get_daily_rollup_report").param("groupingSet", "client"))
+                .getContentAsString());
+        assertEquals(clients, rollup.size());
+        csv = perform(get("/api/get_daily_rollup_report").param("groupingSet", "client").header("Accept", "text/csv"))
+                .getContentAsString();
+        assertEquals(clients + 1, csv.lines().count());
+
+        MockHttpServletResponse unknown = perform(get("/api/get_daily_rollup_report").param("groupingSet", "desk"));
+        assertEquals(400, unknown.getStatus());
+        assertEquals("Unknown grouping set: desk", unknown.getContentAsString());
+    }
+
+    @Test
+    void getDailySummaryReport_QuarantinesInvalidLinesInsteadOfFailing() throws Exception {
+        Path input = outputDir.resolve("input.txt");
+        Path quarantine = outputDir.resolve("quarantine.csv");
+        String valid = Files.readAllLines(Path.of("src/test/resources/test_data/EmptyLines.txt")).get(2);
+        String invalid = Files.readAllLines(Path.of("src/test/resources/test_data/InvalidNumberFormat.txt")).get(0);
+        Files.write(input, List.of(valid, invalid));
+        ProcessFutureMovementTaskletProcessor processor = new ProcessFutureMovementTaskletProcessor() {
+            @Override
+            public SummaryTable summarize() {
+                return summarize(input.toString(), outputDir.resolve("output.csv").toString());
+            }
+        };
+        ReflectionTestUtils.setField(processor, "inputFileName", input.toString());
+        ReflectionTestUtils.setField(processor, "quarantineFilePath", quarantine.toString());
+        DailySummaryCache invalidCache = new DailySummaryCache(processor);
+        MockMvc invalidMvc = MockMvcBuilders.standaloneSetup(new ProcessFutureMovementController(invalidCache, jobs)).build();
+        try {
+            MvcResult started = invalidMvc.perform(get("/api/get_daily_summary_report"))
+                    .andExpect(request().asyncStarted()).andReturn();
+            MockHttpServletResponse summary = invalidMvc.perform(asyncDispatch(started)).andReturn().getResponse();
+            assertEquals(200, summary.getStatus());
+            List<String> keys = new ArrayList<>();
+            mapper.readTree(summary.getContentAsString()).fieldNames().forEachRemaining(keys::add);
+            assertEquals(List.of("CL432100020001,SGXFUNK20100910"), keys);
+
+            started = invalidMvc.perform(get("/api/get_daily_rollup_report").param("groupingSet", "client"))
+                    .andExpect(request().asyncStarted()).andReturn();
+            MockHttpServletResponse rollup = invalidMvc.perform(asyncDispatch(started)).andReturn().getResponse();
+            assertEquals(200, rollup.getStatus());
+            assertEquals(1, mapper.readTree(rollup.getContentAsString()).size());
+
+            assertEquals(List.of(QuarantineWriter.HEADER, "BAD_QUANTITY," + invalid), Files.readAllLines(quarantine));
+        } finally {
+            invalidCache.close();
+        }
+    }
+
+    @Test
+    void watchJob_StreamsProgressUntilTheJobIsDone() throws Exception {
+        SummaryJob job = jobs.submit(false);
+
+        MvcResult result = mvc.perform(get("/api/jobs/" + job.id() + "/events")).andExpect(request().asyncStarted()).andReturn();
+        result.getAsyncResult(30_000);
+
+        String events = result.getResponse().getContentAsString();
+        assertTrue(events.startsWith("event:progress"));
+        assertTrue(events.contains("\"state\":\"COMPLETED\""));
+        assertEquals(404, mvc.perform(get("/api/jobs/42/events")).andReturn().getResponse().getStatus());
+    }
+
+    /**
+     * Performs a request whose body is streamed asynchronously and returns the completed response.
+     */
+    private MockHttpServletResponse perform(MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult started = mvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+        return mvc.perform(asyncDispatch(started)).andReturn().getResponse();
+    }
+}
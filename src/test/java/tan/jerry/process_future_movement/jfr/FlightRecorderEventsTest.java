@@ -0,0 +1,124 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+import tan.jerry.process_future_movement.listener.FlightRecorderListener;
+import tan.jerry.process_future_movement.service.ProcessFutureMovementMappedTaskletProcessor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Flight Recorder events, read back from a recording.
+ */
+class FlightRecorderEventsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void engine_EmitsPhaseAndRunEvents() throws IOException {
+        List<RecordedEvent> events;
+        Map<String, Double> result;
+        try (Recording recording = new Recording()) {
+            recording.enable("tan.jerry.pfm.EnginePhase");
+            recording.enable("tan.jerry.pfm.EngineRun");
+            recording.start();
+            result = new ProcessFutureMovementMappedTaskletProcessor()
+                    .process("Input.txt", dir.resolve("output.csv").toString());
+            recording.stop();
+            events = dump(recording);
+        }
+
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("tan.jerry.pfm.EnginePhase")
+                && "mapped".equals(e.getString("engine")) && "aggregate".equals(e.getString("stage"))));
+        RecordedEvent run = events.stream()
+                .filter(e -> e.getEventType().getName().equals("tan.jerry.pfm.EngineRun") && "mapped".equals(e.getString("engine")))
+                .findFirst().orElseThrow();
+        assertEquals("Input.txt", run.getString("inputFileName"));
+        assertEquals(result.size(), run.getLong("keys"));
+        assertTrue(run.getLong("records") >= result.size());
+    }
+
+    @Test
+    void listener_EmitsStepAndJobEvents() throws IOException {
+        FlightRecorderListener listener = new FlightRecorderListener();
+        JobExecution jobExecution = MetaDataInstanceFactory.createJobExecution("pfm_job", 1L, 7L);
+        StepExecution step = jobExecution.createStepExecution("pfm_step");
+        step.setId(11L);
+        StepExecution partition = jobExecution.createStepExecution("pfm_worker_step:partition0");
+        partition.setId(12L);
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("tan.jerry.pfm.Job");
+            recording.enable("tan.jerry.pfm.Step");
+            recording.start();
+            listener.beforeJob(jobExecution);
+            listener.beforeStep(step);
+            step.setReadCount(5);
+            step.setWriteCount(5);
+            partition.setReadCount(5);
+            step.setStatus(BatchStatus.COMPLETED);
+            step.setExitStatus(ExitStatus.COMPLETED);
+            listener.afterStep(step);
+            jobExecution.setStatus(BatchStatus.COMPLETED);
+            jobExecution.setExitStatus(ExitStatus.COMPLETED);
+            listener.afterJob(jobExecution);
+            recording.stop();
+            events = dump(recording);
+        }
+
+        RecordedEvent stepEvent = events.stream()
+                .filter(e -> e.getEventType().getName().equals("tan.jerry.pfm.Step")).findFirst().orElseThrow();
+        assertEquals("pfm_step", stepEvent.getString("stepName"));
+        assertEquals(5, stepEvent.getLong("readCount"));
+        assertEquals("COMPLETED", stepEvent.getString("status"));
+        RecordedEvent jobEvent = events.stream()
+                .filter(e -> e.getEventType().getName().equals("tan.jerry.pfm.Job")).findFirst().orElseThrow();
+        assertEquals(7L, jobEvent.getLong("jobExecutionId"));
+        assertEquals(2, jobEvent.getInt("steps"));
+        assertEquals(5, jobEvent.getLong("readCount"), "partitions are counted by their manager step");
+    }
+
+    @Test
+    void listener_KeepsNothingWhileNotRecording() {
+        FlightRecorderListener listener = new FlightRecorderListener();
+        JobExecution jobExecution = MetaDataInstanceFactory.createJobExecution("pfm_job", 1L, 8L);
+
+        listener.beforeJob(jobExecution);
+        assertDoesNotThrow(() -> listener.afterJob(jobExecution));
+    }
+
+    private List<RecordedEvent> dump(Recording recording) throws IOException {
+        Path file = dir.resolve("recording.jfr");
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file);
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.listener;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for StepMetricsListener.
+ * Partitions must share the meters of their step, per-item timers must be sampled, and
+ * quarantined lines must be counted once per chunk that quarantined them.
+ */
+class StepMetricsListenerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final StepMetricsListener listener = new StepMetricsListener(registry, 4);
+
+    @Test
+    void afterChunk_RecordsChunksItemsAndSampledReads() {
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution("pfm_worker_step:partition0", 1L);
+        ChunkContext context = new ChunkContext(new StepContext(stepExecution));
+
+        for (int chunk = 0; chunk < 2; chunk++) {
+            listener.beforeChunk(context);
+            for (int item = 0; item < 5; item++) {
+                listener.beforeRead();
+                listener.afterRead("item");
+            }
+            listener.beforeWrite(new Chunk<>(List.of("a", "b", "c", "d", "e")));
+            listener.afterWrite(new Chunk<>(List.of("a", "b", "c", "d", "e")));
+            listener.afterChunk(context);
+        }
+
+        assertEquals(2, registry.get("pfm.step.chunk").tags("step", "pfm_worker_step", "outcome", "committed").timer().count());
+        assertEquals(2, registry.get("pfm.step.commit").tag("step", "pfm_worker_step").timer().count());
+        assertEquals(2, registry.get("pfm.step.write").tag("step", "pfm_worker_step").timer().count());
+        assertEquals(10, registry.get("pfm.step.items").tags("step", "pfm_worker_step", "kind", "read").counter().count());
+        assertEquals(10, registry.get("pfm.step.items").tags("step", "pfm_worker_step", "kind", "written").counter().count());
+        assertEquals(3, registry.get("pfm.step.read").tag("step", "pfm_worker_step").timer().count(), "items 1, 5 and 9 are sampled");
+        assertEquals(2, registry.get("pfm.step.items.per.second").tag("step", "pfm_worker_step").summary().count());
+    }
+
+    @Test
+    void afterChunk_CountsNewlyQuarantinedLinesAsSkips() {
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution("pfm_worker_step:partition1", 2L);
+        stepExecution.getExecutionContext().putLong("ProcessFutureMovementReader.quarantined.BAD_QUANTITY", 3L);
+        ChunkContext context = new ChunkContext(new StepContext(stepExecution));
+
+        listener.beforeChunk(context);
+        stepExecution.getExecutionContext().putLong("ProcessFutureMovementReader.quarantined.BAD_QUANTITY", 5L);
+        stepExecution.getExecutionContext().putLong("ProcessFutureMovementReader.quarantined.TOO_SHORT", 1L);
+        listener.afterChunk(context);
+        listener.beforeChunk(context);
+        listener.afterChunk(context);
+
+        assertEquals(3, registry.get("pfm.step.skips").tags("step", "pfm_worker_step", "phase", "quarantine").counter().count(),
+                "lines quarantined before a restart are not counted again");
+    }
+}
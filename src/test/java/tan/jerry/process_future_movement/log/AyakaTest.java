@@ -0,0 +1,119 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.log;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for Ayaka.
+ */
+class AyakaTest {
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        Ayaka.setLevel(Ayaka.LogLevel.TRACE);
+    }
+
+    @Test
+    void log_WritesTimestampLevelAndMessage() throws Exception {
+        Path file = tempDir.resolve("format.log");
+        Ayaka logger = new Ayaka(file.toString());
+
+        logger.log("first");
+        logger.log("second", Ayaka.LogLevel.WARN);
+        logger.flush();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).matches("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2} \\[TRACE] - first"), lines.get(0));
+        assertTrue(lines.get(1).endsWith(" [WARN] - second"), lines.get(1));
+    }
+
+    @Test
+    void log_SkipsMessagesBelowLevel() throws Exception {
+        Path file = tempDir.resolve("level.log");
+        Ayaka logger = new Ayaka(file.toString());
+        Ayaka.setLevel(Ayaka.LogLevel.WARN);
+
+        assertFalse(logger.isEnabled(Ayaka.LogLevel.INFO));
+        assertTrue(logger.isEnabled(Ayaka.LogLevel.FATAL));
+        logger.log("hidden", Ayaka.LogLevel.INFO);
+        logger.log("shown", Ayaka.LogLevel.FATAL);
+        logger.flush();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith("shown"));
+    }
+
+    @Test
+    void log_LoggersOfTheSameFileShareOneWriter() throws Exception {
+        Path file = tempDir.resolve("shared.log");
+
+        for (int i = 0; i < 1000; i++) {
+            new Ayaka(file.toString()).log("line " + i, Ayaka.LogLevel.INFO);
+        }
+        new Ayaka(file.toString()).close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1000, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertTrue(lines.get(i).endsWith("line " + i), lines.get(i));
+        }
+    }
+
+    @Test
+    void log_KeepsEveryWarningFromConcurrentThreads() throws Exception {
+        Path file = tempDir.resolve("concurrent.log");
+        Ayaka logger = new Ayaka(file.toString());
+        int threads = 4;
+        int perThread = 3 * Ayaka.BUFFER_CAPACITY; // overflows the buffer, which warnings must wait out
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    logger.log(thread + ":" + i, Ayaka.LogLevel.WARN);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        logger.flush();
+
+        Set<String> messages = Files.readAllLines(file).stream()
+                .map(line -> line.substring(line.indexOf(" - ") + 3))
+                .collect(Collectors.toSet());
+        assertEquals(threads * perThread, messages.size());
+        assertEquals(0, logger.droppedCount());
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.metrics;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.metrics.EngineMetrics.Stage;
+import tan.jerry.process_future_movement.reader.InputLineValidator.Reason;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for EngineMetrics.
+ * A recorded run must publish its stages and throughput tagged by engine, and nothing while recording is off.
+ */
+class EngineMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private boolean wasEnabled;
+
+    @TempDir
+    Path outputDir;
+
+    @BeforeEach
+    void setUp() {
+        wasEnabled = EngineMetrics.isEnabled();
+        EngineMetrics.bind(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        EngineMetrics.bind(Metrics.globalRegistry);
+        EngineMetrics.setEnabled(wasEnabled);
+    }
+
+    @Test
+    void completed_PublishesTheRunTaggedByEngine() {
+        EngineMetrics.setEnabled(true);
+        EngineMetrics metrics = EngineMetrics.forEngine("test-run");
+        SummaryTable result = new SummaryTable();
+        result.add("CL432100020001", "SGXFUNK20100910", 1.0);
+        result.add("CL432100020001", "SGXFUNK20100910", 2.0);
+        result.add("CL123400030001", "CMEFUN120100910", 3.0);
+
+        long run = metrics.start();
+        long write = metrics.start();
+        metrics.stop(Stage.WRITE, write);
+        metrics.invalidLines(Reason.BAD_QUANTITY, 2);
+        metrics.completed(run, "Input.txt", result);
+
+        assertEquals(1, registry.get("pfm.engine.stage").tags("engine", "test-run", "stage", "write").timer().count());
+        assertEquals(0, registry.get("pfm.engine.stage").tags("engine", "test-run", "stage", "read").timer().count());
+        assertEquals(1, registry.get("pfm.engine.run").tag("engine", "test-run").timer().count());
+        assertEquals(3, registry.get("pfm.engine.records").tag("engine", "test-run").counter().count());
+        assertTrue(registry.get("pfm.engine.bytes").tag("engine", "test-run").counter().count() > 0);
+        assertTrue(registry.get("pfm.engine.records.per.second").tag("engine", "test-run").gauge().value() > 0);
+        assertEquals(2, registry.get("pfm.engine.keys").tag("engine", "test-run").gauge().value());
+        assertEquals(2, registry.get("pfm.engine.invalid.lines").tags("engine", "test-run", "reason", "BAD_QUANTITY").counter().count());
+    }
+
+    @Test
+    void start_RecordsNothingWhileOff() {
+        EngineMetrics.setEnabled(false);
+        EngineMetrics metrics = EngineMetrics.forEngine("test-off");
+
+        long run = metrics.start();
+        metrics.stop(Stage.AGGREGATE, run);
+        metrics.invalidLines(Reason.BLANK, 1);
+        metrics.completed(run, "Input.txt", new SummaryTable());
+
+        assertEquals(EngineMetrics.OFF, run);
+        assertTrue(registry.getMeters().isEmpty());
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.metrics;
+
+import org.junit.jupiter.api.Test;
+import tan.jerry.process_future_movement.metrics.EngineMetrics.Stage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for EngineProgress.
+ */
+class EngineProgressTest {
+
+    @Test
+    void snapshot_BeforeStart() {
+        EngineProgress.Snapshot snapshot = new EngineProgress().snapshot();
+
+        assertNull(snapshot.stage());
+        assertEquals(0, snapshot.records());
+        assertNull(snapshot.etaSeconds());
+    }
+
+    @Test
+    void snapshot_EstimatesTimeLeftFromTheRate() throws InterruptedException {
+        EngineProgress progress = new EngineProgress();
+        progress.start(1000);
+        progress.stage(Stage.AGGREGATE);
+        progress.advance(10, 250);
+        Thread.sleep(5);
+
+        EngineProgress.Snapshot snapshot = progress.snapshot();
+        assertTrue(progress.isStarted());
+        assertEquals("aggregate", snapshot.stage());
+        assertEquals(250, snapshot.bytesProcessed());
+        assertEquals(1000, snapshot.totalBytes());
+        assertEquals(10, snapshot.records());
+        assertTrue(snapshot.bytesPerSecond() > 0);
+        // 750 bytes left at the rate of 250 bytes so far
+        assertEquals(750 / snapshot.bytesPerSecond(), snapshot.etaSeconds(), 750 / snapshot.bytesPerSecond() * 0.5);
+
+        progress.finish();
+        assertEquals(0.0, progress.snapshot().etaSeconds());
+    }
+
+    @Test
+    void snapshot_UnknownSize() {
+        EngineProgress progress = new EngineProgress();
+        progress.start(-1);
+        progress.advance(1, 100);
+
+        assertNull(progress.snapshot().etaSeconds());
+    }
+}
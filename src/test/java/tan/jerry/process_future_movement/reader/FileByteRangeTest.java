@@ -0,0 +1,135 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FileByteRange.
+ */
+class FileByteRangeTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testTakePrefix_EndsOnLineBoundary() throws IOException {
+        try (FileChannel channel = open("alpha\nbeta\ngamma\n")) {
+            FileByteRange range = FileByteRange.of(channel);
+            FileByteRange prefix = range.takePrefix(3);
+
+            assertEquals(0, prefix.start());
+            assertEquals(6, prefix.end());
+            assertEquals(6, range.start());
+            assertEquals(List.of("alpha"), lines(prefix));
+            assertEquals(List.of("beta", "gamma"), lines(range));
+        }
+    }
+
+    @Test
+    void testTakePrefix_SplitPointAlreadyOnLineStart() throws IOException {
+        try (FileChannel channel = open("alpha\nbeta\n")) {
+            FileByteRange range = FileByteRange.of(channel);
+
+            assertEquals(6, range.takePrefix(6).end());
+        }
+    }
+
+    @Test
+    void testTrySplit_TooSmall() throws IOException {
+        try (FileChannel channel = open("alpha\nbeta\n")) {
+            FileByteRange range = FileByteRange.of(channel);
+
+            assertNull(range.trySplit(8));
+            assertEquals(0, range.start());
+        }
+    }
+
+    @Test
+    void testTrySplit_SingleLineIsNotSplit() throws IOException {
+        try (FileChannel channel = open("a very long line without any line break in the middle")) {
+            FileByteRange range = FileByteRange.of(channel);
+
+            assertNull(range.trySplit(1));
+            assertEquals(0, range.start());
+        }
+    }
+
+    @Test
+    void testTrySplit_RecursiveSplitsKeepEveryLine() throws IOException {
+        StringBuilder content = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String line = "line-" + i;
+            expected.add(line);
+            content.append(line).append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        try (FileChannel channel = open(content.toString())) {
+            List<FileByteRange> ranges = new ArrayList<>();
+            split(FileByteRange.of(channel), 16, ranges);
+
+            assertTrue(ranges.size() > 1, "Range should be split");
+            List<String> actual = new ArrayList<>();
+            long position = 0;
+            for (FileByteRange range : ranges) {
+                assertEquals(position, range.start(), "Ranges should be contiguous");
+                position = range.end();
+                actual.addAll(lines(range));
+            }
+            assertEquals(channel.size(), position);
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void testForEachLine_SkipsBlankLinesAndKeepsLastLineWithoutTerminator() throws IOException {
+        try (FileChannel channel = open("alpha\n\r\n\nbeta")) {
+            assertEquals(List.of("alpha", "beta"), lines(FileByteRange.of(channel)));
+        }
+    }
+
+    private void split(FileByteRange range, long minSize, List<FileByteRange> ranges) throws IOException {
+        FileByteRange prefix = range.trySplit(minSize);
+        if (prefix == null) {
+            ranges.add(range);
+            return;
+        }
+        split(prefix, minSize, ranges);
+        split(range, minSize, ranges);
+    }
+
+    private List<String> lines(FileByteRange range) throws IOException {
+        List<String> lines = new ArrayList<>();
+        range.forEachLine((buffer, lineStart, lineEnd) -> lines.add(FixedWidthLines.ascii(buffer, lineStart, lineEnd)));
+        return lines;
+    }
+
+    private FileChannel open(String content) throws IOException {
+        Path file = Files.writeString(tempDir.resolve("input.txt"), content, StandardCharsets.US_ASCII);
+        return FileChannel.open(file, StandardOpenOption.READ);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.file.transform.Range;
+import org.springframework.core.io.ClassPathResource;
+import tan.jerry.process_future_movement.reader.InputLineValidator.Reason;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for InputLineValidator.
+ * Text and byte validation must agree, accept every line of Input.txt and reject the malformed test data.
+ */
+class InputLineValidatorTest {
+
+    private final InputLineValidator validator = new InputLineValidator();
+
+    @Test
+    void validate_AcceptsEveryInputLine() throws IOException {
+        List<String> lines = lines("Input.txt");
+
+        assertFalse(lines.isEmpty());
+        for (String line : lines) {
+            assertNull(validate(line), line);
+        }
+    }
+
+    @Test
+    void validate_RejectsMalformedLines() throws IOException {
+        assertEquals(Reason.BAD_QUANTITY, validate(lines("test_data/InvalidNumberFormat.txt").get(0)));
+        assertEquals(Reason.BAD_RECORD_CODE, validate(lines("test_data/InvalidRecordCode.txt").get(0)));
+        assertEquals(Reason.BLANK, validate("   "));
+
+        String line = lines("Input.txt").get(0);
+        assertEquals(Reason.TOO_SHORT, validate(line.substring(0, InputLineValidator.MIN_LENGTH - 1)));
+        assertNull(validate(line.substring(0, InputLineValidator.MIN_LENGTH)));
+        assertEquals(Reason.BAD_FEE, validate(replace(line, "clearingFeeDec", 'X')));
+        assertEquals(Reason.BAD_PRICE, validate(replace(line, "transactionPriceDec", '-')));
+        assertNull(validate(blank(line, "commission")), "a blank fee is zero");
+        assertEquals(Reason.BAD_QUANTITY, validate(blank(line, "quantityShort")), "a quantity is required");
+    }
+
+    @Test
+    void validate_AcceptsTheConfiguredRecordCodes() throws IOException {
+        String line = lines("test_data/InvalidRecordCode.txt").get(0);
+
+        assertNull(new InputLineValidator(Set.of("315", "000")).validate(line));
+        assertThrows(IllegalArgumentException.class, () -> new InputLineValidator(Set.of()));
+        assertThrows(IllegalArgumentException.class, () -> new InputLineValidator(Set.of("31")));
+    }
+
+    /**
+     * Validates a line as text and as bytes, checking that both give the same reason.
+     */
+    private Reason validate(String line) {
+        byte[] bytes = ("#" + line).getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+        Reason reason = validator.validate(line);
+        assertEquals(reason, validator.validate(buffer, 1, bytes.length));
+        return reason;
+    }
+
+    private static String replace(String line, String fieldName, char c) {
+        StringBuilder replaced = new StringBuilder(line);
+        replaced.setCharAt(ProcessFutureMovementReader.column(fieldName).getMax() - 1, c);
+        return replaced.toString();
+    }
+
+    private static String blank(String line, String fieldName) {
+        Range column = ProcessFutureMovementReader.column(fieldName);
+        return line.substring(0, column.getMin() - 1) + " ".repeat(column.getMax() - column.getMin() + 1)
+                + line.substring(column.getMax());
+    }
+
+    private static List<String> lines(String resource) throws IOException {
+        return Files.readAllLines(new ClassPathResource(resource).getFile().toPath(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.mapping.RecordFieldSetMapper;
+import org.springframework.batch.item.file.transform.FixedLengthTokenizer;
+import org.springframework.batch.item.file.transform.IncorrectLineLengthException;
+import org.springframework.batch.item.file.transform.Range;
+import org.springframework.core.io.ClassPathResource;
+import tan.jerry.process_future_movement.domain.InputRecord;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for InputRecordLineMapper.
+ */
+class InputRecordLineMapperTest {
+
+    private static final String LINE =
+            "315CL  432100020001SGXDC FUSGX NK    20100910JPY01B 0000000001 0000000000000000000060DUSD000000000030DUSD000000000000DJPY201008200012380     688032000092500000000             O";
+
+    private final InputRecordLineMapper mapper = new InputRecordLineMapper(false);
+
+    @Test
+    void mapLine_MatchesTokenizerAndFieldSetMapper() throws Exception {
+        DefaultLineMapper<InputRecord> fieldSetMapper = fieldSetLineMapper();
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ClassPathResource("Input.txt").getInputStream()))) {
+            lines = reader.lines().toList();
+        }
+
+        assertFalse(lines.isEmpty());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(fieldSetMapper.mapLine(lines.get(i), i + 1), mapper.mapLine(lines.get(i), i + 1));
+        }
+    }
+
+    @Test
+    void mapLine_KeepsPaddingOfFields() {
+        InputRecord record = mapper.mapLine(LINE, 1);
+
+        assertEquals("315", record.recordCode());
+        assertEquals("CL  ", record.clientType());
+        assertEquals("NK    ", record.symbol());
+        assertEquals("0000000001", record.quantityLong());
+        assertEquals("O", record.openCloseCode());
+        assertEquals("", record.filler());
+    }
+
+    @Test
+    void mapLine_LenientLeavesMissingFieldsEmpty() throws Exception {
+        String shortLine = LINE.substring(0, 40);
+
+        InputRecord record = mapper.mapLine(shortLine, 1);
+
+        assertEquals(fieldSetLineMapper().mapLine(shortLine, 1), record);
+        assertEquals("201", record.expirationDate());
+        assertEquals("", record.currencyCode());
+    }
+
+    @Test
+    void mapLine_StrictRejectsLinesEndingBeforeFiller() {
+        InputRecordLineMapper strict = new InputRecordLineMapper(true);
+
+        assertEquals(mapper.mapLine(LINE, 1), strict.mapLine(LINE, 1));
+        assertThrows(IncorrectLineLengthException.class, () -> strict.mapLine(LINE.substring(0, LINE.length() - 1), 1));
+    }
+
+    /**
+     * The mapping the reader used before InputRecordLineMapper.
+     */
+    static DefaultLineMapper<InputRecord> fieldSetLineMapper() {
+        String[] names = Arrays.stream(InputRecord.class.getRecordComponents()).map(RecordComponent::getName).toArray(String[]::new);
+        FixedLengthTokenizer tokenizer = new FixedLengthTokenizer();
+        tokenizer.setStrict(false);
+        tokenizer.setNames(names);
+        tokenizer.setColumns(Arrays.stream(names).map(ProcessFutureMovementReader::column).toArray(Range[]::new));
+        DefaultLineMapper<InputRecord> lineMapper = new DefaultLineMapper<>();
+        lineMapper.setLineTokenizer(tokenizer);
+        lineMapper.setFieldSetMapper(new RecordFieldSetMapper<>(InputRecord.class));
+        return lineMapper;
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import tan.jerry.process_future_movement.aggregate.Metric;
+import tan.jerry.process_future_movement.aggregate.MovementMetrics;
+import tan.jerry.process_future_movement.domain.InputRecord;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.reflect.RecordComponent;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for InputRecordView.
+ * A reused view must read the same trimmed fields as a freshly mapped InputRecord, from Strings and from bytes.
+ */
+class InputRecordViewTest {
+
+    private static final String LINE =
+            "315CL  432100020001SGXDC FUSGX NK    20100910JPY01B 0000000001 0000000000000000000060DUSD000000000030DUSD000000000000DJPY201008200012380     688032000092500000000             O";
+
+    private final InputRecordLineMapper mapper = new InputRecordLineMapper(false);
+
+    @Test
+    void wrap_ReadsTheSameFieldsAsTheLineMapper() throws Exception {
+        List<String> lines = inputLines();
+        InputRecordView view = new InputRecordView();
+
+        for (String line : lines) {
+            assertFields(mapper.mapLine(line, 1), view.wrap(line));
+        }
+    }
+
+    @Test
+    void wrap_ReadsLinesStraightFromABuffer() throws Exception {
+        List<String> lines = inputLines();
+        byte[] bytes = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+        InputRecordView view = new InputRecordView();
+        long[] expected = new long[Metric.COUNT];
+        long[] actual = new long[Metric.COUNT];
+        int[] index = {0};
+
+        FixedWidthLines.forEachLine(buffer, bytes.length, true, (line, lineStart, lineEnd) -> {
+            InputRecord record = mapper.mapLine(lines.get(index[0]++), 1);
+            assertFields(record, view.wrap(line, lineStart, lineEnd));
+            assertArrayEquals(MovementMetrics.measure(record, false, expected), MovementMetrics.measure(view, false, actual));
+        });
+        assertEquals(lines.size(), index[0]);
+    }
+
+    @Test
+    void wrap_LeavesFieldsPastAShortLineEmpty() {
+        InputRecordView view = new InputRecordView().wrap(LINE.substring(0, 40));
+
+        assertEquals("CL", view.clientType());
+        assertEquals("201", view.expirationDate());
+        assertEquals("", view.currencyCode());
+        assertEquals("", view.filler());
+
+        view.wrap(LINE);
+        assertEquals("20100910", view.expirationDate(), "wrapping a new line drops the fields decoded before");
+        assertEquals("JPY", view.currencyCode());
+        assertEquals(mapper.mapLine(LINE, 1).recordCode(), view.toInputRecord().recordCode());
+    }
+
+    private static void assertFields(InputRecord record, InputRecordView view) {
+        for (RecordComponent component : InputRecord.class.getRecordComponents()) {
+            try {
+                String expected = ((String) component.getAccessor().invoke(record)).trim();
+                assertEquals(expected, InputRecordView.class.getMethod(component.getName()).invoke(view), component.getName());
+            } catch (ReflectiveOperationException e) {
+                fail(e);
+            }
+        }
+        InputRecord copy = view.toInputRecord();
+        assertEquals(copy.symbol(), record.symbol().trim());
+        assertEquals(copy.filler(), record.filler().trim());
+    }
+
+    private static List<String> inputLines() throws Exception {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource("Input.txt").getInputStream(), StandardCharsets.US_ASCII))) {
+            return reader.lines().filter(line -> !line.isBlank()).toList();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+import tan.jerry.process_future_movement.domain.InputRecord;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProcessFutureMovementPartitioner, the ByteRangeResource it is read through, and the
+ * restart of a partition's reader within its range.
+ */
+class ProcessFutureMovementPartitionerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testPartition_RangesAreContiguousAndLineAligned() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            content.append("line-").append(i).append('\n');
+        }
+        Path file = Files.writeString(tempDir.resolve("input.txt"), content, StandardCharsets.US_ASCII);
+        FileSystemResource resource = new FileSystemResource(file);
+
+        List<ExecutionContext> partitions = sorted(new ProcessFutureMovementPartitioner(resource).partition(4));
+
+        assertTrue(partitions.size() > 1 && partitions.size() <= 4, "Expected between 2 and 4 partitions");
+        long position = 0;
+        StringBuilder reassembled = new StringBuilder();
+        for (ExecutionContext partition : partitions) {
+            long start = partition.getLong(ProcessFutureMovementPartitioner.START_BYTE_KEY);
+            long end = partition.getLong(ProcessFutureMovementPartitioner.END_BYTE_KEY);
+            assertEquals(position, start, "Partitions should be contiguous");
+            String range = read(new ByteRangeResource(resource, start, end));
+            assertTrue(range.endsWith("\n"), "Partitions should end on a line boundary");
+            reassembled.append(range);
+            position = end;
+        }
+        assertEquals(Files.size(file), position);
+        assertEquals(content.toString(), reassembled.toString());
+    }
+
+    @Test
+    void testPartition_EmptyFile() throws IOException {
+        Path file = Files.createFile(tempDir.resolve("empty.txt"));
+
+        Map<String, ExecutionContext> partitions = new ProcessFutureMovementPartitioner(new FileSystemResource(file)).partition(4);
+
+        assertEquals(1, partitions.size());
+        ExecutionContext partition = partitions.values().iterator().next();
+        assertEquals(0, partition.getLong(ProcessFutureMovementPartitioner.START_BYTE_KEY));
+        assertEquals(0, partition.getLong(ProcessFutureMovementPartitioner.END_BYTE_KEY));
+    }
+
+    @Test
+    void testPartition_ResourceThatIsNotAFile() {
+        Map<String, ExecutionContext> partitions =
+                new ProcessFutureMovementPartitioner(new ByteArrayResource("a\nb\n".getBytes())).partition(4);
+
+        assertEquals(1, partitions.size());
+        assertFalse(partitions.values().iterator().next().containsKey(ProcessFutureMovementPartitioner.START_BYTE_KEY));
+    }
+
+    @Test
+    void testPartition_SplitsInputConfiguredAsFileSystemPath() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            content.append("line-").append(i).append('\n');
+        }
+        Path file = Files.writeString(tempDir.resolve("configured.txt"), content, StandardCharsets.US_ASCII);
+
+        Resource input = InputFiles.resource(file.toString());
+
+        assertTrue(input.isFile());
+        assertTrue(new ProcessFutureMovementPartitioner(input).partition(4).size() > 1);
+        assertFalse(InputFiles.resource("Input.txt") instanceof FileSystemResource, "Input.txt is on the classpath only");
+    }
+
+    @Test
+    void testByteRangeResource_ReadsOnlyItsRange() throws IOException {
+        ByteArrayResource resource = new ByteArrayResource("alpha\nbeta\ngamma\n".getBytes(StandardCharsets.US_ASCII));
+
+        ByteRangeResource range = new ByteRangeResource(resource, 6, 11);
+
+        assertEquals("beta\n", read(range));
+        assertEquals(5, range.contentLength());
+    }
+
+    @Test
+    void testReader_RestartsWithinItsRangeFromTheSavedPosition() throws Exception {
+        List<String> lines;
+        try (InputStream in = new ClassPathResource("Input.txt").getInputStream()) {
+            lines = new String(in.readAllBytes(), StandardCharsets.US_ASCII).lines().limit(40).toList();
+        }
+        Path file = Files.write(tempDir.resolve("restart.txt"), lines, StandardCharsets.US_ASCII);
+        ExecutionContext partition = sorted(new ProcessFutureMovementPartitioner(new FileSystemResource(file)).partition(2)).get(1);
+        List<InputRecord> range = readAll(reader(file), new ExecutionContext(partition));
+
+        ExecutionContext context = new ExecutionContext(partition);
+        ProcessFutureMovementReader failed = reader(file);
+        failed.open(context);
+        for (int i = 0; i < 5; i++) {
+            failed.read();
+        }
+        failed.update(context); // the last commit
+        failed.read();
+        failed.read();
+        failed.close();
+
+        assertEquals(range.subList(5, range.size()), readAll(reader(file), context));
+    }
+
+    private ProcessFutureMovementReader reader(Path file) {
+        ProcessFutureMovementReader reader = new ProcessFutureMovementReader();
+        ReflectionTestUtils.setField(reader, "inputFileName", file.toString());
+        ReflectionTestUtils.setField(reader, "ayaka_log", "ayaka.log");
+        reader.init();
+        return reader;
+    }
+
+    private List<InputRecord> readAll(ProcessFutureMovementReader reader, ExecutionContext context) throws Exception {
+        List<InputRecord> records = new ArrayList<>();
+        reader.open(context);
+        for (InputRecord record = reader.read(); record != null; record = reader.read()) {
+            records.add(record);
+        }
+        reader.close();
+        return records;
+    }
+
+    private List<ExecutionContext> sorted(Map<String, ExecutionContext> partitions) {
+        List<ExecutionContext> contexts = new ArrayList<>(partitions.values());
+        contexts.sort(Comparator.comparingLong(context -> context.getLong(ProcessFutureMovementPartitioner.START_BYTE_KEY)));
+        return contexts;
+    }
+
+    private String read(ByteRangeResource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        }
+    }
+}
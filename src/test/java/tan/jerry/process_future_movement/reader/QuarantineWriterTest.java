@@ -0,0 +1,70 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tan.jerry.process_future_movement.reader.InputLineValidator.Reason;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for QuarantineWriter.
+ * Rejected lines must be written with their reason and counted, and a clean run must leave no file.
+ */
+class QuarantineWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reject_WritesAndCountsLinesByReason() throws IOException {
+        Path path = directory.resolve("quarantine.csv");
+        byte[] bytes = "##999 short##".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        try (QuarantineWriter quarantine = new QuarantineWriter(path)) {
+            quarantine.reject(Reason.BAD_QUANTITY, "315 bad");
+            quarantine.reject(Reason.TOO_SHORT, buffer, 2, bytes.length - 2);
+            quarantine.reject(Reason.BAD_QUANTITY, "315 worse");
+            quarantine.flush();
+
+            assertEquals(2, quarantine.count(Reason.BAD_QUANTITY));
+            assertEquals(1, quarantine.count(Reason.TOO_SHORT));
+            assertEquals(0, quarantine.count(Reason.BAD_FEE));
+            assertEquals(3, quarantine.total());
+            assertEquals(List.of(QuarantineWriter.HEADER, "BAD_QUANTITY,315 bad", "TOO_SHORT,999 short", "BAD_QUANTITY,315 worse"),
+                    Files.readAllLines(path));
+        }
+    }
+
+    @Test
+    void close_LeavesNoFileWithoutRejects() throws IOException {
+        Path path = directory.resolve("quarantine.csv");
+
+        try (QuarantineWriter quarantine = new QuarantineWriter(path)) {
+            quarantine.flush();
+            assertEquals(0, quarantine.total());
+        }
+        assertFalse(Files.exists(path));
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.reader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import tan.jerry.process_future_movement.reader.InputLineValidator.Reason;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for QuarantineWriters.
+ * Each job instance must quarantine to its own file, and a restarted execution must append to it
+ * without quarantining again the lines read after the last commit of the failed one.
+ */
+class QuarantineWritersTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void forJobInstance_NamesOneFilePerInstance() {
+        QuarantineWriters quarantines = new QuarantineWriters(directory.resolve("quarantine.csv"));
+
+        assertSame(quarantines.forJobInstance(1), quarantines.forJobInstance(1));
+        assertNotSame(quarantines.forJobInstance(1), quarantines.forJobInstance(2));
+        assertEquals(directory.resolve("quarantine-2.csv"), quarantines.forJobInstance(2).path());
+        assertEquals(directory.resolve("rejects-7"), new QuarantineWriters(directory.resolve("rejects")).path(7));
+    }
+
+    @Test
+    void afterJob_RestartedExecutionAppends() throws IOException {
+        QuarantineWriters quarantines = new QuarantineWriters(directory.resolve("quarantine.csv"));
+        JobInstance instance = new JobInstance(3L, "pfm_job");
+
+        quarantines.forJobInstance(3).reject(Reason.BAD_QUANTITY, "315 failed run");
+        quarantines.forJobInstance(4).reject(Reason.BAD_FEE, "315 other run");
+        quarantines.afterJob(new JobExecution(instance, 10L, new JobParameters()));
+        quarantines.forJobInstance(3).reject(Reason.TOO_SHORT, "315 restart");
+        quarantines.afterJob(new JobExecution(instance, 11L, new JobParameters()));
+        quarantines.afterJob(new JobExecution(new JobInstance(4L, "pfm_job"), 12L, new JobParameters()));
+
+        assertEquals(List.of(QuarantineWriter.HEADER, "BAD_QUANTITY,315 failed run", "TOO_SHORT,315 restart"),
+                Files.readAllLines(quarantines.path(3)));
+        assertFalse(Files.exists(quarantines.path(5)));
+    }
+
+    @Test
+    void restartedPartition_QuarantinesEachLineOnce() throws Exception {
+        List<String> lines;
+        try (InputStream in = new ClassPathResource("Input.txt").getInputStream()) {
+            lines = new ArrayList<>(new String(in.readAllBytes(), StandardCharsets.US_ASCII).lines().limit(20).toList());
+        }
+        lines.set(2, "999" + lines.get(2).substring(3));
+        lines.set(12, "999" + lines.get(12).substring(3));
+        Path input = Files.write(directory.resolve("input.txt"), lines, StandardCharsets.US_ASCII);
+        QuarantineWriters quarantines = new QuarantineWriters(directory.resolve("quarantine.csv"));
+        JobInstance instance = new JobInstance(5L, "pfm_job");
+        ExecutionContext context = new ExecutionContext();
+
+        ProcessFutureMovementReader failed = reader(input, quarantines.forJobInstance(5));
+        failed.open(context);
+        for (int i = 0; i < 5; i++) {
+            failed.read();
+        }
+        failed.update(context); // the last commit, after the first rejected line
+        for (int i = 0; i < 10; i++) {
+            failed.read();
+        }
+        failed.close(); // fails after reading the second rejected line
+        quarantines.afterJob(new JobExecution(instance, 20L, new JobParameters()));
+
+        ProcessFutureMovementReader restarted = reader(input, quarantines.forJobInstance(5));
+        restarted.open(context);
+        while (restarted.read() != null) {
+            // read the rest of the input
+        }
+        restarted.update(context);
+        restarted.close();
+        quarantines.afterJob(new JobExecution(instance, 21L, new JobParameters()));
+
+        assertEquals(List.of(QuarantineWriter.HEADER, "BAD_RECORD_CODE," + lines.get(2), "BAD_RECORD_CODE," + lines.get(12)),
+                Files.readAllLines(quarantines.path(5)));
+        assertEquals(2L, restarted.quarantined().get(Reason.BAD_RECORD_CODE));
+    }
+
+    private ProcessFutureMovementReader reader(Path input, QuarantineWriter quarantine) {
+        ProcessFutureMovementReader reader = new ProcessFutureMovementReader();
+        ReflectionTestUtils.setField(reader, "inputFileName", input.toString());
+        ReflectionTestUtils.setField(reader, "ayaka_log", "ayaka.log");
+        reader.setQuarantine(quarantine);
+        reader.init();
+        return reader;
+    }
+}
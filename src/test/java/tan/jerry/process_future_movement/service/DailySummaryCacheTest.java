@@ -0,0 +1,301 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import tan.jerry.process_future_movement.aggregate.Dimension;
+import tan.jerry.process_future_movement.aggregate.GroupingSet;
+import tan.jerry.process_future_movement.aggregate.GroupingTable;
+import tan.jerry.process_future_movement.aggregate.Metric;
+import tan.jerry.process_future_movement.aggregate.OffHeapSummaryStore;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DailySummaryCache.
+ */
+class DailySummaryCacheTest {
+
+    private static final String INPUT = "daily-summary-cache-input.txt";
+
+    private Path input;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (input != null) {
+            Files.deleteIfExists(input);
+        }
+    }
+
+    @Test
+    void acquire_BuildsSummaryOncePerInputVersion() throws Exception {
+        CountingProcessor processor = new CountingProcessor(createInput("one"));
+        DailySummaryCache cache = new DailySummaryCache(processor);
+
+        OffHeapSummaryStore first = cache.acquire();
+        try (OffHeapSummaryStore again = cache.acquire()) {
+            assertSame(first, again);
+        }
+        assertEquals(1, processor.builds.get());
+
+        Files.writeString(input, "one, two");
+        Files.setLastModifiedTime(input, FileTime.fromMillis(Files.getLastModifiedTime(input).toMillis() + 2000));
+
+        try (OffHeapSummaryStore second = cache.acquire()) {
+            assertNotSame(first, second);
+        }
+        assertEquals(2, processor.builds.get());
+        assertFalse(first.isReleased(), "still read by this request");
+        first.close();
+        assertTrue(first.isReleased(), "replaced summary must be freed by its last reader");
+    }
+
+    @Test
+    void acquire_ConcurrentRequestsShareOneBuild() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountingProcessor processor = new CountingProcessor(createInput("one")) {
+            @Override
+            public SummaryTable summarize() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.summarize();
+            }
+        };
+        DailySummaryCache cache = new DailySummaryCache(processor);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<OffHeapSummaryStore>> requests = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                requests.add(executor.submit(cache::acquire));
+            }
+            Thread.sleep(100); // let the requests pile up behind the first build
+            release.countDown();
+
+            OffHeapSummaryStore summary = requests.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<OffHeapSummaryStore> request : requests) {
+                OffHeapSummaryStore store = request.get(10, TimeUnit.SECONDS);
+                assertSame(summary, store);
+                store.close();
+            }
+            assertEquals(1, processor.builds.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void acquire_RetriesAfterFailedBuild() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountingProcessor processor = new CountingProcessor(createInput("one")) {
+            @Override
+            public SummaryTable summarize() {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new IllegalStateException("input is being replaced");
+                }
+                return super.summarize();
+            }
+        };
+        DailySummaryCache cache = new DailySummaryCache(processor);
+
+        assertThrows(IllegalStateException.class, cache::acquire);
+        try (OffHeapSummaryStore summary = cache.acquire()) {
+            assertNotNull(summary);
+        }
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void acquire_DoesNotCacheSummaryOfMissingInput() throws Exception {
+        ProcessFutureMovementTaskletProcessor processor = new ProcessFutureMovementTaskletProcessor();
+        processor.inputFileName = INPUT;
+        processor.outputFilePath = Files.createTempFile("daily-summary-cache", ".csv").toString();
+        DailySummaryCache cache = new DailySummaryCache(processor);
+
+        assertThrows(UncheckedIOException.class, cache::acquire);
+        assertThrows(UncheckedIOException.class, cache::acquire, "a failed build must not be served from the cache");
+
+        createInput("");
+        try (OffHeapSummaryStore summary = cache.acquire()) {
+            assertTrue(summary.toMap().isEmpty());
+        }
+        Files.deleteIfExists(Paths.get(processor.outputFilePath));
+    }
+
+    @Test
+    void invalidate_ForcesRebuild() throws Exception {
+        CountingProcessor processor = new CountingProcessor(createInput("one"));
+        DailySummaryCache cache = new DailySummaryCache(processor);
+
+        OffHeapSummaryStore first = cache.acquire();
+        first.close();
+        cache.invalidate();
+        assertTrue(first.isReleased());
+        cache.acquire().close();
+
+        assertEquals(2, processor.builds.get());
+    }
+
+    @Test
+    void acquire_SummarizesConfiguredInput() {
+        ProcessFutureMovementTaskletProcessor processor = new ProcessFutureMovementTaskletProcessor();
+        processor.inputFileName = "Input.txt";
+        processor.outputFilePath = "OutputEx.csv";
+
+        try (OffHeapSummaryStore summary = new DailySummaryCache(processor).acquire()) {
+            assertEquals(processor.summarize().toMap(), summary.toMap());
+        }
+    }
+
+    @Test
+    void getRollup_DerivesEveryGroupingSetFromTheSameScan() {
+        ProcessFutureMovementTaskletProcessor processor = new ProcessFutureMovementTaskletProcessor();
+        processor.inputFileName = "Input.txt";
+        processor.outputFilePath = "OutputEx.csv";
+        DailySummaryCache cache = new DailySummaryCache(processor);
+        long[] expected = {0};
+        try (OffHeapSummaryStore summary = cache.acquire()) {
+            summary.forEachPacked((keys, offset, units) -> expected[0] += units);
+        }
+
+        for (GroupingSet groupingSet : GroupingSet.values()) {
+            GroupingTable rollup = cache.getRollup(groupingSet);
+            assertSame(rollup, cache.getRollup(groupingSet));
+            long total = 0;
+            GroupingTable.Cursor cursor = rollup.cursor();
+            while (cursor.next()) {
+                total += cursor.metric(Metric.NET_QUANTITY);
+            }
+            assertEquals(expected[0], total, groupingSet.name());
+        }
+    }
+
+    @Test
+    void acquire_BuildsSummaryAndRollupsFromTheInputOnTheFileSystemFirst() throws Exception {
+        List<String> lines = Files.readAllLines(Paths.get(getClass().getClassLoader().getResource("Input.txt").toURI()));
+        createInput(String.join("\n", lines.subList(0, 3)) + "\n");
+        Path file = Files.writeString(Paths.get(INPUT), lines.get(0) + "\n");
+        try {
+            ProcessFutureMovementTaskletProcessor processor = new ProcessFutureMovementTaskletProcessor();
+            processor.inputFileName = INPUT;
+            processor.outputFilePath = Files.createTempFile("daily-summary-cache", ".csv").toString();
+            DailySummaryCache cache = new DailySummaryCache(processor);
+
+            assertEquals(unitsOf(cache), rollupTotal(cache));
+            long one = unitsOf(cache);
+
+            Files.writeString(file, lines.get(0) + "\n" + lines.get(1) + "\n");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+
+            assertNotEquals(one, unitsOf(cache), "an edit of the file on the file system must rebuild the summary");
+            assertEquals(unitsOf(cache), rollupTotal(cache));
+            Files.deleteIfExists(Paths.get(processor.outputFilePath));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static long unitsOf(DailySummaryCache cache) {
+        long[] units = {0};
+        try (OffHeapSummaryStore summary = cache.acquire()) {
+            summary.forEachPacked((keys, offset, u) -> units[0] += u);
+        }
+        return units[0];
+    }
+
+    private static long rollupTotal(DailySummaryCache cache) {
+        long total = 0;
+        GroupingTable.Cursor cursor = cache.getRollup(GroupingSet.values()[0]).cursor();
+        while (cursor.next()) {
+            total += cursor.metric(Metric.NET_QUANTITY);
+        }
+        return total;
+    }
+
+    @Test
+    void groupingSets_StreamScanMatchesFileScan() throws Exception {
+        ProcessFutureMovementTaskletProcessor processor = new ProcessFutureMovementTaskletProcessor();
+        processor.inputFileName = "Input.txt";
+        processor.outputFilePath = "OutputEx.csv";
+        DailySummaryCache cache = new DailySummaryCache(processor);
+
+        GroupingTable streamed;
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream("Input.txt")) {
+            streamed = DailySummaryCache.groupingSets(input, "Input.txt", null);
+        }
+        for (GroupingSet groupingSet : GroupingSet.values()) {
+            assertEquals(rows(cache.getRollup(groupingSet)), rows(streamed.rollup(groupingSet)), groupingSet.name());
+        }
+        assertThrows(UncheckedIOException.class, () -> DailySummaryCache.groupingSets(null, "absent.txt", null));
+    }
+
+    private static Map<String, Long> rows(GroupingTable table) {
+        Map<String, Long> rows = new HashMap<>();
+        GroupingTable.Cursor cursor = table.cursor();
+        while (cursor.next()) {
+            StringBuilder key = new StringBuilder();
+            for (Dimension dimension : table.dimensions()) {
+                key.append(cursor.dimension(dimension)).append('|');
+            }
+            rows.put(key.toString(), cursor.metric(Metric.NET_QUANTITY));
+        }
+        return rows;
+    }
+
+    /**
+     * Creates an input file next to Input.txt, on the classpath the processor reads from.
+     */
+    private String createInput(String content) throws Exception {
+        Path classpathRoot = Paths.get(getClass().getClassLoader().getResource("Input.txt").toURI()).getParent();
+        input = Files.writeString(classpathRoot.resolve(INPUT), content);
+        return INPUT;
+    }
+
+    private static class CountingProcessor extends ProcessFutureMovementTaskletProcessor {
+
+        final AtomicInteger builds = new AtomicInteger();
+
+        CountingProcessor(String inputFileName) {
+            this.inputFileName = inputFileName;
+        }
+
+        @Override
+        public SummaryTable summarize() {
+            builds.incrementAndGet();
+            return new SummaryTable();
+        }
+    }
+}
@@ -16,8 +16,12 @@ package tan.jerry.process_future_movement.service; /**
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -31,6 +35,9 @@ class ProcessFutureMovementForkJoinTaskletProcessorTest {
 
     private Map<String, Double> expectedResults;
 
+    @TempDir
+    Path outputDir;
+
     @BeforeEach
     void setUp() {
         processor = new ProcessFutureMovementForkJoinTaskletProcessor();
@@ -110,6 +117,91 @@ class ProcessFutureMovementForkJoinTaskletProcessorTest {
         // assertEquals(...);
     }
 
+    @Test
+    void testProcess_StreamingMatchesMaterialized() {
+        processor.setBatchSize(7);
+        Map<String, Double> streamed = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("streamed.csv").toString()).toMap();
+
+        processor.setInputMode(InputMode.MATERIALIZED);
+        Map<String, Double> materialized = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("materialized.csv").toString()).toMap();
+
+        assertFalse(streamed.isEmpty(), "Result should not be empty");
+        assertEquals(materialized, streamed);
+    }
+
+    @Test
+    void testProcess_StreamingReadsAClasspathInputAndFailsOnAMissingOne() {
+        Map<String, Double> classpath = processor.summarize("Input.txt", outputDir.resolve("classpath.csv").toString()).toMap();
+        Map<String, Double> file = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("file.csv").toString()).toMap();
+
+        assertFalse(classpath.isEmpty(), "Result should not be empty");
+        assertEquals(file, classpath);
+        assertThrows(UncheckedIOException.class,
+                () -> processor.summarize("absent.txt", outputDir.resolve("absent.csv").toString()));
+    }
+
+    @Test
+    void testProcess_MaterializedReadsAClasspathInputAndFailsOnAMissingOne() {
+        processor.setInputMode(InputMode.MATERIALIZED);
+        Map<String, Double> classpath = processor.summarize("Input.txt", outputDir.resolve("classpath.csv").toString()).toMap();
+        Map<String, Double> file = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("file.csv").toString()).toMap();
+
+        assertFalse(classpath.isEmpty(), "Result should not be empty");
+        assertEquals(file, classpath);
+        assertThrows(UncheckedIOException.class,
+                () -> processor.summarize("absent.txt", outputDir.resolve("absent.csv").toString()));
+    }
+
+    @Test
+    void testProcess_SplitMatchesMaterialized() {
+        processor.setInputMode(InputMode.SPLIT);
+        processor.setSplitSize(512);
+        Map<String, Double> split = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("split.csv").toString()).toMap();
+
+        processor.setInputMode(InputMode.MATERIALIZED);
+        Map<String, Double> materialized = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("materialized.csv").toString()).toMap();
+
+        assertFalse(split.isEmpty(), "Result should not be empty");
+        assertEquals(materialized, split);
+    }
+
+    @Test
+    void testProcess_SplitFailsOnAMissingInput() {
+        processor.setInputMode(InputMode.SPLIT);
+
+        assertThrows(UncheckedIOException.class,
+                () -> processor.summarize("absent.txt", outputDir.resolve("split.csv").toString()));
+    }
+
+    @Test
+    void testProcess_ResultDoesNotDependOnLeafSizeOrPool() {
+        processor.setInputMode(InputMode.MATERIALIZED);
+        Map<String, Double> reference = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("reference.csv").toString()).toMap();
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            processor.setPool(pool);
+            for (int leafSize : new int[]{1, 10, 0}) {
+                processor.setLeafSize(leafSize);
+                String output = outputDir.resolve("leaf-" + leafSize + ".csv").toString();
+                assertEquals(reference, processor.summarize("src/main/resources/Input.txt", output).toMap(), "leaf size " + leafSize);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testAdaptiveLeafSize_GrowsWithInputAndShrinksWithParallelism() {
+        assertEquals(ProcessFutureMovementForkJoinTaskletProcessor.MIN_LEAF_SIZE,
+                ProcessFutureMovementForkJoinTaskletProcessor.adaptiveLeafSize(717, 8));
+        assertEquals(1_000_000 / (8 * ProcessFutureMovementForkJoinTaskletProcessor.LEAVES_PER_WORKER),
+                ProcessFutureMovementForkJoinTaskletProcessor.adaptiveLeafSize(1_000_000, 8));
+        assertTrue(ProcessFutureMovementForkJoinTaskletProcessor.adaptiveLeafSize(10_000_000, 64)
+                < ProcessFutureMovementForkJoinTaskletProcessor.adaptiveLeafSize(10_000_000, 4));
+        assertThrows(IllegalArgumentException.class, () -> processor.setLeafSize(-1));
+    }
+
     @Disabled("Disabled for now to bypass build failure.")
     @Test
     void processTestMissingClientInfo() {
@@ -18,8 +18,11 @@ package tan.jerry.process_future_movement.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -34,6 +37,9 @@ class ProcessFutureMovementMapReduceTaskletProcessorTest {
 
     private Map<String, Double> expectedResults;
 
+    @TempDir
+    Path outputDir;
+
     @BeforeEach
     void setUp() {
         processor = new ProcessFutureMovementMapReduceTaskletProcessor();
@@ -113,6 +119,57 @@ class ProcessFutureMovementMapReduceTaskletProcessorTest {
         // assertEquals(...);
     }
 
+    @Test
+    void testProcess_StreamingMatchesMaterialized() {
+        processor.setBatchSize(7);
+        Map<String, Double> streamed = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("streamed.csv").toString()).toMap();
+
+        processor.setInputMode(InputMode.MATERIALIZED);
+        Map<String, Double> materialized = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("materialized.csv").toString()).toMap();
+
+        assertFalse(streamed.isEmpty(), "Result should not be empty");
+        assertEquals(materialized, streamed);
+    }
+
+    @Test
+    void testProcess_SplitMatchesMaterialized() {
+        processor.setInputMode(InputMode.SPLIT);
+        processor.setSplitSize(512);
+        Map<String, Double> split = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("split.csv").toString()).toMap();
+
+        processor.setInputMode(InputMode.MATERIALIZED);
+        Map<String, Double> materialized = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("materialized.csv").toString()).toMap();
+
+        assertFalse(split.isEmpty(), "Result should not be empty");
+        assertEquals(materialized, split);
+    }
+
+    @Test
+    void testProcess_ResultDoesNotDependOnPartitionsOrPoolSize() {
+        processor.setInputMode(InputMode.MATERIALIZED);
+        Map<String, Double> reference = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("reference.csv").toString()).toMap();
+
+        for (int parallelism : new int[]{1, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                processor.setPool(pool);
+                for (int partitions : new int[]{1, 3, 64}) {
+                    processor.setPartitions(partitions);
+                    processor.setSplitSize(512);
+                    processor.setBatchSize(7);
+                    for (InputMode mode : InputMode.values()) {
+                        processor.setInputMode(mode);
+                        String output = outputDir.resolve(mode + "-" + parallelism + "-" + partitions + ".csv").toString();
+                        assertEquals(reference, processor.summarize("src/main/resources/Input.txt", output).toMap(),
+                                mode + " with " + partitions + " partitions on " + parallelism + " workers");
+                    }
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
     @Disabled("Disabled for now to bypass build failure.")
     @Test
     void testProcess_MissingClientInfo() {
@@ -0,0 +1,154 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import tan.jerry.process_future_movement.aggregate.SpillingSummaryTable;
+import tan.jerry.process_future_movement.metrics.EngineMetrics;
+import tan.jerry.process_future_movement.reader.InputLineValidator.Reason;
+import tan.jerry.process_future_movement.reader.QuarantineWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ProcessFutureMovementMappedTaskletProcessor.
+ * The memory-mapped processor must produce the same summary as the String-based processors.
+ */
+class ProcessFutureMovementMappedTaskletProcessorTest {
+
+    private ProcessFutureMovementMappedTaskletProcessor processor;
+
+    @TempDir
+    Path outputDir;
+
+    @BeforeEach
+    void setUp() {
+        processor = new ProcessFutureMovementMappedTaskletProcessor();
+    }
+
+    @Test
+    void process_MatchesTaskletProcessor() {
+        Map<String, Double> expected = new ProcessFutureMovementTaskletProcessor().process();
+        Map<String, Double> result = processor.process("Input.txt", outputDir.resolve("output.csv").toString());
+
+        assertFalse(result.isEmpty(), "Result should not be empty");
+        assertEquals(expected, result);
+    }
+
+    @Test
+    void process_RecordsItsStagesWhenMetricsAreOn() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        boolean wasEnabled = EngineMetrics.isEnabled();
+        EngineMetrics.bind(registry);
+        EngineMetrics.setEnabled(true);
+        try {
+            Map<String, Double> result = processor.process("Input.txt", outputDir.resolve("output.csv").toString());
+
+            assertEquals(1, registry.get("pfm.engine.stage").tags("engine", "mapped", "stage", "aggregate").timer().count());
+            assertEquals(1, registry.get("pfm.engine.stage").tags("engine", "mapped", "stage", "write").timer().count());
+            assertEquals(result.size(), registry.get("pfm.engine.keys").tag("engine", "mapped").gauge().value());
+            assertTrue(registry.get("pfm.engine.records").tag("engine", "mapped").counter().count() >= result.size());
+        } finally {
+            EngineMetrics.bind(Metrics.globalRegistry);
+            EngineMetrics.setEnabled(wasEnabled);
+        }
+    }
+
+    @Test
+    void process_SkipsBlankLines() {
+        Map<String, Double> result = processor.process("test_data/EmptyLines.txt", outputDir.resolve("output.csv").toString());
+
+        assertEquals(1, result.size());
+        assertTrue(result.containsKey("CL432100020001,SGXFUNK20100910"));
+    }
+
+    @Test
+    void process_EmptyInput() {
+        Map<String, Double> result = processor.process("test_data/EmptyInput.txt", outputDir.resolve("output.csv").toString());
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void summarizeExternally_WritesTheSameRowsWithinABudget() throws IOException {
+        Path expected = outputDir.resolve("expected.csv");
+        Path external = outputDir.resolve("external.csv");
+        Path spillDir = Files.createDirectory(outputDir.resolve("spill"));
+        processor.summarize("Input.txt", expected.toString());
+        processor.setMemoryBudget(1);
+        processor.setSpillDirectory(spillDir);
+
+        SpillingSummaryTable.SpillStats stats = processor.summarizeExternally("Input.txt", external.toString());
+
+        assertTrue(stats.spills() > 0);
+        assertTrue(stats.spilledBytes() > 0);
+        List<String> expectedLines = Files.readAllLines(expected);
+        List<String> externalLines = Files.readAllLines(external);
+        assertEquals(expectedLines.get(0), externalLines.get(0));
+        assertEquals(new HashSet<>(expectedLines), new HashSet<>(externalLines));
+        assertEquals(expectedLines.size(), externalLines.size());
+        try (Stream<Path> files = Files.list(spillDir)) {
+            assertEquals(0, files.count(), "run files left behind");
+        }
+    }
+
+    @Test
+    void process_FailsOnAMissingInputOrAnUnwritableOutput() {
+        assertThrows(UncheckedIOException.class, () ->
+                processor.process("absent.txt", outputDir.resolve("output.csv").toString()));
+        assertThrows(UncheckedIOException.class, () ->
+                processor.process("Input.txt", outputDir.resolve("absent").resolve("output.csv").toString()));
+    }
+
+    @Test
+    void process_InvalidNumberFormat() {
+        assertThrows(NumberFormatException.class, () ->
+                processor.process("test_data/InvalidNumberFormat.txt", outputDir.resolve("output.csv").toString()));
+    }
+
+    @Test
+    void process_QuarantinesInvalidLines() throws IOException {
+        Path path = outputDir.resolve("quarantine.csv");
+        Path input = outputDir.resolve("input.txt");
+        String valid = Files.readAllLines(Path.of("src/test/resources/test_data/EmptyLines.txt")).get(2);
+        List<String> invalid = Files.readAllLines(Path.of("src/test/resources/test_data/InvalidNumberFormat.txt"));
+        Files.write(input, List.of(valid, invalid.get(0)));
+
+        try (QuarantineWriter quarantine = new QuarantineWriter(path)) {
+            processor.setQuarantine(quarantine);
+            Map<String, Double> result = processor.process(input.toString(), outputDir.resolve("output.csv").toString());
+
+            assertEquals(Set.of("CL432100020001,SGXFUNK20100910"), result.keySet());
+            assertEquals(1, quarantine.total());
+            assertEquals(1, quarantine.count(Reason.BAD_QUANTITY));
+            assertEquals(List.of(QuarantineWriter.HEADER, "BAD_QUANTITY," + invalid.get(0)), Files.readAllLines(path));
+        }
+    }
+}
@@ -16,7 +16,9 @@ package tan.jerry.process_future_movement.service; /**
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,6 +34,9 @@ class ProcessFutureMovementParallelStreamTaskletProcessorTest {
 
     private Map<String, Double> expectedResults;
 
+    @TempDir
+    Path outputDir;
+
     @BeforeEach
     void setUp() {
         processor = new ProcessFutureMovementParallelStreamsTaskletProcessor();
@@ -111,6 +116,31 @@ class ProcessFutureMovementParallelStreamTaskletProcessorTest {
         // assertEquals(...);
     }
 
+    @Test
+    void testProcess_StreamingMatchesMaterialized() {
+        processor.setBatchSize(7);
+        Map<String, Double> streamed = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("streamed.csv").toString()).toMap();
+
+        processor.setInputMode(InputMode.MATERIALIZED);
+        Map<String, Double> materialized = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("materialized.csv").toString()).toMap();
+
+        assertFalse(streamed.isEmpty(), "Result should not be empty");
+        assertEquals(materialized, streamed);
+    }
+
+    @Test
+    void testProcess_SplitMatchesMaterialized() {
+        processor.setInputMode(InputMode.SPLIT);
+        processor.setSplitSize(512);
+        Map<String, Double> split = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("split.csv").toString()).toMap();
+
+        processor.setInputMode(InputMode.MATERIALIZED);
+        Map<String, Double> materialized = processor.summarize("src/main/resources/Input.txt", outputDir.resolve("materialized.csv").toString()).toMap();
+
+        assertFalse(split.isEmpty(), "Result should not be empty");
+        assertEquals(materialized, split);
+    }
+
     @Disabled("Disabled for now to bypass build failure.")
     @Test
     void testProcess_MissingClientInfo() {
@@ -18,6 +18,7 @@ import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.batch.test.context.SpringBatchTest;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
@@ -25,6 +26,8 @@ import org.springframework.test.util.ReflectionTestUtils;
 import tan.jerry.process_future_movement.domain.InputRecord;
 import tan.jerry.process_future_movement.domain.OutputRecord;
 
+import java.nio.file.Path;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBatchTest
@@ -56,6 +59,13 @@ class ProcessFutureMovementProcessorTest {
         assertEquals(4.0, output.totalTransactionAmount(), 0.01);
     }
 
+    @Test
+    void summarize_MatchesSequentialEngine(@TempDir Path tempDir) {
+        assertEquals(
+                new ProcessFutureMovementTaskletProcessor().summarize("Input.txt", tempDir.resolve("expected.csv").toString()).toMap(),
+                processor.summarize("Input.txt", tempDir.resolve("Output.csv").toString()).toMap());
+    }
+
     @Test
     void process_ZeroQuantities() throws Exception {
         InputRecord input = new InputRecord("315", "CL", "1234", "0002", "0001", "SGXDC", "FU", "SGX", "NK", "20100910",
@@ -0,0 +1,160 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.metrics.EngineProgress;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SummaryJobs.
+ */
+class SummaryJobsTest {
+
+    @TempDir
+    Path outputDir;
+
+    private SummaryJobs jobs;
+
+    @AfterEach
+    void tearDown() {
+        if (jobs != null) {
+            jobs.close();
+        }
+    }
+
+    @Test
+    void submit_BuildsSummaryInBackgroundAndReportsProgress() throws Exception {
+        DailySummaryCache cache = new DailySummaryCache(processor());
+        jobs = new SummaryJobs(cache, 4, 100, 10);
+
+        SummaryJob job = jobs.submit(false);
+        awaitDone(job);
+
+        SummaryJob.Status status = job.status();
+        assertEquals(SummaryJob.State.COMPLETED, status.state());
+        assertEquals(Boolean.TRUE, status.built());
+        assertTrue(status.keys() > 0);
+        assertEquals("write", status.progress().stage());
+        assertTrue(status.progress().records() >= status.keys());
+        assertTrue(status.progress().bytesProcessed() > 0);
+        assertEquals(0.0, status.progress().etaSeconds());
+        assertSame(job, jobs.find(job.id()).orElseThrow());
+
+        SummaryJob again = jobs.submit(false);
+        awaitDone(again);
+        assertNotSame(job, again);
+        assertEquals(Boolean.FALSE, again.status().built(), "the summary was already cached");
+
+        SummaryJob refresh = jobs.submit(true);
+        awaitDone(refresh);
+        assertEquals(Boolean.TRUE, refresh.status().built());
+        cache.close();
+    }
+
+    @Test
+    void submit_SharesTheActiveJob() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ProcessFutureMovementTaskletProcessor blocking = new ProcessFutureMovementTaskletProcessor() {
+            @Override
+            public SummaryTable summarize(String inputFileName, String outputFilePath, EngineProgress progress) {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new SummaryTable();
+            }
+        };
+        blocking.inputFileName = "Input.txt";
+        DailySummaryCache cache = new DailySummaryCache(blocking);
+        jobs = new SummaryJobs(cache, 2, 100, 10);
+        try {
+            SummaryJob first = jobs.submit(false);
+            assertSame(first, jobs.submit(false), "a second run of the same input shares the active job");
+
+            SummaryJob queued = jobs.submit(true);
+            assertNotSame(first, queued);
+            assertSame(queued, jobs.submit(true), "a queued refresh is shared");
+        } finally {
+            release.countDown();
+        }
+        cache.close();
+    }
+
+    @Test
+    void submit_RejectedAfterClose() {
+        jobs = new SummaryJobs(new DailySummaryCache(processor()), 1, 100, 10);
+        jobs.close();
+
+        assertThrows(RejectedExecutionException.class, () -> jobs.submit(false));
+    }
+
+    @Test
+    void watch_ReportsUntilTheJobIsDone() throws Exception {
+        DailySummaryCache cache = new DailySummaryCache(processor());
+        jobs = new SummaryJobs(cache, 4, 100, 5);
+        List<SummaryJob.Status> statuses = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        SummaryJob job = jobs.submit(false);
+        jobs.watch(job, status -> {
+            statuses.add(status);
+            if (status.state() == SummaryJob.State.COMPLETED) {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        int reported = statuses.size();
+        Thread.sleep(50);
+        assertEquals(reported, statuses.size(), "no status after the job is done");
+        assertEquals(SummaryJob.State.COMPLETED, statuses.get(reported - 1).state());
+        cache.close();
+    }
+
+    @Test
+    void find_UnknownJob() {
+        jobs = new SummaryJobs(new DailySummaryCache(processor()), 1, 100, 10);
+
+        assertTrue(jobs.find("42").isEmpty());
+    }
+
+    private ProcessFutureMovementTaskletProcessor processor() {
+        ProcessFutureMovementTaskletProcessor processor = new ProcessFutureMovementTaskletProcessor();
+        processor.inputFileName = "Input.txt";
+        processor.outputFilePath = outputDir.resolve("output.csv").toString();
+        return processor;
+    }
+
+    private static void awaitDone(SummaryJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!job.isDone() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(job.isDone(), "job did not finish");
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * © 2024 Jerry Tan. All Rights Reserved.
+ *
+ * This software is the confidential and proprietary information of Jerry Tan
+ * ("Confidential Information"). You shall not disclose such Confidential Information
+ * and shall use it only in accordance with the terms under which this software
+ * was distributed or otherwise published, and solely for the prior express purposes
+ * explicitly communicated and agreed upon, and only for those specific permissible purposes.
+ *
+ * This software is provided "AS IS," without a warranty of any kind. All express or implied
+ * conditions, representations, and warranties, including any implied warranty of merchantability,
+ * fitness for a particular purpose, or non-infringement, are disclaimed, except to the extent
+ * that such disclaimers are held to be legally invalid.
+ */
+package tan.jerry.process_future_movement.writer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import tan.jerry.process_future_movement.aggregate.SummaryTable;
+import tan.jerry.process_future_movement.domain.InputRecord;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for ProcessFutureMovementSummaryWriter.
+ */
+class ProcessFutureMovementSummaryWriterTest {
+
+    private ProcessFutureMovementSummaryWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new ProcessFutureMovementSummaryWriter();
+        writer.open(new ExecutionContext());
+    }
+
+    @Test
+    void write_SumsChunksPerClientAndProduct() {
+        writer.write(new Chunk<>(record("4321", "0000000005", "0000000001"), record("4321", "0000000003", "0000000000")));
+        writer.write(new Chunk<>(record("1234", "0000000002", "0000000000")));
+
+        Map<String, Double> summary = writer.getSummary().toMap();
+        assertEquals(2, summary.size());
+        assertEquals(7.0, summary.get("CL432100020001,SGXFUNK20100910"));
+        assertEquals(2.0, summary.get("CL123400020001,SGXFUNK20100910"));
+    }
+
+    @Test
+    void write_LeavesSummaryUntouchedWhenARecordFails() {
+        writer.write(new Chunk<>(record("4321", "0000000005", "0000000000")));
+        Map<String, Double> before = writer.getSummary().toMap();
+
+        assertThrows(NumberFormatException.class,
+                () -> writer.write(new Chunk<>(record("4321", "0000000001", "0000000000"), record("4321", "INVALID", "0000000000"))));
+
+        assertEquals(before, writer.getSummary().toMap());
+    }
+
+    @Test
+    void afterStep_SavesOneSnapshotWhenTheStepCompletes() {
+        StepExecution failed = new StepExecution("pfm_worker_step:partition0", new JobExecution(1L));
+        writer.update(failed.getExecutionContext());
+        writer.write(new Chunk<>(record("4321", "0000000005", "0000000000")));
+        writer.update(failed.getExecutionContext());
+        failed.setStatus(BatchStatus.FAILED);
+        writer.afterStep(failed);
+        assertTrue(failed.getExecutionContext().containsKey(ProcessFutureMovementSummaryWriter.DELTA_KEY),
+                "a failed step keeps its last checkpoint");
+
+        StepExecution completed = new StepExecution("pfm_worker_step:partition0", new JobExecution(2L));
+        completed.setExecutionContext(failed.getExecutionContext());
+        ProcessFutureMovementSummaryWriter restarted = new ProcessFutureMovementSummaryWriter();
+        restarted.open(completed.getExecutionContext());
+        restarted.write(new Chunk<>(record("1234", "0000000002", "0000000000")));
+        completed.setStatus(BatchStatus.COMPLETED);
+        restarted.afterStep(completed);
+
+        assertFalse(completed.getExecutionContext().containsKey(ProcessFutureMovementSummaryWriter.DELTA_KEY));
+        assertEquals(Map.of("CL432100020001,SGXFUNK20100910", 5.0, "CL123400020001,SGXFUNK20100910", 2.0),
+                SummaryTable.fromSnapshot((SummaryTable.Snapshot)
+                        completed.getExecutionContext().get(ProcessFutureMovementSummaryWriter.SUMMARY_KEY)).toMap());
+    }
+
+    @Test
+    void update_SnapshotsEveryIntervalAndSavesOnlyTheTotalsAddedSinceInBetween() {
+        ProcessFutureMovementSummaryWriter writer = new ProcessFutureMovementSummaryWriter(4);
+        ExecutionContext context = new ExecutionContext();
+        writer.open(context);
+        writer.update(context);
+
+        for (int chunk = 0; chunk < 20; chunk++) {
+            writer.write(new Chunk<>(record(String.format("%04d", chunk), "0000000005", "0000000000")));
+            writer.update(context);
+            SummaryTable.Snapshot snapshot = (SummaryTable.Snapshot) context.get(ProcessFutureMovementSummaryWriter.SUMMARY_KEY);
+            SummaryTable.Snapshot delta = (SummaryTable.Snapshot) context.get(ProcessFutureMovementSummaryWriter.DELTA_KEY);
+            int commits = chunk + 1;
+            assertEquals(commits / 4 * 4, SummaryTable.fromSnapshot(snapshot).size(), "snapshot after commit " + commits);
+            assertEquals(commits % 4, SummaryTable.fromSnapshot(delta).size(), "delta after commit " + commits);
+            assertEquals(writer.getSummary().toMap(), ProcessFutureMovementSummaryWriter.restore(context).toMap());
+        }
+        assertEquals(20, writer.getSummary().size());
+    }
+
+    @Test
+    void open_ResumesFromTheLastCheckpoint() {
+        ExecutionContext context = new ExecutionContext();
+        writer.update(context);
+        writer.write(new Chunk<>(record("4321", "0000000005", "0000000000")));
+        writer.update(context);
+        writer.write(new Chunk<>(record("1234", "0000000002", "0000000000"))); // not committed
+
+        ProcessFutureMovementSummaryWriter restarted = new ProcessFutureMovementSummaryWriter();
+        restarted.open(context);
+
+        assertEquals(Map.of("CL432100020001,SGXFUNK20100910", 5.0), restarted.getSummary().toMap());
+    }
+
+    @Test
+    void collect_MergesPartitionsAndReadsSkippedOnesFromTheRepository() {
+        JobExecution jobExecution = new JobExecution(new JobInstance(1L, "pfm_job"), 2L, null);
+        StepExecution ran = jobExecution.createStepExecution("pfm_worker_step:partition0");
+        writer.write(new Chunk<>(record("4321", "0000000005", "0000000000")));
+        ran.setStatus(BatchStatus.COMPLETED);
+        writer.afterStep(ran);
+        StepExecution skipped = jobExecution.createStepExecution("pfm_worker_step:partition1");
+        jobExecution.createStepExecution("pfm_step");
+
+        ProcessFutureMovementSummaryWriter earlier = new ProcessFutureMovementSummaryWriter();
+        earlier.open(new ExecutionContext());
+        earlier.write(new Chunk<>(record("1234", "0000000002", "0000000000")));
+        StepExecution completedEarlier = new StepExecution("pfm_worker_step:partition1", new JobExecution(1L));
+        completedEarlier.setStatus(BatchStatus.COMPLETED);
+        earlier.afterStep(completedEarlier);
+        JobRepository jobRepository = mock(JobRepository.class);
+        when(jobRepository.getLastStepExecution(jobExecution.getJobInstance(), skipped.getStepName())).thenReturn(completedEarlier);
+
+        Map<String, Double> summary = ProcessFutureMovementSummaryWriter.collect(jobExecution, jobRepository, "pfm_worker_step").toMap();
+
+        assertEquals(2, summary.size());
+        assertTrue(summary.containsKey("CL432100020001,SGXFUNK20100910"));
+        assertTrue(summary.containsKey("CL123400020001,SGXFUNK20100910"));
+    }
+
+    private InputRecord record(String clientNumber, String quantityLong, String quantityShort) {
+        return new InputRecord("315", "CL", clientNumber, "0002", "0001", "SGXDC", "FU", "SGX", "NK", "20100910",
+                "JPY", "01", "B", "+", quantityLong, "+", quantityShort, "000000000060", "D", "USD", "000000000030", "D", "USD",
+                "000000000000", "D", "JPY", "20100820", "001238", "0", "688032", "000092500000000", "", "", "O", "");
+    }
+}